@@ -84,6 +84,11 @@ public class IzPackTask extends Task implements PackagerListener
      */
     private int compressionLevel;
 
+    /**
+     * Holds value of property compressionThreads.
+     */
+    private int compressionThreads;
+
     /**
      * Holds value of property installerType.
      */
@@ -117,6 +122,7 @@ public class IzPackTask extends Task implements PackagerListener
         izPackDir = null;
         compression = PackCompression.DEFAULT.toName();
         compressionLevel = -1;
+        compressionThreads = 0;
     }
 
 
@@ -224,7 +230,8 @@ public class IzPackTask extends Task implements PackagerListener
 			        = (Class<IzpackAntRunnable>) loader.loadClass(IzpackAntRunnable.class.getName());
             Constructor constructor = runableClass.getConstructors()[0];
             Object instance = constructor.newInstance(compression, kind, input, configText, basedir, output, mkdirs,
-                    compressionLevel, properties, inheritAll, getProject().getProperties(), izPackDir, logHandler);
+                    compressionLevel, compressionThreads, properties, inheritAll, getProject().getProperties(), izPackDir,
+                    logHandler);
             final Thread thread = new Thread((Runnable) instance);
             thread.setContextClassLoader(loader);
             thread.start();
@@ -373,6 +380,15 @@ public class IzPackTask extends Task implements PackagerListener
         this.compressionLevel = compressionLevel;
     }
 
+    /**
+     * @param compressionThreads The number of threads used to compress pack files. Values <= 0 use all available
+     *                           processors.
+     */
+    public void setCompressionThreads(int compressionThreads)
+    {
+        this.compressionThreads = compressionThreads;
+    }
+
 
     /**
      * Ant will call this for each &lt;property&gt; tag to the IzPack task.
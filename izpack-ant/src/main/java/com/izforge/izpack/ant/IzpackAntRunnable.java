@@ -24,11 +24,13 @@ public class IzpackAntRunnable implements Runnable
     private final Handler logHandler;
 
     public IzpackAntRunnable(String compression, String kind, String input, String configText, String basedir,
-                             String output, boolean mkdirs, int compressionLevel, Properties properties,
+                             String output, boolean mkdirs, int compressionLevel, int compressionThreads,
+                             Properties properties,
                              Boolean inheritAll, Hashtable<String, Object> antProjectProperties, String izPackDir,
                              Handler logHandler)
     {
         this.compilerData = new CompilerData(compression, kind, input, configText, basedir, output, mkdirs, compressionLevel);
+        this.compilerData.setCompressionThreads(compressionThreads);
         this.input = input;
         this.properties = properties;
         this.inheritAll = inheritAll;
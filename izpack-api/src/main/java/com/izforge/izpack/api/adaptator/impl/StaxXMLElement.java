@@ -0,0 +1,421 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.adaptator.impl;
+
+import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.adaptator.XMLException;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+
+/**
+ * A lightweight {@link IXMLElement}, built by the {@link StaxXMLParser}.
+ * <p/>
+ * Attributes are held in the order they were parsed, and only indexed by name when first looked up. The
+ * content is the text an {@link XMLElementImpl} would return from {@link #getContent()}, and is determined as the
+ * element is parsed.
+ * <p/>
+ * Unlike {@link XMLElementImpl}, the element isn't backed by a DOM. {@link #getElement()} returns a DOM copy of the
+ * element, which doesn't include comments, processing instructions, nor the text of elements with mixed content.
+ *
+ * @see StaxXMLParser
+ */
+public class StaxXMLElement implements IXMLElement
+{
+    private static final long serialVersionUID = 4603617735457398128L;
+
+    /**
+     * The qualified element name.
+     */
+    private final String name;
+
+    /**
+     * The element namespace URI. May be {@code null}.
+     */
+    private final String namespaceURI;
+
+    /**
+     * The line number.
+     */
+    private final int lineNr;
+
+    /**
+     * The attributes as qualified name, namespace URI and value triples, in document order.
+     * Only used until the attributes are indexed.
+     */
+    private String[] parsedAttributes;
+
+    /**
+     * The attributes, keyed on qualified name. Created on first access.
+     */
+    private Map<String, String> attributes;
+
+    /**
+     * The attribute namespace URIs, keyed on qualified name. Only contains prefixed attributes.
+     */
+    private Map<String, String> attributeNamespaces;
+
+    /**
+     * The child elements.
+     */
+    private List<IXMLElement> children;
+
+    /**
+     * The content, or {@code null} if the element is empty, or has content other than text.
+     */
+    private String content;
+
+    /**
+     * Constructs a <tt>StaxXMLElement</tt>.
+     *
+     * @param name         the qualified element name
+     * @param namespaceURI the element namespace URI. May be {@code null}
+     * @param attributes   the attributes as qualified name, namespace URI and value triples
+     * @param lineNr       the line number, or {@link #NO_LINE} if it is unknown
+     */
+    public StaxXMLElement(String name, String namespaceURI, String[] attributes, int lineNr)
+    {
+        this.name = name;
+        this.namespaceURI = namespaceURI;
+        this.parsedAttributes = attributes;
+        this.lineNr = lineNr;
+    }
+
+    @Override
+    public String getName()
+    {
+        return name;
+    }
+
+    @Override
+    public void addChild(IXMLElement child)
+    {
+        if (children == null)
+        {
+            children = new ArrayList<IXMLElement>();
+        }
+        children.add(child);
+        content = null;
+    }
+
+    @Override
+    public void removeChild(IXMLElement child)
+    {
+        if (children != null)
+        {
+            children.remove(child);
+        }
+    }
+
+    @Override
+    public boolean hasChildren()
+    {
+        return children != null && !children.isEmpty();
+    }
+
+    @Override
+    public int getChildrenCount()
+    {
+        return children != null ? children.size() : 0;
+    }
+
+    @Override
+    public List<IXMLElement> getChildren()
+    {
+        if (children == null)
+        {
+            return Collections.emptyList();
+        }
+        return children;
+    }
+
+    @Override
+    public IXMLElement getChildAtIndex(int index)
+    {
+        return getChildren().get(index);
+    }
+
+    /**
+     * Returns the first descendant with the specified name, searching depth first as
+     * {@link org.w3c.dom.Element#getElementsByTagName(String)} does.
+     *
+     * @param name the name of the element to search for
+     * @return the first matching element, or {@code null} if none is found
+     */
+    @Override
+    public IXMLElement getFirstChildNamed(String name)
+    {
+        for (IXMLElement child : getChildren())
+        {
+            if (name.equals(child.getName()))
+            {
+                return child;
+            }
+            IXMLElement result = child.getFirstChildNamed(name);
+            if (result != null)
+            {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<IXMLElement> getChildrenNamed(String name)
+    {
+        List<IXMLElement> result = new ArrayList<IXMLElement>();
+        for (IXMLElement child : getChildren())
+        {
+            if (name.equals(child.getName()))
+            {
+                result.add(child);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String getAttribute(String name)
+    {
+        return getAttribute(name, null);
+    }
+
+    @Override
+    public String getAttribute(String name, String defaultValue)
+    {
+        String value;
+        if (attributes == null)
+        {
+            // avoid indexing the attributes for a single lookup
+            value = findParsedAttribute(name);
+        }
+        else
+        {
+            value = attributes.get(name);
+        }
+        return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public void setAttribute(String name, String value)
+    {
+        getAttributeMap().put(name, value);
+    }
+
+    @Override
+    public void removeAttribute(String name)
+    {
+        getAttributeMap().remove(name);
+        if (attributeNamespaces != null)
+        {
+            attributeNamespaces.remove(name);
+        }
+    }
+
+    @Override
+    public Enumeration<String> enumerateAttributeNames()
+    {
+        return Collections.enumeration(new ArrayList<String>(getAttributeMap().keySet()));
+    }
+
+    @Override
+    public boolean hasAttribute(String name)
+    {
+        return getAttribute(name) != null;
+    }
+
+    @Override
+    public Properties getAttributes()
+    {
+        Properties properties = new Properties();
+        properties.putAll(getAttributeMap());
+        return properties;
+    }
+
+    @Override
+    public int getLineNr()
+    {
+        return lineNr;
+    }
+
+    @Override
+    public String getContent()
+    {
+        return content;
+    }
+
+    @Override
+    public void setContent(String content)
+    {
+        children = null;
+        // trimmed, as XMLElementImpl returns it
+        this.content = (content != null) ? content.trim() : null;
+    }
+
+    /**
+     * Returns a DOM copy of this element.
+     * <p/>
+     * Changes to the returned node aren't reflected in this element.
+     *
+     * @return a new DOM element, owned by a new document
+     */
+    @Override
+    public Node getElement()
+    {
+        try
+        {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            Document document = factory.newDocumentBuilder().newDocument();
+            Element element = toElement(document);
+            document.appendChild(element);
+            return element;
+        }
+        catch (ParserConfigurationException exception)
+        {
+            throw new XMLException(exception);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return name;
+    }
+
+    /**
+     * Sets the content of the element, as determined by the parser.
+     *
+     * @param content the content. May be {@code null}
+     */
+    void setParsedContent(String content)
+    {
+        this.content = content;
+    }
+
+    /**
+     * Creates a DOM copy of this element.
+     *
+     * @param document the document to create the element in
+     * @return the element
+     */
+    private Element toElement(Document document)
+    {
+        Element element = document.createElementNS(namespaceURI, name);
+        for (Map.Entry<String, String> attribute : getAttributeMap().entrySet())
+        {
+            String attributeName = attribute.getKey();
+            String attributeNamespace = null;
+            if (attributeName.equals(XMLConstants.XMLNS_ATTRIBUTE)
+                    || attributeName.startsWith(XMLConstants.XMLNS_ATTRIBUTE + ":"))
+            {
+                attributeNamespace = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+            }
+            else if (attributeNamespaces != null)
+            {
+                attributeNamespace = attributeNamespaces.get(attributeName);
+            }
+            element.setAttributeNS(attributeNamespace, attributeName, attribute.getValue());
+        }
+        if (lineNr != NO_LINE)
+        {
+            element.setUserData("ln", lineNr, null);
+        }
+        if (content != null && content.length() != 0)
+        {
+            element.appendChild(document.createTextNode(content));
+        }
+        for (IXMLElement child : getChildren())
+        {
+            if (child instanceof StaxXMLElement)
+            {
+                element.appendChild(((StaxXMLElement) child).toElement(document));
+            }
+            else
+            {
+                element.appendChild(document.importNode(child.getElement(), true));
+            }
+        }
+        return element;
+    }
+
+    /**
+     * Looks up an attribute before the attributes are indexed.
+     *
+     * @param name the qualified attribute name
+     * @return the attribute value, or {@code null} if the attribute doesn't exist
+     */
+    private String findParsedAttribute(String name)
+    {
+        if (parsedAttributes != null)
+        {
+            for (int i = 0; i < parsedAttributes.length; i += 3)
+            {
+                if (parsedAttributes[i].equals(name))
+                {
+                    return parsedAttributes[i + 2];
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the attributes, indexing them if required.
+     *
+     * @return the attributes, keyed on qualified name
+     */
+    private Map<String, String> getAttributeMap()
+    {
+        if (attributes == null)
+        {
+            attributes = new LinkedHashMap<String, String>();
+            if (parsedAttributes != null)
+            {
+                for (int i = 0; i < parsedAttributes.length; i += 3)
+                {
+                    attributes.put(parsedAttributes[i], parsedAttributes[i + 2]);
+                    if (parsedAttributes[i + 1] != null)
+                    {
+                        if (attributeNamespaces == null)
+                        {
+                            attributeNamespaces = new LinkedHashMap<String, String>();
+                        }
+                        attributeNamespaces.put(parsedAttributes[i], parsedAttributes[i + 1]);
+                    }
+                }
+                parsedAttributes = null;
+            }
+        }
+        return attributes;
+    }
+}
@@ -0,0 +1,475 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.adaptator.impl;
+
+import com.izforge.izpack.api.adaptator.IXMLElement;
+import com.izforge.izpack.api.adaptator.IXMLParser;
+import com.izforge.izpack.api.adaptator.XMLException;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+
+/**
+ * A non-validating {@link IXMLParser} that builds a tree of {@link StaxXMLElement}s directly from StAX events.
+ * <p/>
+ * This avoids the cost of building a DOM via an identity transform, as {@link XMLParser} does, for documents that
+ * are only read. Documents using XInclude, or that the StAX parser rejects, are handed to a non-validating
+ * {@link XMLParser}, so that includes are processed, and errors reported, as before.
+ *
+ * @see XMLParserFactory
+ */
+public class StaxXMLParser implements IXMLParser
+{
+    /**
+     * The XInclude namespace.
+     */
+    private static final String XINCLUDE_NS = "http://www.w3.org/2001/XInclude";
+
+    /**
+     * Property to report CDATA sections as CDATA events, supported by the JDK parser.
+     */
+    private static final String REPORT_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+    /**
+     * Text containing only whitespace, which is ignored as {@link XMLElementImpl#getContent()} does.
+     */
+    private static final Pattern WHITESPACE = Pattern.compile("^\\s+$");
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(StaxXMLParser.class.getName());
+
+    /**
+     * The StAX factory.
+     */
+    private final XMLInputFactory factory;
+
+    /**
+     * Constructs a <tt>StaxXMLParser</tt>.
+     */
+    public StaxXMLParser()
+    {
+        factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        if (factory.isPropertySupported(REPORT_CDATA))
+        {
+            factory.setProperty(REPORT_CDATA, true);
+        }
+    }
+
+    @Override
+    public IXMLElement parse(InputStream inputStream)
+    {
+        return parse(inputStream, null);
+    }
+
+    @Override
+    public IXMLElement parse(InputStream inputStream, String systemId)
+    {
+        if (inputStream == null)
+        {
+            throw new NullPointerException("The input stream must be not null.");
+        }
+        byte[] bytes;
+        try
+        {
+            bytes = read(inputStream);
+        }
+        catch (IOException exception)
+        {
+            throw new XMLException(getError(systemId, null, exception), exception);
+        }
+        return parse(bytes, systemId);
+    }
+
+    @Override
+    public IXMLElement parse(String inputString)
+    {
+        return parse(inputString.getBytes(Charset.forName("UTF-8")), null);
+    }
+
+    @Override
+    public IXMLElement parse(URL inputURL)
+    {
+        String systemId = inputURL.toExternalForm();
+        InputStream stream = null;
+        byte[] bytes;
+        try
+        {
+            stream = inputURL.openStream();
+            bytes = read(stream);
+        }
+        catch (IOException exception)
+        {
+            throw new XMLException(getError(systemId, null, exception), exception);
+        }
+        finally
+        {
+            if (stream != null)
+            {
+                try
+                {
+                    stream.close();
+                }
+                catch (IOException ignore)
+                {
+                    // no-op
+                }
+            }
+        }
+        return parse(bytes, systemId);
+    }
+
+    /**
+     * Parses a document.
+     *
+     * @param bytes    the document
+     * @param systemId the system identifier of the document. May be {@code null}
+     * @return the root element
+     * @throws XMLException if the document cannot be parsed
+     */
+    private IXMLElement parse(byte[] bytes, String systemId)
+    {
+        IXMLElement result;
+        try
+        {
+            result = build(bytes, systemId);
+        }
+        catch (XMLStreamException exception)
+        {
+            // let the DOM parser accept what it accepts (e.g. Java encoding names), or report the error as before
+            logger.log(Level.FINE, getError(systemId, exception.getLocation(), exception), exception);
+            result = null;
+        }
+        if (result == null)
+        {
+            // the document uses XInclude, or was rejected
+            XMLParser parser = new XMLParser(false);
+            ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
+            result = (systemId != null) ? parser.parse(stream, systemId) : parser.parse(stream);
+        }
+        return result;
+    }
+
+    /**
+     * Builds the element tree of a document.
+     *
+     * @param bytes    the document
+     * @param systemId the system identifier of the document. May be {@code null}
+     * @return the root element, or {@code null} if the document uses XInclude
+     * @throws XMLStreamException if the document cannot be parsed
+     */
+    private IXMLElement build(byte[] bytes, String systemId) throws XMLStreamException
+    {
+        ByteArrayInputStream stream = new ByteArrayInputStream(bytes);
+        XMLStreamReader reader = (systemId != null) ? factory.createXMLStreamReader(systemId, stream)
+                : factory.createXMLStreamReader(stream);
+        try
+        {
+            List<Frame> stack = new ArrayList<Frame>();
+            StaxXMLElement root = null;
+            while (reader.hasNext())
+            {
+                int event = reader.next();
+                Frame frame = stack.isEmpty() ? null : stack.get(stack.size() - 1);
+                switch (event)
+                {
+                    case XMLStreamConstants.START_ELEMENT:
+                        if (XINCLUDE_NS.equals(reader.getNamespaceURI()))
+                        {
+                            return null;
+                        }
+                        if (frame != null)
+                        {
+                            frame.addNode();
+                        }
+                        stack.add(new Frame(createElement(reader)));
+                        break;
+                    case XMLStreamConstants.END_ELEMENT:
+                        stack.remove(stack.size() - 1);
+                        StaxXMLElement element = frame.end();
+                        if (stack.isEmpty())
+                        {
+                            root = element;
+                        }
+                        else
+                        {
+                            stack.get(stack.size() - 1).element.addChild(element);
+                        }
+                        break;
+                    case XMLStreamConstants.CHARACTERS:
+                    case XMLStreamConstants.SPACE:
+                        if (frame != null)
+                        {
+                            frame.addText(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        }
+                        break;
+                    case XMLStreamConstants.CDATA:
+                        frame.addCData(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                        break;
+                    case XMLStreamConstants.COMMENT:
+                    case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    case XMLStreamConstants.ENTITY_REFERENCE:
+                        if (frame != null)
+                        {
+                            frame.addNode();
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return root;
+        }
+        finally
+        {
+            reader.close();
+        }
+    }
+
+    /**
+     * Creates an element from the current <em>START_ELEMENT</em> event.
+     *
+     * @param reader the reader
+     * @return a new element
+     */
+    private StaxXMLElement createElement(XMLStreamReader reader)
+    {
+        int namespaces = reader.getNamespaceCount();
+        int count = reader.getAttributeCount();
+        String[] attributes = new String[(namespaces + count) * 3];
+        int index = 0;
+        for (int i = 0; i < namespaces; ++i)
+        {
+            String prefix = reader.getNamespacePrefix(i);
+            String uri = reader.getNamespaceURI(i);
+            attributes[index++] = isEmpty(prefix) ? XMLConstants.XMLNS_ATTRIBUTE
+                    : XMLConstants.XMLNS_ATTRIBUTE + ":" + prefix;
+            attributes[index++] = XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
+            attributes[index++] = (uri != null) ? uri : "";
+        }
+        for (int i = 0; i < count; ++i)
+        {
+            String uri = reader.getAttributeNamespace(i);
+            attributes[index++] = getQName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i));
+            attributes[index++] = isEmpty(uri) ? null : uri;
+            attributes[index++] = reader.getAttributeValue(i);
+        }
+        String uri = reader.getNamespaceURI();
+        Location location = reader.getLocation();
+        int lineNr = (location != null && location.getLineNumber() > 0) ? location.getLineNumber()
+                : IXMLElement.NO_LINE;
+        return new StaxXMLElement(getQName(reader.getPrefix(), reader.getLocalName()), isEmpty(uri) ? null : uri,
+                                  attributes, lineNr);
+    }
+
+    /**
+     * Reads a stream.
+     *
+     * @param stream the stream to read
+     * @return the stream contents
+     * @throws IOException for any I/O error
+     */
+    private static byte[] read(InputStream stream) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = stream.read(buffer)) != -1)
+        {
+            bytes.write(buffer, 0, read);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Returns a qualified name.
+     *
+     * @param prefix    the prefix. May be {@code null}
+     * @param localName the local name
+     * @return the qualified name
+     */
+    private static String getQName(String prefix, String localName)
+    {
+        return isEmpty(prefix) ? localName : prefix + ":" + localName;
+    }
+
+    /**
+     * Determines if a string is {@code null} or empty.
+     *
+     * @param value the string
+     * @return {@code true} if the string is {@code null} or empty
+     */
+    private static boolean isEmpty(String value)
+    {
+        return value == null || value.length() == 0;
+    }
+
+    /**
+     * Formats a parse error, in the form {@link XMLParser} reports it.
+     *
+     * @param systemId  the system identifier of the document. May be {@code null}
+     * @param location  the location of the error. May be {@code null}
+     * @param exception the cause of the error
+     * @return the error message
+     */
+    private static String getError(String systemId, Location location, Exception exception)
+    {
+        StringBuilder result = new StringBuilder("Error");
+        if (systemId != null)
+        {
+            result.append(" in ").append(systemId);
+        }
+        if (location != null && location.getLineNumber() > 0)
+        {
+            result.append(" at line ").append(location.getLineNumber());
+            result.append(", column ").append(location.getColumnNumber());
+        }
+        return result.append(" : ").append(exception.getMessage()).toString();
+    }
+
+    /**
+     * Tracks the content of an element being parsed.
+     */
+    private static class Frame
+    {
+        /**
+         * The element.
+         */
+        private final StaxXMLElement element;
+
+        /**
+         * The content collected so far.
+         */
+        private final StringBuilder content = new StringBuilder();
+
+        /**
+         * The current run of text. This is only added to the content if it isn't just whitespace.
+         */
+        private final StringBuilder text = new StringBuilder();
+
+        /**
+         * Determines if the element has no child nodes.
+         */
+        private boolean empty = true;
+
+        /**
+         * Determines if the element has child nodes other than text.
+         */
+        private boolean complex;
+
+        /**
+         * Constructs a <tt>Frame</tt>.
+         *
+         * @param element the element
+         */
+        public Frame(StaxXMLElement element)
+        {
+            this.element = element;
+        }
+
+        /**
+         * Adds text.
+         *
+         * @param chars  the text buffer
+         * @param start  the start of the text in the buffer
+         * @param length the length of the text
+         */
+        public void addText(char[] chars, int start, int length)
+        {
+            empty = false;
+            if (!complex)
+            {
+                text.append(chars, start, length);
+            }
+        }
+
+        /**
+         * Adds a CDATA section.
+         *
+         * @param chars  the text buffer
+         * @param start  the start of the text in the buffer
+         * @param length the length of the text
+         */
+        public void addCData(char[] chars, int start, int length)
+        {
+            empty = false;
+            if (!complex)
+            {
+                endText();
+                content.append(chars, start, length);
+            }
+        }
+
+        /**
+         * Adds a node other than text.
+         */
+        public void addNode()
+        {
+            empty = false;
+            complex = true;
+        }
+
+        /**
+         * Ends the element.
+         *
+         * @return the element, with its content set
+         */
+        public StaxXMLElement end()
+        {
+            endText();
+            element.setParsedContent((empty || complex) ? null : content.toString().trim());
+            return element;
+        }
+
+        /**
+         * Adds the current run of text to the content, if it isn't just whitespace.
+         */
+        private void endText()
+        {
+            if (text.length() != 0)
+            {
+                if (!WHITESPACE.matcher(text).matches())
+                {
+                    content.append(text);
+                }
+                text.setLength(0);
+            }
+        }
+    }
+}
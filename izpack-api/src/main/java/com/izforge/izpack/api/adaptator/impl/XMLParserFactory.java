@@ -0,0 +1,66 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.adaptator.impl;
+
+import com.izforge.izpack.api.adaptator.IXMLParser;
+
+
+/**
+ * Creates {@link IXMLParser}s.
+ * <p/>
+ * Validating parsers are always {@link XMLParser}s. Non-validating parsers are {@link StaxXMLParser}s if the
+ * {@link #PARSER_PROPERTY} system property is set to {@link #STAX}, or {@link XMLParser}s otherwise.
+ * <p/>
+ * Note that elements returned by a {@link StaxXMLParser} aren't backed by a DOM, so a non-validating parser should
+ * only be obtained from here where the parsed document is read via the {@link com.izforge.izpack.api.adaptator.IXMLElement}
+ * methods.
+ */
+public class XMLParserFactory
+{
+    /**
+     * The system property selecting the non-validating parser implementation.
+     */
+    public static final String PARSER_PROPERTY = "izpack.xml.parser";
+
+    /**
+     * Property value selecting the {@link StaxXMLParser}.
+     */
+    public static final String STAX = "stax";
+
+    /**
+     * Property value selecting the {@link XMLParser}. This is the default.
+     */
+    public static final String DOM = "dom";
+
+    /**
+     * Creates a parser.
+     *
+     * @param validating if {@code true}, documents are validated against the schemas they reference
+     * @return a new parser
+     */
+    public static IXMLParser createParser(boolean validating)
+    {
+        if (!validating && STAX.equalsIgnoreCase(System.getProperty(PARSER_PROPERTY, DOM)))
+        {
+            return new StaxXMLParser();
+        }
+        return new XMLParser(validating);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import com.izforge.izpack.api.resource.Locales;
+import com.izforge.izpack.api.resource.Messages;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * {@link Messages} backed by a {@link MessageTable}.
+ * <p/>
+ * Messages are looked up in the table by binary search, and only decoded when requested. Messages added via
+ * {@link #add(Messages)} are held separately, and take precedence over those in the table.
+ *
+ * @see LocaleDatabase
+ */
+public class CompiledMessages implements Messages
+{
+    /**
+     * The compiled messages.
+     */
+    private final MessageTable table;
+
+    /**
+     * The parent messages. May be {@code null}.
+     */
+    private final Messages parent;
+
+    /**
+     * The locales.
+     */
+    private final Locales locales;
+
+    /**
+     * Messages added to those in the table. May be {@code null}.
+     */
+    private Map<String, String> added;
+
+    /**
+     * Constructs a <tt>CompiledMessages</tt>.
+     *
+     * @param table   the compiled messages
+     * @param parent  the parent messages. May be {@code null}
+     * @param locales the supported locales
+     */
+    public CompiledMessages(MessageTable table, Messages parent, Locales locales)
+    {
+        this.table = table;
+        this.parent = parent;
+        this.locales = locales;
+    }
+
+    /**
+     * Formats the message with the specified identifier, replacing placeholders with the supplied arguments.
+     * <p/>
+     * This uses {@link java.text.MessageFormat} to format the message.
+     *
+     * @param id   the message identifier
+     * @param args message arguments to replace placeholders in the message with
+     * @return the corresponding message, or {@code id} if the message does not exist
+     */
+    @Override
+    public String get(String id, Object... args)
+    {
+        String result;
+        String pattern = (id != null) ? find(id) : null;
+        if (pattern != null)
+        {
+            result = LocaleDatabase.format(id, pattern, args);
+        }
+        else if (parent != null)
+        {
+            result = parent.get(id, args);
+        }
+        else
+        {
+            result = id;
+        }
+        return result;
+    }
+
+    /**
+     * Adds messages.
+     * <p/>
+     * This merges the supplied messages with the current messages. If an existing message exists with the same
+     * identifier as that supplied, it will be replaced.
+     *
+     * @param messages the messages to add
+     */
+    @Override
+    public void add(Messages messages)
+    {
+        if (added == null)
+        {
+            added = new TreeMap<String, String>();
+        }
+        added.putAll(messages.getMessages());
+    }
+
+    /**
+     * Returns the messages.
+     * <p/>
+     * This decodes the entire table.
+     *
+     * @return the message identifiers, and their corresponding formats
+     */
+    @Override
+    public Map<String, String> getMessages()
+    {
+        Map<String, String> result = table.getMessages();
+        if (added != null)
+        {
+            result.putAll(added);
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Creates a new messages instance from the named resource that inherits the current messages.
+     *
+     * @param name the messages resource name
+     * @return the messages
+     */
+    @Override
+    public Messages newMessages(String name)
+    {
+        Messages child = locales.getMessages(name);
+        Messages result = new LocaleDatabase(this, locales);
+        result.add(child);
+        return result;
+    }
+
+    /**
+     * Looks up a message.
+     *
+     * @param id the message identifier
+     * @return the message, or {@code null} if none is found
+     */
+    private String find(String id)
+    {
+        if (added != null && added.containsKey(id))
+        {
+            return added.get(id);
+        }
+        return table.get(id);
+    }
+}
@@ -131,6 +131,11 @@ public class Info implements Serializable
 
     private String compressionFormat = PackCompression.DEFAULT.toName();
 
+    /**
+     * The minimum uncompressed size of a solid compression block, or {@code 0} to compress each file separately.
+     */
+    private long compressionBlockSize = 0;
+
     private boolean requirePrivilegedExecution = false;
 
     private boolean requirePrivilegedExecutionUninstaller = false;
@@ -433,6 +438,38 @@ public class Info implements Serializable
         this.compressionFormat = compression.toName();
     }
 
+    /**
+     * Returns the minimum uncompressed size of a solid compression block.
+     * <p/>
+     * If non-zero, consecutive files of a pack are compressed together as a single stream, up to this size.
+     *
+     * @return the block size in bytes, or {@code 0} if each file is compressed separately
+     */
+    public long getCompressionBlockSize()
+    {
+        return compressionBlockSize;
+    }
+
+    /**
+     * Sets the minimum uncompressed size of a solid compression block.
+     *
+     * @param compressionBlockSize the block size in bytes, or {@code 0} to compress each file separately
+     */
+    public void setCompressionBlockSize(long compressionBlockSize)
+    {
+        this.compressionBlockSize = compressionBlockSize;
+    }
+
+    /**
+     * Determines if packs are compressed in solid blocks.
+     *
+     * @return {@code true} if a compression format and block size are specified
+     */
+    public boolean isSolidCompression()
+    {
+        return compressionBlockSize > 0 && getCompressionFormat() != PackCompression.DEFAULT;
+    }
+
     /**
      * This class represents an author.
      *
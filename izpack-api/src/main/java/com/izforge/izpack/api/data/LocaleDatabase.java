@@ -19,6 +19,8 @@
 
 package com.izforge.izpack.api.data;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.text.MessageFormat;
 import java.util.Collections;
@@ -30,7 +32,7 @@ import java.util.logging.Logger;
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.IXMLParser;
 import com.izforge.izpack.api.adaptator.XMLException;
-import com.izforge.izpack.api.adaptator.impl.XMLParser;
+import com.izforge.izpack.api.adaptator.impl.XMLParserFactory;
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.resource.Locales;
 import com.izforge.izpack.api.resource.Messages;
@@ -108,7 +110,7 @@ public class LocaleDatabase extends TreeMap<String, String> implements Messages
 
     /**
      * Adds the contents of the given stream to the data base. The stream have to contain key value
-     * pairs as declared by the DTD langpack.dtd.
+     * pairs as declared by the DTD langpack.dtd, or a langpack compiled to a {@link MessageTable}.
      *
      * @param in an InputStream to read the translation from.
      * @throws ResourceException if the stream is not an IzPack langpack file or cannot be read
@@ -117,10 +119,25 @@ public class LocaleDatabase extends TreeMap<String, String> implements Messages
     {
         IXMLElement data;
 
+        try
+        {
+            BufferedInputStream buffered = new BufferedInputStream(in);
+            if (MessageTable.isMessageTable(buffered))
+            {
+                putAll(MessageTable.read(buffered).getMessages());
+                return;
+            }
+            in = buffered;
+        }
+        catch (IOException exception)
+        {
+            throw new ResourceException("Failed to read langpack stream", exception);
+        }
+
         try
         {
             // Do not validate during installation, but when compiling
-            IXMLParser parser = new XMLParser(false);
+            IXMLParser parser = XMLParserFactory.createParser(false);
             data = parser.parse(in);
         }
         catch (XMLException exception)
@@ -128,8 +145,9 @@ public class LocaleDatabase extends TreeMap<String, String> implements Messages
             throw new ResourceException("Failed to read langpack stream", exception);
         }
 
-        // We check the data
-        if (!"langpack".equalsIgnoreCase(data.getElement().getLocalName()))
+        // We check the data, ignoring any namespace prefix
+        String name = data.getName();
+        if (!"langpack".equalsIgnoreCase(name.substring(name.indexOf(':') + 1)))
         {
             throw new ResourceException("Invalid IzPack XML langpack file");
         }
@@ -178,31 +196,7 @@ public class LocaleDatabase extends TreeMap<String, String> implements Messages
         String pattern = (id != null) ? super.get(id) : null;
         if (pattern != null)
         {
-            if (args.length > 0)
-            {
-                try
-                {
-                    // replace all ' characters because MessageFormat.format() doesn't substitute quoted place
-                    // holders '{0}'
-                    // TODO - fix quotes in langpacks to MessageFormat format
-                    pattern = pattern.replace('\'', TEMP_QUOTING_CHARACTER);
-
-                    pattern = MessageFormat.format(pattern, args);
-                    result = MessageFormat.format(pattern, args);
-
-                    // replace all ' characters back
-                    result = result.replace(TEMP_QUOTING_CHARACTER, '\'');
-                }
-                catch (IllegalArgumentException exception)
-                {
-                    result = id;
-                    logger.log(Level.WARNING, "Failed to format pattern=" + pattern + ", for key=" + id, exception);
-                }
-            }
-            else
-            {
-                result = pattern;
-            }
+            result = format(id, pattern, args);
         }
         else if (parent != null)
         {
@@ -302,4 +296,43 @@ public class LocaleDatabase extends TreeMap<String, String> implements Messages
         return message.replace(TEMP_QUOTING_CHARACTER, '\'');
     }
 
+    /**
+     * Formats a message, replacing placeholders with the supplied arguments.
+     *
+     * @param id      the message identifier
+     * @param pattern the message
+     * @param args    message arguments to replace placeholders in the message with
+     * @return the formatted message, or {@code id} if the message cannot be formatted
+     */
+    static String format(String id, String pattern, Object... args)
+    {
+        String result;
+        if (args.length > 0)
+        {
+            try
+            {
+                // replace all ' characters because MessageFormat.format() doesn't substitute quoted place
+                // holders '{0}'
+                // TODO - fix quotes in langpacks to MessageFormat format
+                pattern = pattern.replace('\'', TEMP_QUOTING_CHARACTER);
+
+                pattern = MessageFormat.format(pattern, args);
+                result = MessageFormat.format(pattern, args);
+
+                // replace all ' characters back
+                result = result.replace(TEMP_QUOTING_CHARACTER, '\'');
+            }
+            catch (IllegalArgumentException exception)
+            {
+                result = id;
+                logger.log(Level.WARNING, "Failed to format pattern=" + pattern + ", for key=" + id, exception);
+            }
+        }
+        else
+        {
+            result = pattern;
+        }
+        return result;
+    }
+
 }
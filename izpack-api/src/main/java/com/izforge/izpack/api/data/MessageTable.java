@@ -0,0 +1,366 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * A compiled langpack: an immutable table of messages, sorted on identifier.
+ * <p/>
+ * The table is a header followed by an index of fixed size entries, and then the UTF-8 encoded identifiers and
+ * messages. The index is sorted on the encoded identifiers, so that messages can be looked up by binary search over
+ * the encoded form, without decoding the table or building a map. The table can be read from a stream, or wrap any
+ * {@link ByteBuffer}, including a memory mapped file.
+ * <p/>
+ * Langpacks are compiled by the packager, so that installers don't need to parse langpack XML at startup.
+ *
+ * @see CompiledMessages
+ */
+public class MessageTable
+{
+    /**
+     * The current format version.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The magic number identifying the format, "IZMT".
+     */
+    private static final int MAGIC = 0x495A4D54;
+
+    /**
+     * The size of the header: the magic number, version, no. of messages and size of the data.
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * The size of an index entry: the offset and length of the identifier and of the message.
+     */
+    private static final int ENTRY_SIZE = 16;
+
+    /**
+     * The table encoding.
+     */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The table.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The no. of messages.
+     */
+    private final int size;
+
+    /**
+     * Constructs a <tt>MessageTable</tt>.
+     *
+     * @param buffer the table
+     * @throws IOException if the buffer doesn't contain a valid table
+     */
+    private MessageTable(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(buffer.position()) != MAGIC)
+        {
+            throw new IOException("Not a message table");
+        }
+        int version = buffer.getInt(buffer.position() + 4);
+        if (version > VERSION)
+        {
+            throw new IOException("Unsupported message table version " + version + ", expected " + VERSION
+                                          + " or earlier");
+        }
+        size = buffer.getInt(buffer.position() + 8);
+        int dataSize = buffer.getInt(buffer.position() + 12);
+        if (size < 0 || dataSize < 0
+                || (long) HEADER_SIZE + (long) size * ENTRY_SIZE + dataSize > buffer.remaining())
+        {
+            throw new IOException("Invalid message table");
+        }
+        this.buffer = buffer.slice();
+    }
+
+    /**
+     * Returns the no. of messages.
+     *
+     * @return the no. of messages
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns a message.
+     *
+     * @param id the message identifier
+     * @return the message, or {@code null} if none is found
+     */
+    public String get(String id)
+    {
+        byte[] key = id.getBytes(UTF8);
+        int low = 0;
+        int high = size - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            int entry = HEADER_SIZE + mid * ENTRY_SIZE;
+            int compare = compare(buffer.getInt(entry), buffer.getInt(entry + 4), key);
+            if (compare < 0)
+            {
+                low = mid + 1;
+            }
+            else if (compare > 0)
+            {
+                high = mid - 1;
+            }
+            else
+            {
+                return decode(buffer.getInt(entry + 8), buffer.getInt(entry + 12));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns all of the messages.
+     *
+     * @return the messages, keyed on identifier
+     */
+    public Map<String, String> getMessages()
+    {
+        Map<String, String> result = new TreeMap<String, String>();
+        for (int i = 0; i < size; ++i)
+        {
+            int entry = HEADER_SIZE + i * ENTRY_SIZE;
+            result.put(decode(buffer.getInt(entry), buffer.getInt(entry + 4)),
+                       decode(buffer.getInt(entry + 8), buffer.getInt(entry + 12)));
+        }
+        return result;
+    }
+
+    /**
+     * Determines if a stream contains a message table.
+     * <p/>
+     * This doesn't consume any of the stream.
+     *
+     * @param in the stream. Must support {@link InputStream#mark(int)}
+     * @return {@code true} if the stream starts with a message table
+     * @throws IOException for any I/O error
+     */
+    public static boolean isMessageTable(InputStream in) throws IOException
+    {
+        in.mark(4);
+        try
+        {
+            int magic = 0;
+            for (int i = 0; i < 4; ++i)
+            {
+                int b = in.read();
+                if (b == -1)
+                {
+                    return false;
+                }
+                magic = (magic << 8) | b;
+            }
+            return magic == MAGIC;
+        }
+        finally
+        {
+            in.reset();
+        }
+    }
+
+    /**
+     * Reads a message table.
+     *
+     * @param in the stream to read from. This is not closed
+     * @return the table
+     * @throws IOException if the table cannot be read
+     */
+    public static MessageTable read(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+        {
+            bytes.write(buffer, 0, read);
+        }
+        return wrap(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Creates a message table backed by a buffer.
+     *
+     * @param buffer the buffer, positioned at the start of the table. Must not be changed after this call
+     * @return the table
+     * @throws IOException if the buffer doesn't contain a valid table
+     */
+    public static MessageTable wrap(ByteBuffer buffer) throws IOException
+    {
+        return new MessageTable(buffer);
+    }
+
+    /**
+     * Writes a message table.
+     * <p/>
+     * Messages with {@code null} identifiers or values are ignored.
+     *
+     * @param messages the messages, keyed on identifier
+     * @param out      the stream to write to. This is not closed
+     * @throws IOException for any I/O error
+     */
+    public static void write(Map<String, String> messages, OutputStream out) throws IOException
+    {
+        List<byte[][]> entries = new ArrayList<byte[][]>(messages.size());
+        for (Map.Entry<String, String> entry : messages.entrySet())
+        {
+            if (entry.getKey() != null && entry.getValue() != null)
+            {
+                entries.add(new byte[][]{entry.getKey().getBytes(UTF8), entry.getValue().getBytes(UTF8)});
+            }
+        }
+        Collections.sort(entries, new Comparator<byte[][]>()
+        {
+            @Override
+            public int compare(byte[][] o1, byte[][] o2)
+            {
+                return compareBytes(o1[0], o2[0]);
+            }
+        });
+
+        // identical messages are stored once
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        Map<String, Integer> offsets = new HashMap<String, Integer>();
+        int[] index = new int[entries.size() * 4];
+        int i = 0;
+        for (byte[][] entry : entries)
+        {
+            index[i++] = data.size();
+            index[i++] = entry[0].length;
+            data.write(entry[0]);
+            String value = new String(entry[1], UTF8);
+            Integer offset = offsets.get(value);
+            if (offset == null)
+            {
+                offset = data.size();
+                offsets.put(value, offset);
+                data.write(entry[1]);
+            }
+            index[i++] = offset;
+            index[i++] = entry[1].length;
+        }
+
+        DataOutputStream stream = new DataOutputStream(out);
+        stream.writeInt(MAGIC);
+        stream.writeInt(VERSION);
+        stream.writeInt(entries.size());
+        stream.writeInt(data.size());
+        int dataStart = HEADER_SIZE + entries.size() * ENTRY_SIZE;
+        for (int j = 0; j < index.length; j += 2)
+        {
+            stream.writeInt(dataStart + index[j]);
+            stream.writeInt(index[j + 1]);
+        }
+        data.writeTo(stream);
+        stream.flush();
+    }
+
+    /**
+     * Compares an identifier in the table with an encoded identifier.
+     *
+     * @param offset the offset of the identifier in the table
+     * @param length the length of the identifier in the table
+     * @param key    the encoded identifier
+     * @return a negative value, zero, or a positive value as the table identifier is less than, equal to, or
+     *         greater than the key
+     */
+    private int compare(int offset, int length, byte[] key)
+    {
+        int min = Math.min(length, key.length);
+        for (int i = 0; i < min; ++i)
+        {
+            int result = (buffer.get(offset + i) & 0xff) - (key[i] & 0xff);
+            if (result != 0)
+            {
+                return result;
+            }
+        }
+        return length - key.length;
+    }
+
+    /**
+     * Decodes a string from the table.
+     *
+     * @param offset the offset of the string
+     * @param length the length of the string
+     * @return the string
+     */
+    private String decode(int offset, int length)
+    {
+        if (buffer.hasArray())
+        {
+            return new String(buffer.array(), buffer.arrayOffset() + offset, length, UTF8);
+        }
+        byte[] bytes = new byte[length];
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    /**
+     * Compares two byte arrays, treating bytes as unsigned.
+     *
+     * @param a the first array
+     * @param b the second array
+     * @return a negative value, zero, or a positive value as {@code a} is less than, equal to, or greater than
+     *         {@code b}
+     */
+    private static int compareBytes(byte[] a, byte[] b)
+    {
+        int min = Math.min(a.length, b.length);
+        for (int i = 0; i < min; ++i)
+        {
+            int result = (a[i] & 0xff) - (b[i] & 0xff);
+            if (result != 0)
+            {
+                return result;
+            }
+        }
+        return a.length - b.length;
+    }
+}
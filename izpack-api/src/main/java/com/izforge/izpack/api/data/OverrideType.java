@@ -30,7 +30,8 @@ import java.util.Map;
  */
 public enum OverrideType
 {
-    OVERRIDE_FALSE("false"), OVERRIDE_TRUE("true"), OVERRIDE_ASK_FALSE("askfalse"), OVERRIDE_ASK_TRUE("asktrue"), OVERRIDE_UPDATE("update");
+    OVERRIDE_FALSE("false"), OVERRIDE_TRUE("true"), OVERRIDE_ASK_FALSE("askfalse"), OVERRIDE_ASK_TRUE("asktrue"), OVERRIDE_UPDATE("update"),
+    OVERRIDE_CHANGED("changed");
 
     private static Map<String, OverrideType> lookup;
 
@@ -35,6 +35,22 @@ public class Pack implements Serializable
 
     private static final long serialVersionUID = -7841139470853935196L;
 
+    /**
+     * The algorithm used to calculate jar digests.
+     */
+    public static final String JAR_DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * The name of the pack jar holding the files shared between packs, when packs are written to separate jars.
+     */
+    public static final String COMMON_PACK_NAME = "izpack-common";
+
+    /**
+     * The installer resource holding a pack that records the digest and length of the {@link #COMMON_PACK_NAME}
+     * jar. This pack isn't installed; it only allows the jar to be verified like the jars of installed packs.
+     */
+    public static final String COMMON_PACK_RESOURCE = "packs.common";
+
     /**
      * The pack name. This uniquely identifies the pack.
      */
@@ -158,6 +174,16 @@ public class Pack implements Serializable
      */
     private boolean hidden;
 
+    /**
+     * The digest of the jar containing the pack, for packs stored in a separate jar. May be {@code null}.
+     */
+    private byte[] jarDigest;
+
+    /**
+     * The length of the jar containing the pack, for packs stored in a separate jar.
+     */
+    private long jarLength;
+
     /**
      * Used for conversions.
      */
@@ -511,6 +537,40 @@ public class Pack implements Serializable
         return fileSize;
     }
 
+    /**
+     * Sets the digest and length of the jar containing the pack.
+     * <p/>
+     * This is recorded for packs written to a separate jar, so that the installer can verify downloaded jars.
+     *
+     * @param digest the jar digest. May be {@code null}
+     * @param length the jar length, in bytes
+     */
+    public void setJar(byte[] digest, long length)
+    {
+        this.jarDigest = digest;
+        this.jarLength = length;
+    }
+
+    /**
+     * Returns the digest of the jar containing the pack.
+     *
+     * @return the jar digest, or {@code null} if the pack isn't stored in a separate jar
+     */
+    public byte[] getJarDigest()
+    {
+        return jarDigest;
+    }
+
+    /**
+     * Returns the length of the jar containing the pack.
+     *
+     * @return the jar length, in bytes, or {@code 0} if the pack isn't stored in a separate jar
+     */
+    public long getJarLength()
+    {
+        return jarLength;
+    }
+
     /**
      * Sets the parent pack name.
      *
@@ -43,6 +43,16 @@ public class PackFile implements Serializable
 {
     private static final long serialVersionUID = -834377078706854909L;
 
+    /**
+     * The algorithm used to calculate file content digests.
+     */
+    public static final String DIGEST_ALGORITHM = "SHA-256";
+
+    /**
+     * The mode recorded for files that are executable when compiled.
+     */
+    public static final int EXECUTABLE_MODE = 0755;
+
     @SuppressWarnings("unused")
     private static AtomicInteger nextInstanceId = new AtomicInteger(0);
     private final int instanceId;
@@ -121,6 +131,17 @@ public class PackFile implements Serializable
 
     private PackFile linkedPackFile;
 
+    /**
+     * The digest of the file content, or {@code null} if it isn't recorded.
+     */
+    private byte[] digest;
+
+    /**
+     * The POSIX mode bits to install the file with, or {@code 0} if the file is installed with the default
+     * permissions.
+     */
+    private int mode;
+
     /**
      * True if the file is a Jar and pack200 compression us activated.
      */
@@ -200,6 +221,10 @@ public class PackFile implements Serializable
         {
             this.length = src.length();
             this.size = this.length;
+            if ('/' == File.separatorChar && src.canExecute())
+            {
+                this.mode = EXECUTABLE_MODE;
+            }
         }
         this.additionals = additionals;
         if (pack200Properties != null)
@@ -274,6 +299,56 @@ public class PackFile implements Serializable
         this.streamOffset = offset;
     }
 
+    /**
+     * Returns the {@link #DIGEST_ALGORITHM} digest of the file content.
+     * <p/>
+     * Back references share the digest of the file they refer to. No digest is recorded for directories or
+     * Pack200 jars, as the installed content of the latter differs from the packed content.
+     *
+     * @return the digest, or {@code null} if it isn't recorded
+     */
+    public byte[] getDigest()
+    {
+        if (digest == null && linkedPackFile != null)
+        {
+            return linkedPackFile.getDigest();
+        }
+        return digest;
+    }
+
+    /**
+     * Sets the digest of the file content.
+     *
+     * @param digest the {@link #DIGEST_ALGORITHM} digest, or {@code null} if it isn't recorded
+     */
+    public void setDigest(byte[] digest)
+    {
+        this.digest = digest;
+    }
+
+    /**
+     * Returns the POSIX mode bits to install the file with.
+     * <p/>
+     * When compiled on a POSIX system, files that are executable record {@link #EXECUTABLE_MODE}. Other files are
+     * installed with the default permissions.
+     *
+     * @return the mode bits, or {@code 0} if the file is installed with the default permissions
+     */
+    public int getMode()
+    {
+        return mode;
+    }
+
+    /**
+     * Sets the POSIX mode bits to install the file with.
+     *
+     * @param mode the mode bits, or {@code 0} to install the file with the default permissions
+     */
+    public void setMode(int mode)
+    {
+        this.mode = mode;
+    }
+
     /**
      * The target operating system constraints of this file
      */
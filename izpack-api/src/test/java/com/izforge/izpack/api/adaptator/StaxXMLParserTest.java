@@ -0,0 +1,163 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.adaptator;
+
+import com.izforge.izpack.api.adaptator.impl.StaxXMLParser;
+import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
+import com.izforge.izpack.api.adaptator.impl.XMLParser;
+import com.izforge.izpack.api.adaptator.impl.XMLParserFactory;
+import org.junit.Test;
+import org.w3c.dom.Element;
+
+import java.io.InputStream;
+import java.net.URL;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests the {@link StaxXMLParser} class.
+ */
+public class StaxXMLParserTest
+{
+    /**
+     * Verifies that the parser returns the same tree as {@link XMLParser}.
+     */
+    @Test
+    public void testSameAsXMLParser()
+    {
+        for (String name : new String[]{"partial.xml", "shortcutSpec.xml", "linenumber/linenumber.xml"})
+        {
+            URL url = getClass().getResource(name);
+            check(new XMLParser(false).parse(url), new StaxXMLParser().parse(url));
+        }
+    }
+
+    /**
+     * Verifies that element content is determined as {@link XMLElementImpl} determines it.
+     */
+    @Test
+    public void testContent()
+    {
+        String xml = "<langpack xmlns:x=\"urn:x\">\n"
+                + "  <str id=\"a\" txt=\"A\"/>\n"
+                + "  <str id=\"b\">  some text  </str>\n"
+                + "  <str id=\"c\"> x &amp; y <![CDATA[ <z> ]]></str>\n"
+                + "  <str id=\"d\">   </str>\n"
+                + "  <str id=\"e\">text<!-- comment --></str>\n"
+                + "  <str id=\"f\">text<b>bold</b></str>\n"
+                + "  <x:str x:id=\"g\"></x:str>\n"
+                + "</langpack>";
+        IXMLElement expected = new XMLParser(false).parse(xml);
+        IXMLElement actual = new StaxXMLParser().parse(xml);
+        check(expected, actual);
+
+        assertNull(actual.getContent());
+        assertEquals("some text", actual.getChildAtIndex(1).getContent());
+        assertEquals("x & y  <z>", actual.getChildAtIndex(2).getContent());
+        assertEquals("", actual.getChildAtIndex(3).getContent());
+        assertEquals("bold", actual.getFirstChildNamed("b").getContent());
+        assertEquals("g", actual.getFirstChildNamed("x:str").getAttribute("x:id"));
+    }
+
+    /**
+     * Verifies that documents using XInclude are parsed by {@link XMLParser}.
+     */
+    @Test
+    public void testXInclude()
+    {
+        URL url = getClass().getResource("linenumber/xinclude-linenumber.xml");
+        check(new XMLParser(false).parse(url), new StaxXMLParser().parse(url));
+    }
+
+    /**
+     * Verifies that {@link IXMLElement#getElement()} returns an equivalent DOM.
+     */
+    @Test
+    public void testGetElement()
+    {
+        URL url = getClass().getResource("partial.xml");
+        IXMLElement element = new StaxXMLParser().parse(url);
+        Element dom = (Element) element.getElement();
+        assertEquals(element.getName(), dom.getNodeName());
+        check(element, new XMLElementImpl(dom));
+    }
+
+    /**
+     * Verifies that an {@link XMLException} is thrown for invalid documents.
+     */
+    @Test(expected = XMLException.class)
+    public void testXMLExceptionThrown()
+    {
+        InputStream input = getClass().getResourceAsStream("notvalid.xml");
+        new StaxXMLParser().parse(input, "notvalid.xml");
+    }
+
+    /**
+     * Verifies that the factory only returns a {@link StaxXMLParser} for non-validating parsers, when configured.
+     */
+    @Test
+    public void testFactory()
+    {
+        String previous = System.getProperty(XMLParserFactory.PARSER_PROPERTY);
+        try
+        {
+            System.clearProperty(XMLParserFactory.PARSER_PROPERTY);
+            assertTrue(XMLParserFactory.createParser(false) instanceof XMLParser);
+
+            System.setProperty(XMLParserFactory.PARSER_PROPERTY, XMLParserFactory.STAX);
+            assertTrue(XMLParserFactory.createParser(false) instanceof StaxXMLParser);
+            assertTrue(XMLParserFactory.createParser(true) instanceof XMLParser);
+        }
+        finally
+        {
+            if (previous == null)
+            {
+                System.clearProperty(XMLParserFactory.PARSER_PROPERTY);
+            }
+            else
+            {
+                System.setProperty(XMLParserFactory.PARSER_PROPERTY, previous);
+            }
+        }
+    }
+
+    /**
+     * Verifies two elements and their descendants are the same.
+     *
+     * @param expected the expected element
+     * @param actual   the actual element
+     */
+    private void check(IXMLElement expected, IXMLElement actual)
+    {
+        String name = expected.getName();
+        assertEquals(name, actual.getName());
+        assertEquals(name, expected.getAttributes(), actual.getAttributes());
+        assertEquals(name, expected.getContent(), actual.getContent());
+        assertEquals(name, expected.getLineNr(), actual.getLineNr());
+        assertEquals(name, expected.getChildrenCount(), actual.getChildrenCount());
+        for (int i = 0; i < expected.getChildrenCount(); ++i)
+        {
+            check(expected.getChildAtIndex(i), actual.getChildAtIndex(i));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.api.data;
+
+import com.izforge.izpack.api.resource.Locales;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests the {@link MessageTable} and {@link CompiledMessages} classes.
+ */
+public class MessageTableTest
+{
+    /**
+     * Verifies that messages can be looked up after being written and read back.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReadWrite() throws Exception
+    {
+        Map<String, String> messages = new HashMap<String, String>();
+        messages.put("b", "B");
+        messages.put("a", "A");
+        messages.put("a.b", "same");
+        messages.put("a.c", "same");
+        messages.put("\u00e9t\u00e9", "summer");
+        messages.put("\ud83d\ude00", "supplementary");
+        messages.put("\uff21", "fullwidth");
+        messages.put("null", null);
+
+        byte[] bytes = write(messages);
+        assertTrue(MessageTable.isMessageTable(new BufferedInputStream(new ByteArrayInputStream(bytes))));
+
+        MessageTable table = MessageTable.read(new ByteArrayInputStream(bytes));
+        assertEquals(7, table.size());
+        for (Map.Entry<String, String> entry : messages.entrySet())
+        {
+            assertEquals(entry.getValue(), table.get(entry.getKey()));
+        }
+        assertNull(table.get("c"));
+        assertNull(table.get(""));
+
+        messages.remove("null");
+        assertEquals(messages, table.getMessages());
+
+        // tables can be backed by buffers other than arrays, such as mapped files
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 3);
+        direct.position(3);
+        direct.put(bytes);
+        direct.position(3);
+        assertEquals("summer", MessageTable.wrap(direct).get("\u00e9t\u00e9"));
+    }
+
+    /**
+     * Verifies that langpack XML isn't identified as a message table, and that {@link LocaleDatabase} can read
+     * compiled langpacks.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testLocaleDatabase() throws Exception
+    {
+        Locales locales = Mockito.mock(Locales.class);
+        BufferedInputStream xml = new BufferedInputStream(getClass().getResourceAsStream("testing-langpack.xml"));
+        assertFalse(MessageTable.isMessageTable(xml));
+        LocaleDatabase expected = new LocaleDatabase(xml, locales);
+
+        byte[] bytes = write(expected.getMessages());
+        LocaleDatabase actual = new LocaleDatabase(new ByteArrayInputStream(bytes), locales);
+        assertEquals(expected, actual);
+    }
+
+    /**
+     * Verifies that {@link CompiledMessages} formats messages as {@link LocaleDatabase} does, and falls back to
+     * its parent.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompiledMessages() throws Exception
+    {
+        Locales locales = Mockito.mock(Locales.class);
+        LocaleDatabase parent = new LocaleDatabase(getClass().getResourceAsStream("testing-langpack.xml"), locales);
+
+        Map<String, String> map = new HashMap<String, String>();
+        map.put("string", "Overridden");
+        map.put("child", "Child {0}");
+        MessageTable table = MessageTable.read(new ByteArrayInputStream(write(map)));
+        CompiledMessages messages = new CompiledMessages(table, parent, locales);
+
+        assertEquals("Overridden", messages.get("string"));
+        assertEquals("Child 1", messages.get("child", 1));
+        assertEquals("Argument1: 'a', Argument2: 'b'", messages.get("string.with.quoted.arguments", "a", "b"));
+        assertEquals("missing", messages.get("missing"));
+
+        LocaleDatabase added = new LocaleDatabase(parent, locales);
+        added.put("child", "Added");
+        messages.add(added);
+        assertEquals("Added", messages.get("child"));
+        assertEquals("Overridden", messages.getMessages().get("string"));
+        assertEquals("Added", messages.getMessages().get("child"));
+    }
+
+    /**
+     * Writes messages to a table.
+     *
+     * @param messages the messages
+     * @return the table
+     * @throws Exception for any error
+     */
+    private static byte[] write(Map<String, String> messages) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MessageTable.write(messages, out);
+        return out.toByteArray();
+    }
+}
@@ -20,6 +20,7 @@ import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.IXMLParser;
 import com.izforge.izpack.api.adaptator.IXMLWriter;
 import com.izforge.izpack.api.adaptator.impl.XMLParser;
+import com.izforge.izpack.api.adaptator.impl.XMLParserFactory;
 import com.izforge.izpack.api.adaptator.impl.XMLWriter;
 import com.izforge.izpack.api.data.*;
 import com.izforge.izpack.api.data.GUIPrefs.LookAndFeel;
@@ -99,6 +100,7 @@ import java.text.ParseException;
 import java.util.*;
 import java.util.jar.Pack200;
 import java.util.logging.*;
+import java.util.regex.Pattern;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -1026,9 +1028,11 @@ public class CompilerConfig extends Thread
 
     private void processFileSetChildren(TargetFileSet fs, File baseDir, List<OsModel> parentOsList, PackInfo pack) throws Exception
     {
+        // scan once; each call to getDirectoryScanner() rescans the directory
+        DirectoryScanner scanner = fs.getDirectoryScanner();
         String[][] includedFilesAndDirs = new String[][]{
-                fs.getDirectoryScanner().getIncludedDirectories(),
-                fs.getDirectoryScanner().getIncludedFiles()
+                scanner.getIncludedDirectories(),
+                scanner.getIncludedFiles()
         };
         for (String[] filesOrDirs : includedFilesAndDirs)
         {
@@ -1191,8 +1195,9 @@ public class CompilerConfig extends Thread
                 Map<String, String> pack200Properties = readPack200Properties(fileNode);
 
                 LinkedList<String> srcfiles = new LinkedList<String>();
-                Collections.addAll(srcfiles, fs.getDirectoryScanner().getIncludedDirectories());
-                Collections.addAll(srcfiles, fs.getDirectoryScanner().getIncludedFiles());
+                DirectoryScanner scanner = fs.getDirectoryScanner();
+                Collections.addAll(srcfiles, scanner.getIncludedDirectories());
+                Collections.addAll(srcfiles, scanner.getIncludedFiles());
                 for (String filePath : srcfiles)
                 {
                     if (!filePath.isEmpty())
@@ -1491,30 +1496,24 @@ public class CompilerConfig extends Thread
         }
 
         logger.fine("Fileset (targetDir=\""+targetDir+"\"");
+        List<String> includePatterns = new ArrayList<String>();
         for (String include : includes)
         {
             logger.fine("Processing include: \"" + include+"\"");
-            for (PackFile s:info.getPackFiles()) {
-                String targetPath = s.getTargetPath();
-                if (matcher.match(targetDir + "/" + include, targetPath, casesensitive))
-                {
-                    matches.add(targetPath);
-                }
-            }
+            includePatterns.add(targetDir + "/" + include);
         }
 
-        if (excludes != null)
+        // compile the includes and excludes once, and match each path against them in a single pass
+        Pattern includePattern = matcher.compile(includePatterns, casesensitive);
+        Pattern excludePattern = (excludes != null && excludes.length != 0)
+                ? matcher.compile(Arrays.asList(excludes), casesensitive) : null;
+        for (PackFile s : info.getPackFiles())
         {
-            for (String exclude : excludes)
+            String targetPath = s.getTargetPath();
+            if (matcher.match(includePattern, targetPath)
+                    && (excludePattern == null || !matcher.match(excludePattern, targetPath)))
             {
-                for (PackFile s : info.getPackFiles())
-                {
-                    String targetPath = s.getTargetPath();
-                    if (matcher.match(exclude, targetPath, casesensitive))
-                    {
-                        matches.remove(targetPath);
-                    }
-                }
+                matches.add(targetPath);
             }
         }
 
@@ -2249,7 +2248,7 @@ public class CompilerConfig extends Thread
                     if (userInputSpec == null)
                     {
                         // Parse only if not validating for avoiding parsing twice
-                        userInputSpec = new XMLParser(false).parse(url);
+                        userInputSpec = XMLParserFactory.createParser(false).parse(url);
                     }
                     for (IXMLElement userPanelDef : userInputSpec.getChildrenNamed(UserInputPanelSpec.PANEL))
                     {
@@ -2319,7 +2318,7 @@ public class CompilerConfig extends Thread
                     if (antActionSpec == null)
                     {
                         // Parse only if not validating for avoiding parsing twice
-                        antActionSpec = new XMLParser(false).parse(url);
+                        antActionSpec = XMLParserFactory.createParser(false).parse(url);
                     }
                     for (IXMLElement packDef : antActionSpec.getChildrenNamed(SpecHelper.PACK_KEY))
                     {
@@ -2351,7 +2350,7 @@ public class CompilerConfig extends Thread
                     if (configurationSpec == null)
                     {
                         // Parse only if not validating for avoiding parsing twice
-                        configurationSpec = new XMLParser(false).parse(url);
+                        configurationSpec = XMLParserFactory.createParser(false).parse(url);
                     }
                     for (IXMLElement packDef : configurationSpec.getChildrenNamed(SpecHelper.PACK_KEY))
                     {
@@ -2551,6 +2550,24 @@ public class CompilerConfig extends Thread
             logger.info("Pack compression method: " + compression.toName());
         }
 
+        IXMLElement blockSizeElement = root.getFirstChildNamed("pack-compression-blocksize");
+        if (blockSizeElement != null)
+        {
+            String blockSize = xmlCompilerHelper.requireContent(blockSizeElement);
+            try
+            {
+                info.setCompressionBlockSize(Long.parseLong(blockSize.trim()));
+            }
+            catch (NumberFormatException exception)
+            {
+                assertionHelper.parseError(blockSizeElement, "Invalid pack compression block size: " + blockSize);
+            }
+            if (info.isSolidCompression())
+            {
+                logger.info("Pack compression block size: " + info.getCompressionBlockSize() + " bytes");
+            }
+        }
+
         // Add the path for the summary log file if specified
         IXMLElement slfPath = root.getFirstChildNamed("summarylogfilepath");
         if (slfPath != null)
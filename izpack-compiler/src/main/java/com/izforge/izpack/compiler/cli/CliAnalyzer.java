@@ -40,6 +40,7 @@ public class CliAnalyzer {
     private static final String ARG_OUTPUT = "o";
     private static final String ARG_COMPRESSION_FORMAT = "c";
     private static final String ARG_COMPRESSION_LEVEL = "l";
+    private static final String ARG_COMPRESSION_THREADS = "t";
 
 
     /**
@@ -61,6 +62,8 @@ public class CliAnalyzer {
                 "default is the internal deflate compression\n");
         options.addOption(ARG_COMPRESSION_LEVEL, true, "compression-level : indicates the level for the used compression format"
                 + " if supported. Only integer are valid\n");
+        options.addOption(ARG_COMPRESSION_THREADS, true, "compression-threads : indicates the number of threads used to"
+                + " compress pack files. Default is the number of available processors\n");
         return options;
     }
 
@@ -104,6 +107,7 @@ public class CliAnalyzer {
         System.out.println("-> Kind        : " + result.getKind());
         System.out.println("-> Compression : " + result.getComprFormat());
         System.out.println("-> Compr. level: " + result.getComprLevel());
+        System.out.println("-> Compr. threads: " + result.getCompressionThreads());
         System.out.println("-> IzPack home : " + CompilerData.IZPACK_HOME);
         System.out.println("");
     }
@@ -158,6 +162,9 @@ public class CliAnalyzer {
         if (commandLine.hasOption(ARG_COMPRESSION_LEVEL)) {
             compilerData.setComprLevel(Integer.parseInt(commandLine.getOptionValue(ARG_COMPRESSION_LEVEL).trim()));
         }
+        if (commandLine.hasOption(ARG_COMPRESSION_THREADS)) {
+            compilerData.setCompressionThreads(Integer.parseInt(commandLine.getOptionValue(ARG_COMPRESSION_THREADS).trim()));
+        }
         if (commandLine.hasOption(ARG_IZPACK_HOME)) {
             CompilerData.setIzpackHome(commandLine.getOptionValue(ARG_IZPACK_HOME).trim());
         }
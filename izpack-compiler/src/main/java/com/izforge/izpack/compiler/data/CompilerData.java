@@ -86,6 +86,11 @@ public class CompilerData
      */
     private int comprLevel = -1;
 
+    /**
+     * Number of threads used to compress pack files. Values <= 0 use all available processors
+     */
+    private int compressionThreads = 0;
+
     /**
      * External Information
      */
@@ -229,6 +234,26 @@ public class CompilerData
         this.comprLevel = comprLevel;
     }
 
+    /**
+     * Returns the number of threads used to compress pack files.
+     *
+     * @return the number of compression threads. Values <= 0 indicate that all available processors are used
+     */
+    public int getCompressionThreads()
+    {
+        return compressionThreads;
+    }
+
+    /**
+     * Sets the number of threads used to compress pack files.
+     *
+     * @param compressionThreads the number of compression threads. Values <= 0 use all available processors
+     */
+    public void setCompressionThreads(int compressionThreads)
+    {
+        this.compressionThreads = compressionThreads;
+    }
+
     public Info getExternalInfo()
     {
         return this.externalInfo;
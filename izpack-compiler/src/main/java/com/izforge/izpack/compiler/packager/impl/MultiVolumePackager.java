@@ -29,17 +29,21 @@ import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
+import com.izforge.izpack.core.data.PackInfoTable;
 import com.izforge.izpack.core.io.FileSpanningOutputStream;
 import com.izforge.izpack.api.data.PackInfo;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
+import com.izforge.izpack.util.file.FileDigest;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 import java.io.File;
-import java.io.FileInputStream;
+import java.io.InputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.jar.JarOutputStream;
 import java.util.logging.Logger;
@@ -187,24 +191,23 @@ public class MultiVolumePackager extends PackagerBase
         logger.fine("Subsequent volume size: " + maxVolumeSize);
 
         File volume = new File(getInfo().getInstallerBase() + ".pak").getAbsoluteFile();
-        int volumes = writePacks(packs, volume);
+        FileSpanningOutputStream volumes = writePacks(packs, volume);
 
         // write metadata for reading in volumes
-        logger.fine("Written " + volumes + " volumes");
+        logger.fine("Written " + volumes.getVolumes() + " volumes");
 
         JarOutputStream installerJar = getInstallerJar();
         installerJar.putNextEntry(new ZipEntry(RESOURCES_PATH + "volumes.info"));
         ObjectOutputStream out = new ObjectOutputStream(installerJar);
-        out.writeInt(volumes);
+        out.writeInt(volumes.getVolumes());
         out.writeUTF(volume.getName());
+        volumes.getIndex().write(out);
         out.flush();
         installerJar.closeEntry();
 
         // Now that we know sizes, write pack metadata to primary jar.
         installerJar.putNextEntry(new ZipEntry(PACKSINFO_RESOURCE_PATH));
-        out = new ObjectOutputStream(installerJar);
-        out.writeObject(packs);
-        out.flush();
+        PackInfoTable.write(packs, installerJar);
         installerJar.closeEntry();
     }
 
@@ -213,9 +216,9 @@ public class MultiVolumePackager extends PackagerBase
      *
      * @param packs  the packs to write
      * @param volume the first volume
-     * @return the no. of volumes written
+     * @return the closed volumes stream
      */
-    private int writePacks(List<PackInfo> packs, File volume) throws IOException
+    private FileSpanningOutputStream writePacks(List<PackInfo> packs, File volume) throws IOException
     {
         FileSpanningOutputStream volumes = new FileSpanningOutputStream(volume, maxFirstVolumeSize, maxVolumeSize);
         File targetDir = volume.getParentFile();
@@ -224,14 +227,21 @@ public class MultiVolumePackager extends PackagerBase
             throw new IOException("Cannot determine parent directory of " + volume);
         }
 
+        // identical files are stored once, and read from the same position by each pack file
+        PayloadIndex payloads = new PayloadIndex();
         for (PackInfo packInfo : packs)
         {
-            writePack(packInfo, volumes, targetDir);
+            writePack(packInfo, volumes, targetDir, payloads);
+        }
+        if (payloads.getDuplicates() > 0)
+        {
+            sendMsg("Stored " + payloads.getDuplicates() + " duplicate files (" + payloads.getDuplicateBytes()
+                            + " bytes) once", PackagerListener.MSG_VERBOSE);
         }
 
         volumes.flush();
         volumes.close();
-        return volumes.getVolumes();
+        return volumes;
     }
 
     /**
@@ -242,9 +252,11 @@ public class MultiVolumePackager extends PackagerBase
      * @param packInfo  the pack information
      * @param volumes   the volumes
      * @param targetDir the target directory for loosefiles
+     * @param payloads  the index of the files written to the volumes
      * @throws IOException for any I/O error
      */
-    private void writePack(PackInfo packInfo, FileSpanningOutputStream volumes, File targetDir) throws IOException
+    private void writePack(PackInfo packInfo, FileSpanningOutputStream volumes, File targetDir,
+                           PayloadIndex payloads) throws IOException
     {
         Pack pack = packInfo.getPack();
         pack.setFileSize(0);
@@ -258,7 +270,7 @@ public class MultiVolumePackager extends PackagerBase
         installerJar.putNextEntry(entry);
         ObjectOutputStream packStream = new ObjectOutputStream(installerJar);
 
-        writePackFiles(packInfo, volumes, pack, packStream, targetDir);
+        writePackFiles(packInfo, volumes, pack, packStream, targetDir, payloads);
 
         // Cleanup
         packStream.flush();
@@ -274,10 +286,12 @@ public class MultiVolumePackager extends PackagerBase
      * @param pack       the pack
      * @param packStream the stream to write the pack meta-data to
      * @param targetDir  the target directory for loose files
+     * @param payloads   the index of the files written to the volumes
      * @throws IOException for any I/O error
      */
     private void writePackFiles(PackInfo packInfo, FileSpanningOutputStream volumes, Pack pack,
-                                ObjectOutputStream packStream, File targetDir) throws IOException
+                                ObjectOutputStream packStream, File targetDir, PayloadIndex payloads)
+            throws IOException
     {
         Set<PackFile> files = packInfo.getPackFiles();
         Map<PackFile, File> xFiles = new LinkedHashMap<PackFile, File>();
@@ -292,12 +306,27 @@ public class MultiVolumePackager extends PackagerBase
             {
                 if (!pack.isLoose())
                 {
-                    writePackFile(file, volumes, pf);
+                    XPackFile stored = (XPackFile) payloads.find(file, pf);
+                    if (stored != null)
+                    {
+                        logger.fine("File " + pf.getTargetPath() + " has the same content as "
+                                            + stored.getTargetPath());
+                        pf.setArchiveFilePosition(stored.getArchiveFilePosition());
+                        pf.setDigest(stored.getDigest());
+                    }
+                    else
+                    {
+                        MessageDigest digest = PayloadIndex.createDigest();
+                        writePackFile(file, volumes, pf, digest);
+                        pf.setDigest(digest.digest());
+                        payloads.add(file, pf, pf.getDigest());
+                    }
                 }
                 else
                 {
                     // just copy the file to the target directory
                     FileUtils.copyFile(file, new File(targetDir, pf.getRelativeSourcePath()));
+                    pf.setDigest(FileDigest.digest(file));
                 }
             }
 
@@ -324,9 +353,11 @@ public class MultiVolumePackager extends PackagerBase
      * @param file     the file to write
      * @param volumes  the volumes
      * @param packFile the pack file
+     * @param digest   the digest to update with the file content
      * @throws IOException for any I/O error
      */
-    private void writePackFile(File file, FileSpanningOutputStream volumes, XPackFile packFile) throws IOException
+    private void writePackFile(File file, FileSpanningOutputStream volumes, XPackFile packFile, MessageDigest digest)
+            throws IOException
     {
         long beforePosition = volumes.getFilePointer();
         packFile.setArchiveFilePosition(beforePosition);
@@ -334,7 +365,7 @@ public class MultiVolumePackager extends PackagerBase
         // write the file to the volumes
         int volumeCount = volumes.getVolumes();
 
-        FileInputStream in = FileUtils.openInputStream(file);
+        InputStream in = new DigestInputStream(FileUtils.openInputStream(file), digest);
         try
         {
             long bytesWritten = IOUtils.copyLarge(in, volumes);
@@ -0,0 +1,618 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import com.izforge.izpack.api.data.PackCompression;
+import com.izforge.izpack.api.data.PackFile;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.compress.compressors.deflate.DeflateCompressorOutputStream;
+import org.apache.commons.compress.compressors.deflate.DeflateParameters;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.ByteArrayOutputStream;
+import org.apache.commons.io.output.CountingOutputStream;
+import org.tukaani.xz.LZMA2Options;
+import org.tukaani.xz.LZMAOutputStream;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses pack files on a bounded pool of worker threads.
+ * <p/>
+ * By default, each file is compressed as its own stream. If a solid block size is specified, consecutive files are
+ * grouped into blocks of at least that many uncompressed bytes, and each block is compressed as a single stream,
+ * preceded by a header holding its uncompressed and compressed lengths. The stream offset and size of files in a solid
+ * block refer to the uncompressed content of the pack, as read through <tt>SolidBlockInputStream</tt> by the installer.
+ * <p/>
+ * Each block is compressed into a memory buffer, or into a temporary file if it is larger than
+ * {@link #MAX_IN_MEMORY_SIZE}. The compressed blocks are appended to the pack stream strictly in the order the
+ * files were supplied, so that stream offsets are identical to those produced by a sequential build.
+ * <p/>
+ * At most twice as many blocks as there are workers are compressed ahead of the block currently being written,
+ * which bounds the memory and temporary disk space used.
+ */
+public class PackFileCompressor
+{
+    private static final Logger logger = Logger.getLogger(PackFileCompressor.class.getName());
+
+    /**
+     * Blocks up to this size are compressed into memory, larger ones into a temporary file.
+     */
+    static final long MAX_IN_MEMORY_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * The compression format.
+     */
+    private final PackCompression format;
+
+    /**
+     * The minimum uncompressed size of a solid block, or {@code <= 0} to compress each file separately.
+     */
+    private final long solidBlockSize;
+
+    /**
+     * The number of blocks that may be compressed ahead of the one being written.
+     */
+    private final int window;
+
+    /**
+     * The worker pool. May be {@code null} if compression is done on the calling thread.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Constructs a <tt>PackFileCompressor</tt> that compresses each file separately.
+     *
+     * @param format  the compression format. Must not be {@link PackCompression#DEFAULT}
+     * @param threads the number of worker threads. If {@code <= 0}, the number of available processors is used
+     */
+    public PackFileCompressor(PackCompression format, int threads)
+    {
+        this(format, 0, threads);
+    }
+
+    /**
+     * Constructs a <tt>PackFileCompressor</tt>.
+     *
+     * @param format         the compression format. Must not be {@link PackCompression#DEFAULT}
+     * @param solidBlockSize the minimum uncompressed size of a solid block, or {@code <= 0} to compress each file
+     *                       separately
+     * @param threads        the number of worker threads. If {@code <= 0}, the number of available processors is used
+     */
+    public PackFileCompressor(PackCompression format, long solidBlockSize, int threads)
+    {
+        this.format = format;
+        this.solidBlockSize = solidBlockSize;
+        if (threads <= 0)
+        {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        if (threads > 1)
+        {
+            executor = Executors.newFixedThreadPool(threads, new CompressorThreadFactory());
+            window = threads * 2;
+        }
+        else
+        {
+            executor = null;
+            window = 1;
+        }
+    }
+
+    /**
+     * Determines if files are grouped into solid blocks.
+     *
+     * @return {@code true} if files are grouped into solid blocks, {@code false} if each is compressed separately
+     */
+    public boolean isSolid()
+    {
+        return solidBlockSize > 0;
+    }
+
+    /**
+     * Compresses the given files and appends them to the pack stream.
+     * <p/>
+     * On return, the stream offset and size of each pack file will have been set.
+     *
+     * @param packFiles          the pack files to write, in pack stream order
+     * @param files              the source files, in the same order as {@code packFiles}
+     * @param streamResourceName the name of the pack stream resource
+     * @param packStream         the pack stream
+     * @throws IOException for any I/O error
+     */
+    public void write(List<PackFile> packFiles, List<File> files, String streamResourceName,
+                      CountingOutputStream packStream) throws IOException
+    {
+        LinkedList<Future<CompressedBlock>> pending = new LinkedList<Future<CompressedBlock>>();
+        Iterator<Block> blocks = getBlocks(packFiles, files).iterator();
+        long uncompressedOffset = 0;
+        try
+        {
+            while (pending.size() < window && blocks.hasNext())
+            {
+                pending.add(submit(blocks.next()));
+            }
+            while (!pending.isEmpty())
+            {
+                CompressedBlock compressed = get(pending.removeFirst());
+                if (blocks.hasNext())
+                {
+                    pending.add(submit(blocks.next()));
+                }
+                try
+                {
+                    Block block = compressed.getBlock();
+                    if (isSolid())
+                    {
+                        writeHeader(packStream, block.getLength(), compressed.getSize());
+                    }
+                    long offset = packStream.getByteCount();
+                    long bytesPacked = compressed.writeTo(packStream);
+                    if (bytesPacked != compressed.getSize())
+                    {
+                        throw new IOException("File size mismatch when writing " + block.getFiles().get(0));
+                    }
+
+                    for (PackFile packFile : block.getPackFiles())
+                    {
+                        packFile.setStreamResourceName(streamResourceName);
+                        if (isSolid())
+                        {
+                            packFile.setStreamOffset(uncompressedOffset);
+                            packFile.setSize(packFile.length());
+                            uncompressedOffset += packFile.length();
+                        }
+                        else
+                        {
+                            packFile.setStreamOffset(offset);
+                            packFile.setSize(compressed.getSize());
+                        }
+                    }
+
+                    if (isSolid())
+                    {
+                        logger.fine("Solid block of " + block.getPackFiles().size() + " files added compressed as "
+                                            + format.toName()
+                                            + " (" + block.getLength() + " -> " + compressed.getSize() + " bytes)");
+                    }
+                    else
+                    {
+                        PackFile packFile = block.getPackFiles().get(0);
+                        logger.fine("File " + packFile.getTargetPath() + " added compressed as "
+                                            + format.toName()
+                                            + " (" + packFile.length() + " -> " + packFile.size() + " bytes)");
+                    }
+                }
+                finally
+                {
+                    compressed.dispose();
+                }
+            }
+        }
+        finally
+        {
+            // only non-empty on failure. Wait for outstanding work so that temporary files are removed
+            for (Future<CompressedBlock> future : pending)
+            {
+                try
+                {
+                    future.get().dispose();
+                }
+                catch (Exception ignore)
+                {
+                    // nothing to clean up
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the worker threads.
+     */
+    public void shutdown()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Groups files into the blocks to compress.
+     *
+     * @param packFiles the pack files
+     * @param files     the source files, in the same order as {@code packFiles}
+     * @return the blocks
+     */
+    List<Block> getBlocks(List<PackFile> packFiles, List<File> files)
+    {
+        List<Block> result = new ArrayList<Block>();
+        Block block = null;
+        for (int i = 0; i < packFiles.size(); ++i)
+        {
+            if (block == null)
+            {
+                block = new Block();
+                result.add(block);
+            }
+            block.add(packFiles.get(i), files.get(i));
+            if (!isSolid() || block.getLength() >= solidBlockSize)
+            {
+                block = null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compresses a block.
+     *
+     * @param block the block to compress
+     * @return the compressed block
+     * @throws IOException for any I/O error
+     */
+    CompressedBlock compress(Block block) throws IOException
+    {
+        File tmpfile = null;
+        OutputStream target;
+        if (block.getLength() > MAX_IN_MEMORY_SIZE)
+        {
+            tmpfile = File.createTempFile("izpack-compress", null, FileUtils.getTempDirectory());
+            target = FileUtils.openOutputStream(tmpfile);
+        }
+        else
+        {
+            target = new ByteArrayOutputStream((int) Math.max(block.getLength() / 2, 32));
+        }
+
+        OutputStream finalStream = null;
+        boolean success = false;
+        try
+        {
+            CountingOutputStream proxyOutputStream = new CountingOutputStream(target);
+            finalStream = createCompressorOutputStream(format, IOUtils.buffer(proxyOutputStream));
+
+            List<PackFile> packFiles = block.getPackFiles();
+            List<File> files = block.getFiles();
+            for (int i = 0; i < packFiles.size(); ++i)
+            {
+                File file = files.get(i);
+                PackFile packFile = packFiles.get(i);
+                MessageDigest digest = PayloadIndex.createDigest();
+                long bytesWritten = PayloadIndex.copy(file, finalStream, digest);
+                if (bytesWritten != packFile.length())
+                {
+                    throw new IOException("File size mismatch when reading " + file);
+                }
+                packFile.setDigest(digest.digest());
+            }
+            try
+            {
+                finalStream.flush();
+            }
+            catch (IOException ignored)
+            {
+                // some compressor output streams don't explicitly support flushing
+            }
+            finalStream.close();
+
+            CompressedBlock result;
+            if (tmpfile != null)
+            {
+                result = new CompressedBlock(block, tmpfile, proxyOutputStream.getByteCount());
+            }
+            else
+            {
+                result = new CompressedBlock(block, ((ByteArrayOutputStream) target).toByteArray());
+            }
+            success = true;
+            return result;
+        }
+        finally
+        {
+            IOUtils.closeQuietly(finalStream);
+            IOUtils.closeQuietly(target);
+            if (!success)
+            {
+                FileUtils.deleteQuietly(tmpfile);
+            }
+        }
+    }
+
+    /**
+     * Writes the header of a solid block.
+     *
+     * @param packStream       the pack stream
+     * @param uncompressedSize the uncompressed size of the block
+     * @param compressedSize   the compressed size of the block
+     * @throws IOException for any I/O error
+     */
+    private void writeHeader(OutputStream packStream, long uncompressedSize, long compressedSize) throws IOException
+    {
+        DataOutputStream header = new DataOutputStream(packStream);
+        header.writeLong(uncompressedSize);
+        header.writeLong(compressedSize);
+        header.flush();
+    }
+
+    /**
+     * Creates a stream that compresses to the supplied stream.
+     *
+     * @param format the compression format
+     * @param out    the stream to write compressed data to
+     * @return a new compressing stream
+     * @throws IOException if the stream cannot be created
+     */
+    static OutputStream createCompressorOutputStream(PackCompression format, OutputStream out) throws IOException
+    {
+        switch (format)
+        {
+            case LZMA:
+                // LZMA as output stream supported from commons-compress 1.13 (requires JDK 1.7)
+                // for now create it from the Tukaani Project (tukaani.org)
+                return new LZMAOutputStream(out, new LZMA2Options(), -1);
+            case DEFLATE:
+                DeflateParameters deflateParameters = new DeflateParameters();
+                deflateParameters.setCompressionLevel(Deflater.BEST_COMPRESSION);
+                new DeflateCompressorOutputStream(out, deflateParameters);
+            default:
+                try
+                {
+                    return new CompressorStreamFactory().createCompressorOutputStream(format.toName(), out);
+                }
+                catch (CompressorException e)
+                {
+                    throw new IOException(e);
+                }
+        }
+    }
+
+    /**
+     * Schedules compression of a block.
+     *
+     * @param block the block
+     * @return the future result
+     * @throws IOException if the block is compressed on the calling thread and fails
+     */
+    private Future<CompressedBlock> submit(final Block block) throws IOException
+    {
+        if (executor != null)
+        {
+            return executor.submit(new Callable<CompressedBlock>()
+            {
+                @Override
+                public CompressedBlock call() throws Exception
+                {
+                    return compress(block);
+                }
+            });
+        }
+        return new CompletedFuture(compress(block));
+    }
+
+    /**
+     * Waits for a compression result.
+     *
+     * @param future the future result
+     * @return the compressed block
+     * @throws IOException if compression failed or the thread was interrupted
+     */
+    private CompressedBlock get(Future<CompressedBlock> future) throws IOException
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing pack files");
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * A group of consecutive pack files compressed as a single stream.
+     */
+    static class Block
+    {
+        private final List<PackFile> packFiles = new ArrayList<PackFile>();
+
+        private final List<File> files = new ArrayList<File>();
+
+        private long length;
+
+        void add(PackFile packFile, File file)
+        {
+            packFiles.add(packFile);
+            files.add(file);
+            length += packFile.length();
+        }
+
+        List<PackFile> getPackFiles()
+        {
+            return packFiles;
+        }
+
+        List<File> getFiles()
+        {
+            return files;
+        }
+
+        /**
+         * Returns the uncompressed length of the block.
+         *
+         * @return the uncompressed length, in bytes
+         */
+        long getLength()
+        {
+            return length;
+        }
+    }
+
+    /**
+     * The compressed form of a block, held either in memory or in a temporary file.
+     */
+    static class CompressedBlock
+    {
+        private final Block block;
+
+        private final byte[] data;
+
+        private final File tmpfile;
+
+        private final long size;
+
+        CompressedBlock(Block block, byte[] data)
+        {
+            this.block = block;
+            this.data = data;
+            this.tmpfile = null;
+            this.size = data.length;
+        }
+
+        CompressedBlock(Block block, File tmpfile, long size)
+        {
+            this.block = block;
+            this.data = null;
+            this.tmpfile = tmpfile;
+            this.size = size;
+        }
+
+        Block getBlock()
+        {
+            return block;
+        }
+
+        long getSize()
+        {
+            return size;
+        }
+
+        long writeTo(OutputStream out) throws IOException
+        {
+            if (data != null)
+            {
+                out.write(data);
+                return data.length;
+            }
+            return FileUtils.copyFile(tmpfile, out);
+        }
+
+        void dispose()
+        {
+            FileUtils.deleteQuietly(tmpfile);
+        }
+    }
+
+    /**
+     * A future for a block compressed on the calling thread.
+     */
+    private static class CompletedFuture implements Future<CompressedBlock>
+    {
+        private final CompressedBlock result;
+
+        CompletedFuture(CompressedBlock result)
+        {
+            this.result = result;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning)
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled()
+        {
+            return false;
+        }
+
+        @Override
+        public boolean isDone()
+        {
+            return true;
+        }
+
+        @Override
+        public CompressedBlock get()
+        {
+            return result;
+        }
+
+        @Override
+        public CompressedBlock get(long timeout, java.util.concurrent.TimeUnit unit)
+        {
+            return result;
+        }
+    }
+
+    /**
+     * Creates daemon worker threads, so that a failed build cannot hang the JVM.
+     */
+    private static class CompressorThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "izpack-compressor-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
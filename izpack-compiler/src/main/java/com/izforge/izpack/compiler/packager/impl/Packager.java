@@ -22,6 +22,8 @@ package com.izforge.izpack.compiler.packager.impl;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.impl.XMLElementImpl;
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackCompression;
 import com.izforge.izpack.api.data.PackFile;
@@ -30,27 +32,26 @@ import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.compiler.data.CompilerData;
 import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
+import com.izforge.izpack.core.data.PackInfoTable;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.util.NoCloseOutputStream;
-import org.apache.commons.compress.compressors.CompressorException;
-import org.apache.commons.compress.compressors.CompressorStreamFactory;
-import org.apache.commons.compress.compressors.deflate.DeflateCompressorOutputStream;
-import org.apache.commons.compress.compressors.deflate.DeflateParameters;
+import com.izforge.izpack.util.file.FileDigest;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.output.CountingOutputStream;
-import org.tukaani.xz.LZMA2Options;
-import org.tukaani.xz.LZMAOutputStream;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -58,6 +59,8 @@ import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
 import java.util.jar.Pack200;
 import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 
@@ -72,6 +75,11 @@ public class Packager extends PackagerBase
 {
     private static final Logger logger = Logger.getLogger(Packager.class.getName());
 
+    /**
+     * The name of the pack jar holding the files shared between packs, when packs are written to separate jars.
+     */
+    static final String COMMON_PACK_NAME = Pack.COMMON_PACK_NAME;
+
     private final CompilerData compilerData;
 
     /**
@@ -94,7 +102,15 @@ public class Packager extends PackagerBase
         this.compilerData = compilerData;
     }
 
-    private JarOutputStream getJarOutputStream(File jarFile) throws IOException
+    /**
+     * Creates a jar.
+     *
+     * @param jarFile the jar file
+     * @param digest  if non-null, updated with the bytes written to the jar file
+     * @return a stream to the jar
+     * @throws IOException for any I/O error
+     */
+    private JarOutputStream getJarOutputStream(File jarFile, MessageDigest digest) throws IOException
     {
         FileUtils.deleteQuietly(jarFile);
         if (compilerData.isMkdirs())
@@ -102,7 +118,11 @@ public class Packager extends PackagerBase
             FileUtils.forceMkdirParent(jarFile);
         }
 
-        FileOutputStream fileOutputStream = new FileOutputStream(jarFile);
+        OutputStream fileOutputStream = new FileOutputStream(jarFile);
+        if (digest != null)
+        {
+            fileOutputStream = new DigestOutputStream(fileOutputStream, digest);
+        }
         JarOutputStream jarOutputStream = new JarOutputStream(fileOutputStream);
 
         int level = compilerData.getComprLevel();
@@ -129,8 +149,10 @@ public class Packager extends PackagerBase
         final int num = packs.size();
         sendMsg("Writing " + num + " Pack" + (num > 1 ? "s" : "") + " into installer");
 
-        // Map to remember pack number and bytes offsets of back references
-        Map<File, PackFile> storedFiles = new HashMap<File, PackFile>();
+        // Index of the payloads written, to store identical files once. Back references can't span pack jars,
+        // so when packs are written to separate jars, files shared between packs go to a common jar instead
+        PayloadIndex payloads = new PayloadIndex();
+        Map<PackFile, PackFile> commonPayloads = Collections.emptyMap();
 
         List<PackFile> pack200Files = new ArrayList<PackFile>();
 
@@ -140,196 +162,216 @@ public class Packager extends PackagerBase
         int packNumber = 0;
         IXMLElement root = new XMLElementImpl("packs");
 
-        for (PackInfo packInfo : packs)
+        PackCompression comprFormat = getInfo().getCompressionFormat();
+        PackFileCompressor compressor = null;
+        if (comprFormat != PackCompression.DEFAULT)
         {
-            Pack pack = packInfo.getPack();
-            pack.setFileSize(0);
-
-            sendMsg("Writing Pack " + packNumber + ": " + pack.getName(), PackagerListener.MSG_VERBOSE);
+            compressor = new PackFileCompressor(comprFormat, getInfo().getCompressionBlockSize(),
+                                                compilerData.getCompressionThreads());
+        }
 
-            ZipEntry entry;
-            String streamResourceName = "packs/pack-" + pack.getName();
-            JarOutputStream packJar = installerJar;
+        try
+        {
             if (packSeparateJars())
             {
-                // TODO REFACTOR : Use a mergeManager for each packages that will be added to the main merger
-                String jarFile = getInfo().getInstallerBase() + ".pack-" + pack.getName() + ".jar";
-                packJar = getJarOutputStream(new File(jarFile));
-                entry = new ZipEntry(streamResourceName);
-            } else
-            {
-                entry = new ZipEntry(RESOURCES_PATH + streamResourceName);
+                commonPayloads = writeCommonPayloads(packs, compressor);
             }
 
-            packJar.putNextEntry(entry);
-            packJar.flush(); // flush before we start counting
+            for (PackInfo packInfo : packs)
+            {
+                Pack pack = packInfo.getPack();
+                pack.setFileSize(0);
+                if (packSeparateJars())
+                {
+                    payloads.clear();
+                }
 
-            CountingOutputStream packOutputStream = new CountingOutputStream(new NoCloseOutputStream(
-                    new BufferedOutputStream(packJar)));
+                sendMsg("Writing Pack " + packNumber + ": " + pack.getName(), PackagerListener.MSG_VERBOSE);
 
-            try
-            {
-                for (PackFile packFile : packInfo.getPackFiles())
+                ZipEntry entry;
+                String streamResourceName = "packs/pack-" + pack.getName();
+                JarOutputStream packJar = installerJar;
+                File packJarFile = null;
+                MessageDigest packJarDigest = null;
+                if (packSeparateJars())
                 {
-                    boolean addFile = !pack.isLoose();
-                    File file = packInfo.getFile(packFile);
+                    // TODO REFACTOR : Use a mergeManager for each packages that will be added to the main merger
+                    packJarFile = new File(getInfo().getInstallerBase() + ".pack-" + pack.getName() + ".jar");
+                    packJarDigest = PayloadIndex.createDigest();
+                    packJar = getJarOutputStream(packJarFile, packJarDigest);
+                    entry = new ZipEntry(streamResourceName);
+                } else
+                {
+                    entry = new ZipEntry(RESOURCES_PATH + streamResourceName);
+                }
+
+                // Packs compressed by IzPack are stored in the jar without further compression. As a result, the
+                // installer can skip over the pack stream without inflating it, e.g. to extract back references.
+                File storedStreamFile = null;
+                CRC32 storedStreamCrc = null;
+                CountingOutputStream packOutputStream;
+                if (compressor != null)
+                {
+                    storedStreamFile = File.createTempFile("izpack-pack", null, FileUtils.getTempDirectory());
+                    storedStreamCrc = new CRC32();
+                    packOutputStream = new CountingOutputStream(new BufferedOutputStream(
+                            new CheckedOutputStream(FileUtils.openOutputStream(storedStreamFile), storedStreamCrc)));
+                }
+                else
+                {
+                    packJar.putNextEntry(entry);
+                    packJar.flush(); // flush before we start counting
 
-                    boolean pack200 = packFile.isPack200Jar();
+                    packOutputStream = new CountingOutputStream(new NoCloseOutputStream(
+                            new BufferedOutputStream(packJar)));
+                }
+                List<PackFile> compressedFiles = new ArrayList<PackFile>();
+                List<File> compressedSources = new ArrayList<File>();
 
-                    // use a back reference if file was in previous pack, and in
-                    // same jar
-                    PackFile linkedPackFile = storedFiles.get(file);
-                    if (linkedPackFile != null && !packSeparateJars())
+                try
+                {
+                    for (PackFile packFile : packInfo.getPackFiles())
                     {
-                        // Save backreference link
-                        logger.fine("File " + packFile.getTargetPath() + " is a backreference, linked to " + linkedPackFile.getTargetPath());
-                        packFile.setLinkedPackFile(linkedPackFile);
-                        addFile = false;
-                    }
+                        boolean addFile = !pack.isLoose();
+                        File file = packInfo.getFile(packFile);
 
-                    if (addFile && !packFile.isDirectory())
-                    {
-                        if (pack200)
+                        boolean pack200 = packFile.isPack200Jar();
+
+                        // use a back reference if the same content was stored previously, in the same jar
+                        PackFile linkedPackFile = commonPayloads.get(packFile);
+                        if (linkedPackFile == null && addFile)
                         {
-                            /*
-                             * Warning!
-                             *
-                             * Pack200 archives must be stored in separated streams,
-                             * as the Pack200 unpacker reads the entire stream...
-                             *
-                             * See http://java.sun.com/javase/6/docs/api/java/util/jar/Pack200.Unpacker.html
-                             */
-                            packFile.setStreamResourceName("packs/pack200-" + packFile.getId());
-                            packFile.setStreamOffset(0);
-                            pack200Files.add(packFile);
-                        } else
+                            linkedPackFile = payloads.find(file, packFile);
+                        }
+                        if (linkedPackFile != null)
                         {
-                            packFile.setStreamResourceName(streamResourceName);
-                            packFile.setStreamOffset(packOutputStream.getByteCount()); // get the position
+                            // Save backreference link
+                            logger.fine("File " + packFile.getTargetPath() + " is a backreference, linked to " + linkedPackFile.getTargetPath());
+                            packFile.setLinkedPackFile(linkedPackFile);
+                            addFile = false;
+                        }
 
-                            PackCompression comprFormat = getInfo().getCompressionFormat();
-                            if (comprFormat != PackCompression.DEFAULT)
+                        if (addFile && !packFile.isDirectory())
+                        {
+                            if (pack200)
                             {
-                                File tmpfile = null;
-                                OutputStream finalStream = null;
-
-                                try
+                                /*
+                                 * Warning!
+                                 *
+                                 * Pack200 archives must be stored in separated streams,
+                                 * as the Pack200 unpacker reads the entire stream...
+                                 *
+                                 * See http://java.sun.com/javase/6/docs/api/java/util/jar/Pack200.Unpacker.html
+                                 */
+                                packFile.setStreamResourceName("packs/pack200-" + packFile.getId());
+                                packFile.setStreamOffset(0);
+                                pack200Files.add(packFile);
+                            } else
+                            {
+                                if (compressor != null)
                                 {
-                                    tmpfile = File.createTempFile("izpack-compress", null, FileUtils.getTempDirectory());
-                                    CountingOutputStream proxyOutputStream = new CountingOutputStream(FileUtils.openOutputStream(tmpfile));
-                                    OutputStream bufferedStream = IOUtils.buffer(proxyOutputStream);
-
-                                    switch (comprFormat)
-                                    {
-                                        case LZMA:
-                                            // LZMA as output stream supported from commons-compress 1.13 (requires JDK 1.7)
-                                            // for now create it from the Tukaani Project (tukaani.org)
-                                            finalStream = new LZMAOutputStream(bufferedStream, new LZMA2Options(), -1);
-                                            break;
-                                        case DEFLATE:
-                                            DeflateParameters deflateParameters = new DeflateParameters();
-                                            deflateParameters.setCompressionLevel(Deflater.BEST_COMPRESSION);
-                                            new DeflateCompressorOutputStream(bufferedStream, deflateParameters);
-                                        default:
-                                            try
-                                            {
-                                                finalStream = new CompressorStreamFactory().createCompressorOutputStream(
-                                                        comprFormat.toName(),
-                                                        bufferedStream);
-                                            }
-                                            catch (CompressorException e)
-                                            {
-                                                throw new IOException(e);
-                                            }
-                                    }
+                                    // offset, size and digest are assigned when the compressed data is appended
+                                    compressedFiles.add(packFile);
+                                    compressedSources.add(file);
+                                } else
+                                {
+                                    packFile.setStreamResourceName(streamResourceName);
+                                    packFile.setStreamOffset(packOutputStream.getByteCount()); // get the position
 
-                                    long bytesWritten = FileUtils.copyFile(file, finalStream);
-                                    try
-                                    {
-                                        finalStream.flush();
-                                    }
-                                    catch (IOException ignored)
-                                    {
-                                        // some compressor output streams don't explicitly support flushing
-                                    }
-                                    finalStream.close();
+                                    // the digest is computed as the file is copied, for later files to compare to
+                                    MessageDigest digest = PayloadIndex.createDigest();
+                                    long bytesWritten = PayloadIndex.copy(file, packOutputStream, digest);
                                     if (bytesWritten != packFile.length())
                                     {
                                         throw new IOException("File size mismatch when reading " + file);
                                     }
-                                    packFile.setSize(proxyOutputStream.getByteCount());
-
-                                    final long bytesPacked = FileUtils.copyFile(tmpfile, packOutputStream);
-                                    if (bytesPacked != packFile.size()) {
-                                        throw new IOException("File size mismatch when writing " + file);
-                                    }
-
-                                    logger.fine("File " + packFile.getTargetPath() + " added compressed as "
-                                            + comprFormat.toName()
-                                            + " (" + packFile.length() + " -> " + packFile.size() + " bytes)");
+                                    packFile.setDigest(digest.digest());
+                                    payloads.add(file, packFile, packFile.getDigest());
+                                    logger.fine("File " + packFile.getTargetPath() + " added uncompressed (" + bytesWritten + " bytes)");
                                 }
-                                finally
-                                {
-                                    IOUtils.closeQuietly(finalStream);
-                                    FileUtils.deleteQuietly(tmpfile);
-                                }
-                            } else
+                            }
+
+                            if (pack200 || compressor != null)
                             {
-                                long bytesWritten = FileUtils.copyFile(file, packOutputStream);
-                                if (bytesWritten != packFile.length())
-                                {
-                                    throw new IOException("File size mismatch when reading " + file);
-                                }
-                                logger.fine("File " + packFile.getTargetPath() + " added uncompressed (" + bytesWritten + " bytes)");
+                                payloads.add(file, packFile, null);
                             }
                         }
+                        else if (pack.isLoose() && !packFile.isDirectory() && !pack200)
+                        {
+                            // loose files are installed from their source, so are only read for their digest
+                            packFile.setDigest(FileDigest.digest(file));
+                        }
 
-                        storedFiles.put(file, packFile);
+                        // even if not written, it counts towards pack size
+                        pack.addFileSize(packFile.length());
                     }
 
-                    // even if not written, it counts towards pack size
-                    pack.addFileSize(packFile.length());
-                }
+                    if (compressor != null)
+                    {
+                        compressor.write(compressedFiles, compressedSources, streamResourceName, packOutputStream);
+                    }
+
+                    if (pack.getFileSize() > pack.getSize())
+                    {
+                        pack.setSize(pack.getFileSize());
+                    }
 
-                if (pack.getFileSize() > pack.getSize())
+                    // Cleanup
+                    packOutputStream.flush();
+                    packOutputStream.close();
+                    if (storedStreamFile != null)
+                    {
+                        putStoredEntry(packJar, entry, storedStreamFile, storedStreamCrc.getValue());
+                    }
+                    packJar.closeEntry();
+                }
+                finally
                 {
-                    pack.setSize(pack.getFileSize());
+                    IOUtils.closeQuietly(packOutputStream);
+                    FileUtils.deleteQuietly(storedStreamFile);
+                    packJar.flush();
+                    // close pack specific jar if required
+                    if (packSeparateJars())
+                    {
+                        packJar.close();
+                    }
+                }
+                if (packJarFile != null)
+                {
+                    // record the jar digest so that the installer can verify and cache downloads
+                    pack.setJar(packJarDigest.digest(), packJarFile.length());
                 }
 
-                // Cleanup
-                packOutputStream.flush();
-                packOutputStream.close();
-                packJar.closeEntry();
-            }
-            finally
-            {
-                IOUtils.closeQuietly(packOutputStream);
-                packJar.flush();
-                // close pack specific jar if required
-                if (packSeparateJars())
+                IXMLElement child = new XMLElementImpl("pack", root);
+                child.setAttribute("name", pack.getName());
+                child.setAttribute("size", Long.toString(pack.getSize()));
+                child.setAttribute("fileSize", Long.toString(pack.getFileSize()));
+                if (pack.getLangPackId() != null)
                 {
-                    packJar.close();
+                    child.setAttribute("id", pack.getLangPackId());
                 }
-            }
+                root.addChild(child);
 
-            IXMLElement child = new XMLElementImpl("pack", root);
-            child.setAttribute("name", pack.getName());
-            child.setAttribute("size", Long.toString(pack.getSize()));
-            child.setAttribute("fileSize", Long.toString(pack.getFileSize()));
-            if (pack.getLangPackId() != null)
+                packNumber++;
+            }
+        }
+        finally
+        {
+            if (compressor != null)
             {
-                child.setAttribute("id", pack.getLangPackId());
+                compressor.shutdown();
             }
-            root.addChild(child);
+        }
 
-            packNumber++;
+        if (payloads.getDuplicates() > 0)
+        {
+            sendMsg("Stored " + payloads.getDuplicates() + " duplicate files (" + payloads.getDuplicateBytes()
+                            + " bytes) as back references", PackagerListener.MSG_VERBOSE);
         }
 
         // Now that we know sizes, write pack metadata to primary jar.
         installerJar.putNextEntry(new ZipEntry(PACKSINFO_RESOURCE_PATH));
-        ObjectOutputStream out = new ObjectOutputStream(installerJar);
-        out.writeObject(packs);
-        out.flush();
+        PackInfoTable.write(packs, installerJar);
         installerJar.closeEntry();
 
         for (PackFile pack200PackFile : pack200Files)
@@ -370,6 +412,171 @@ public class Packager extends PackagerBase
         }
     }
 
+    /**
+     * Writes the payloads shared between packs to a common jar, when packs are written to separate jars.
+     * <p/>
+     * Each payload that occurs in more than one pack is written once to the common jar, and all of the pack files
+     * with that content refer back to it, so that it is only downloaded once.
+     *
+     * @param packs      the packs
+     * @param compressor the compressor, or {@code null} if packs aren't compressed by IzPack
+     * @return the common payloads, keyed on the pack files that refer to them
+     * @throws IOException for any I/O error
+     */
+    private Map<PackFile, PackFile> writeCommonPayloads(List<PackInfo> packs, PackFileCompressor compressor)
+            throws IOException
+    {
+        PayloadIndex index = new PayloadIndex();
+        Map<PackFile, Pack> owners = new HashMap<PackFile, Pack>();
+        Map<PackFile, PackFile> stored = new HashMap<PackFile, PackFile>();
+        Map<PackFile, PackFile> common = new LinkedHashMap<PackFile, PackFile>();
+        for (PackInfo packInfo : packs)
+        {
+            Pack pack = packInfo.getPack();
+            if (COMMON_PACK_NAME.equals(pack.getName()))
+            {
+                throw new IOException("Pack name " + COMMON_PACK_NAME + " is reserved");
+            }
+            if (pack.isLoose())
+            {
+                continue;
+            }
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                if (PayloadIndex.isIndexed(packFile))
+                {
+                    File file = packInfo.getFile(packFile);
+                    PackFile first = index.find(file, packFile);
+                    if (first == null)
+                    {
+                        index.add(file, packFile, null);
+                        owners.put(packFile, pack);
+                    }
+                    else
+                    {
+                        stored.put(packFile, first);
+                        if (owners.get(first) != pack && !common.containsKey(first))
+                        {
+                            common.put(first, new PackFile(file, first.getRelativeSourcePath(),
+                                                           first.getTargetPath(), null, OverrideType.OVERRIDE_TRUE,
+                                                           null, Blockable.BLOCKABLE_NONE, null, null));
+                        }
+                    }
+                }
+            }
+        }
+        if (common.isEmpty())
+        {
+            return common;
+        }
+
+        String streamResourceName = "packs/pack-" + COMMON_PACK_NAME;
+        File jarFile = new File(getInfo().getInstallerBase() + ".pack-" + COMMON_PACK_NAME + ".jar");
+        sendMsg("Writing " + common.size() + " files shared by packs to " + jarFile.getName(),
+                PackagerListener.MSG_VERBOSE);
+        List<PackFile> payloads = new ArrayList<PackFile>(common.values());
+        List<File> files = new ArrayList<File>();
+        for (PackFile payload : payloads)
+        {
+            files.add(payload.getFile());
+        }
+
+        MessageDigest jarDigest = PayloadIndex.createDigest();
+        JarOutputStream jar = getJarOutputStream(jarFile, jarDigest);
+        File storedStreamFile = null;
+        try
+        {
+            ZipEntry entry = new ZipEntry(streamResourceName);
+            if (compressor != null)
+            {
+                storedStreamFile = File.createTempFile("izpack-pack", null, FileUtils.getTempDirectory());
+                CRC32 crc = new CRC32();
+                CountingOutputStream out = new CountingOutputStream(new BufferedOutputStream(
+                        new CheckedOutputStream(FileUtils.openOutputStream(storedStreamFile), crc)));
+                try
+                {
+                    compressor.write(payloads, files, streamResourceName, out);
+                }
+                finally
+                {
+                    out.close();
+                }
+                putStoredEntry(jar, entry, storedStreamFile, crc.getValue());
+            }
+            else
+            {
+                jar.putNextEntry(entry);
+                CountingOutputStream out = new CountingOutputStream(new NoCloseOutputStream(
+                        new BufferedOutputStream(jar)));
+                for (PackFile payload : payloads)
+                {
+                    payload.setStreamResourceName(streamResourceName);
+                    payload.setStreamOffset(out.getByteCount());
+                    MessageDigest digest = PayloadIndex.createDigest();
+                    if (PayloadIndex.copy(payload.getFile(), out, digest) != payload.length())
+                    {
+                        throw new IOException("File size mismatch when reading " + payload.getFile());
+                    }
+                    payload.setDigest(digest.digest());
+                }
+                out.flush();
+                out.close();
+            }
+            jar.closeEntry();
+        }
+        finally
+        {
+            jar.close();
+            FileUtils.deleteQuietly(storedStreamFile);
+        }
+
+        // record the jar digest so that the installer can verify and cache the download, as for pack jars
+        Pack commonPack = new Pack(COMMON_PACK_NAME, null, null, null, null, true, true, false, null, true, 0);
+        commonPack.setJar(jarDigest.digest(), jarFile.length());
+        writeInstallerObject(Pack.COMMON_PACK_RESOURCE, commonPack);
+
+        // refer each pack file with shared content to the common payload
+        Map<PackFile, PackFile> result = new HashMap<PackFile, PackFile>();
+        for (Map.Entry<PackFile, PackFile> entry : stored.entrySet())
+        {
+            PackFile payload = common.get(entry.getValue());
+            if (payload != null)
+            {
+                result.put(entry.getKey(), payload);
+            }
+        }
+        for (Map.Entry<PackFile, PackFile> entry : common.entrySet())
+        {
+            result.put(entry.getKey(), entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Adds an uncompressed entry to a jar.
+     * <p/>
+     * Uncompressed entries can be skipped over without reading them, when the jar is opened as a zip file.
+     *
+     * @param jar   the jar
+     * @param entry the entry to add
+     * @param file  the entry content
+     * @param crc   the CRC-32 checksum of the content
+     * @throws IOException for any I/O error
+     */
+    private void putStoredEntry(JarOutputStream jar, ZipEntry entry, File file, long crc) throws IOException
+    {
+        entry.setMethod(ZipEntry.STORED);
+        entry.setSize(file.length());
+        entry.setCompressedSize(file.length());
+        entry.setCrc(crc);
+        jar.putNextEntry(entry);
+        long bytesWritten = FileUtils.copyFile(file, jar);
+        if (bytesWritten != entry.getSize())
+        {
+            throw new IOException("File size mismatch when writing " + entry.getName());
+        }
+    }
+
     private Pack200.Packer createPack200Packer(PackFile packFile)
     {
         Pack200.Packer packer = Pack200.newPacker();
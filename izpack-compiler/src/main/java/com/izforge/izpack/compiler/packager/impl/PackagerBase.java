@@ -24,6 +24,9 @@ package com.izforge.izpack.compiler.packager.impl;
 
 import com.izforge.izpack.api.data.*;
 import com.izforge.izpack.api.exception.CompilerException;
+import com.izforge.izpack.api.exception.ResourceException;
+import com.izforge.izpack.api.resource.Locales;
+import com.izforge.izpack.api.resource.Resources;
 import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.compiler.data.CompilerData;
@@ -535,7 +538,14 @@ public abstract class PackagerBase implements IPackager
                 try
                 {
                     installerJar.putNextEntry(newEntry);
-                    IOUtils.copy(in, installerJar);
+                    if (isLangpack(stringURLEntry.getKey()))
+                    {
+                        writeLangpack(stringURLEntry.getKey(), in);
+                    }
+                    else
+                    {
+                        IOUtils.copy(in, installerJar);
+                    }
                 }
                 finally
                 {
@@ -549,6 +559,44 @@ public abstract class PackagerBase implements IPackager
         }
     }
 
+    /**
+     * Determines if a resource is a langpack.
+     *
+     * @param resId the resource identifier
+     * @return {@code true} if the resource is an installer langpack, or a custom or pack translation
+     */
+    protected boolean isLangpack(String resId)
+    {
+        return (resId.startsWith("langpacks/") && resId.endsWith(".xml"))
+                || resId.startsWith(Resources.CUSTOM_TRANSLATIONS_RESOURCE_NAME)
+                || resId.startsWith(Resources.PACK_TRANSLATIONS_RESOURCE_NAME);
+    }
+
+    /**
+     * Compiles a langpack to a {@link MessageTable}, and writes it to the installer jar.
+     * <p/>
+     * This avoids parsing langpack XML when the installer starts.
+     *
+     * @param resId the resource identifier
+     * @param in    the langpack XML
+     * @throws CompilerException if the langpack is invalid
+     * @throws IOException       for any I/O error
+     */
+    protected void writeLangpack(String resId, InputStream in) throws IOException
+    {
+        LocaleDatabase messages;
+        try
+        {
+            messages = new LocaleDatabase(in, (Locales) null);
+        }
+        catch (ResourceException exception)
+        {
+            throw new CompilerException("Invalid langpack resource '" + resId + "': " + exception.getMessage(),
+                                        exception);
+        }
+        MessageTable.write(messages.getMessages(), installerJar);
+    }
+
     /**
      * Write packs to the installer jar, or each to a separate jar.
      *
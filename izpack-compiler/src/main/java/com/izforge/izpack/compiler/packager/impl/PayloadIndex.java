@@ -0,0 +1,258 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.util.file.FileDigest;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * An index of the file payloads written to pack streams, so that identical content is only stored once.
+ * <p/>
+ * Files are matched on their source file first, and then on their content. Content is compared by
+ * {@link PackFile#DIGEST_ALGORITHM} digest, but only between files of the same length, so files of a unique length
+ * are never hashed here. Packagers supply the digest of each payload as they copy it, where they can; otherwise the
+ * digest recorded on the pack file is used, or it is computed from the source file the first time another file of the
+ * same length is looked up.
+ * <p/>
+ * Directories, Pack200 jars and empty files are only matched on their source file.
+ */
+public class PayloadIndex
+{
+    /**
+     * The stored pack files, keyed on source file.
+     */
+    private final Map<File, PackFile> files = new HashMap<File, PackFile>();
+
+    /**
+     * The stored payloads, keyed on length.
+     */
+    private final Map<Long, List<Payload>> payloads = new HashMap<Long, List<Payload>>();
+
+    /**
+     * The no. of duplicate files found.
+     */
+    private int duplicates;
+
+    /**
+     * The no. of bytes of duplicate files found.
+     */
+    private long duplicateBytes;
+
+    /**
+     * Returns a stored pack file with the same content as a file.
+     *
+     * @param file     the source file
+     * @param packFile the pack file
+     * @return the stored pack file, or {@code null} if none has the same content
+     * @throws IOException if the file cannot be read
+     */
+    public PackFile find(File file, PackFile packFile) throws IOException
+    {
+        PackFile result = files.get(file);
+        if (result == null && isIndexed(packFile))
+        {
+            List<Payload> candidates = payloads.get(packFile.length());
+            if (candidates != null)
+            {
+                byte[] digest = FileDigest.digest(file);
+                for (Payload candidate : candidates)
+                {
+                    if (Arrays.equals(digest, candidate.getDigest()))
+                    {
+                        result = candidate.packFile;
+                        break;
+                    }
+                }
+            }
+        }
+        if (result != null)
+        {
+            ++duplicates;
+            duplicateBytes += packFile.length();
+        }
+        return result;
+    }
+
+    /**
+     * Adds a stored pack file.
+     *
+     * @param file     the source file
+     * @param packFile the pack file
+     * @param digest   the digest of the file content, or {@code null} if it hasn't been computed
+     */
+    public void add(File file, PackFile packFile, byte[] digest)
+    {
+        files.put(file, packFile);
+        if (isIndexed(packFile))
+        {
+            List<Payload> list = payloads.get(packFile.length());
+            if (list == null)
+            {
+                list = new ArrayList<Payload>(1);
+                payloads.put(packFile.length(), list);
+            }
+            list.add(new Payload(file, packFile, digest));
+        }
+    }
+
+    /**
+     * Removes the stored pack files, so that subsequent files only match those added after this call.
+     * <p/>
+     * The duplicate statistics are retained.
+     */
+    public void clear()
+    {
+        files.clear();
+        payloads.clear();
+    }
+
+    /**
+     * Returns the no. of duplicate files found.
+     *
+     * @return the no. of duplicate files
+     */
+    public int getDuplicates()
+    {
+        return duplicates;
+    }
+
+    /**
+     * Returns the no. of bytes of duplicate files found.
+     *
+     * @return the no. of bytes not stored
+     */
+    public long getDuplicateBytes()
+    {
+        return duplicateBytes;
+    }
+
+    /**
+     * Determines if a pack file may be matched on its content.
+     *
+     * @param packFile the pack file
+     * @return {@code true} if the pack file may be matched on its content
+     */
+    public static boolean isIndexed(PackFile packFile)
+    {
+        return !packFile.isDirectory() && !packFile.isPack200Jar() && packFile.length() > 0;
+    }
+
+    /**
+     * Creates a digest to compute the digest of payloads with.
+     *
+     * @return a new digest
+     * @throws IOException if the digest algorithm isn't supported
+     */
+    public static MessageDigest createDigest() throws IOException
+    {
+        return FileDigest.create();
+    }
+
+    /**
+     * Copies a file to a stream, updating a digest with its content.
+     *
+     * @param file   the file to copy
+     * @param out    the stream to copy to. This is not closed
+     * @param digest the digest to update
+     * @return the no. of bytes copied
+     * @throws IOException for any I/O error
+     */
+    public static long copy(File file, OutputStream out, MessageDigest digest) throws IOException
+    {
+        InputStream in = new DigestInputStream(FileUtils.openInputStream(file), digest);
+        try
+        {
+            return IOUtils.copyLarge(in, out);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * A stored payload.
+     */
+    private static class Payload
+    {
+        /**
+         * The source file.
+         */
+        private final File file;
+
+        /**
+         * The pack file.
+         */
+        private final PackFile packFile;
+
+        /**
+         * The content digest, or {@code null} if it hasn't been computed.
+         */
+        private byte[] digest;
+
+        /**
+         * Constructs a <tt>Payload</tt>.
+         *
+         * @param file     the source file
+         * @param packFile the pack file
+         * @param digest   the content digest, or {@code null} if it hasn't been computed
+         */
+        public Payload(File file, PackFile packFile, byte[] digest)
+        {
+            this.file = file;
+            this.packFile = packFile;
+            this.digest = digest;
+        }
+
+        /**
+         * Returns the content digest, computing it if required.
+         *
+         * @return the content digest
+         * @throws IOException if the file cannot be read
+         */
+        public byte[] getDigest() throws IOException
+        {
+            if (digest == null)
+            {
+                digest = packFile.getDigest();
+            }
+            if (digest == null)
+            {
+                digest = FileDigest.digest(file);
+            }
+            return digest;
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.izforge.izpack.compiler.util;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -33,25 +35,73 @@ public class AntPathMatcher {
      * <code>false</code> if it didn't
      */
     public boolean match(String pattern, String path, boolean caseSensitive) {
+        return match(compile(pattern, caseSensitive), path);
+    }
 
-        pattern = pattern.replaceAll("\\\\", "/");
-        pattern = pattern.replaceAll("\\.", "\\\\.");
-        pattern = pattern.replaceAll("\\*", "[^/]*");
-        pattern = pattern.replaceAll("(\\[\\^/\\]\\*){2}", ".*");
-        pattern = pattern.replaceAll("/\\.\\*", "(/.*)*");
-        pattern = unifyVarReferences(pattern);
-        pattern = pattern.replaceAll("\\$", "\\\\\\$");
+    /**
+     * Match the given <code>path</code> against a pattern compiled by {@link #compile}.
+     * @param pattern the compiled pattern to match against
+     * @param path the path String to test
+     * @return <code>true</code> if the supplied <code>path</code> matched,
+     * <code>false</code> if it didn't
+     */
+    public boolean match(Pattern pattern, String path) {
+        return pattern.matcher(unifyVarReferences(path)).matches();
+    }
 
-        path = unifyVarReferences(path);
+    /**
+     * Compiles a pattern, so that it can be matched against many paths.
+     * @param pattern the pattern
+     * @param caseSensitive whether matches should be case-sensitive
+     * @return the compiled pattern
+     */
+    public Pattern compile(String pattern, boolean caseSensitive) {
+        return compile(Collections.singletonList(pattern), caseSensitive);
+    }
+
+    /**
+     * Compiles several patterns into a single pattern that matches a path if any of the patterns do.
+     * <p>
+     * This allows a path to be matched against all of the patterns in a single pass.
+     * @param patterns the patterns
+     * @param caseSensitive whether matches should be case-sensitive
+     * @return the compiled pattern
+     */
+    public Pattern compile(Collection<String> patterns, boolean caseSensitive) {
+        StringBuilder regexp = new StringBuilder();
+        for (String pattern : patterns) {
+            if (regexp.length() != 0) {
+                regexp.append('|');
+            }
+            if (patterns.size() == 1) {
+                regexp.append(toRegexp(pattern));
+            } else {
+                regexp.append("(?:").append(toRegexp(pattern)).append(')');
+            }
+        }
 
         int flags = 0;
         if (!caseSensitive)
         {
             flags |= Pattern.CASE_INSENSITIVE;
         }
-        Pattern p = Pattern.compile(pattern, flags);
+        return Pattern.compile(regexp.toString(), flags);
+    }
 
-        return p.matcher(path).matches();
+    /**
+     * Converts an Ant-style path pattern to a regular expression.
+     * @param pattern the pattern
+     * @return the corresponding regular expression
+     */
+    private String toRegexp(String pattern) {
+        pattern = pattern.replaceAll("\\\\", "/");
+        pattern = pattern.replaceAll("\\.", "\\\\.");
+        pattern = pattern.replaceAll("\\*", "[^/]*");
+        pattern = pattern.replaceAll("(\\[\\^/\\]\\*){2}", ".*");
+        pattern = pattern.replaceAll("/\\.\\*", "(/.*)*");
+        pattern = unifyVarReferences(pattern);
+        pattern = pattern.replaceAll("\\$", "\\\\\\$");
+        return pattern;
     }
 
     /**
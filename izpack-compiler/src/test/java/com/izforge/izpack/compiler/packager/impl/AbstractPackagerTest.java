@@ -24,6 +24,7 @@ import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.OverrideType;
 import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.data.PackInfo;
+import com.izforge.izpack.core.data.PackInfoTable;
 import com.izforge.izpack.merge.MergeManager;
 import org.apache.commons.io.IOUtils;
 import org.junit.Assert;
@@ -35,7 +36,6 @@ import java.io.*;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
-import java.util.List;
 import java.util.jar.JarEntry;
 import java.util.jar.JarInputStream;
 import java.util.jar.JarOutputStream;
@@ -160,15 +160,14 @@ public abstract class AbstractPackagerTest
 
         InputStream jarEntry = getJarEntry("resources/packs.info", jar);
 
-        ObjectInputStream packStream = new ObjectInputStream(jarEntry);
-        List<PackInfo> packsInfo = (List<PackInfo>) packStream.readObject();
+        PackInfoTable packsInfo = PackInfoTable.read(jarEntry);
         assertEquals(1, packsInfo.size());
-        Pack pack = packsInfo.get(0).getPack();
+        Pack pack = packsInfo.getPacks().get(0);
         assertEquals(expectedSize, pack.getSize());
         assertEquals(expectedFileSize, fileSize);
+        assertEquals(files.length, packsInfo.getPackInfo(0).getPackFiles().size());
 
         IOUtils.closeQuietly(jarEntry);
-        IOUtils.closeQuietly(packStream);
         assertTrue(jar.delete());
     }
 
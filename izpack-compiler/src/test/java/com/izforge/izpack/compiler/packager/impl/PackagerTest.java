@@ -22,6 +22,9 @@ package com.izforge.izpack.compiler.packager.impl;
 import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackCompression;
+import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.data.PackInfo;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.compiler.data.CompilerData;
@@ -30,17 +33,37 @@ import com.izforge.izpack.compiler.packager.IPackager;
 import com.izforge.izpack.merge.MergeManager;
 import com.izforge.izpack.merge.resolve.MergeableResolver;
 import com.izforge.izpack.test.util.TestHelper;
+import com.izforge.izpack.util.file.FileDigest;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Properties;
+import java.util.jar.JarFile;
 import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
 
 /**
@@ -61,18 +84,72 @@ public class PackagerTest extends AbstractPackagerTest
      */
     @Override
     protected PackagerBase createPackager(JarOutputStream jar, MergeManager mergeManager)
+    {
+        return createPackager(jar, mergeManager, new CompilerData("", "", "", true), new Info());
+    }
+
+    /**
+     * Helper to create a packager that writes to the provided jar.
+     *
+     * @param jar          the jar stream
+     * @param mergeManager the merge manager
+     * @param data         the compiler data
+     * @param info         the installation info
+     * @return a new packager
+     */
+    private Packager createPackager(JarOutputStream jar, MergeManager mergeManager, CompilerData data, Info info)
     {
         Properties properties = new Properties();
         CompilerPathResolver pathResolver = mock(CompilerPathResolver.class);
         MergeableResolver resolver = mock(MergeableResolver.class);
-        CompilerData data = new CompilerData("", "", "", true);
         RulesEngine rulesEngine = mock(RulesEngine.class);
         Packager packager = new Packager(properties, null, jar, mergeManager,
                                          pathResolver, resolver, data, rulesEngine);
-        packager.setInfo(new Info());
+        packager.setInfo(info);
         return packager;
     }
 
+    /**
+     * Verifies that compressing pack files on several threads produces the same pack stream as a single thread,
+     * and that each file can be decompressed from its recorded offset and has its content digest recorded.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testParallelCompression() throws Exception
+    {
+        File small = TestHelper.createFile(temporaryFolder.getRoot(), "small.dat", 1024);
+        File medium = TestHelper.createFile(temporaryFolder.getRoot(), "medium.dat", 100 * 1024);
+        File large = TestHelper.createFile(temporaryFolder.getRoot(), "large.dat",
+                                           (int) PackFileCompressor.MAX_IN_MEMORY_SIZE + 1024);
+        File empty = temporaryFolder.newFile("empty.dat");
+        File[] files = {small, large, empty, medium};
+
+        PackInfo sequential = createCompressedInstaller("sequential.jar", 1, files);
+        PackInfo parallel = createCompressedInstaller("parallel.jar", 4, files);
+
+        byte[] sequentialStream = readPackStream(temporaryFolder.getRoot(), "sequential.jar");
+        byte[] parallelStream = readPackStream(temporaryFolder.getRoot(), "parallel.jar");
+        assertArrayEquals(sequentialStream, parallelStream);
+
+        List<PackFile> sequentialFiles = new ArrayList<PackFile>(sequential.getPackFiles());
+        List<PackFile> parallelFiles = new ArrayList<PackFile>(parallel.getPackFiles());
+        assertEquals(files.length, parallelFiles.size());
+        for (int i = 0; i < files.length; ++i)
+        {
+            PackFile packFile = parallelFiles.get(i);
+            assertEquals(sequentialFiles.get(i).getStreamOffset(), packFile.getStreamOffset());
+            assertEquals(sequentialFiles.get(i).size(), packFile.size());
+
+            InputStream compressed = new ByteArrayInputStream(parallelStream, (int) packFile.getStreamOffset(),
+                                                              (int) packFile.size());
+            InputStream input = new CompressorStreamFactory().createCompressorInputStream(
+                    PackCompression.BZIP2.toName(), compressed);
+            assertArrayEquals(FileUtils.readFileToByteArray(files[i]), IOUtils.toByteArray(input));
+            assertArrayEquals(FileDigest.digest(files[i]), packFile.getDigest());
+        }
+    }
+
     /*
      * Measures how long (in ms) it takes the packager to create an installer and
      * prints the result to standard output.
@@ -101,6 +178,317 @@ public class PackagerTest extends AbstractPackagerTest
         System.out.println("Writing pack of " + packSize + " KiB took " + timeDiff + "ms");
     }
 
+    /**
+     * Verifies that pack streams compressed by IzPack are stored in the installer jar without further compression,
+     * so that the installer can seek within them.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompressedPackStreamIsStored() throws Exception
+    {
+        File file = TestHelper.createFile(temporaryFolder.getRoot(), "file.dat", 1024);
+        createCompressedInstaller("stored.jar", 1, file);
+
+        JarFile jar = new JarFile(new File(temporaryFolder.getRoot(), "stored.jar"));
+        ZipEntry entry;
+        try
+        {
+            entry = jar.getEntry("resources/packs/pack-Core");
+            assertEquals(ZipEntry.STORED, entry.getMethod());
+            assertEquals(entry.getSize(), entry.getCompressedSize());
+        }
+        finally
+        {
+            jar.close();
+        }
+        assertEquals(entry.getSize(), readPackStream(temporaryFolder.getRoot(), "stored.jar").length);
+    }
+
+    /**
+     * Verifies that in solid compression mode, consecutive files are compressed together in blocks, and that file
+     * offsets refer to the uncompressed content of the pack.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSolidCompression() throws Exception
+    {
+        File small = TestHelper.createFile(temporaryFolder.getRoot(), "small.dat", 1024);
+        File medium = TestHelper.createFile(temporaryFolder.getRoot(), "medium.dat", 100 * 1024);
+        File empty = temporaryFolder.newFile("empty.dat");
+        File tiny = TestHelper.createFile(temporaryFolder.getRoot(), "tiny.dat", 10);
+        File[] files = {small, medium, empty, tiny};
+
+        PackInfo packInfo = createCompressedInstaller("solid.jar", 2, 64 * 1024, files);
+        List<PackFile> packFiles = new ArrayList<PackFile>(packInfo.getPackFiles());
+        long offset = 0;
+        for (int i = 0; i < files.length; ++i)
+        {
+            PackFile packFile = packFiles.get(i);
+            assertEquals(offset, packFile.getStreamOffset());
+            assertEquals(files[i].length(), packFile.size());
+            offset += files[i].length();
+        }
+
+        // the first block holds small.dat and medium.dat, the second empty.dat and tiny.dat
+        DataInputStream packStream = new DataInputStream(new ByteArrayInputStream(
+                readPackStream(temporaryFolder.getRoot(), "solid.jar")));
+        checkBlock(packStream, small, medium);
+        checkBlock(packStream, empty, tiny);
+        assertEquals(-1, packStream.read());
+    }
+
+    /**
+     * Verifies that when packs are written to separate jars for a web installer, the digest and length of each jar
+     * is recorded in the pack.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSeparateJarDigest() throws Exception
+    {
+        File file = TestHelper.createFile(temporaryFolder.getRoot(), "file.dat", 10 * 1024);
+        File installer = temporaryFolder.newFile("install.jar");
+        Info info = new Info();
+        info.setWebDirURL("http://localhost/packs");
+
+        PackInfo packInfo = createPackInfo("Core", file);
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(installer));
+        Packager packager = createPackager(jarOutputStream, mock(MergeManager.class),
+                                           new CompilerData("", "", installer.getPath(), true), info);
+        packager.addPack(packInfo);
+        packager.createInstaller();
+
+        File packJar = new File(temporaryFolder.getRoot(), "install.pack-Core.jar");
+        assertTrue(packJar.exists());
+        Pack pack = packInfo.getPack();
+        assertEquals(packJar.length(), pack.getJarLength());
+        MessageDigest digest = MessageDigest.getInstance(Pack.JAR_DIGEST_ALGORITHM);
+        assertArrayEquals(digest.digest(FileUtils.readFileToByteArray(packJar)), pack.getJarDigest());
+    }
+
+    /**
+     * Verifies that files with identical content are stored once, whether they are in the same pack or another,
+     * and that the duplicates refer back to the stored file.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testDuplicatePayloads() throws Exception
+    {
+        File file = TestHelper.createFile(temporaryFolder.getRoot(), "file.dat", 10 * 1024);
+        File copy = new File(temporaryFolder.newFolder("copy"), "file.dat");
+        FileUtils.copyFile(file, copy);
+        File other = TestHelper.createFile(temporaryFolder.getRoot(), "other.dat", 10 * 1024);
+
+        PackInfo core = createPackInfo("Core", file, copy, other);
+        PackInfo extra = createPackInfo("Extra", copy);
+        JarOutputStream jarOutputStream = new JarOutputStream(
+                new FileOutputStream(temporaryFolder.newFile("duplicates.jar")));
+        Packager packager = createPackager(jarOutputStream, mock(MergeManager.class),
+                                           new CompilerData("", "", "", true), new Info());
+        packager.addPack(core);
+        packager.addPack(extra);
+        packager.createInstaller();
+
+        PackFile stored = getPackFile(core, file);
+        assertNull(stored.getLinkedPackFile());
+        assertSame(stored, getPackFile(core, copy).getLinkedPackFile());
+        assertNull(getPackFile(core, other).getLinkedPackFile());
+        assertSame(stored, getPackFile(extra, copy).getLinkedPackFile());
+
+        // back references share the digest of the stored file
+        assertArrayEquals(FileDigest.digest(file), stored.getDigest());
+        assertArrayEquals(stored.getDigest(), getPackFile(extra, copy).getDigest());
+        assertArrayEquals(FileDigest.digest(other), getPackFile(core, other).getDigest());
+
+        File jar = new File(temporaryFolder.getRoot(), "duplicates.jar");
+        assertEquals(file.length() + other.length(), readEntry(jar, "resources/packs/pack-Core").length);
+        assertEquals(0, readEntry(jar, "resources/packs/pack-Extra").length);
+    }
+
+    /**
+     * Verifies that when packs are written to separate jars, files shared between packs are written to a common
+     * jar, and files duplicated within a pack refer back to the pack jar.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSeparateJarCommonPayloads() throws Exception
+    {
+        File shared = TestHelper.createFile(temporaryFolder.getRoot(), "shared.dat", 10 * 1024);
+        File copy = new File(temporaryFolder.newFolder("copy"), "shared.dat");
+        FileUtils.copyFile(shared, copy);
+        File file = TestHelper.createFile(temporaryFolder.getRoot(), "file.dat", 1024);
+        File fileCopy = new File(temporaryFolder.getRoot(), "file-copy.dat");
+        FileUtils.copyFile(file, fileCopy);
+        File installer = temporaryFolder.newFile("install.jar");
+        Info info = new Info();
+        info.setWebDirURL("http://localhost/packs");
+
+        PackInfo core = createPackInfo("Core", shared);
+        PackInfo extra = createPackInfo("Extra", copy, file, fileCopy);
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(installer));
+        Packager packager = createPackager(jarOutputStream, mock(MergeManager.class),
+                                           new CompilerData("", "", installer.getPath(), true), info);
+        packager.addPack(core);
+        packager.addPack(extra);
+        packager.createInstaller();
+
+        String commonStream = "packs/pack-" + Packager.COMMON_PACK_NAME;
+        File commonJar = new File(temporaryFolder.getRoot(), "install.pack-" + Packager.COMMON_PACK_NAME + ".jar");
+        assertEquals(shared.length(), readEntry(commonJar, commonStream).length);
+
+        // the common jar is recorded so that it can be verified when downloaded
+        byte[] resource = readEntry(installer, PackagerBase.RESOURCES_PATH + Pack.COMMON_PACK_RESOURCE);
+        Pack commonPack = (Pack) new ObjectInputStream(new ByteArrayInputStream(resource)).readObject();
+        assertEquals(Packager.COMMON_PACK_NAME, commonPack.getName());
+        assertArrayEquals(FileDigest.digest(commonJar), commonPack.getJarDigest());
+        assertEquals(commonJar.length(), commonPack.getJarLength());
+
+        PackFile common = getPackFile(core, shared).getLinkedPackFile();
+        assertNotNull(common);
+        assertEquals(commonStream, common.getStreamResourceName());
+        assertSame(common, getPackFile(extra, copy).getLinkedPackFile());
+
+        PackFile stored = getPackFile(extra, file);
+        assertNull(stored.getLinkedPackFile());
+        assertEquals("packs/pack-Extra", stored.getStreamResourceName());
+        assertSame(stored, getPackFile(extra, fileCopy).getLinkedPackFile());
+
+        File coreJar = new File(temporaryFolder.getRoot(), "install.pack-Core.jar");
+        File extraJar = new File(temporaryFolder.getRoot(), "install.pack-Extra.jar");
+        assertEquals(0, readEntry(coreJar, "packs/pack-Core").length);
+        assertEquals(file.length(), readEntry(extraJar, "packs/pack-Extra").length);
+    }
+
+    /**
+     * Verifies that the next block in a solid pack stream holds the specified files.
+     *
+     * @param packStream the pack stream
+     * @param files      the expected files
+     * @throws Exception for any error
+     */
+    private void checkBlock(DataInputStream packStream, File... files) throws Exception
+    {
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (File file : files)
+        {
+            FileUtils.copyFile(file, expected);
+        }
+        assertEquals(expected.size(), packStream.readLong());
+        byte[] compressed = new byte[(int) packStream.readLong()];
+        packStream.readFully(compressed);
+        InputStream input = new CompressorStreamFactory().createCompressorInputStream(
+                PackCompression.BZIP2.toName(), new ByteArrayInputStream(compressed));
+        assertArrayEquals(expected.toByteArray(), IOUtils.toByteArray(input));
+    }
+
+    /**
+     * Creates an installer containing a single bzip2 compressed pack.
+     *
+     * @param name    the installer jar name
+     * @param threads the number of compression threads
+     * @param files   the files to pack
+     * @return the pack
+     * @throws Exception for any error
+     */
+    private PackInfo createCompressedInstaller(String name, int threads, File... files) throws Exception
+    {
+        return createCompressedInstaller(name, threads, 0, files);
+    }
+
+    /**
+     * Creates an installer containing a single bzip2 compressed pack.
+     *
+     * @param name      the installer jar name
+     * @param threads   the number of compression threads
+     * @param blockSize the solid compression block size, or {@code 0} to compress each file separately
+     * @param files     the files to pack
+     * @return the pack
+     * @throws Exception for any error
+     */
+    private PackInfo createCompressedInstaller(String name, int threads, long blockSize, File... files)
+            throws Exception
+    {
+        CompilerData data = new CompilerData("", "", "", true);
+        data.setCompressionThreads(threads);
+        Info info = new Info();
+        info.setCompressionFormat(PackCompression.BZIP2);
+        info.setCompressionBlockSize(blockSize);
+
+        PackInfo packInfo = createPackInfo("Core", files);
+        JarOutputStream jarOutputStream = new JarOutputStream(new FileOutputStream(temporaryFolder.newFile(name)));
+        Packager packager = createPackager(jarOutputStream, mock(MergeManager.class), data, info);
+        packager.addPack(packInfo);
+        packager.createInstaller();
+        return packInfo;
+    }
+
+    /**
+     * Reads the content of the "Core" pack stream from an installer jar.
+     *
+     * @param dir  the directory containing the jar
+     * @param name the jar name
+     * @return the pack stream content
+     * @throws IOException for any I/O error
+     */
+    private byte[] readPackStream(File dir, String name) throws IOException
+    {
+        return readEntry(new File(dir, name), "resources/packs/pack-Core");
+    }
+
+    /**
+     * Reads the content of an entry from a jar.
+     *
+     * @param file the jar file
+     * @param name the entry name
+     * @return the entry content
+     * @throws IOException for any I/O error
+     */
+    private byte[] readEntry(File file, String name) throws IOException
+    {
+        JarFile jar = new JarFile(file);
+        try
+        {
+            ZipEntry entry = jar.getEntry(name);
+            assertNotNull(entry);
+            InputStream input = jar.getInputStream(entry);
+            try
+            {
+                return IOUtils.toByteArray(input);
+            }
+            finally
+            {
+                input.close();
+            }
+        }
+        finally
+        {
+            jar.close();
+        }
+    }
+
+    /**
+     * Returns the pack file for a source file.
+     *
+     * @param packInfo the pack
+     * @param file     the source file
+     * @return the corresponding pack file
+     */
+    private PackFile getPackFile(PackInfo packInfo, File file)
+    {
+        for (PackFile packFile : packInfo.getPackFiles())
+        {
+            if (file.equals(packInfo.getFile(packFile)))
+            {
+                return packFile;
+            }
+        }
+        throw new AssertionError("No pack file for " + file);
+    }
+
     private PackInfo createPackInfo(String name, File... files) throws IOException {
 
         PackInfo packInfo = new PackInfo(name, null, "", true, false, null, true, calculateTotalSize(files));
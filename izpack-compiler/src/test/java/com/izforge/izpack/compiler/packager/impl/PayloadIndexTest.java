@@ -0,0 +1,120 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.packager.impl;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.test.util.TestHelper;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+
+/**
+ * Tests the {@link PayloadIndex}.
+ */
+public class PayloadIndexTest
+{
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that files are matched on their source file, or on their content.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testFind() throws Exception
+    {
+        File original = TestHelper.createFile(temporaryFolder.getRoot(), "original.dat", 4096);
+        File copy = new File(temporaryFolder.newFolder("dir"), "copy.dat");
+        FileUtils.copyFile(original, copy);
+        File sameLength = TestHelper.createFile(temporaryFolder.getRoot(), "other.dat", 4096);
+        File empty = temporaryFolder.newFile("empty.dat");
+        File emptyCopy = temporaryFolder.newFile("empty2.dat");
+
+        PayloadIndex index = new PayloadIndex();
+        PackFile originalFile = createPackFile(original);
+        assertNull(index.find(original, originalFile));
+
+        // supply the digest as a packager would, while copying
+        MessageDigest digest = PayloadIndex.createDigest();
+        assertEquals(4096, PayloadIndex.copy(original, new NullOutputStream(), digest));
+        index.add(original, originalFile, digest.digest());
+
+        assertSame(originalFile, index.find(original, createPackFile(original)));
+        assertSame(originalFile, index.find(copy, createPackFile(copy)));
+        assertNull(index.find(sameLength, createPackFile(sameLength)));
+        assertEquals(2, index.getDuplicates());
+        assertEquals(8192, index.getDuplicateBytes());
+
+        // empty files are only matched on source file
+        PackFile emptyFile = createPackFile(empty);
+        index.add(empty, emptyFile, null);
+        assertNull(index.find(emptyCopy, createPackFile(emptyCopy)));
+        assertSame(emptyFile, index.find(empty, createPackFile(empty)));
+
+        index.clear();
+        assertNull(index.find(copy, createPackFile(copy)));
+        assertEquals(3, index.getDuplicates());
+    }
+
+    /**
+     * Verifies that digests of files added without one are computed when required.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testLazyDigest() throws Exception
+    {
+        File original = TestHelper.createFile(temporaryFolder.getRoot(), "original.dat", 1024);
+        File copy = new File(temporaryFolder.newFolder("dir"), "copy.dat");
+        FileUtils.copyFile(original, copy);
+
+        PayloadIndex index = new PayloadIndex();
+        PackFile originalFile = createPackFile(original);
+        index.add(original, originalFile, null);
+        assertSame(originalFile, index.find(copy, createPackFile(copy)));
+    }
+
+    /**
+     * Creates a pack file.
+     *
+     * @param file the source file
+     * @return a new pack file
+     * @throws IOException for any I/O error
+     */
+    private static PackFile createPackFile(File file) throws IOException
+    {
+        return new PackFile(file.getParentFile(), file, "$INSTALL_PATH/" + file.getName(), null,
+                            OverrideType.OVERRIDE_TRUE, null, Blockable.BLOCKABLE_NONE, null);
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.compiler.util;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests the {@link AntPathMatcher} class.
+ */
+public class AntPathMatcherTest
+{
+    /**
+     * The matcher.
+     */
+    private final AntPathMatcher matcher = new AntPathMatcher();
+
+    /**
+     * Tests matching single patterns.
+     */
+    @Test
+    public void testMatch()
+    {
+        assertTrue(matcher.match("$INSTALL_PATH/lib/*.jar", "${INSTALL_PATH}/lib/a.jar", true));
+        assertFalse(matcher.match("$INSTALL_PATH/lib/*.jar", "$INSTALL_PATH/lib/sub/a.jar", true));
+        assertTrue(matcher.match("$INSTALL_PATH/lib/**", "$INSTALL_PATH/lib/sub/a.jar", true));
+        assertTrue(matcher.match("$INSTALL_PATH/lib/**", "$INSTALL_PATH/lib", true));
+        assertFalse(matcher.match("$INSTALL_PATH/lib/*.jar", "$INSTALL_PATH/LIB/a.jar", true));
+        assertTrue(matcher.match("$INSTALL_PATH/lib/*.jar", "$INSTALL_PATH/LIB/a.jar", false));
+    }
+
+    /**
+     * Verifies that a pattern compiled from several patterns matches the same paths as the individual patterns.
+     */
+    @Test
+    public void testCompileMultiple()
+    {
+        List<String> patterns = Arrays.asList("$INSTALL_PATH/lib/*.jar", "${INSTALL_PATH}/bin/**",
+                                              "**/*.txt");
+        List<String> paths = Arrays.asList("$INSTALL_PATH/lib/a.jar", "$INSTALL_PATH/lib/sub/a.jar",
+                                           "$INSTALL_PATH/bin/run.sh", "${INSTALL_PATH}/bin", "$INSTALL_PATH/README",
+                                           "$INSTALL_PATH/doc/readme.txt", "$INSTALL_PATH/LIB/A.JAR");
+        for (boolean caseSensitive : new boolean[]{true, false})
+        {
+            Pattern compiled = matcher.compile(patterns, caseSensitive);
+            for (String path : paths)
+            {
+                boolean expected = false;
+                for (String pattern : patterns)
+                {
+                    expected |= matcher.match(pattern, path, caseSensitive);
+                }
+                assertEquals(path, expected, matcher.match(compiled, path));
+            }
+        }
+    }
+}
@@ -23,15 +23,27 @@ package com.izforge.izpack.core.data;
 
 import com.izforge.izpack.api.data.DynamicVariable;
 import com.izforge.izpack.api.data.Overrides;
+import com.izforge.izpack.api.data.Value;
+import com.izforge.izpack.api.data.ValueFilter;
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.exception.InstallerException;
 import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
+import com.izforge.izpack.core.variable.EnvironmentValue;
+import com.izforge.izpack.core.variable.JarEntryConfigValue;
+import com.izforge.izpack.core.variable.PlainConfigFileValue;
+import com.izforge.izpack.core.variable.PlainValue;
+import com.izforge.izpack.core.variable.ZipEntryConfigFileValue;
+import com.izforge.izpack.core.variable.filters.CaseStyleFilter;
+import com.izforge.izpack.core.variable.filters.LocationFilter;
+import com.izforge.izpack.core.variable.filters.RegularExpressionFilter;
 import com.izforge.izpack.core.variable.utils.ValueUtils;
 
+import java.io.File;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -69,11 +81,42 @@ public class DefaultVariables implements Variables
      */
     private RulesEngine rules;
 
+    /**
+     * The number of times the variables have been modified.
+     */
+    private final AtomicLong modifications = new AtomicLong();
+
     /**
      * Maps variable names to their stack of blocker objects.
      */
     private transient Map<String, Deque<Object>> blockedVariableNameStacks = new HashMap<String, Deque<Object>>();
 
+    /**
+     * The value types that depend only on variables and, for configuration files, on the file contents.
+     * Dynamic variables with these values can be evaluated once and re-used until their inputs change.
+     * <p/>
+     * Executed commands and registry values are excluded, as they may change as a side effect of installation.
+     */
+    private static final Set<Class<?>> REUSABLE_VALUES = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            PlainValue.class, EnvironmentValue.class, PlainConfigFileValue.class, ZipEntryConfigFileValue.class,
+            JarEntryConfigValue.class));
+
+    /**
+     * The filter types that depend only on variables.
+     */
+    private static final Set<Class<?>> REUSABLE_FILTERS = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            CaseStyleFilter.class, LocationFilter.class, RegularExpressionFilter.class));
+
+    /**
+     * The last evaluation of each reusable dynamic variable, keyed on identity.
+     */
+    private transient Map<DynamicVariable, Evaluation> evaluations = new IdentityHashMap<DynamicVariable, Evaluation>();
+
+    /**
+     * Collects the names of variables read by the current thread while a dynamic variable is being evaluated.
+     */
+    private final transient ThreadLocal<Set<String>> reads = new ThreadLocal<Set<String>>();
+
 
     /**
      * The logger.
@@ -121,11 +164,15 @@ public class DefaultVariables implements Variables
     {
         // Prevent from re-applying when pressing Previous button in panel
         // but preserve user values made at the panel where Previous has been pressed
-        if (overrides != null)
+        if (overrides != null && overrides.remove(name) != null)
         {
-            overrides.remove(name);
+            modifications.incrementAndGet();
         }
 
+        if (value == null ? properties.containsKey(name) : !value.equals(properties.getProperty(name)))
+        {
+            modifications.incrementAndGet();
+        }
         if (value != null)
         {
             properties.setProperty(name, value);
@@ -147,6 +194,7 @@ public class DefaultVariables implements Variables
     @Override
     public String get(String name)
     {
+        recordRead(name);
         return containsOverride(name) ? overrides.fetch(name) : properties.getProperty(name);
     }
 
@@ -159,6 +207,7 @@ public class DefaultVariables implements Variables
     @Override
     public String get(String name, String defaultValue)
     {
+        recordRead(name);
         final String value = properties.getProperty(name, defaultValue);
         return containsOverride(name) ? overrides.fetch(name, value) : value;
     }
@@ -329,7 +378,7 @@ public class DefaultVariables implements Variables
                         String newValue;
                         try
                         {
-                            newValue = variable.evaluate(replacer);
+                            newValue = evaluate(variable);
                         }
                         catch (IzPackException exception)
                         {
@@ -403,6 +452,143 @@ public class DefaultVariables implements Variables
         }
     }
 
+    /**
+     * Evaluates a dynamic variable.
+     * <p/>
+     * If the variable has been evaluated before, and none of the variables it referenced nor the configuration
+     * file it read have changed since, the previous value is returned without re-evaluating it.
+     *
+     * @param variable the dynamic variable
+     * @return the value of the variable. May be {@code null}
+     * @throws Exception if the variable cannot be evaluated
+     */
+    private String evaluate(DynamicVariable variable) throws Exception
+    {
+        if (!isReusable(variable))
+        {
+            return variable.evaluate(replacer);
+        }
+        Evaluation evaluation = evaluations.get(variable);
+        if (evaluation != null && evaluation.isCurrent())
+        {
+            logger.fine("Dynamic variable '" + variable.getName() + "' unchanged");
+            return evaluation.value;
+        }
+
+        // stamp the file before reading it, so that a concurrent change is picked up next time
+        Value value = variable.getValue();
+        evaluation = new Evaluation(getFileStamp(value));
+        Set<String> names = new HashSet<String>(value.getVarRefs());
+        reads.set(names);
+        try
+        {
+            evaluation.value = variable.evaluate(replacer);
+        }
+        finally
+        {
+            reads.remove();
+        }
+        for (String name : names)
+        {
+            evaluation.inputs.put(name, resolve(name));
+        }
+        evaluations.put(variable, evaluation);
+        return evaluation.value;
+    }
+
+    /**
+     * Determines if the result of evaluating a dynamic variable may be re-used while its inputs are unchanged.
+     *
+     * @param variable the dynamic variable
+     * @return {@code true} if the variable's value and filters depend only on variables and configuration files
+     */
+    private boolean isReusable(DynamicVariable variable)
+    {
+        if (variable.isCheckonce() || variable.getValue() == null
+                || !REUSABLE_VALUES.contains(variable.getValue().getClass()))
+        {
+            return false;
+        }
+        List<ValueFilter> filters = variable.getFilters();
+        if (filters != null)
+        {
+            for (ValueFilter filter : filters)
+            {
+                if (!REUSABLE_FILTERS.contains(filter.getClass()))
+                {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records that a variable has been read, if a dynamic variable is being evaluated by the current thread.
+     *
+     * @param name the variable name
+     */
+    private void recordRead(String name)
+    {
+        Set<String> names = reads.get();
+        if (names != null)
+        {
+            names.add(name);
+        }
+    }
+
+    /**
+     * Resolves a variable reference as the variable substitutor would.
+     * <p/>
+     * Environment variable and system property references are resolved via the substitutor; all others are
+     * looked up directly.
+     *
+     * @param name the referenced name
+     * @return the resolved value. May be {@code null}
+     */
+    private String resolve(String name)
+    {
+        if (name.startsWith("ENV[") || name.startsWith("SYSTEM"))
+        {
+            return replacer.substitute("${" + name + "}");
+        }
+        return get(name);
+    }
+
+    /**
+     * Stamps the configuration file read by a value.
+     *
+     * @param value the value
+     * @return the file stamp, or {@code null} if the value doesn't read a file
+     */
+    private FileStamp getFileStamp(Value value)
+    {
+        String path = null;
+        if (value instanceof PlainConfigFileValue)
+        {
+            path = ((PlainConfigFileValue) value).getLocation();
+        }
+        else if (value instanceof ZipEntryConfigFileValue)
+        {
+            path = ((ZipEntryConfigFileValue) value).getFilename();
+        }
+        return (path != null) ? new FileStamp(new File(replacer.substitute(path))) : null;
+    }
+
+    /**
+     * Returns the number of times the variables have been modified.
+     * <p/>
+     * This changes whenever a variable is set to a different value, or removed, via {@link #set}, or the overrides
+     * change. It can be used to determine if values derived from variables are out of date. Changes made directly
+     * to the {@link #getProperties() properties} are not counted.
+     *
+     * @return the modification count
+     */
+    public long getModificationCount()
+    {
+        return modifications.get();
+    }
+
     /**
      * Exposes the variables as properties.
      *
@@ -424,6 +610,7 @@ public class DefaultVariables implements Variables
     public void setOverrides(Overrides overrides)
     {
         this.overrides = overrides;
+        modifications.incrementAndGet();
     }
 
     @Override
@@ -489,4 +676,107 @@ public class DefaultVariables implements Variables
         }
         return blockedVariableNames;
     }
+
+    /**
+     * The result of evaluating a dynamic variable, and the inputs it was evaluated from.
+     */
+    private class Evaluation
+    {
+        /**
+         * The referenced variables and their values at evaluation time.
+         */
+        private final Map<String, String> inputs = new HashMap<String, String>();
+
+        /**
+         * The configuration file read, or {@code null} if none was read.
+         */
+        private final FileStamp file;
+
+        /**
+         * The evaluated value. May be {@code null}.
+         */
+        private String value;
+
+        /**
+         * Constructs an <tt>Evaluation</tt>.
+         *
+         * @param file the configuration file read. May be {@code null}
+         */
+        public Evaluation(FileStamp file)
+        {
+            this.file = file;
+        }
+
+        /**
+         * Determines if the inputs are unchanged since the evaluation.
+         *
+         * @return {@code true} if the evaluated value is still current
+         */
+        public boolean isCurrent()
+        {
+            if (file != null && !file.equals(new FileStamp(file.file)))
+            {
+                return false;
+            }
+            for (Map.Entry<String, String> input : inputs.entrySet())
+            {
+                String current = resolve(input.getKey());
+                if (current == null ? input.getValue() != null : !current.equals(input.getValue()))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * The last modification time and length of a file.
+     */
+    private static class FileStamp
+    {
+        /**
+         * The file.
+         */
+        private final File file;
+
+        /**
+         * The last modification time, or {@code 0} if the file doesn't exist.
+         */
+        private final long modified;
+
+        /**
+         * The file length.
+         */
+        private final long length;
+
+        /**
+         * Constructs a <tt>FileStamp</tt> for the current state of a file.
+         *
+         * @param file the file
+         */
+        public FileStamp(File file)
+        {
+            this.file = file;
+            this.modified = file.lastModified();
+            this.length = file.length();
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof FileStamp))
+            {
+                return false;
+            }
+            FileStamp stamp = (FileStamp) other;
+            return file.equals(stamp.file) && modified == stamp.modified && length == stamp.length;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return file.hashCode();
+        }
+    }
 }
@@ -0,0 +1,291 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.data;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackInfo;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * The pack metadata of an installer, as stored in the <em>packs.info</em> resource.
+ * <p/>
+ * The resource starts with a magic number and format version, followed by the {@link Pack} headers of all packs,
+ * and then the {@link PackInfo} of each pack, including its file table, as a separate length-prefixed segment.
+ * The headers are decoded when the table is read, but a pack's segment is only decoded when
+ * {@link #getPackInfo(int)} is called, so that installers with large file tables don't pay to decode them at
+ * startup, or for packs that aren't installed.
+ * <p/>
+ * Resources written as a single serialized list of {@link PackInfo}, by earlier versions, can still be read.
+ */
+public class PackInfoTable
+{
+    /**
+     * The current format version.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The magic number identifying the format, "IZPT".
+     */
+    private static final int MAGIC = 0x495A5054;
+
+    /**
+     * The pack headers.
+     */
+    private final List<Pack> packs;
+
+    /**
+     * The serialized pack information, or {@code null} if the table was read from the legacy format.
+     */
+    private final byte[][] segments;
+
+    /**
+     * The pack information, if the table was read from the legacy format.
+     */
+    private final List<PackInfo> packInfos;
+
+    /**
+     * Constructs a <tt>PackInfoTable</tt>.
+     *
+     * @param packs    the pack headers
+     * @param segments the serialized pack information
+     */
+    private PackInfoTable(List<Pack> packs, byte[][] segments)
+    {
+        this.packs = Collections.unmodifiableList(packs);
+        this.segments = segments;
+        this.packInfos = null;
+    }
+
+    /**
+     * Constructs a <tt>PackInfoTable</tt> from fully decoded pack information.
+     *
+     * @param packInfos the pack information
+     */
+    private PackInfoTable(List<PackInfo> packInfos)
+    {
+        List<Pack> list = new ArrayList<Pack>(packInfos.size());
+        for (PackInfo packInfo : packInfos)
+        {
+            list.add(packInfo.getPack());
+        }
+        this.packs = Collections.unmodifiableList(list);
+        this.segments = null;
+        this.packInfos = packInfos;
+    }
+
+    /**
+     * Returns the pack headers.
+     *
+     * @return the pack headers, in installation order
+     */
+    public List<Pack> getPacks()
+    {
+        return packs;
+    }
+
+    /**
+     * Returns the no. of packs.
+     *
+     * @return the no. of packs
+     */
+    public int size()
+    {
+        return packs.size();
+    }
+
+    /**
+     * Returns the information for a pack, including its file table.
+     * <p/>
+     * The information is decoded each time this is called, and isn't retained by the table.
+     *
+     * @param index the pack index
+     * @return the pack information
+     * @throws IOException if the pack information cannot be decoded
+     */
+    public PackInfo getPackInfo(int index) throws IOException
+    {
+        if (segments == null)
+        {
+            return packInfos.get(index);
+        }
+        return (PackInfo) deserialize(segments[index]);
+    }
+
+    /**
+     * Writes pack metadata.
+     *
+     * @param packInfos the pack information, in installation order
+     * @param out       the stream to write to. This is not closed
+     * @throws IOException for any I/O error
+     */
+    public static void write(List<PackInfo> packInfos, OutputStream out) throws IOException
+    {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(packInfos.size());
+
+        ArrayList<Pack> packs = new ArrayList<Pack>(packInfos.size());
+        for (PackInfo packInfo : packInfos)
+        {
+            packs.add(packInfo.getPack());
+        }
+        writeSegment(data, serialize(packs));
+        for (PackInfo packInfo : packInfos)
+        {
+            writeSegment(data, serialize(packInfo));
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads pack metadata.
+     * <p/>
+     * This decodes the pack headers, but not the pack file tables.
+     *
+     * @param in the stream to read from. This is not closed
+     * @return the pack metadata
+     * @throws IOException if the metadata cannot be read
+     */
+    @SuppressWarnings("unchecked")
+    public static PackInfoTable read(InputStream in) throws IOException
+    {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        DataInputStream data = new DataInputStream(buffered);
+        buffered.mark(4);
+        if (data.readInt() != MAGIC)
+        {
+            buffered.reset();
+            return new PackInfoTable((List<PackInfo>) readObject(new ObjectInputStream(buffered)));
+        }
+        int version = data.readInt();
+        if (version > VERSION)
+        {
+            throw new IOException("Unsupported pack metadata version " + version + ", expected " + VERSION
+                                          + " or earlier");
+        }
+        int count = data.readInt();
+        List<Pack> packs = (List<Pack>) deserialize(readSegment(data));
+        if (packs.size() != count)
+        {
+            throw new IOException("Expected " + count + " pack headers but found " + packs.size());
+        }
+        byte[][] segments = new byte[count][];
+        for (int i = 0; i < count; ++i)
+        {
+            segments[i] = readSegment(data);
+        }
+        return new PackInfoTable(packs, segments);
+    }
+
+    /**
+     * Writes a length-prefixed segment.
+     *
+     * @param out     the stream to write to
+     * @param segment the segment
+     * @throws IOException for any I/O error
+     */
+    private static void writeSegment(DataOutputStream out, byte[] segment) throws IOException
+    {
+        out.writeInt(segment.length);
+        out.write(segment);
+    }
+
+    /**
+     * Reads a length-prefixed segment.
+     *
+     * @param in the stream to read from
+     * @return the segment
+     * @throws IOException for any I/O error
+     */
+    private static byte[] readSegment(DataInputStream in) throws IOException
+    {
+        int length = in.readInt();
+        if (length < 0)
+        {
+            throw new IOException("Invalid pack metadata segment length " + length);
+        }
+        byte[] segment = new byte[length];
+        in.readFully(segment);
+        return segment;
+    }
+
+    /**
+     * Serializes an object.
+     *
+     * @param object the object to serialize
+     * @return the serialized object
+     * @throws IOException for any I/O error
+     */
+    private static byte[] serialize(Object object) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(object);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserializes an object.
+     *
+     * @param bytes the serialized object
+     * @return the object
+     * @throws IOException if the object cannot be deserialized
+     */
+    private static Object deserialize(byte[] bytes) throws IOException
+    {
+        return readObject(new ObjectInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    /**
+     * Reads an object from a stream.
+     *
+     * @param in the stream
+     * @return the object
+     * @throws IOException if the object cannot be read
+     */
+    private static Object readObject(ObjectInputStream in) throws IOException
+    {
+        try
+        {
+            return in.readObject();
+        }
+        catch (ClassNotFoundException exception)
+        {
+            throw new IOException("Failed to read pack metadata: " + exception.getMessage(), exception);
+        }
+    }
+}
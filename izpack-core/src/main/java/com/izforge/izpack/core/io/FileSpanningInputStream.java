@@ -20,18 +20,27 @@ package com.izforge.izpack.core.io;
 
 import org.apache.commons.io.IOUtils;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
 
 
 /**
  * An <tt>InputStream</tt> which transparently spans over multiple volumes.
+ * <p/>
+ * The volumes are read as a sequence of compression blocks, as written by {@link FileSpanningOutputStream}. If a
+ * {@link VolumeIndex} is supplied, {@link #skip} and {@link #seek} go directly to the block containing the target
+ * offset, opening only the volume it is in. Otherwise, blocks preceding the target are skipped without being
+ * decompressed.
  *
  * @author Dennis Reil, <Dennis.Reil@reddot.de>
  * @author Tim Anderson
@@ -40,14 +49,49 @@ import java.util.zip.GZIPInputStream;
 public class FileSpanningInputStream extends InputStream
 {
     /**
-     * The spanning input stream. This sits between the volume file input stream and {@link #zippedInputStream}.
+     * The spanning input stream. This reads the compressed blocks from the volumes.
      */
     private final SpanningInputStream spanningInputStream;
 
     /**
-     * The sip stream.
+     * The block index. May be {@code null}
      */
-    private GZIPInputStream zippedInputStream;
+    private VolumeIndex index;
+
+    /**
+     * The uncompressed data of the current block.
+     */
+    private final byte[] block = new byte[FileSpanningOutputStream.BLOCK_SIZE];
+
+    /**
+     * The no. of bytes in the current block.
+     */
+    private int blockLength;
+
+    /**
+     * The position of the next byte to read in the current block.
+     */
+    private int blockPosition;
+
+    /**
+     * The compressed data of the current block.
+     */
+    private byte[] compressed = new byte[FileSpanningOutputStream.BLOCK_SIZE / 4];
+
+    /**
+     * The block header.
+     */
+    private final byte[] header = new byte[FileSpanningOutputStream.BLOCK_HEADER_LENGTH];
+
+    /**
+     * The decompressor.
+     */
+    private final Inflater inflater = new Inflater();
+
+    /**
+     * Used to verify the checksum of each block.
+     */
+    private final CRC32 crc = new CRC32();
 
     /**
      * The absolute offset into the volumes.
@@ -72,7 +116,6 @@ public class FileSpanningInputStream extends InputStream
     public FileSpanningInputStream(File volume, int volumes) throws IOException
     {
         spanningInputStream = new SpanningInputStream(volume, volumes);
-        zippedInputStream = new GZIPInputStream(spanningInputStream);
     }
 
     /**
@@ -85,6 +128,16 @@ public class FileSpanningInputStream extends InputStream
         spanningInputStream.setLocator(locator);
     }
 
+    /**
+     * Sets the block index, used to seek directly to the block containing an offset.
+     *
+     * @param index the index. May be <tt>null</tt>
+     */
+    public void setIndex(VolumeIndex index)
+    {
+        this.index = index;
+    }
+
     /**
      * (non-Javadoc)
      *
@@ -93,7 +146,7 @@ public class FileSpanningInputStream extends InputStream
     @Override
     public int available() throws IOException
     {
-        return zippedInputStream.available();
+        return blockLength - blockPosition;
     }
 
     /**
@@ -104,7 +157,7 @@ public class FileSpanningInputStream extends InputStream
     @Override
     public void close() throws IOException
     {
-        zippedInputStream.close();
+        inflater.end();
         spanningInputStream.close();
     }
 
@@ -116,12 +169,12 @@ public class FileSpanningInputStream extends InputStream
     @Override
     public int read() throws IOException
     {
-        int read = zippedInputStream.read();
-        if (read != -1)
+        if (blockPosition == blockLength && !readBlock())
         {
-            ++filePointer;
+            return -1;
         }
-        return read;
+        ++filePointer;
+        return block[blockPosition++] & 0xFF;
     }
 
     /**
@@ -135,17 +188,16 @@ public class FileSpanningInputStream extends InputStream
         int count = -1;
         while (len != 0)
         {
-            int read = zippedInputStream.read(b, off, len);
-            if (read == -1)
+            if (blockPosition == blockLength && !readBlock())
             {
                 break;
             }
-            else
-            {
-                off += read;
-                len -= read;
-                count = (count == -1) ? read : count + read;
-            }
+            int read = Math.min(len, blockLength - blockPosition);
+            System.arraycopy(block, blockPosition, b, off, read);
+            blockPosition += read;
+            off += read;
+            len -= read;
+            count = (count == -1) ? read : count + read;
         }
         if (count != -1)
         {
@@ -155,29 +207,89 @@ public class FileSpanningInputStream extends InputStream
     }
 
     /**
-     * (non-Javadoc)
+     * Skips over and discards <tt>n</tt> bytes of data.
+     * <p/>
+     * Only the block containing the new position is decompressed.
      *
-     * @see java.io.InputStream#skip(long)
+     * @param n the no. of bytes to skip
+     * @return the no. of bytes skipped
+     * @throws IOException for any I/O error
      */
     @Override
     public long skip(long n) throws IOException
     {
-        long skipped = zippedInputStream.skip(n);
-        long count = skipped;
-        while (skipped != -1 && skipped < n)
+        if (n <= 0)
+        {
+            return 0;
+        }
+        long start = filePointer;
+        seek(filePointer + n);
+        return filePointer - start;
+    }
+
+    /**
+     * Moves to an offset in the uncompressed stream.
+     * <p/>
+     * If there is a block index, this can move backwards as well as forwards, and opens the volume containing the
+     * offset directly. Otherwise, it can only move forwards; whole blocks before the offset are skipped without being
+     * decompressed.
+     * <p/>
+     * If the offset is past the end of the stream, the stream is positioned at the end.
+     *
+     * @param position the offset to move to
+     * @throws IOException for any I/O error, or if the position is before the current position and there is no index
+     */
+    public void seek(long position) throws IOException
+    {
+        long blockStart = filePointer - blockPosition;
+        if (position >= blockStart && position <= blockStart + blockLength)
+        {
+            // within the current block
+            blockPosition = (int) (position - blockStart);
+            filePointer = position;
+            return;
+        }
+        if (index != null)
         {
-            n -= skipped;
-            skipped = zippedInputStream.skip(n);
-            if (skipped != -1)
+            int i = index.find(position);
+            if (i >= 0 && (position < blockStart || i > index.find(blockStart)))
             {
-                count += skipped;
+                if (logger.isLoggable(Level.FINE))
+                {
+                    logger.fine("Seeking to " + position + " in volume " + index.getVolume(i) + " at "
+                                        + index.getPosition(i));
+                }
+                spanningInputStream.open(index.getVolume(i), index.getPosition(i));
+                blockLength = 0;
+                blockPosition = 0;
+                filePointer = index.getOffset(i);
             }
         }
-        if (count != -1)
+        if (position < filePointer)
         {
-            filePointer += count;
+            throw new IOException("Cannot seek backwards from " + filePointer + " to " + position);
+        }
+
+        // skip whole blocks preceding the position
+        filePointer += blockLength - blockPosition;
+        blockLength = 0;
+        blockPosition = 0;
+        while (filePointer < position && readHeader())
+        {
+            int length = readInt(header, 0);
+            int compressedLength = readInt(header, 4);
+            if (filePointer + length <= position)
+            {
+                skipFully(compressedLength);
+                filePointer += length;
+            }
+            else
+            {
+                inflate(length, compressedLength);
+                blockPosition = (int) (position - filePointer);
+                filePointer = position;
+            }
         }
-        return count;
     }
 
     /**
@@ -201,13 +313,133 @@ public class FileSpanningInputStream extends InputStream
         return filePointer;
     }
 
+    /**
+     * Reads and decompresses the next block.
+     *
+     * @return {@code true} if a block was read, {@code false} if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    private boolean readBlock() throws IOException
+    {
+        blockLength = 0;
+        blockPosition = 0;
+        while (blockLength == 0)
+        {
+            if (!readHeader())
+            {
+                return false;
+            }
+            inflate(readInt(header, 0), readInt(header, 4));
+        }
+        return true;
+    }
+
+    /**
+     * Reads the next block header.
+     *
+     * @return {@code true} if the header was read, {@code false} if the end of the stream has been reached
+     * @throws IOException for any I/O error, or if the header is incomplete
+     */
+    private boolean readHeader() throws IOException
+    {
+        int count = IOUtils.read(spanningInputStream, header);
+        if (count == 0)
+        {
+            return false;
+        }
+        else if (count != header.length)
+        {
+            throw new EOFException("Unexpected end of volume " + getVolume() + " reading block header");
+        }
+        int length = readInt(header, 0);
+        int compressedLength = readInt(header, 4);
+        if (length < 0 || length > block.length || compressedLength < 0)
+        {
+            throw new CorruptVolumeException("Invalid block header in volume " + getVolume(),
+                                             getVolume().getPath());
+        }
+        return true;
+    }
+
+    /**
+     * Reads and decompresses the block following the header just read.
+     *
+     * @param length           the uncompressed block length
+     * @param compressedLength the compressed block length
+     * @throws IOException for any I/O error, or if the block is corrupt
+     */
+    private void inflate(int length, int compressedLength) throws IOException
+    {
+        if (compressed.length < compressedLength)
+        {
+            compressed = new byte[Math.max(compressedLength, compressed.length * 2)];
+        }
+        IOUtils.readFully(spanningInputStream, compressed, 0, compressedLength);
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try
+        {
+            int count = 0;
+            while (count < length && !inflater.finished())
+            {
+                int inflated = inflater.inflate(block, count, length - count);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                {
+                    break;
+                }
+                count += inflated;
+            }
+            crc.reset();
+            crc.update(block, 0, count);
+            if (count != length || (int) crc.getValue() != readInt(header, 8))
+            {
+                throw new CorruptVolumeException("Corrupt block in volume " + getVolume(), getVolume().getPath());
+            }
+        }
+        catch (DataFormatException exception)
+        {
+            throw new CorruptVolumeException("Corrupt block in volume " + getVolume() + ": "
+                                                     + exception.getMessage(), getVolume().getPath());
+        }
+        blockLength = length;
+    }
+
+    /**
+     * Skips compressed bytes.
+     *
+     * @param count the no. of bytes to skip
+     * @throws IOException for any I/O error, or if the end of the volumes is reached
+     */
+    private void skipFully(long count) throws IOException
+    {
+        long skipped = spanningInputStream.skip(count);
+        if (skipped != count)
+        {
+            throw new EOFException("Expected to skip " + count + " bytes in volume " + getVolume() + " but skipped "
+                                           + skipped);
+        }
+    }
+
+    /**
+     * Reads a big-endian integer from a buffer.
+     *
+     * @param buffer the buffer
+     * @param offset the offset to read from
+     * @return the integer
+     */
+    private static int readInt(byte[] buffer, int offset)
+    {
+        return ((buffer[offset] & 0xFF) << 24) | ((buffer[offset + 1] & 0xFF) << 16)
+                | ((buffer[offset + 2] & 0xFF) << 8) | (buffer[offset + 3] & 0xFF);
+    }
+
     private static final class SpanningInputStream extends InputStream
     {
 
         /**
          * The current volume stream.
          */
-        private InputStream stream;
+        private FileInputStream stream;
 
         /**
          * The base path to each volume.
@@ -331,6 +563,54 @@ public class FileSpanningInputStream extends InputStream
             return read;
         }
 
+        /**
+         * Skips bytes, moving on to subsequent volumes as required.
+         *
+         * @param n the no. of bytes to skip
+         * @return the no. of bytes skipped
+         * @throws IOException for any I/O error
+         */
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long count = 0;
+            while (count < n)
+            {
+                FileChannel channel = stream.getChannel();
+                long skipped = Math.min(n - count, channel.size() - channel.position());
+                if (skipped > 0)
+                {
+                    channel.position(channel.position() + skipped);
+                    count += skipped;
+                }
+                else if (!openNextVolume())
+                {
+                    break;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Opens a volume, and positions the stream within it.
+         *
+         * @param volume   the volume index
+         * @param position the position within the volume
+         * @throws IOException for any I/O error
+         */
+        public void open(int volume, long position) throws IOException
+        {
+            if (volume != index)
+            {
+                if (volume < 0 || volume >= volumes)
+                {
+                    throw new IOException("Invalid volume index: " + volume);
+                }
+                openVolume(volume);
+            }
+            stream.getChannel().position(position);
+        }
+
         /**
          * Returns the volume being read.
          *
@@ -370,50 +650,62 @@ public class FileSpanningInputStream extends InputStream
             }
             else
             {
-                // the next volume name
-                String volumePath = basePath + "." + (index + 1);
-                File volume = new File(volumePath);
-                boolean found = false;
-                while (!found)
+                openVolume(index + 1);
+                result = true;
+            }
+            return result;
+        }
+
+        /**
+         * Opens a volume.
+         *
+         * @param volumeIndex the volume index
+         * @throws CorruptVolumeException  if the magic no. of the volume does not match that expected
+         * @throws VolumeNotFoundException if the volume was not found
+         */
+        private void openVolume(int volumeIndex) throws IOException
+        {
+            // the volume name
+            String volumePath = (volumeIndex == 0) ? basePath : basePath + "." + volumeIndex;
+            File volume = new File(volumePath);
+            boolean found = false;
+            while (!found)
+            {
+                if (volume.exists())
                 {
-                    if (volume.exists())
+                    try
                     {
-                        try
+                        // try to open new stream to next volume
+                        IOUtils.closeQuietly(stream);
+                        stream = new FileInputStream(volume);
+                        current = volume;
+                        checkMagicNumber();
+                        found = true;
+                    }
+                    catch (CorruptVolumeException exception)
+                    {
+                        if (locator == null)
                         {
-                            // try to open new stream to next volume
-                            IOUtils.closeQuietly(stream);
-                            stream = new FileInputStream(volume);
-                            current = volume;
-                            checkMagicNumber();
-                            found = true;
+                            throw exception;
                         }
-                        catch (CorruptVolumeException exception)
+                        else
                         {
-                            if (locator == null)
-                            {
-                                throw exception;
-                            }
-                            else
-                            {
-                                volume = locator.getVolume(volume.getAbsolutePath(), true);
-                            }
+                            volume = locator.getVolume(volume.getAbsolutePath(), true);
                         }
                     }
-                    else if (locator != null)
-                    {
-                        volume = locator.getVolume(volume.getAbsolutePath(), false);
-                    }
-                    else
-                    {
-                        throw new VolumeNotFoundException("Volume not found: " + volume.getAbsolutePath(),
-                                                          volume.getAbsolutePath());
-                    }
                 }
-
-                ++index;
-                result = true;
+                else if (locator != null)
+                {
+                    volume = locator.getVolume(volume.getAbsolutePath(), false);
+                }
+                else
+                {
+                    throw new VolumeNotFoundException("Volume not found: " + volume.getAbsolutePath(),
+                                                      volume.getAbsolutePath());
+                }
             }
-            return result;
+
+            index = volumeIndex;
         }
 
         /**
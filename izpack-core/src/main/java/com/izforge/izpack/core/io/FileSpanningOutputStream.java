@@ -22,14 +22,21 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.GZIPOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
 
 /**
  * An <tt>OutputStream</tt> which transparently spans over multiple volumes. The size of the volumes and an
  * additional space for the first volume can be specified.
+ * <p/>
+ * Data is compressed in independent blocks of up to {@link #BLOCK_SIZE} bytes. Each block is written as a
+ * {@link #BLOCK_HEADER_LENGTH} byte header containing its uncompressed length, compressed length and CRC-32,
+ * followed by the deflated data. Blocks may span volumes. The location of each block is recorded in a
+ * {@link VolumeIndex}, so that readers can seek to a block without decompressing those before it.
  *
  * @author Dennis Reil, <Dennis.Reil@reddot.de>
  * @author Tim Anderson
@@ -57,6 +64,16 @@ public class FileSpanningOutputStream extends OutputStream
      */
     protected static final int MAGIC_NUMBER_LENGTH = 10;
 
+    /**
+     * The maximum no. of uncompressed bytes in a compression block.
+     */
+    public static final int BLOCK_SIZE = 1024 * 1024;
+
+    /**
+     * The length of the header written before each compression block.
+     */
+    protected static final int BLOCK_HEADER_LENGTH = 12;
+
     /**
      * The minimum volume size. Need to be able to fit at least MAGIC_NUMBER_LENGTH + 1 bytes per volume.
      */
@@ -68,9 +85,39 @@ public class FileSpanningOutputStream extends OutputStream
     private SpanningOutputStream spanningOutputStream;
 
     /**
-     * The stream that .
+     * The uncompressed data of the current block.
+     */
+    private final byte[] block = new byte[BLOCK_SIZE];
+
+    /**
+     * The no. of bytes in the current block.
+     */
+    private int blockLength;
+
+    /**
+     * The compressed data of the current block, prefixed by the block header.
+     */
+    private byte[] compressed = new byte[BLOCK_SIZE / 4];
+
+    /**
+     * The compressor.
+     */
+    private final Deflater deflater = new Deflater();
+
+    /**
+     * Used to calculate the checksum of each block.
+     */
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * The block index.
+     */
+    private final VolumeIndex index = new VolumeIndex();
+
+    /**
+     * Determines if the stream has been closed.
      */
-    private GZIPOutputStream gzipOutputStream;
+    private boolean closed;
 
     /**
      * The current offset in the (uncompressed) output stream.
@@ -127,17 +174,29 @@ public class FileSpanningOutputStream extends OutputStream
     public FileSpanningOutputStream(File volume, long maxFirstVolumeSize, long maxVolumeSize) throws IOException
     {
         spanningOutputStream = new SpanningOutputStream(volume, maxFirstVolumeSize, maxVolumeSize);
-        gzipOutputStream = new GZIPOutputStream(spanningOutputStream);
     }
 
     /**
-     * @see java.io.OutputStream#close()
+     * Writes the last block, and closes the current volume.
+     *
+     * @throws IOException for any I/O error
      */
     @Override
     public void close() throws IOException
     {
-        flush();
-        gzipOutputStream.close();
+        if (!closed)
+        {
+            closed = true;
+            try
+            {
+                writeBlock();
+                spanningOutputStream.close();
+            }
+            finally
+            {
+                deflater.end();
+            }
+        }
     }
 
     /**
@@ -146,9 +205,20 @@ public class FileSpanningOutputStream extends OutputStream
     @Override
     public void write(byte[] b, int off, int len) throws IOException
     {
-        gzipOutputStream.write(b, off, len);
-        // increase filePointer by written bytes
-        filePointer += len;
+        while (len > 0)
+        {
+            int count = Math.min(len, block.length - blockLength);
+            System.arraycopy(b, off, block, blockLength, count);
+            blockLength += count;
+            off += count;
+            len -= count;
+            // increase filePointer by written bytes
+            filePointer += count;
+            if (blockLength == block.length)
+            {
+                writeBlock();
+            }
+        }
     }
 
     /**
@@ -170,9 +240,13 @@ public class FileSpanningOutputStream extends OutputStream
     @Override
     public void write(int b) throws IOException
     {
-        gzipOutputStream.write(b);
+        block[blockLength++] = (byte) b;
         // increase filePointer by written byte
         filePointer++;
+        if (blockLength == block.length)
+        {
+            writeBlock();
+        }
     }
 
     /**
@@ -183,7 +257,7 @@ public class FileSpanningOutputStream extends OutputStream
     @Override
     public void flush() throws IOException
     {
-        gzipOutputStream.flush();
+        spanningOutputStream.flush();
     }
 
     /**
@@ -206,6 +280,68 @@ public class FileSpanningOutputStream extends OutputStream
         return filePointer;
     }
 
+    /**
+     * Returns the index of the compression blocks written.
+     * <p/>
+     * This is only complete once the stream has been closed.
+     *
+     * @return the block index
+     */
+    public VolumeIndex getIndex()
+    {
+        return index;
+    }
+
+    /**
+     * Compresses the current block, and writes it to the volumes.
+     *
+     * @throws IOException for any I/O error
+     */
+    private void writeBlock() throws IOException
+    {
+        if (blockLength == 0)
+        {
+            return;
+        }
+        crc.reset();
+        crc.update(block, 0, blockLength);
+        deflater.reset();
+        deflater.setInput(block, 0, blockLength);
+        deflater.finish();
+        int length = BLOCK_HEADER_LENGTH;
+        while (!deflater.finished())
+        {
+            if (length == compressed.length)
+            {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        writeInt(compressed, 0, blockLength);
+        writeInt(compressed, 4, length - BLOCK_HEADER_LENGTH);
+        writeInt(compressed, 8, (int) crc.getValue());
+
+        index.add(filePointer - blockLength, spanningOutputStream.getNextVolume(),
+                  spanningOutputStream.getNextPosition());
+        spanningOutputStream.write(compressed, 0, length);
+        blockLength = 0;
+    }
+
+    /**
+     * Writes a big-endian integer to a buffer.
+     *
+     * @param buffer the buffer
+     * @param offset the offset to write at
+     * @param value  the value to write
+     */
+    private static void writeInt(byte[] buffer, int offset, int value)
+    {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
     /**
      * Helper to format the volume magic number.
      *
@@ -227,7 +363,7 @@ public class FileSpanningOutputStream extends OutputStream
     }
 
     /**
-     * The <tt>SpanningOutputStream</tt> sits between the <tt>GZIPOutputStream</tt> and the volume
+     * The <tt>SpanningOutputStream</tt> sits between the block compressor and the volume
      * <tt>FileOutputStream</tt>. When a volume fills, it is closed and a new one opened and written to.
      */
     private static class SpanningOutputStream extends ByteCountingOutputStream
@@ -359,6 +495,26 @@ public class FileSpanningOutputStream extends OutputStream
             return index + 1;
         }
 
+        /**
+         * Returns the index of the volume that the next byte will be written to.
+         *
+         * @return the volume index
+         */
+        public int getNextVolume()
+        {
+            return (getAvailable() > 0) ? index : index + 1;
+        }
+
+        /**
+         * Returns the position within its volume that the next byte will be written to.
+         *
+         * @return the position within the volume
+         */
+        public long getNextPosition()
+        {
+            return (getAvailable() > 0) ? getByteCount() : MAGIC_NUMBER_LENGTH;
+        }
+
         /**
          * Initialises the volume.
          * <p/>
@@ -0,0 +1,172 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+
+/**
+ * Index of the compression blocks written by a {@link FileSpanningOutputStream}.
+ * <p/>
+ * For each block, this records the offset of its first byte in the uncompressed stream, and the volume and position
+ * within the volume that the block starts at. This enables a {@link FileSpanningInputStream} to seek directly to the
+ * block containing an offset, without reading the volumes before it.
+ */
+public class VolumeIndex
+{
+    /**
+     * The uncompressed offsets of each block, in ascending order.
+     */
+    private long[] offsets = new long[16];
+
+    /**
+     * The volume each block starts in.
+     */
+    private int[] volumes = new int[16];
+
+    /**
+     * The position of each block within its volume.
+     */
+    private long[] positions = new long[16];
+
+    /**
+     * The no. of blocks.
+     */
+    private int size;
+
+    /**
+     * Adds a block.
+     *
+     * @param offset   the offset of the block in the uncompressed stream
+     * @param volume   the index of the volume the block starts in
+     * @param position the position of the block within the volume
+     */
+    public void add(long offset, int volume, long position)
+    {
+        if (size == offsets.length)
+        {
+            int capacity = size * 2;
+            offsets = Arrays.copyOf(offsets, capacity);
+            volumes = Arrays.copyOf(volumes, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+        }
+        offsets[size] = offset;
+        volumes[size] = volume;
+        positions[size] = position;
+        ++size;
+    }
+
+    /**
+     * Returns the no. of blocks.
+     *
+     * @return the no. of blocks
+     */
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Returns the block containing an offset in the uncompressed stream.
+     *
+     * @param offset the uncompressed offset
+     * @return the block index, or {@code -1} if the offset precedes the first block
+     */
+    public int find(long offset)
+    {
+        int index = Arrays.binarySearch(offsets, 0, size, offset);
+        return (index >= 0) ? index : -index - 2;
+    }
+
+    /**
+     * Returns the offset of a block in the uncompressed stream.
+     *
+     * @param block the block index
+     * @return the uncompressed offset
+     */
+    public long getOffset(int block)
+    {
+        return offsets[block];
+    }
+
+    /**
+     * Returns the index of the volume that a block starts in.
+     *
+     * @param block the block index
+     * @return the volume index
+     */
+    public int getVolume(int block)
+    {
+        return volumes[block];
+    }
+
+    /**
+     * Returns the position of a block within its volume.
+     *
+     * @param block the block index
+     * @return the position within the volume
+     */
+    public long getPosition(int block)
+    {
+        return positions[block];
+    }
+
+    /**
+     * Writes the index.
+     *
+     * @param out the output to write to
+     * @throws IOException for any I/O error
+     */
+    public void write(DataOutput out) throws IOException
+    {
+        out.writeInt(size);
+        for (int i = 0; i < size; ++i)
+        {
+            out.writeLong(offsets[i]);
+            out.writeInt(volumes[i]);
+            out.writeLong(positions[i]);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #write(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the index
+     * @throws IOException for any I/O error
+     */
+    public static VolumeIndex read(DataInput in) throws IOException
+    {
+        VolumeIndex result = new VolumeIndex();
+        int size = in.readInt();
+        if (size < 0)
+        {
+            throw new IOException("Invalid volume index size: " + size);
+        }
+        for (int i = 0; i < size; ++i)
+        {
+            result.add(in.readLong(), in.readInt(), in.readLong());
+        }
+        return result;
+    }
+}
@@ -21,6 +21,8 @@
 
 package com.izforge.izpack.core.resource;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -32,7 +34,9 @@ import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.izforge.izpack.api.data.CompiledMessages;
 import com.izforge.izpack.api.data.LocaleDatabase;
+import com.izforge.izpack.api.data.MessageTable;
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Locales;
@@ -274,7 +278,7 @@ public class DefaultLocales implements Locales
     public Messages getMessages(String name)
     {
         InputStream in = resources.getInputStream(name);
-        return new LocaleDatabase(in, this);
+        return createMessages(in, null);
     }
 
     /**
@@ -407,13 +411,41 @@ public class DefaultLocales implements Locales
                 }
                 else
                 {
-                    messages = new LocaleDatabase(in, parentMessages, this);
+                    messages = createMessages(in, parentMessages);
                 }
             }
         }
         return locale != null;
     }
 
+    /**
+     * Creates messages from a stream.
+     * <p/>
+     * Langpacks compiled to a {@link MessageTable} are looked up in place, rather than being loaded into a
+     * {@link LocaleDatabase}.
+     *
+     * @param in     the stream to read the messages from
+     * @param parent the parent messages. May be {@code null}
+     * @return the messages
+     * @throws ResourceException if the stream is not an IzPack langpack or cannot be read
+     */
+    private Messages createMessages(InputStream in, Messages parent)
+    {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        try
+        {
+            if (MessageTable.isMessageTable(buffered))
+            {
+                return new CompiledMessages(MessageTable.read(buffered), parent, this);
+            }
+        }
+        catch (IOException exception)
+        {
+            throw new ResourceException("Failed to read langpack stream", exception);
+        }
+        return new LocaleDatabase(buffered, parent, this);
+    }
+
     /**
      * Returns a stream to the messages for the given ISO code.
      *
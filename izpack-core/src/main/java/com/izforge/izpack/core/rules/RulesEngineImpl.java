@@ -34,6 +34,7 @@ import com.izforge.izpack.api.rules.Condition;
 import com.izforge.izpack.api.rules.ConditionReference;
 import com.izforge.izpack.api.rules.ConditionWithMultipleOperands;
 import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.core.data.DefaultVariables;
 import com.izforge.izpack.core.rules.logic.AndCondition;
 import com.izforge.izpack.core.rules.logic.NotCondition;
 import com.izforge.izpack.core.rules.logic.OrCondition;
@@ -46,6 +47,7 @@ import java.io.OutputStream;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 
@@ -67,6 +69,28 @@ public class RulesEngineImpl implements RulesEngine
 
     private final Set<ConditionReference> refConditions = new HashSet<ConditionReference>();
 
+    /**
+     * Conditions parsed from expressions, keyed on expression.
+     */
+    private final Map<String, Condition> expressionConditions = new ConcurrentHashMap<String, Condition>();
+
+    /**
+     * Determines if the result of a condition depends only on variables, and may therefore be cached.
+     */
+    private final Map<Condition, Boolean> cacheable = new ConcurrentHashMap<Condition, Boolean>();
+
+    /**
+     * Cached condition results.
+     */
+    private final Map<Condition, CachedResult> results = new ConcurrentHashMap<Condition, CachedResult>();
+
+    /**
+     * Condition types whose result depends only on variables.
+     */
+    private static final Set<Class<?>> VARIABLE_CONDITIONS = new HashSet<Class<?>>(Arrays.<Class<?>>asList(
+            VariableCondition.class, CompareNumericsCondition.class, CompareVersionsCondition.class,
+            CompareVersionsMajorCondition.class, StaticCondition.class));
+
     private final InstallData installData;
 
     private final ConditionContainer container;
@@ -117,6 +141,7 @@ public class RulesEngineImpl implements RulesEngine
     @Override
     public void readConditionMap(Map<String, Condition> rules)
     {
+        clearCaches();
         for (Map.Entry<String, Condition> entry : rules.entrySet())
         {
             Condition condition = entry.getValue();
@@ -167,6 +192,7 @@ public class RulesEngineImpl implements RulesEngine
                 result.setInstallData(installData);
                 result.readFromXML(condition);
                 conditionsMap.put(id, result);
+                clearCaches();
                 if (result instanceof ConditionReference)
                 {
                     refConditions.add((ConditionReference) result);
@@ -189,6 +215,7 @@ public class RulesEngineImpl implements RulesEngine
     @Override
     public void resolveConditions()
     {
+        clearCaches();
         for (ConditionReference refCondition : refConditions)
         {
             refCondition.resolveReference();
@@ -225,6 +252,7 @@ public class RulesEngineImpl implements RulesEngine
                     {
                         resolveBuiltinConditions(cond);
                         conditionsMap.put(condid, cond);
+                        clearCaches();
                     }
                 }
             }
@@ -276,13 +304,26 @@ public class RulesEngineImpl implements RulesEngine
         Condition result = conditionsMap.get(id);
         if (result == null)
         {
-            if (id.startsWith("@"))
+            // expressions only refer to registered conditions, so they can be parsed once
+            result = expressionConditions.get(id);
+            if (result == null)
             {
-                result = parseComplexCondition(id.substring(1));
+                if (id.startsWith("@"))
+                {
+                    result = parseComplexCondition(id.substring(1));
+                }
+                else
+                {
+                    result = getConditionByExpr(new StringBuffer(id));
+                }
+                if (result != null)
+                {
+                    expressionConditions.put(id, result);
+                }
             }
-            else
+            else if (installData != null)
             {
-                result = getConditionByExpr(new StringBuffer(id));
+                result.setInstallData(installData);
             }
         }
         return result;
@@ -332,7 +373,92 @@ public class RulesEngineImpl implements RulesEngine
         {
             cond.setInstallData(this.installData);
         }
-        return cond.isTrue();
+        if (installData == null || cond.getInstallData() != installData
+                || !(installData.getVariables() instanceof DefaultVariables) || !isCacheable(cond))
+        {
+            return cond.isTrue();
+        }
+
+        // the result can be reused until a variable changes
+        long modifications = ((DefaultVariables) installData.getVariables()).getModificationCount();
+        CachedResult cached = results.get(cond);
+        if (cached != null && cached.modifications == modifications)
+        {
+            return cached.result;
+        }
+        boolean result = cond.isTrue();
+        results.put(cond, new CachedResult(result, modifications));
+        return result;
+    }
+
+    /**
+     * Discards parsed expressions and cached results.
+     * <p/>
+     * This must be invoked whenever conditions are added, as expressions and condition references may resolve
+     * differently.
+     */
+    private void clearCaches()
+    {
+        expressionConditions.clear();
+        cacheable.clear();
+        results.clear();
+    }
+
+    /**
+     * Determines if the result of a condition depends only on variables, and so may be cached until a variable
+     * changes.
+     *
+     * @param condition the condition
+     * @return {@code true} if the condition's result may be cached
+     */
+    private boolean isCacheable(Condition condition)
+    {
+        Boolean result = cacheable.get(condition);
+        if (result == null)
+        {
+            result = isCacheable(condition, new HashSet<Condition>());
+            cacheable.put(condition, result);
+        }
+        return result;
+    }
+
+    /**
+     * Determines if the result of a condition depends only on variables.
+     * <p/>
+     * Only the built-in logical conditions and variable comparisons are considered. Other conditions may depend on
+     * the file system, selected packs, or user code.
+     *
+     * @param condition the condition
+     * @param visited   the conditions visited so far, to guard against cyclic references
+     * @return {@code true} if the condition's result depends only on variables
+     */
+    private boolean isCacheable(Condition condition, Set<Condition> visited)
+    {
+        if (condition == null || !visited.add(condition))
+        {
+            return false;
+        }
+        Class<?> type = condition.getClass();
+        if (VARIABLE_CONDITIONS.contains(type))
+        {
+            return true;
+        }
+        if (type == AndCondition.class || type == OrCondition.class || type == XorCondition.class)
+        {
+            for (Condition operand : ((ConditionWithMultipleOperands) condition).getOperands())
+            {
+                if (!isCacheable(operand, visited))
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (type == NotCondition.class || type == RefCondition.class)
+        {
+            return isCacheable(((ConditionReference) condition).getReferencedCondition(), visited);
+        }
+        return false;
     }
 
     /**
@@ -448,6 +574,7 @@ public class RulesEngineImpl implements RulesEngine
             else
             {
                 conditionsMap.put(id, condition);
+                clearCaches();
             }
         }
         else
@@ -874,6 +1001,22 @@ public class RulesEngineImpl implements RulesEngine
         }
     }
 
+    /**
+     * The result of a condition, and the variable modification count when it was evaluated.
+     */
+    private static class CachedResult
+    {
+        private final boolean result;
+
+        private final long modifications;
+
+        CachedResult(boolean result, long modifications)
+        {
+            this.result = result;
+            this.modifications = modifications;
+        }
+    }
+
     /**
      * A built-in condition, created by the RulesEngine. These are not intended to be serialized - the RulesEngine
      * will replace any instance of a built in condition with its own version.
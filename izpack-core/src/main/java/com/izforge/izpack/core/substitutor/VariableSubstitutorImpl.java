@@ -110,11 +110,14 @@ public class VariableSubstitutorImpl implements VariableSubstitutor, Serializabl
             return null;
         }
 
-        // Create reader and write for the strings
+        if (str.indexOf(VariableSubstitutorReader.getVariableStart(type)) == -1)
+        {
+            return str;
+        }
 
         try
         {
-            return IOUtils.toString(new VariableSubstitutorReader(new StringReader(str), variables, type, bracesRequired));
+            return VariableTemplate.get(str, type, bracesRequired).substitute(variables, type);
         }
         catch (IOException e)
         {
@@ -30,6 +30,11 @@ public class VariableSubstitutorInputStream extends InputStream
     private String encoding;
     private Reader substitutorReader;
 
+    /**
+     * Buffer used to read blocks of characters from the substitutor reader.
+     */
+    private final char[] chars = new char[4096];
+
     public VariableSubstitutorInputStream(InputStream inputStream, Variables variables, SubstitutionType type, boolean bracesRequired) throws UnsupportedEncodingException
     {
         this(inputStream, null, variables, type, bracesRequired);
@@ -71,6 +76,21 @@ public class VariableSubstitutorInputStream extends InputStream
         return substitutorReader.read();
     }
 
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException
+    {
+        if (len == 0)
+        {
+            return 0;
+        }
+        int count = substitutorReader.read(chars, 0, Math.min(len, chars.length));
+        for (int i = 0; i < count; ++i)
+        {
+            b[off + i] = (byte) chars[i];
+        }
+        return count;
+    }
+
     @Override
     public void close() throws IOException
     {
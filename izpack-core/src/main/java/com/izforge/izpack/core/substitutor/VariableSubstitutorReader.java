@@ -18,23 +18,35 @@ package com.izforge.izpack.core.substitutor;
 
 import com.izforge.izpack.api.data.Variables;
 import com.izforge.izpack.api.substitutor.SubstitutionType;
-import com.izforge.izpack.util.IoHelper;
 
 import java.io.IOException;
-import java.io.PushbackReader;
 import java.io.Reader;
 import java.nio.CharBuffer;
 
 /**
- * An input reader which resolves IzPack variables on the fly
+ * An input reader which resolves IzPack variables on the fly.
+ * <p/>
+ * The source is read in blocks into a reusable buffer. Text between variable references is copied from the buffer
+ * in bulk; references are parsed by {@link #parseReference()}, which is also used to compile
+ * {@link VariableTemplate}s.
  */
 public class VariableSubstitutorReader extends Reader
 {
-    private PushbackReader pushbackReader = null;
+    /**
+     * The source buffer size.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * The source.
+     */
+    private final Reader source;
+
     /**
      * The replacement variables
      */
     private final Variables variables;
+
     private SubstitutionType type;
 
     /**
@@ -44,12 +56,36 @@ public class VariableSubstitutorReader extends Reader
 
     private char variable_start = '$';
     private char variable_end = '\0';
-    private boolean inBraces = false;
+
+    /**
+     * Buffer of characters read from the source.
+     */
+    private final char[] buffer = new char[BUFFER_SIZE];
+
+    /**
+     * The position of the next character to read from the buffer.
+     */
+    private int pos;
+
+    /**
+     * The no. of characters in the buffer.
+     */
+    private int limit;
+
+    /**
+     * Determines if the end of the source has been reached.
+     */
+    private boolean eof;
 
     private final StringBuilder varNameBuffer = new StringBuilder();
     private String varValue = null;
     private int varValueIndex = 0;
 
+    /**
+     * Buffer used by {@link #read()}.
+     */
+    private final char[] single = new char[1];
+
 
     public VariableSubstitutorReader(Reader source, Variables variables, SubstitutionType type, boolean bracesRequired)
     {
@@ -59,33 +95,11 @@ public class VariableSubstitutorReader extends Reader
 
     public VariableSubstitutorReader(Reader source, Variables variables, SubstitutionType type)
     {
-        this.pushbackReader = new PushbackReader(source);
+        this.source = source;
         this.variables = variables;
         this.type = type;
-        if (type == null)
-        {
-            type = SubstitutionType.getDefault();
-        }
-
-        // determine character which starts (and ends) a variable
-        switch (type)
-        {
-            case TYPE_SHELL:
-                variable_start = '%';
-                break;
-
-            case TYPE_AT:
-                variable_start = '@';
-                break;
-
-            case TYPE_ANT:
-                variable_start = '@';
-                variable_end = '@';
-                break;
-
-            default:
-                break;
-        }
+        variable_start = getVariableStart(type);
+        variable_end = getVariableEnd(type);
     }
 
     /**
@@ -113,38 +127,93 @@ public class VariableSubstitutorReader extends Reader
     @Override
     public int read() throws IOException
     {
-        if(varValue != null){
-            if(varValueIndex < varValue.length()){
-                return varValue.charAt(varValueIndex++);
+        return read(single, 0, 1) == -1 ? -1 : single[0];
+    }
+
+    @Override
+    public int read(char cbuf[]) throws IOException {
+        return read(cbuf, 0, cbuf.length);
+    }
+
+    @Override
+    public int read(char cbuf[], int off, int len) throws IOException {
+        int charsRead = 0;
+        while (charsRead < len)
+        {
+            if (varValue != null)
+            {
+                int count = Math.min(varValue.length() - varValueIndex, len - charsRead);
+                varValue.getChars(varValueIndex, varValueIndex + count, cbuf, off + charsRead);
+                charsRead += count;
+                varValueIndex += count;
+                if (varValueIndex == varValue.length())
+                {
+                    varValue = null;
+                    varValueIndex = 0;
+                }
+                continue;
             }
-            if(varValueIndex == varValue.length()){
-                varValue = null;
+            if (pos == limit && !fill())
+            {
+                break;
+            }
+
+            // copy up to the next variable reference
+            int start = pos;
+            int end = Math.min(limit, pos + len - charsRead);
+            while (pos < end && buffer[pos] != variable_start)
+            {
+                ++pos;
+            }
+            System.arraycopy(buffer, start, cbuf, off + charsRead, pos - start);
+            charsRead += pos - start;
+
+            if (pos < end)
+            {
+                ++pos;
+                Object reference = parseReference();
+                varValue = (reference instanceof VariableTemplate.Reference)
+                        ? ((VariableTemplate.Reference) reference).resolve(variables, type)
+                        : (String) reference;
                 varValueIndex = 0;
+                if (varValue.length() == 0)
+                {
+                    varValue = null;
+                }
             }
         }
+        return (charsRead == 0 && len > 0) ? -1 : charsRead;
+    }
 
-        int data = pushbackReader.read();
-        if(data != variable_start) return data;
-
-        data = pushbackReader.read();
+    /**
+     * Parses a variable reference, following a variable start character.
+     *
+     * @return the {@link VariableTemplate.Reference} if the reference can be resolved, otherwise the text of the
+     *         reference, to be output as is
+     * @throws IOException for any I/O error
+     */
+    Object parseReference() throws IOException
+    {
+        boolean inBraces = false;
+        int data = next();
         if (data == '{')
         {
             inBraces = true;
         }
         else if (bracesRequired)
         {
-            pushbackReader.unread(data);
-            return variable_start;
+            unread(data);
+            return String.valueOf(variable_start);
         }
 
-        varNameBuffer.delete(0, varNameBuffer.length());
+        varNameBuffer.setLength(0);
 
         if (!inBraces && data != -1)
         {
             varNameBuffer.append((char) data);
         }
 
-        data = pushbackReader.read();
+        data = next();
         while (
                 data >= ' ' && (inBraces && data != '}')
                 || (inBraces && ((data == '[') || (data == ']')))
@@ -152,104 +221,113 @@ public class VariableSubstitutorReader extends Reader
         )
         {
             varNameBuffer.append((char) data);
-            data = pushbackReader.read();
+            data = next();
         }
 
         String name = varNameBuffer.toString();
-        if (
-                ( (!inBraces || data == '}') && (!inBraces || variable_end == '\0' || variable_end == data) )
-                && name.length() > 0
-                )
-        {
-            // check for environment variables
-            if (inBraces && name.startsWith("ENV[")
-                    && (name.lastIndexOf(']') == name.length() - 1))
-            {
-                varValue = IoHelper.getenv(name.substring(4, name.length() - 1));
-                if (varValue == null)
-                {
-                    varValue = "";
-                }
-            }
-            else if (inBraces && name.startsWith("SYSTEM[")
-                    && (name.lastIndexOf(']') == name.length() - 1))
-            {
-                varValue = System.getProperty(name.substring(7, name.length() - 1));
-            }
-            // TODO: Compatibility mode - to be removed in future
-            else if (inBraces && name.startsWith("SYSTEM_") && name.length() > 7)
-            {
-                varValue = System.getProperty(name.substring(7).replace('_', '.'));
-            }
-            else
-            {
-                varValue = variables.get(name);
-            }
-        }
+        boolean resolvable = ( (!inBraces || data == '}') && (!inBraces || variable_end == '\0' || variable_end == data) )
+                && name.length() > 0;
 
         boolean unclosedBraces = false;
         if (data <= ' ')
         {
-            if (data != -1)
-            {
-                pushbackReader.unread(data);
-            }
+            unread(data);
             unclosedBraces = true;
         } else if (
                 (data == variable_start && variable_start != variable_end)
                 || (!isAllowedCharInVariableName(data) && data != '}' && data != variable_end)
                 )
         {
-            pushbackReader.unread(data);
+            unread(data);
         }
 
-        if(varValue == null)
-        {
-            varValue = variable_start
-                    + (inBraces ? "{" : "")
-                    + varNameBuffer.toString()
-                    + (inBraces && !unclosedBraces ? "}" : "")
-                    + (variable_end == '\0' ? "" : variable_end);
-        }
-        else
-        {
-            varValue = escapeSpecialChars(varValue);
-        }
-
-        inBraces = false;
+        // the text output if the variable is undefined
+        String text = variable_start
+                + (inBraces ? "{" : "")
+                + name
+                + (inBraces && !unclosedBraces ? "}" : "")
+                + (variable_end == '\0' ? "" : variable_end);
+        return resolvable ? new VariableTemplate.Reference(name, inBraces, text) : text;
+    }
 
-        if(varValue.length() == 0){
-            return read();
+    /**
+     * Reads text up to the next variable start character, or the end of the source.
+     *
+     * @param text the buffer to append the text to
+     * @return {@code true} if a variable start character was read, {@code false} if the end of the source was reached
+     * @throws IOException for any I/O error
+     */
+    boolean readText(StringBuilder text) throws IOException
+    {
+        while (pos < limit || fill())
+        {
+            int start = pos;
+            while (pos < limit && buffer[pos] != variable_start)
+            {
+                ++pos;
+            }
+            text.append(buffer, start, pos - start);
+            if (pos < limit)
+            {
+                ++pos;
+                return true;
+            }
         }
+        return false;
+    }
 
-        return varValue.charAt(varValueIndex++);
+    /**
+     * Reads the next character from the source.
+     *
+     * @return the next character, or {@code -1} if the end of the source has been reached
+     * @throws IOException for any I/O error
+     */
+    private int next() throws IOException
+    {
+        return (pos < limit || fill()) ? buffer[pos++] : -1;
     }
 
-    @Override
-    public int read(char cbuf[]) throws IOException {
-        return read(cbuf, 0, cbuf.length);
+    /**
+     * Pushes back the last character returned by {@link #next()}.
+     *
+     * @param data the character, or {@code -1} if the end of the source was reached
+     */
+    private void unread(int data)
+    {
+        if (data != -1)
+        {
+            --pos;
+        }
     }
 
-    @Override
-    public int read(char cbuf[], int off, int len) throws IOException {
-        int charsRead = 0;
-        for(int i=0; i<len; i++){
-            int nextChar = read();
-            if(nextChar == -1) {
-                if(charsRead == 0){
-                    charsRead = -1;
-                }
-                break;
+    /**
+     * Refills the buffer from the source, once it has been consumed.
+     *
+     * @return {@code true} if characters were read, {@code false} if the end of the source has been reached
+     * @throws IOException for any I/O error
+     */
+    private boolean fill() throws IOException
+    {
+        while (!eof)
+        {
+            int count = source.read(buffer, 0, buffer.length);
+            if (count == -1)
+            {
+                eof = true;
+            }
+            else if (count > 0)
+            {
+                pos = 0;
+                limit = count;
+                return true;
             }
-            charsRead = i + 1;
-            cbuf[off + i] = (char) nextChar;
         }
-        return charsRead;
+        return false;
     }
 
     @Override
     public void close() throws IOException {
-        this.pushbackReader.close();
+        this.source.close();
     }
 
     @Override
@@ -259,7 +337,7 @@ public class VariableSubstitutorReader extends Reader
 
     @Override
     public boolean ready() throws IOException {
-        return this.pushbackReader.ready();
+        return varValue != null || pos < limit || this.source.ready();
     }
 
     @Override
@@ -277,6 +355,36 @@ public class VariableSubstitutorReader extends Reader
         throw new RuntimeException("Operation Not Supported");
     }
 
+    /**
+     * Returns the character which starts a variable reference.
+     *
+     * @param type the substitution type. May be {@code null}
+     * @return the variable start character
+     */
+    static char getVariableStart(SubstitutionType type)
+    {
+        if (type == SubstitutionType.TYPE_SHELL)
+        {
+            return '%';
+        }
+        else if (type == SubstitutionType.TYPE_AT || type == SubstitutionType.TYPE_ANT)
+        {
+            return '@';
+        }
+        return '$';
+    }
+
+    /**
+     * Returns the character which ends a variable reference.
+     *
+     * @param type the substitution type. May be {@code null}
+     * @return the variable end character, or <tt>'\0'</tt> if references aren't terminated
+     */
+    static char getVariableEnd(SubstitutionType type)
+    {
+        return type == SubstitutionType.TYPE_ANT ? '@' : '\0';
+    }
+
 
     private static boolean isAllowedCharInVariableName(int c)
     {
@@ -292,9 +400,10 @@ public class VariableSubstitutorReader extends Reader
      * Escapes the special characters in the specified string using file type specific rules.
      *
      * @param str  the string to check for special characters
+     * @param type the substitution type. May be {@code null}
      * @return the string with the special characters properly escaped
      */
-    private String escapeSpecialChars(String str)
+    static String escapeSpecialChars(String str, SubstitutionType type)
     {
         StringBuffer buffer;
         int len;
@@ -0,0 +1,312 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.substitutor;
+
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.api.substitutor.SubstitutionType;
+import com.izforge.izpack.util.IoHelper;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A string compiled into literal text and variable references, so that it can be substituted repeatedly without
+ * being re-parsed.
+ * <p/>
+ * Templates are parsed by {@link VariableSubstitutorReader}, so substituting a template gives the same result as
+ * reading the string through a <tt>VariableSubstitutorReader</tt>.
+ */
+class VariableTemplate
+{
+    /**
+     * The maximum length of a string whose template will be cached.
+     */
+    private static final int MAX_CACHED_LENGTH = 4096;
+
+    /**
+     * The maximum no. of cached templates.
+     */
+    private static final int MAX_CACHED = 1024;
+
+    /**
+     * The cached templates, in least recently used order.
+     */
+    private static final Map<Key, VariableTemplate> cache = new LinkedHashMap<Key, VariableTemplate>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, VariableTemplate> eldest)
+        {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    /**
+     * The segments. Each is either a literal string, or a {@link Reference}.
+     */
+    private final Object[] segments;
+
+    /**
+     * Constructs a <tt>VariableTemplate</tt>.
+     *
+     * @param segments the segments
+     */
+    private VariableTemplate(Object[] segments)
+    {
+        this.segments = segments;
+    }
+
+    /**
+     * Returns the template for a string, compiling it if it isn't cached.
+     *
+     * @param str            the string
+     * @param type           the substitution type. May be {@code null}
+     * @param bracesRequired whether braces are required for substitution
+     * @return the template
+     * @throws IOException for any I/O error
+     */
+    public static VariableTemplate get(String str, SubstitutionType type, boolean bracesRequired) throws IOException
+    {
+        if (str.length() > MAX_CACHED_LENGTH)
+        {
+            return compile(str, type, bracesRequired);
+        }
+        Key key = new Key(str, type, bracesRequired);
+        VariableTemplate result;
+        synchronized (cache)
+        {
+            result = cache.get(key);
+        }
+        if (result == null)
+        {
+            result = compile(str, type, bracesRequired);
+            synchronized (cache)
+            {
+                cache.put(key, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Compiles a string.
+     *
+     * @param str            the string
+     * @param type           the substitution type. May be {@code null}
+     * @param bracesRequired whether braces are required for substitution
+     * @return the template
+     * @throws IOException for any I/O error
+     */
+    public static VariableTemplate compile(String str, SubstitutionType type, boolean bracesRequired)
+            throws IOException
+    {
+        VariableSubstitutorReader reader = new VariableSubstitutorReader(new StringReader(str), null, type,
+                                                                         bracesRequired);
+        List<Object> segments = new ArrayList<Object>();
+        StringBuilder text = new StringBuilder();
+        while (reader.readText(text))
+        {
+            Object reference = reader.parseReference();
+            if (reference instanceof Reference)
+            {
+                if (text.length() > 0)
+                {
+                    segments.add(text.toString());
+                    text.setLength(0);
+                }
+                segments.add(reference);
+            }
+            else
+            {
+                text.append((String) reference);
+            }
+        }
+        if (text.length() > 0)
+        {
+            segments.add(text.toString());
+        }
+        return new VariableTemplate(segments.toArray());
+    }
+
+    /**
+     * Substitutes variables into the template.
+     *
+     * @param variables the variables
+     * @param type      the substitution type, used to escape variable values. May be {@code null}
+     * @return the substituted string
+     */
+    public String substitute(Variables variables, SubstitutionType type)
+    {
+        if (segments.length == 1 && segments[0] instanceof String)
+        {
+            return (String) segments[0];
+        }
+        StringBuilder result = new StringBuilder();
+        for (Object segment : segments)
+        {
+            if (segment instanceof Reference)
+            {
+                result.append(((Reference) segment).resolve(variables, type));
+            }
+            else
+            {
+                result.append((String) segment);
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * A variable reference.
+     */
+    static class Reference
+    {
+        /**
+         * Reference to an environment variable.
+         */
+        private static final int ENV = 1;
+
+        /**
+         * Reference to a system property.
+         */
+        private static final int SYSTEM = 2;
+
+        /**
+         * Reference to an IzPack variable.
+         */
+        private static final int VARIABLE = 3;
+
+        /**
+         * The reference kind.
+         */
+        private final int kind;
+
+        /**
+         * The variable, environment variable or system property name.
+         */
+        private final String name;
+
+        /**
+         * The text of the reference, output if the variable is undefined.
+         */
+        private final String text;
+
+        /**
+         * Constructs a <tt>Reference</tt>.
+         *
+         * @param name     the referenced name
+         * @param inBraces determines if the name was enclosed in braces
+         * @param text     the text of the reference
+         */
+        public Reference(String name, boolean inBraces, String text)
+        {
+            this.text = text;
+            if (inBraces && name.startsWith("ENV[") && (name.lastIndexOf(']') == name.length() - 1))
+            {
+                kind = ENV;
+                this.name = name.substring(4, name.length() - 1);
+            }
+            else if (inBraces && name.startsWith("SYSTEM[") && (name.lastIndexOf(']') == name.length() - 1))
+            {
+                kind = SYSTEM;
+                this.name = name.substring(7, name.length() - 1);
+            }
+            // TODO: Compatibility mode - to be removed in future
+            else if (inBraces && name.startsWith("SYSTEM_") && name.length() > 7)
+            {
+                kind = SYSTEM;
+                this.name = name.substring(7).replace('_', '.');
+            }
+            else
+            {
+                kind = VARIABLE;
+                this.name = name;
+            }
+        }
+
+        /**
+         * Resolves the reference.
+         *
+         * @param variables the variables
+         * @param type      the substitution type, used to escape the value. May be {@code null}
+         * @return the escaped value, or the text of the reference if the variable is undefined
+         */
+        public String resolve(Variables variables, SubstitutionType type)
+        {
+            String value;
+            switch (kind)
+            {
+                case ENV:
+                    value = IoHelper.getenv(name);
+                    if (value == null)
+                    {
+                        value = "";
+                    }
+                    break;
+                case SYSTEM:
+                    value = System.getProperty(name);
+                    break;
+                default:
+                    value = variables.get(name);
+            }
+            return (value != null) ? VariableSubstitutorReader.escapeSpecialChars(value, type) : text;
+        }
+    }
+
+    /**
+     * Template cache key.
+     */
+    private static class Key
+    {
+        private final String str;
+
+        private final SubstitutionType type;
+
+        private final boolean bracesRequired;
+
+        Key(String str, SubstitutionType type, boolean bracesRequired)
+        {
+            this.str = str;
+            this.type = (type != null) ? type : SubstitutionType.getDefault();
+            this.bracesRequired = bracesRequired;
+        }
+
+        @Override
+        public boolean equals(Object other)
+        {
+            if (!(other instanceof Key))
+            {
+                return false;
+            }
+            Key key = (Key) other;
+            return str.equals(key.str) && type == key.type && bracesRequired == key.bracesRequired;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return str.hashCode() * 31 + type.hashCode() + (bracesRequired ? 1 : 0);
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.verify;
+
+import com.izforge.izpack.api.data.PackFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * The files installed by each pack, and the digests of their content recorded at compile time.
+ * <p/>
+ * The installer records the manifest in the uninstaller jar, so that an installation can be verified by the
+ * uninstaller. It can also be built from the pack information in the installer jar.
+ *
+ * @see InstallationVerifier
+ */
+public class InstallationManifest implements Serializable
+{
+    private static final long serialVersionUID = 2867163154512473618L;
+
+    /**
+     * The name of the manifest resource in the uninstaller jar.
+     */
+    public static final String RESOURCE = "installationmanifest";
+
+    /**
+     * The installed files, keyed on pack name and then path.
+     */
+    private final Map<String, Map<String, Entry>> packs = new LinkedHashMap<String, Map<String, Entry>>();
+
+    /**
+     * Adds an installed file.
+     * <p/>
+     * This replaces any existing entry for the same file in the pack.
+     *
+     * @param pack   the pack name
+     * @param path   the absolute path of the installed file
+     * @param length the file length
+     * @param digest the {@link PackFile#DIGEST_ALGORITHM} digest of the file content, or {@code null} if the content
+     *               can't be verified, in which case only the existence of the file is checked
+     */
+    public void add(String pack, String path, long length, byte[] digest)
+    {
+        Map<String, Entry> entries = packs.get(pack);
+        if (entries == null)
+        {
+            entries = new LinkedHashMap<String, Entry>();
+            packs.put(pack, entries);
+        }
+        entries.put(path, new Entry(path, length, digest));
+    }
+
+    /**
+     * Adds a file that may not have been installed, such as a file installed subject to a condition.
+     * <p/>
+     * Only the existence of the file is checked, and it isn't reported if it is missing.
+     *
+     * @param pack the pack name
+     * @param path the absolute path of the file
+     */
+    public void addOptional(String pack, String path)
+    {
+        Map<String, Entry> entries = packs.get(pack);
+        if (entries == null)
+        {
+            entries = new LinkedHashMap<String, Entry>();
+            packs.put(pack, entries);
+        }
+        entries.put(path, new Entry(path, -1, null, true));
+    }
+
+    /**
+     * Excludes the content of an installed file from verification, for files modified after they are installed.
+     *
+     * @param pack the pack name
+     * @param path the absolute path of the installed file
+     */
+    public void uncheck(String pack, String path)
+    {
+        Map<String, Entry> entries = packs.get(pack);
+        if (entries != null && entries.containsKey(path))
+        {
+            entries.put(path, new Entry(path, -1, null, entries.get(path).isOptional()));
+        }
+    }
+
+    /**
+     * Removes an installed file, for files deleted after they are installed.
+     *
+     * @param pack the pack name
+     * @param path the absolute path of the installed file
+     */
+    public void remove(String pack, String path)
+    {
+        Map<String, Entry> entries = packs.get(pack);
+        if (entries != null)
+        {
+            entries.remove(path);
+        }
+    }
+
+    /**
+     * Returns the names of the packs, in installation order.
+     *
+     * @return the pack names
+     */
+    public List<String> getPacks()
+    {
+        return new ArrayList<String>(packs.keySet());
+    }
+
+    /**
+     * Returns the files installed by a pack.
+     *
+     * @param pack the pack name
+     * @return the installed files
+     */
+    public List<Entry> getEntries(String pack)
+    {
+        Map<String, Entry> entries = packs.get(pack);
+        return (entries != null) ? new ArrayList<Entry>(entries.values()) : Collections.<Entry>emptyList();
+    }
+
+    /**
+     * Returns the no. of installed files.
+     *
+     * @return the no. of installed files
+     */
+    public int size()
+    {
+        int result = 0;
+        for (Map<String, Entry> entries : packs.values())
+        {
+            result += entries.size();
+        }
+        return result;
+    }
+
+    /**
+     * Reads a manifest written by {@link java.io.ObjectOutputStream}, as the uninstaller jar resources are.
+     *
+     * @param in the stream to read
+     * @return the manifest
+     * @throws IOException if the manifest cannot be read
+     */
+    public static InstallationManifest read(InputStream in) throws IOException
+    {
+        ObjectInputStream objectIn = new ObjectInputStream(in);
+        try
+        {
+            return (InstallationManifest) objectIn.readObject();
+        }
+        catch (ClassNotFoundException exception)
+        {
+            throw new IOException("Failed to read installation manifest", exception);
+        }
+    }
+
+    /**
+     * An installed file.
+     */
+    public static class Entry implements Serializable
+    {
+        private static final long serialVersionUID = -3502281771426633474L;
+
+        /**
+         * The absolute path of the file.
+         */
+        private final String path;
+
+        /**
+         * The file length, or {@code -1} if it isn't checked.
+         */
+        private final long length;
+
+        /**
+         * The digest of the file content, or {@code null} if it isn't checked.
+         */
+        private final byte[] digest;
+
+        /**
+         * Determines if the file may not have been installed.
+         */
+        private final boolean optional;
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param path   the absolute path of the file
+         * @param length the file length
+         * @param digest the digest of the file content. May be {@code null}
+         */
+        public Entry(String path, long length, byte[] digest)
+        {
+            this(path, length, digest, false);
+        }
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param path     the absolute path of the file
+         * @param length   the file length
+         * @param digest   the digest of the file content. May be {@code null}
+         * @param optional if {@code true}, the file may not have been installed
+         */
+        public Entry(String path, long length, byte[] digest, boolean optional)
+        {
+            this.path = path;
+            this.length = (digest != null) ? length : -1;
+            this.digest = digest;
+            this.optional = optional;
+        }
+
+        /**
+         * Returns the absolute path of the file.
+         *
+         * @return the path
+         */
+        public String getPath()
+        {
+            return path;
+        }
+
+        /**
+         * Returns the file length.
+         *
+         * @return the file length, or {@code -1} if the content isn't checked
+         */
+        public long getLength()
+        {
+            return length;
+        }
+
+        /**
+         * Returns the digest of the file content.
+         *
+         * @return the digest, or {@code null} if the content isn't checked
+         */
+        public byte[] getDigest()
+        {
+            return digest;
+        }
+
+        /**
+         * Determines if the file may not have been installed.
+         *
+         * @return {@code true} if a missing file isn't reported
+         */
+        public boolean isOptional()
+        {
+            return optional;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.verify;
+
+import com.izforge.izpack.core.verify.InstallationManifest.Entry;
+import com.izforge.izpack.util.file.FileDigest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Verifies installed files against an {@link InstallationManifest}.
+ * <p/>
+ * Files are hashed concurrently. Larger files are read via memory mapping, and are hashed first so that a single
+ * large file doesn't hold up completion.
+ * <p/>
+ * As well as missing and modified files, the files in each directory that a pack installs into are listed, and any
+ * that weren't installed by a pack are reported as extra files.
+ */
+public class InstallationVerifier
+{
+    /**
+     * The status of an installed file.
+     */
+    enum Status
+    {
+        VERIFIED, UNCHECKED, MISSING, MODIFIED, ABSENT
+    }
+
+    /**
+     * The minimum size of a file to read via memory mapping. Smaller files are cheaper to read via a buffer.
+     */
+    private static final long MAP_THRESHOLD = 256 * 1024;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(InstallationVerifier.class.getName());
+
+    /**
+     * The no. of threads to hash files with.
+     */
+    private final int threads;
+
+    /**
+     * Files that are never reported as extra files.
+     */
+    private final Set<File> ignored = new HashSet<File>();
+
+    /**
+     * Constructs an <tt>InstallationVerifier</tt> that uses a thread per processor.
+     */
+    public InstallationVerifier()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Constructs an <tt>InstallationVerifier</tt>.
+     *
+     * @param threads the no. of threads to hash files with
+     */
+    public InstallationVerifier(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Excludes a file from the extra files, for files written by the installer that don't belong to a pack.
+     *
+     * @param file the file to ignore
+     */
+    public void ignore(File file)
+    {
+        ignored.add(file.getAbsoluteFile());
+    }
+
+    /**
+     * Verifies the installed files.
+     *
+     * @param manifest the installed files
+     * @return the verification report
+     * @throws InterruptedException if the verification is interrupted
+     */
+    public VerificationReport verify(InstallationManifest manifest) throws InterruptedException
+    {
+        List<String> packs = manifest.getPacks();
+        List<List<Entry>> entries = new ArrayList<List<Entry>>();
+        List<Check> checks = new ArrayList<Check>();
+        Set<File> installed = new HashSet<File>();
+        for (String pack : packs)
+        {
+            List<Entry> packEntries = manifest.getEntries(pack);
+            entries.add(packEntries);
+            for (Entry entry : packEntries)
+            {
+                File file = new File(entry.getPath()).getAbsoluteFile();
+                installed.add(file);
+                checks.add(new Check(file, entry));
+            }
+        }
+
+        List<Check> ordered = new ArrayList<Check>(checks);
+        Collections.sort(ordered, new Comparator<Check>()
+        {
+            @Override
+            public int compare(Check o1, Check o2)
+            {
+                long length1 = o1.entry.getLength();
+                long length2 = o2.entry.getLength();
+                return (length1 > length2) ? -1 : (length1 < length2) ? 1 : 0;
+            }
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            executor.invokeAll(ordered);
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+
+        VerificationReport report = new VerificationReport();
+        Set<File> listed = new HashSet<File>();
+        int index = 0;
+        for (int i = 0; i < packs.size(); ++i)
+        {
+            VerificationReport.PackReport pack = new VerificationReport.PackReport(packs.get(i));
+            List<File> dirs = new ArrayList<File>();
+            for (int j = 0; j < entries.get(i).size(); ++j)
+            {
+                Check check = checks.get(index++);
+                pack.add(check.file, check.getStatus());
+                File dir = check.file.getParentFile();
+                if (dir != null && listed.add(dir))
+                {
+                    dirs.add(dir);
+                }
+            }
+            for (File dir : dirs)
+            {
+                addExtra(dir, installed, pack);
+            }
+            report.add(pack);
+        }
+        return report;
+    }
+
+    /**
+     * Adds the files in a directory that weren't installed to a pack report.
+     *
+     * @param dir       the directory
+     * @param installed the installed files
+     * @param pack      the pack report
+     */
+    private void addExtra(File dir, Set<File> installed, VerificationReport.PackReport pack)
+    {
+        File[] files = dir.listFiles();
+        if (files != null)
+        {
+            Arrays.sort(files);
+            for (File file : files)
+            {
+                if (file.isFile() && !installed.contains(file) && !ignored.contains(file))
+                {
+                    pack.getExtra().add(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks an installed file.
+     */
+    private static class Check implements Callable<Status>
+    {
+        /**
+         * The installed file.
+         */
+        private final File file;
+
+        /**
+         * The manifest entry.
+         */
+        private final Entry entry;
+
+        /**
+         * The status, or {@code null} if the file hasn't been checked.
+         */
+        private Status status;
+
+        /**
+         * Constructs a <tt>Check</tt>.
+         *
+         * @param file  the installed file
+         * @param entry the manifest entry
+         */
+        public Check(File file, Entry entry)
+        {
+            this.file = file;
+            this.entry = entry;
+        }
+
+        /**
+         * Checks the file.
+         *
+         * @return the file status
+         */
+        @Override
+        public Status call()
+        {
+            if (!file.isFile())
+            {
+                status = entry.isOptional() ? Status.ABSENT : Status.MISSING;
+            }
+            else if (entry.getDigest() == null)
+            {
+                status = Status.UNCHECKED;
+            }
+            else if (file.length() != entry.getLength())
+            {
+                status = Status.MODIFIED;
+            }
+            else
+            {
+                try
+                {
+                    byte[] digest = (entry.getLength() >= MAP_THRESHOLD) ? FileDigest.digestMapped(file)
+                            : FileDigest.digest(file);
+                    status = Arrays.equals(entry.getDigest(), digest) ? Status.VERIFIED : Status.MODIFIED;
+                }
+                catch (IOException exception)
+                {
+                    logger.log(Level.WARNING, "Failed to read " + file + ": " + exception.getMessage(), exception);
+                    status = Status.MODIFIED;
+                }
+            }
+            return status;
+        }
+
+        /**
+         * Returns the file status.
+         *
+         * @return the file status
+         */
+        public Status getStatus()
+        {
+            return status;
+        }
+    }
+}
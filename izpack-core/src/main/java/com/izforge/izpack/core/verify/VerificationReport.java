@@ -0,0 +1,263 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.verify;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * The result of verifying an installation, by pack.
+ *
+ * @see InstallationVerifier
+ */
+public class VerificationReport
+{
+    /**
+     * The pack reports, in installation order.
+     */
+    private final List<PackReport> packs = new ArrayList<PackReport>();
+
+    /**
+     * Returns the pack reports.
+     *
+     * @return the pack reports, in installation order
+     */
+    public List<PackReport> getPacks()
+    {
+        return Collections.unmodifiableList(packs);
+    }
+
+    /**
+     * Determines if the installation is intact.
+     *
+     * @return {@code true} if no pack has missing, modified or extra files
+     */
+    public boolean isValid()
+    {
+        for (PackReport pack : packs)
+        {
+            if (!pack.isValid())
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Prints the report.
+     *
+     * @param out the stream to print to
+     */
+    public void print(PrintStream out)
+    {
+        int missing = 0;
+        int modified = 0;
+        int extra = 0;
+        for (PackReport pack : packs)
+        {
+            out.println("Pack " + pack.getName() + ": " + pack.getVerified() + " files verified, "
+                                + pack.getUnchecked() + " files present but not checked");
+            print(out, "missing", pack.getMissing());
+            print(out, "modified", pack.getModified());
+            print(out, "extra", pack.getExtra());
+            missing += pack.getMissing().size();
+            modified += pack.getModified().size();
+            extra += pack.getExtra().size();
+        }
+        out.println((isValid() ? "Installation verified: " : "Installation NOT verified: ") + missing + " missing, "
+                            + modified + " modified, " + extra + " extra files");
+    }
+
+    /**
+     * Adds a pack report.
+     *
+     * @param pack the pack report
+     */
+    void add(PackReport pack)
+    {
+        packs.add(pack);
+    }
+
+    /**
+     * Prints files.
+     *
+     * @param out    the stream to print to
+     * @param status the status of the files
+     * @param files  the files
+     */
+    private void print(PrintStream out, String status, List<File> files)
+    {
+        for (File file : files)
+        {
+            out.println("  " + status + ": " + file.getPath());
+        }
+    }
+
+    /**
+     * The result of verifying the files of a pack.
+     */
+    public static class PackReport
+    {
+        /**
+         * The pack name.
+         */
+        private final String name;
+
+        /**
+         * The no. of files whose content was verified.
+         */
+        private int verified;
+
+        /**
+         * The no. of files that exist, but whose content isn't checked.
+         */
+        private int unchecked;
+
+        /**
+         * The missing files.
+         */
+        private final List<File> missing = new ArrayList<File>();
+
+        /**
+         * The files whose content differs from that installed.
+         */
+        private final List<File> modified = new ArrayList<File>();
+
+        /**
+         * The files in the pack's directories that weren't installed by any pack.
+         */
+        private final List<File> extra = new ArrayList<File>();
+
+        /**
+         * Constructs a <tt>PackReport</tt>.
+         *
+         * @param name the pack name
+         */
+        PackReport(String name)
+        {
+            this.name = name;
+        }
+
+        /**
+         * Returns the pack name.
+         *
+         * @return the pack name
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Returns the no. of files whose content was verified.
+         *
+         * @return the no. of verified files
+         */
+        public int getVerified()
+        {
+            return verified;
+        }
+
+        /**
+         * Returns the no. of files that exist, but whose content isn't checked.
+         * <p/>
+         * These are files that are modified by the installer, such as parsable files, or that weren't overwritten.
+         *
+         * @return the no. of unchecked files
+         */
+        public int getUnchecked()
+        {
+            return unchecked;
+        }
+
+        /**
+         * Returns the missing files.
+         *
+         * @return the missing files
+         */
+        public List<File> getMissing()
+        {
+            return missing;
+        }
+
+        /**
+         * Returns the files whose content differs from that installed.
+         *
+         * @return the modified files
+         */
+        public List<File> getModified()
+        {
+            return modified;
+        }
+
+        /**
+         * Returns the files in the pack's directories that weren't installed by any pack.
+         *
+         * @return the extra files
+         */
+        public List<File> getExtra()
+        {
+            return extra;
+        }
+
+        /**
+         * Determines if the pack is intact.
+         *
+         * @return {@code true} if the pack has no missing, modified or extra files
+         */
+        public boolean isValid()
+        {
+            return missing.isEmpty() && modified.isEmpty() && extra.isEmpty();
+        }
+
+        /**
+         * Adds the status of a file.
+         *
+         * @param file   the file
+         * @param status the file status
+         */
+        void add(File file, InstallationVerifier.Status status)
+        {
+            switch (status)
+            {
+                case VERIFIED:
+                    ++verified;
+                    break;
+                case UNCHECKED:
+                    ++unchecked;
+                    break;
+                case MISSING:
+                    missing.add(file);
+                    break;
+                case MODIFIED:
+                    modified.add(file);
+                    break;
+                case ABSENT:
+                    // an optional file that wasn't installed
+                    break;
+            }
+        }
+    }
+}
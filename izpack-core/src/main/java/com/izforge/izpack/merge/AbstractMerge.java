@@ -21,8 +21,11 @@ package com.izforge.izpack.merge;
 
 import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.izforge.izpack.api.merge.Mergeable;
 
@@ -40,8 +43,104 @@ public abstract class AbstractMerge implements Mergeable
     {
         if (!mergeContent.containsKey(outputStream))
         {
-            mergeContent.put(outputStream, new ArrayList<String>());
+            mergeContent.put(outputStream, new MergeList());
         }
         return mergeContent.get(outputStream);
     }
+
+    /**
+     * List of merged entry names.
+     * <p/>
+     * Every merged entry is checked against this list, so it is backed by a set to avoid a linear search for each
+     * entry.
+     */
+    private static class MergeList extends ArrayList<String>
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Set<String> names = new HashSet<String>();
+
+        @Override
+        public boolean add(String name)
+        {
+            names.add(name);
+            return super.add(name);
+        }
+
+        @Override
+        public void add(int index, String name)
+        {
+            names.add(name);
+            super.add(index, name);
+        }
+
+        @Override
+        public boolean addAll(Collection<? extends String> c)
+        {
+            names.addAll(c);
+            return super.addAll(c);
+        }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            return names.contains(o);
+        }
+
+        @Override
+        public String set(int index, String name)
+        {
+            String result = super.set(index, name);
+            rebuild();
+            return result;
+        }
+
+        @Override
+        public String remove(int index)
+        {
+            String result = super.remove(index);
+            rebuild();
+            return result;
+        }
+
+        @Override
+        public boolean remove(Object o)
+        {
+            boolean result = super.remove(o);
+            rebuild();
+            return result;
+        }
+
+        @Override
+        public boolean removeAll(Collection<?> c)
+        {
+            boolean result = super.removeAll(c);
+            rebuild();
+            return result;
+        }
+
+        @Override
+        public boolean retainAll(Collection<?> c)
+        {
+            boolean result = super.retainAll(c);
+            rebuild();
+            return result;
+        }
+
+        @Override
+        public void clear()
+        {
+            super.clear();
+            names.clear();
+        }
+
+        /**
+         * Rebuilds the set of names after a removal or replacement, as the list may contain duplicates.
+         */
+        private void rebuild()
+        {
+            names.clear();
+            names.addAll(this);
+        }
+    }
 }
@@ -0,0 +1,219 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.merge.jar;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+
+/**
+ * An index of the entry names in a jar.
+ * <p/>
+ * Indexes are shared by all {@link JarMerge}s that refer to the same jar, so that the jar's entries are only read
+ * once, no matter how many packages or files are merged from it. Names are held sorted, so that the entries
+ * starting with a prefix can be found with a binary search, rather than a scan of every entry.
+ */
+class JarIndex
+{
+    /**
+     * The maximum no. of cached indexes.
+     */
+    private static final int MAX_CACHED = 64;
+
+    /**
+     * The cached indexes, keyed on jar path, in least recently used order.
+     */
+    private static final Map<String, JarIndex> cache = new LinkedHashMap<String, JarIndex>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, JarIndex> eldest)
+        {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    /**
+     * The entry names, in jar order.
+     */
+    private final List<String> names;
+
+    /**
+     * The positions of the entries in {@link #names}, ordered on entry name.
+     */
+    private final Integer[] sorted;
+
+    /**
+     * The jar last modified time, when it was indexed.
+     */
+    private final long lastModified;
+
+    /**
+     * The jar length, when it was indexed.
+     */
+    private final long length;
+
+    /**
+     * Constructs a <tt>JarIndex</tt>.
+     *
+     * @param file the jar file
+     * @throws IOException for any I/O error
+     */
+    private JarIndex(File file) throws IOException
+    {
+        lastModified = file.lastModified();
+        length = file.length();
+
+        List<String> list = new ArrayList<String>();
+        JarFile jarFile = new JarFile(file);
+        try
+        {
+            Enumeration<JarEntry> entries = jarFile.entries();
+            while (entries.hasMoreElements())
+            {
+                list.add(entries.nextElement().getName());
+            }
+        }
+        finally
+        {
+            jarFile.close();
+        }
+        names = Collections.unmodifiableList(list);
+
+        sorted = new Integer[list.size()];
+        for (int i = 0; i < sorted.length; ++i)
+        {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer o1, Integer o2)
+            {
+                return names.get(o1).compareTo(names.get(o2));
+            }
+        });
+    }
+
+    /**
+     * Returns the index for a jar.
+     * <p/>
+     * A cached index is returned if the jar hasn't changed since it was indexed.
+     *
+     * @param jarPath the jar path
+     * @return the index
+     * @throws IOException for any I/O error
+     */
+    public static JarIndex get(String jarPath) throws IOException
+    {
+        File file = new File(jarPath);
+        JarIndex result;
+        synchronized (cache)
+        {
+            result = cache.get(jarPath);
+        }
+        if (result == null || result.lastModified != file.lastModified() || result.length != file.length())
+        {
+            result = new JarIndex(file);
+            synchronized (cache)
+            {
+                cache.put(jarPath, result);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the names of all entries in the jar.
+     *
+     * @return the entry names, in jar order
+     */
+    public List<String> getNames()
+    {
+        return names;
+    }
+
+    /**
+     * Returns the names of the entries that start with a prefix.
+     *
+     * @param prefix the prefix
+     * @return the entry names, in jar order
+     */
+    public List<String> getNames(String prefix)
+    {
+        if (prefix.length() == 0)
+        {
+            return names;
+        }
+        int first = lowerBound(prefix);
+        int last = first;
+        while (last < sorted.length && names.get(sorted[last]).startsWith(prefix))
+        {
+            ++last;
+        }
+        int[] positions = new int[last - first];
+        for (int i = first; i < last; ++i)
+        {
+            positions[i - first] = sorted[i];
+        }
+        Arrays.sort(positions);
+
+        List<String> result = new ArrayList<String>(positions.length);
+        for (int position : positions)
+        {
+            result.add(names.get(position));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the position in {@link #sorted} of the first name not less than the specified name.
+     *
+     * @param name the name
+     * @return the position of the first name greater than or equal to {@code name}
+     */
+    private int lowerBound(String name)
+    {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high)
+        {
+            int mid = (low + high) >>> 1;
+            if (names.get(sorted[mid]).compareTo(name) < 0)
+            {
+                low = mid + 1;
+            }
+            else
+            {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
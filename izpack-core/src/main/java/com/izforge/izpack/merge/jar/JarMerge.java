@@ -28,7 +28,6 @@ import com.izforge.izpack.util.IoHelper;
 import java.io.*;
 import java.net.URL;
 import java.util.ArrayList;
-import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
 import java.util.jar.JarEntry;
@@ -44,11 +43,26 @@ import java.util.zip.ZipOutputStream;
  */
 public class JarMerge extends AbstractMerge
 {
+    /**
+     * Matches signature files.
+     */
+    private static final Pattern SIGNATURE = Pattern.compile("/?META-INF/.*\\.(SF|DSA|RSA)|/?META-INF/SIG-.*");
+
+    /**
+     * Characters that have a special meaning in regular expressions.
+     */
+    private static final String REGEXP_META_CHARS = "\\.[]{}()<>*+-=!?^$|";
+
     private final String jarPath;
 
     private final String regexp;
     private final String destination;
 
+    /**
+     * The compiled {@link #regexp}.
+     */
+    private final Pattern pattern;
+
 
     /**
      * Create a new JarMerge with a destination
@@ -77,6 +91,7 @@ public class JarMerge extends AbstractMerge
             builder.append("/*(.*)");
         }
         regexp = builder.toString();
+        pattern = Pattern.compile(regexp);
     }
 
     /**
@@ -103,6 +118,7 @@ public class JarMerge extends AbstractMerge
             builder.append("/*(.*)");
         }
         regexp = builder.toString();
+        pattern = Pattern.compile(regexp);
     }
 
 
@@ -110,7 +126,7 @@ public class JarMerge extends AbstractMerge
     {
         try
         {
-            ArrayList<String> fileNameInZip = getFileNameInJar();
+            List<String> fileNameInZip = getFileNameInJar();
             for (String fileName : fileNameInZip)
             {
                 File file = new File(jarPath + "!/" + fileName);
@@ -131,7 +147,7 @@ public class JarMerge extends AbstractMerge
     {
         try
         {
-            ArrayList<String> fileNameInZip = getFileNameInJar();
+            List<String> fileNameInZip = getFileNameInJar();
             ArrayList<File> result = new ArrayList<File>();
             ArrayList<File> filteredResult = new ArrayList<File>();
             for (String fileName : fileNameInZip)
@@ -153,17 +169,9 @@ public class JarMerge extends AbstractMerge
         }
     }
 
-    private ArrayList<String> getFileNameInJar() throws IOException
+    private List<String> getFileNameInJar() throws IOException
     {
-        JarFile jarFile = new JarFile(jarPath);
-        ArrayList<String> arrayList = new ArrayList<String>();
-        Enumeration<JarEntry> jarEntries = jarFile.entries();
-        while (jarEntries.hasMoreElements())
-        {
-            JarEntry jarEntry = jarEntries.nextElement();
-            arrayList.add(jarEntry.getName());
-        }
-        return arrayList;
+        return JarIndex.get(jarPath).getNames();
     }
 
 
@@ -174,33 +182,27 @@ public class JarMerge extends AbstractMerge
 
     private void mergeImpl(OutputStream outputStream)
     {
-        Pattern pattern = Pattern.compile(regexp);
         List<String> mergeList = getMergeList(outputStream);
         JarFile jarFile = null;
-        JarEntry jarEntry;
         try
         {
-            jarFile = new JarFile(jarPath);
-            Enumeration<JarEntry> jarFileEntries = jarFile.entries();
-
-            while (jarFileEntries.hasMoreElements())
+            // only the entries starting with the literal part of the regexp can match it
+            for (String name : JarIndex.get(jarPath).getNames(getLiteralPrefix(regexp)))
             {
-                jarEntry = jarFileEntries.nextElement();
-
-                if (isManifest(jarEntry.getName())) {
+                if (isManifest(name)) {
                     // Skip the JAR's manifest file to avoid
                     // overwriting it in the target JAR
                     continue;
                 }
 
-                Matcher matcher = pattern.matcher(jarEntry.getName());
-                if (matcher.matches() && !isSignature(jarEntry.getName()))
+                Matcher matcher = pattern.matcher(name);
+                if (matcher.matches() && !isSignature(name))
                 {
-                    if (mergeList.contains(jarEntry.getName()))
+                    if (mergeList.contains(name))
                     {
                         continue;
                     }
-                    mergeList.add(jarEntry.getName());
+                    mergeList.add(name);
 
                     String matchFile = matcher.group(1);
                     StringBuilder dest = new StringBuilder(destination);
@@ -213,6 +215,11 @@ public class JarMerge extends AbstractMerge
                         dest.append(matchFile);
                     }
 
+                    if (jarFile == null)
+                    {
+                        jarFile = new JarFile(jarPath);
+                    }
+                    JarEntry jarEntry = jarFile.getJarEntry(name);
                     InputStream inputStream = jarFile.getInputStream(jarEntry);
                     IoHelper.copyStreamToJar(inputStream, (java.util.zip.ZipOutputStream) outputStream, dest.toString().replaceAll("//", "/"),
                             jarEntry.getTime());
@@ -235,6 +242,31 @@ public class JarMerge extends AbstractMerge
         }
     }
 
+    /**
+     * Returns the literal text at the start of a regular expression.
+     *
+     * @param regexp the regular expression
+     * @return the text before the first character with a special meaning
+     */
+    private static String getLiteralPrefix(String regexp)
+    {
+        if (regexp.indexOf('|') != -1)
+        {
+            return "";
+        }
+        int i = 0;
+        while (i < regexp.length() && REGEXP_META_CHARS.indexOf(regexp.charAt(i)) == -1)
+        {
+            ++i;
+        }
+        if (i < regexp.length() && "*+?{".indexOf(regexp.charAt(i)) != -1 && i > 0)
+        {
+            // the preceding character is quantified, so may not be present
+            --i;
+        }
+        return regexp.substring(0, i);
+    }
+
     @Override
     public String toString()
     {
@@ -279,7 +311,7 @@ public class JarMerge extends AbstractMerge
      */
     private boolean isSignature(String name)
     {
-        return name.matches("/?META-INF/.*\\.(SF|DSA|RSA)") || name.matches("/?META-INF/SIG-.*");
+        return SIGNATURE.matcher(name).matches();
     }
 
     /**
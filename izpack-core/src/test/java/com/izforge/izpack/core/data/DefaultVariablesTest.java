@@ -593,6 +593,56 @@ public class DefaultVariablesTest
         assertEquals("empty value with spaces in ini", "", variables.get("var5"));
     }
 
+    /**
+     * Verifies that a dynamic variable read from a configuration file is only re-evaluated when the file, or a
+     * variable it references, changes.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testConfigFileReevaluatedOnChange() throws IOException
+    {
+        File dir = rootFolder.newFolder("config");
+        File file = new File(dir, "test.ini");
+        FileUtils.writeStringToFile(file, "[section]\nkey1=aaa\nkey2=bbb\n");
+        long modified = file.lastModified();
+
+        variables.set("config.dir", dir.getPath());
+        variables.set("key", "key1");
+        variables.add(createDynamicFromIni("var1", "${config.dir}/test.ini", "section", "${key}", true));
+        variables.add(createDynamic("var2", "${var1}-suffix"));
+        variables.refresh();
+        assertEquals("aaa", variables.get("var1"));
+        assertEquals("aaa-suffix", variables.get("var2"));
+
+        // change the content without changing the length or modification time. The cached value is used
+        FileUtils.writeStringToFile(file, "[section]\nkey1=ccc\nkey2=ddd\n");
+        assertTrue(file.setLastModified(modified));
+        variables.refresh();
+        assertEquals("aaa", variables.get("var1"));
+        assertEquals("aaa-suffix", variables.get("var2"));
+
+        // change a referenced variable
+        variables.set("key", "key2");
+        variables.refresh();
+        assertEquals("ddd", variables.get("var1"));
+        assertEquals("ddd-suffix", variables.get("var2"));
+
+        // change the file
+        FileUtils.writeStringToFile(file, "[section]\nkey1=ccc\nkey2=eee\n");
+        assertTrue(file.setLastModified(modified + 10000));
+        variables.refresh();
+        assertEquals("eee", variables.get("var1"));
+        assertEquals("eee-suffix", variables.get("var2"));
+
+        // remove the file. var1 is unset at the end of the refresh, so var2 only picks it up on the next one
+        assertTrue(file.delete());
+        variables.refresh();
+        assertNull(variables.get("var1"));
+        variables.refresh();
+        assertEquals("${var1}-suffix", variables.get("var2"));
+    }
+
     /**
      * Test for blocking of dynamic variables
      */
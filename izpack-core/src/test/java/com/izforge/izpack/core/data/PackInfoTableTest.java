@@ -0,0 +1,145 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.data;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.PackInfo;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Tests the {@link PackInfoTable} class.
+ */
+public class PackInfoTableTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that pack headers and file tables are read back as they were written.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReadWrite() throws Exception
+    {
+        List<PackInfo> packs = Arrays.asList(createPack("Core", 3), createPack("Docs", 2));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PackInfoTable.write(packs, out);
+
+        PackInfoTable table = PackInfoTable.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(2, table.size());
+        assertEquals("Core", table.getPacks().get(0).getName());
+        assertEquals("Docs", table.getPacks().get(1).getName());
+        assertEquals(1000, table.getPacks().get(1).getSize());
+
+        PackInfo docs = table.getPackInfo(1);
+        assertEquals("Docs", docs.getPack().getName());
+        List<String> targets = new ArrayList<String>();
+        for (PackFile file : docs.getPackFiles())
+        {
+            targets.add(file.getTargetPath());
+        }
+        assertEquals(Arrays.asList("$INSTALL_PATH/Docs0.txt", "$INSTALL_PATH/Docs1.txt"), targets);
+        assertEquals(3, table.getPackInfo(0).getPackFiles().size());
+    }
+
+    /**
+     * Verifies that metadata written as a serialized list of {@link PackInfo} can be read.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReadLegacy() throws Exception
+    {
+        List<PackInfo> packs = new ArrayList<PackInfo>(Arrays.asList(createPack("Core", 2)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectOutputStream objOut = new ObjectOutputStream(out);
+        objOut.writeObject(packs);
+        objOut.close();
+
+        PackInfoTable table = PackInfoTable.read(new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(1, table.size());
+        assertEquals("Core", table.getPacks().get(0).getName());
+        assertEquals(2, table.getPackInfo(0).getPackFiles().size());
+    }
+
+    /**
+     * Verifies that metadata written by a later format version is rejected.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnsupportedVersion() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PackInfoTable.write(new ArrayList<PackInfo>(), out);
+        byte[] bytes = out.toByteArray();
+        bytes[7] = (byte) (PackInfoTable.VERSION + 1);
+        try
+        {
+            PackInfoTable.read(new ByteArrayInputStream(bytes));
+            fail("Expected read() to fail");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Creates a pack.
+     *
+     * @param name  the pack name
+     * @param files the no. of files to add
+     * @return a new pack
+     * @throws IOException for any I/O error
+     */
+    private PackInfo createPack(String name, int files) throws IOException
+    {
+        PackInfo pack = new PackInfo(name, name, null, true, false, null, true, 1000);
+        for (int i = 0; i < files; ++i)
+        {
+            String fileName = name + i + ".txt";
+            pack.addFile(temporaryFolder.getRoot(), temporaryFolder.newFile(fileName),
+                         "$INSTALL_PATH/" + fileName, null, OverrideType.OVERRIDE_TRUE, null,
+                         Blockable.BLOCKABLE_NONE, null, null, null);
+        }
+        return pack;
+    }
+}
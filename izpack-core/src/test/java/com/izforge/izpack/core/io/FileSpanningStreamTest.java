@@ -25,9 +25,12 @@ package com.izforge.izpack.core.io;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
 import java.util.Random;
 
 import org.junit.Ignore;
@@ -161,6 +164,94 @@ public class FileSpanningStreamTest
         spanningInputStream.close();
     }
 
+    /**
+     * Verifies that the {@link VolumeIndex} can be used to seek to any offset, without reading the volumes in between.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSeekWithIndex() throws IOException
+    {
+        File volume = new File(temporaryFolder.getRoot(), "volume");
+        FileSpanningOutputStream spanningOutputStream = new FileSpanningOutputStream(volume, 100000);
+
+        // write 4 blocks of random data, which won't compress
+        byte[] written = new byte[FileSpanningOutputStream.BLOCK_SIZE * 4 - 100];
+        new Random().nextBytes(written);
+        spanningOutputStream.write(written);
+        spanningOutputStream.close();
+        VolumeIndex index = spanningOutputStream.getIndex();
+        assertEquals(4, index.size());
+
+        int volumes = spanningOutputStream.getVolumes();
+        assertTrue(volumes > 40);
+
+        // remove the volumes holding the 2nd block. They should never be opened
+        for (int i = index.getVolume(1) + 1; i < index.getVolume(2); ++i)
+        {
+            assertTrue(new File(volume.getPath() + "." + i).delete());
+        }
+
+        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, volumes);
+        spanningInputStream.setIndex(index);
+
+        // skip to the 3rd block
+        long offset = FileSpanningOutputStream.BLOCK_SIZE * 2 + 10;
+        assertEquals(offset, spanningInputStream.skip(offset));
+        checkRead(spanningInputStream, written, offset, 1000);
+
+        // seek back into the first block
+        spanningInputStream.seek(5);
+        checkRead(spanningInputStream, written, 5, 1000);
+
+        // seek to the end
+        spanningInputStream.seek(written.length - 10);
+        checkRead(spanningInputStream, written, written.length - 10, 10);
+        assertEquals(-1, spanningInputStream.read());
+        spanningInputStream.close();
+    }
+
+    /**
+     * Verifies that when there is no index, skipped blocks are not decompressed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testSkipWithoutIndex() throws IOException
+    {
+        File volume = new File(temporaryFolder.getRoot(), "volume");
+        FileSpanningOutputStream spanningOutputStream = new FileSpanningOutputStream(volume, 1000000000);
+        byte[] written = new byte[FileSpanningOutputStream.BLOCK_SIZE * 2];
+        new Random().nextBytes(written);
+        spanningOutputStream.write(written);
+        spanningOutputStream.close();
+        assertEquals(1, spanningOutputStream.getVolumes());
+
+        // corrupt the data of the first block, after its header
+        RandomAccessFile file = new RandomAccessFile(volume, "rw");
+        file.seek(FileSpanningOutputStream.MAGIC_NUMBER_LENGTH + FileSpanningOutputStream.BLOCK_HEADER_LENGTH + 10);
+        file.write(new byte[100]);
+        file.close();
+
+        FileSpanningInputStream spanningInputStream = new FileSpanningInputStream(volume, 1);
+        long offset = FileSpanningOutputStream.BLOCK_SIZE + 5;
+        assertEquals(offset, spanningInputStream.skip(offset));
+        checkRead(spanningInputStream, written, offset, 1000);
+        spanningInputStream.close();
+
+        spanningInputStream = new FileSpanningInputStream(volume, 1);
+        try
+        {
+            spanningInputStream.read();
+            fail("Expected the corrupt block to be detected");
+        }
+        catch (CorruptVolumeException expected)
+        {
+            // expected
+        }
+        spanningInputStream.close();
+    }
+
     /**
      * Writes 10GB of random data and verifies it can be read back in.
      *
@@ -207,6 +298,24 @@ public class FileSpanningStreamTest
         spanningInputStream.close();
     }
 
+    /**
+     * Reads from a stream and verifies the data matches that expected.
+     *
+     * @param stream   the stream to read
+     * @param expected the expected data
+     * @param offset   the offset of the data to compare
+     * @param length   the no. of bytes to read
+     * @throws IOException for any I/O error
+     */
+    private void checkRead(FileSpanningInputStream stream, byte[] expected, long offset, int length)
+            throws IOException
+    {
+        assertEquals(offset, stream.getFilePointer());
+        byte[] read = new byte[length];
+        assertEquals(length, stream.read(read));
+        assertArrayEquals(Arrays.copyOfRange(expected, (int) offset, (int) offset + length), read);
+    }
+
     /**
      * Checks the existence of volumes and their expected size.
      *
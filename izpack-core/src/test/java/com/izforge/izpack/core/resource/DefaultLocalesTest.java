@@ -23,17 +23,27 @@ package com.izforge.izpack.core.resource;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import com.izforge.izpack.api.data.CompiledMessages;
+import com.izforge.izpack.api.data.LocaleDatabase;
+import com.izforge.izpack.api.data.MessageTable;
 import com.izforge.izpack.api.resource.Locales;
+import com.izforge.izpack.api.resource.Messages;
 import com.izforge.izpack.api.resource.Resources;
 
 
@@ -108,6 +118,70 @@ public class DefaultLocalesTest
         }
     }
 
+    /**
+     * Verifies that langpacks compiled to {@link MessageTable}s are looked up in place, and return the same messages
+     * as the langpack XML.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCompiledLangPacks() throws Exception
+    {
+        final Map<String, byte[]> compiled = new HashMap<String, byte[]>();
+        ResourceManager resources = new ResourceManager()
+        {
+            @Override
+            public Object getObject(String name)
+            {
+                if (name.equals("langpacks.info"))
+                {
+                    return ISO_CODES;
+                }
+                return super.getObject(name);
+            }
+
+            @Override
+            public InputStream getInputStream(String resource)
+            {
+                byte[] table = compiled.get(resource);
+                if (table == null)
+                {
+                    LocaleDatabase messages = new LocaleDatabase(
+                            super.getInputStream(resource.replaceFirst("^langpacks", "installer")), null);
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    try
+                    {
+                        MessageTable.write(messages.getMessages(), out);
+                    }
+                    catch (IOException exception)
+                    {
+                        throw new IllegalStateException(exception);
+                    }
+                    table = out.toByteArray();
+                    compiled.put(resource, table);
+                }
+                return new ByteArrayInputStream(table);
+            }
+        };
+        resources.setResourceBasePath("/com/izforge/izpack/bin/langpacks/");
+        Locales locales = new DefaultLocales(resources, Locale.ENGLISH);
+        resources.setLocales(locales);
+
+        Messages messages = locales.getMessages();
+        assertTrue(messages instanceof CompiledMessages);
+        LocaleDatabase expected = new LocaleDatabase(
+                getClass().getResourceAsStream("/com/izforge/izpack/bin/langpacks/installer/eng.xml"), locales);
+        assertEquals(expected.getMessages(), messages.getMessages());
+        for (String id : expected.keySet())
+        {
+            assertEquals(expected.get(id, "a", "b"), messages.get(id, "a", "b"));
+        }
+
+        // messages of a newly selected locale fall back to those previously selected
+        locales.setLocale("fra");
+        assertEquals(expected.get("PathInputPanel.isfile"), locales.getMessages().get("PathInputPanel.isfile"));
+    }
+
     /**
      * Verifies that the appropriate locale is selected if the language code is "en" (English).
      */
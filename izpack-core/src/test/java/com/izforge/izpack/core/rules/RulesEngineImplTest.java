@@ -676,6 +676,60 @@ public class RulesEngineImplTest
         assertTrue(rules2.isConditionTrue("izpack.windowsinstall.nt5OrHigher"));
     }
 
+    /**
+     * Verifies that expressions are only parsed once, and that they are re-parsed when conditions are added.
+     */
+    @Test
+    public void testExpressionsParsedOnce()
+    {
+        Condition and = engine.getCondition("@true && !false");
+        assertTrue(and == engine.getCondition("@true && !false"));
+        Condition or = engine.getCondition("true|false");
+        assertTrue(or == engine.getCondition("true|false"));
+
+        Condition condition = new VariableCondition("new", "value");
+        condition.setId("new");
+        engine.addCondition(condition);
+        assertFalse(and == engine.getCondition("@true && !false"));
+        assertTrue(engine.getCondition("@true && !false").isTrue());
+    }
+
+    /**
+     * Verifies that cached condition results are discarded when variables change.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCachedResults() throws Exception
+    {
+        InstallData installData = new AutomatedInstallData(new DefaultVariables(), Platforms.WINDOWS);
+        RulesEngine rules = createRulesEngine(installData);
+        IXMLParser parser = new XMLParser();
+        rules.analyzeXml(parser.parse(getClass().getResourceAsStream("conditions.xml")));
+        rules.resolveConditions();
+
+        for (int i = 0; i < 2; ++i)
+        {
+            // evaluate each twice, so that the second evaluation uses the cached results
+            installData.setVariable("setup.type", "standard");
+            assertTrue(rules.isConditionTrue("or1"));
+            assertTrue(rules.isConditionTrue("variable1"));
+            assertFalse(rules.isConditionTrue("not1"));
+            assertTrue(rules.isConditionTrue("@variable1 && !variable2"));
+            assertFalse(rules.isConditionTrue("variable1+not1"));
+
+            installData.setVariable("setup.type", "expert");
+            assertTrue(rules.isConditionTrue("or1"));
+            assertFalse(rules.isConditionTrue("variable1"));
+            assertTrue(rules.isConditionTrue("not1"));
+            assertFalse(rules.isConditionTrue("@variable1 && !variable2"));
+
+            installData.setVariable("setup.type", null);
+            assertFalse(rules.isConditionTrue("or1"));
+            assertTrue(rules.isConditionTrue("not1"));
+        }
+    }
+
     /**
      * Checks conditions read from the test <em>conditions.xml</em> file.
      *
@@ -21,6 +21,11 @@ package com.izforge.izpack.core.substitutor;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
 import java.util.Properties;
 
 import com.izforge.izpack.api.data.Variables;
@@ -46,13 +51,15 @@ public class VariableSubstitutorImplTest
 
     private VariableSubstitutor variableSubstitutor;
 
+    private Variables variables;
+
     @Before
     public void setupVariableSubstitutor()
     {
         Properties properties = new Properties(System.getProperties());
         properties.put("MY_PROP", "one");
         properties.put("MY_PROP2", "two");
-        Variables variables = new DefaultVariables(properties);
+        variables = new DefaultVariables(properties);
         variableSubstitutor = new VariableSubstitutorImpl(variables);
     }
 
@@ -110,4 +117,54 @@ public class VariableSubstitutorImplTest
         }
     }
 
+
+    @Test
+    public void shouldReflectChangedVariablesInRepeatedSubstitution() throws Exception
+    {
+        // the compiled form of the string is cached, but the variables must be looked up each time
+        String str = "${MY_PROP}/$MY_PROP2/${UNDEFINED}";
+        assertThat(variableSubstitutor.substitute(str), Is.is("one/two/${UNDEFINED}"));
+        variables.set("MY_PROP", "three");
+        variables.set("UNDEFINED", "four");
+        assertThat(variableSubstitutor.substitute(str), Is.is("three/two/four"));
+        assertThat(variableSubstitutor.substitute(str, SubstitutionType.TYPE_XML), Is.is("three/two/four"));
+        variables.set("MY_PROP", "<&>");
+        assertThat(variableSubstitutor.substitute(str, SubstitutionType.TYPE_XML), Is.is("&lt;&amp;&gt;/two/four"));
+    }
+
+    @Test
+    public void shouldSubstituteReferencesSpanningReadBuffers() throws Exception
+    {
+        StringBuilder template = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; template.length() < 50000; ++i)
+        {
+            template.append("line ").append(i).append(" ${MY_PROP} $MY_PROP2 $$ ${unclosed\n");
+            expected.append("line ").append(i).append(" one two $$ ${unclosed\n");
+        }
+        StringWriter writer = new StringWriter();
+        variableSubstitutor.substitute(new StringReader(template.toString()), writer, SubstitutionType.TYPE_PLAIN);
+        assertThat(writer.toString(), Is.is(expected.toString()));
+
+        // read one character at a time
+        Reader reader = new VariableSubstitutorReader(new StringReader(template.toString()), variables,
+                                                      SubstitutionType.TYPE_PLAIN);
+        StringBuilder result = new StringBuilder();
+        int ch;
+        while ((ch = reader.read()) != -1)
+        {
+            result.append((char) ch);
+        }
+        assertThat(result.toString(), Is.is(expected.toString()));
+    }
+
+    @Test
+    public void shouldSubstituteStreams() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        variableSubstitutor.substitute(new ByteArrayInputStream("key=${MY_PROP}\\$MY_PROP2".getBytes("ISO-8859-1")),
+                                       out, SubstitutionType.TYPE_JAVA_PROPERTIES, null);
+        assertThat(out.toString("ISO-8859-1"), Is.is("key=one\\two"));
+    }
+
 }
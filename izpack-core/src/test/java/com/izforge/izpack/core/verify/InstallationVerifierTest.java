@@ -0,0 +1,220 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.core.verify;
+
+import com.izforge.izpack.util.file.FileDigest;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests the {@link InstallationVerifier}.
+ */
+public class InstallationVerifierTest
+{
+    /**
+     * Temporary folder for the installation.
+     */
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that an intact installation is reported as such.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testVerified() throws Exception
+    {
+        File lib = temporaryFolder.newFolder("lib");
+        File small = write(new File(lib, "small.txt"), "small");
+        File large = write(new File(lib, "large.bin"), 1024 * 1024);
+        File config = write(temporaryFolder.newFile("config.properties"), "parsed");
+
+        InstallationManifest manifest = new InstallationManifest();
+        add(manifest, "Core", small);
+        add(manifest, "Core", large);
+        manifest.add("Core", config.getPath(), 10, new byte[32]);
+        manifest.uncheck("Core", config.getPath());
+
+        VerificationReport report = new InstallationVerifier(2).verify(manifest);
+        assertTrue(report.isValid());
+        VerificationReport.PackReport core = report.getPacks().get(0);
+        assertEquals("Core", core.getName());
+        assertEquals(2, core.getVerified());
+        assertEquals(1, core.getUnchecked());
+    }
+
+    /**
+     * Verifies that missing, modified and extra files are reported against their packs.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testInvalid() throws Exception
+    {
+        File lib = temporaryFolder.newFolder("lib");
+        File docs = temporaryFolder.newFolder("docs");
+        File intact = write(new File(lib, "intact.txt"), "intact");
+        File modified = write(new File(lib, "modified.txt"), "original");
+        File truncated = write(new File(lib, "truncated.bin"), 512 * 1024);
+        File missing = write(new File(docs, "missing.txt"), "missing");
+        File information = write(temporaryFolder.newFile(".installationinformation"), "information");
+
+        InstallationManifest manifest = new InstallationManifest();
+        add(manifest, "Core", intact);
+        add(manifest, "Core", modified);
+        add(manifest, "Core", truncated);
+        add(manifest, "Core", information);
+        manifest.remove("Core", information.getPath());
+        add(manifest, "Docs", missing);
+
+        write(modified, "modifies");
+        FileUtils.writeByteArrayToFile(truncated, new byte[1024]);
+        assertTrue(missing.delete());
+        File extra = write(new File(lib, "extra.txt"), "extra");
+
+        InstallationVerifier verifier = new InstallationVerifier(4);
+        verifier.ignore(information);
+        VerificationReport report = verifier.verify(manifest);
+        assertFalse(report.isValid());
+
+        VerificationReport.PackReport core = report.getPacks().get(0);
+        assertEquals(1, core.getVerified());
+        assertEquals(Arrays.asList(modified, truncated), core.getModified());
+        assertEquals(Collections.<File>emptyList(), core.getMissing());
+        assertEquals(Arrays.asList(extra), core.getExtra());
+
+        VerificationReport.PackReport docsPack = report.getPacks().get(1);
+        assertEquals(Arrays.asList(missing), docsPack.getMissing());
+        assertTrue(docsPack.getExtra().isEmpty());
+    }
+
+    /**
+     * Verifies that optional files are neither reported as missing when absent, nor as extra files when present.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testOptional() throws Exception
+    {
+        File lib = temporaryFolder.newFolder("lib");
+        File file = write(new File(lib, "file.txt"), "file");
+        File present = write(new File(lib, "present.txt"), "present");
+        File absent = new File(lib, "absent.txt");
+
+        InstallationManifest manifest = new InstallationManifest();
+        add(manifest, "Core", file);
+        manifest.addOptional("Core", present.getPath());
+        manifest.addOptional("Core", absent.getPath());
+
+        VerificationReport report = new InstallationVerifier(2).verify(manifest);
+        assertTrue(report.isValid());
+        VerificationReport.PackReport core = report.getPacks().get(0);
+        assertEquals(1, core.getVerified());
+        assertEquals(1, core.getUnchecked());
+        assertTrue(core.getMissing().isEmpty());
+        assertTrue(core.getExtra().isEmpty());
+    }
+
+    /**
+     * Verifies that a manifest can be read back after being written as an uninstaller resource.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testReadManifest() throws Exception
+    {
+        File file = write(temporaryFolder.newFile("file.txt"), "content");
+        InstallationManifest manifest = new InstallationManifest();
+        add(manifest, "Core", file);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(manifest);
+        out.close();
+
+        InstallationManifest read = InstallationManifest.read(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(Arrays.asList("Core"), read.getPacks());
+        assertEquals(1, read.size());
+        InstallationManifest.Entry entry = read.getEntries("Core").get(0);
+        assertEquals(file.getPath(), entry.getPath());
+        assertEquals(file.length(), entry.getLength());
+        assertTrue(Arrays.equals(FileDigest.digest(file), entry.getDigest()));
+    }
+
+    /**
+     * Adds a file to a manifest.
+     *
+     * @param manifest the manifest
+     * @param pack     the pack name
+     * @param file     the file
+     * @throws IOException for any I/O error
+     */
+    private static void add(InstallationManifest manifest, String pack, File file) throws IOException
+    {
+        manifest.add(pack, file.getPath(), file.length(), FileDigest.digest(file));
+    }
+
+    /**
+     * Writes a file.
+     *
+     * @param file    the file
+     * @param content the file content
+     * @return the file
+     * @throws IOException for any I/O error
+     */
+    private static File write(File file, String content) throws IOException
+    {
+        FileUtils.writeStringToFile(file, content);
+        return file;
+    }
+
+    /**
+     * Writes a file of random content.
+     *
+     * @param file   the file
+     * @param length the file length
+     * @return the file
+     * @throws IOException for any I/O error
+     */
+    private static File write(File file, int length) throws IOException
+    {
+        byte[] content = new byte[length];
+        new Random().nextBytes(content);
+        FileUtils.writeByteArrayToFile(file, content);
+        return file;
+    }
+}
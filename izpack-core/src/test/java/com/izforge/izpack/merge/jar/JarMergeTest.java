@@ -200,4 +200,35 @@ public class JarMergeTest
         assertEquals("META-INF/ok2", allValues.get(1).getName());
     }
 
+    /**
+     * Verifies that only the entries in a package are merged from a jar, excluding packages whose names start with
+     * the package name, and that entries are only merged once to an output stream.
+     */
+    @Test
+    public void testMergePackage() throws IOException
+    {
+        File jar = File.createTempFile("pkgtest", ".jar");
+        jar.deleteOnExit();
+        JarOutputStream stream = new JarOutputStream(new FileOutputStream(jar));
+        for (String name : new String[]{"com/b/D.class", "com/a/install/A.class", "com/a/installationgroup/B.class",
+                "com/a/install/sub/C.class", "com/a/install/A$1.class"})
+        {
+            stream.putNextEntry(new ZipEntry(name));
+            stream.closeEntry();
+        }
+        stream.close();
+
+        String jarPath = jar.getAbsolutePath();
+        HashMap<OutputStream, List<String>> mergeContent = new HashMap<OutputStream, List<String>>();
+        JarOutputStream output = Mockito.mock(JarOutputStream.class);
+        new JarMerge(jarPath, "com/a/install/", "dest/", mergeContent).merge(output);
+        new JarMerge(jarPath, "com/a/install/", "dest/", mergeContent).merge(output);
+
+        ArgumentCaptor<ZipEntry> captor = ArgumentCaptor.forClass(ZipEntry.class);
+        Mockito.verify(output, Mockito.times(3)).putNextEntry(captor.capture());
+        List<ZipEntry> allValues = captor.getAllValues();
+        assertEquals("dest/A.class", allValues.get(0).getName());
+        assertEquals("dest/sub/C.class", allValues.get(1).getName());
+        assertEquals("dest/A$1.class", allValues.get(2).getName());
+    }
 }
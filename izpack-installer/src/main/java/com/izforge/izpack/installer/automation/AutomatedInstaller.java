@@ -23,7 +23,7 @@ package com.izforge.izpack.installer.automation;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.IXMLParser;
-import com.izforge.izpack.api.adaptator.impl.XMLParser;
+import com.izforge.izpack.api.adaptator.impl.XMLParserFactory;
 import com.izforge.izpack.api.data.AutomatedInstallData;
 import com.izforge.izpack.api.data.Info;
 import com.izforge.izpack.api.resource.Locales;
@@ -252,7 +252,7 @@ public class AutomatedInstaller implements InstallerBase
 
         // Initialises the parser
         // TODO: Create an XSD for auto-install files and activate validation here
-        IXMLParser parser = new XMLParser(false);
+        IXMLParser parser = XMLParserFactory.createParser(false);
         IXMLElement rtn = parser.parse(in, input.getAbsolutePath());
         in.close();
 
@@ -147,6 +147,7 @@ public class Installer
             String media = null;
             String defaultsFile = null;
             String logFileName = null;
+            String verifyPath = null;
 
             while (args_it.hasNext())
             {
@@ -209,6 +210,10 @@ public class Installer
                     {
                         media = fetchArgument(args_it, media);
                         checkPath(media);
+                    } else if ("-verify".equalsIgnoreCase(arg))
+                    {
+                        verifyPath = fetchArgument(args_it, verifyPath);
+                        checkPath(verifyPath);
                     } else
                     {
                         type = INSTALLER_AUTO;
@@ -226,6 +231,11 @@ public class Installer
 
             logger.info("Command line arguments: " + StringTool.stringArrayToSpaceSeparatedString(args));
 
+            if (verifyPath != null)
+            {
+                System.exit(InstallerVerification.run(verifyPath));
+            }
+
             Overrides defaults = getDefaults(defaultsFile);
             if (type == INSTALLER_AUTO && path == null && defaults == null)
             {
@@ -0,0 +1,192 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.bootstrap;
+
+import com.izforge.izpack.api.data.ExecutableFile;
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.data.PackInfo;
+import com.izforge.izpack.api.data.ParsableFile;
+import com.izforge.izpack.api.data.Variables;
+import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.data.PackInfoTable;
+import com.izforge.izpack.core.verify.InstallationManifest;
+import com.izforge.izpack.core.verify.InstallationVerifier;
+import com.izforge.izpack.core.verify.VerificationReport;
+import com.izforge.izpack.installer.data.InstallationInformation;
+import com.izforge.izpack.util.IoHelper;
+import com.izforge.izpack.util.PlatformModelMatcher;
+import com.izforge.izpack.util.Platforms;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+
+
+/**
+ * Verifies an existing installation against the files of the installer.
+ * <p/>
+ * The installed packs and the variables used to install them are read from the
+ * {@link InstallData#INSTALLATION_INFORMATION installation information}, and each file is checked against the digest
+ * recorded when the installer was compiled.
+ */
+public class InstallerVerification
+{
+    /**
+     * The pack information resource.
+     */
+    private static final String PACKS_INFO = "/resources/packs.info";
+
+    /**
+     * Verifies an installation, printing the report to <tt>System.out</tt>.
+     *
+     * @param installPath the installation directory
+     * @return {@code 0} if the installation is intact, otherwise {@code 1}
+     * @throws IOException          if the installation or pack information cannot be read
+     * @throws InterruptedException if verification is interrupted
+     */
+    public static int run(String installPath) throws IOException, InterruptedException
+    {
+        File installDir = new File(installPath).getAbsoluteFile();
+        File information = new File(installDir, InstallData.INSTALLATION_INFORMATION);
+        if (!information.exists())
+        {
+            System.err.println("No installation information found in " + installDir);
+            return 1;
+        }
+
+        InputStream in = InstallerVerification.class.getResourceAsStream(PACKS_INFO);
+        if (in == null)
+        {
+            throw new IOException("Resource not found: " + PACKS_INFO);
+        }
+        PackInfoTable packs;
+        try
+        {
+            packs = PackInfoTable.read(in);
+        }
+        finally
+        {
+            in.close();
+        }
+
+        Platforms platforms = new Platforms();
+        PlatformModelMatcher matcher = new PlatformModelMatcher(platforms, platforms.getCurrentPlatform());
+        InstallationManifest manifest = getManifest(packs, InstallationInformation.read(information), installDir,
+                                                    matcher);
+        InstallationVerifier verifier = new InstallationVerifier();
+        verifier.ignore(information);
+        VerificationReport report = verifier.verify(manifest);
+        report.print(System.out);
+        return report.isValid() ? 0 : 1;
+    }
+
+    /**
+     * Builds the manifest of the files installed by the installed packs.
+     * <p/>
+     * Conditions can't be evaluated outside an installation, so files with conditions may be absent, and only their
+     * existence is checked. The content of parsable files, and of files that may not have been overwritten, isn't
+     * checked.
+     *
+     * @param packs       the pack information of the installer
+     * @param information the installation information
+     * @param installDir  the installation directory
+     * @param matcher     the platform-model matcher
+     * @return the manifest
+     * @throws IOException if the pack information cannot be read
+     */
+    static InstallationManifest getManifest(PackInfoTable packs, InstallationInformation information,
+                                            File installDir, PlatformModelMatcher matcher) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.putAll(information.getVariables());
+        properties.setProperty(InstallData.INSTALL_PATH, installDir.getPath());
+        Variables variables = new DefaultVariables(properties);
+
+        Set<String> installed = new HashSet<String>();
+        for (Pack pack : information.getPacks())
+        {
+            installed.add(pack.getName());
+        }
+
+        InstallationManifest manifest = new InstallationManifest();
+        for (int i = 0; i < packs.size(); ++i)
+        {
+            String name = packs.getPacks().get(i).getName();
+            if (!installed.contains(name))
+            {
+                continue;
+            }
+            PackInfo packInfo = packs.getPackInfo(i);
+            Set<String> unchecked = new HashSet<String>();
+            for (ParsableFile parsable : packInfo.getParsables())
+            {
+                unchecked.add(IoHelper.translatePath(parsable.getPath(), variables));
+            }
+            Set<String> removed = new HashSet<String>();
+            for (ExecutableFile executable : packInfo.getExecutables())
+            {
+                if (!executable.keepFile)
+                {
+                    removed.add(IoHelper.translatePath(executable.path, variables));
+                }
+            }
+
+            for (PackFile packFile : packInfo.getPackFiles())
+            {
+                if (packFile.isDirectory()
+                        || (packFile.osConstraints() != null && !packFile.osConstraints().isEmpty()
+                        && !matcher.matchesCurrentPlatform(packFile.osConstraints())))
+                {
+                    continue;
+                }
+                String path = IoHelper.translatePath(packFile.getTargetPath(), variables);
+                if (packFile.hasCondition())
+                {
+                    // the condition can't be evaluated here, so the file may or may not have been installed
+                    manifest.addOptional(name, path);
+                }
+                else if (!removed.contains(path))
+                {
+                    boolean check = !unchecked.contains(path) && isOverwritten(packFile.override());
+                    manifest.add(name, path, packFile.length(), check ? packFile.getDigest() : null);
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Determines if an existing file is expected to have been overwritten by the installer.
+     *
+     * @param override the override type
+     * @return {@code true} if the installed file is expected to have the packed content
+     */
+    private static boolean isOverwritten(OverrideType override)
+    {
+        return override == OverrideType.OVERRIDE_TRUE || override == OverrideType.OVERRIDE_UPDATE
+                || override == OverrideType.OVERRIDE_CHANGED;
+    }
+}
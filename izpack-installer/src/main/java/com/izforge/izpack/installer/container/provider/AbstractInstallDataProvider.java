@@ -7,6 +7,7 @@ import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Locales;
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.core.data.PackInfoTable;
 import com.izforge.izpack.util.*;
 import org.apache.commons.io.IOUtils;
 import org.picocontainer.injectors.Provider;
@@ -14,7 +15,6 @@ import org.picocontainer.injectors.Provider;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
 import java.net.InetAddress;
 import java.util.*;
 import java.util.logging.Level;
@@ -86,25 +86,23 @@ public abstract class AbstractInstallDataProvider implements Provider
         // We read the panels order data
         List<Panel> panelsOrder = (List<Panel>) resources.getObject("panelsOrder");
 
-        // We read the packs data
+        // We read the pack headers. The pack file tables are only decoded when the packs are unpacked
         InputStream in = resources.getInputStream("packs.info");
-        ObjectInputStream objIn = new ObjectInputStream(in);
-        List<PackInfo> packs;
+        PackInfoTable packs;
         try
         {
-            packs = (List<PackInfo>) objIn.readObject();
+            packs = PackInfoTable.read(in);
         }
         finally
         {
-            IOUtils.closeQuietly(objIn);
+            IOUtils.closeQuietly(in);
         }
 
         List<Pack> availablePacks = new ArrayList<Pack>();
         List<Pack> allPacks = new ArrayList<Pack>();
 
-        for (PackInfo packInfo : packs)
+        for (Pack pack : packs.getPacks())
         {
-            Pack pack = packInfo.getPack();
             allPacks.add(pack);
             if (matcher.matchesCurrentPlatform(pack.getOsConstraints()))
             {
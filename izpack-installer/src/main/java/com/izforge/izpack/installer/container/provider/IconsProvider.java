@@ -11,7 +11,7 @@ import org.picocontainer.injectors.Provider;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.IXMLParser;
-import com.izforge.izpack.api.adaptator.impl.XMLParser;
+import com.izforge.izpack.api.adaptator.impl.XMLParserFactory;
 import com.izforge.izpack.api.resource.Resources;
 import com.izforge.izpack.gui.IconsDatabase;
 import com.izforge.izpack.installer.gui.InstallerFrame;
@@ -82,7 +82,7 @@ public class IconsProvider implements Provider
     {
         ImageIcon img;
         // Initialises the parser
-        IXMLParser parser = new XMLParser(false);
+        IXMLParser parser = XMLParserFactory.createParser(false);
 
         // We get the data
         IXMLElement data = parser.parse(inXML);
@@ -0,0 +1,644 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.data;
+
+import com.izforge.izpack.api.data.Pack;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+
+/**
+ * Reads and writes the installation information file, {@link com.izforge.izpack.api.data.InstallData#INSTALLATION_INFORMATION}.
+ * <p/>
+ * The file records the packs that have been installed, and the variables at the time of installation. It is made up
+ * of a header followed by a sequence of records, each of which is:
+ * <ul>
+ * <li>a record type byte</li>
+ * <li>the length of the record data, as an int</li>
+ * <li>the record data</li>
+ * </ul>
+ * Each subsequent installation into the same directory appends records for the packs it installs, and for the
+ * variables that have changed, rather than rewriting the file. Unknown record types, and any trailing data in a
+ * known record, are skipped, so that later versions may add to the format.
+ * <p/>
+ * Files written by earlier versions of IzPack, which use Java serialization, can still be read. They are converted
+ * to the current format when next written to.
+ */
+public class InstallationInformation
+{
+    /**
+     * The file format version.
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * The installed packs, keyed on name.
+     */
+    private final Map<String, Pack> packs = new LinkedHashMap<String, Pack>();
+
+    /**
+     * The variables.
+     */
+    private final Properties variables = new Properties();
+
+    /**
+     * The length of the complete records read, including the header. This excludes any truncated record at the end
+     * of the file.
+     */
+    private long length;
+
+    /**
+     * The magic number that starts the file. This cannot be confused with the Java serialization stream header.
+     */
+    private static final byte[] MAGIC = {'I', 'Z', 'I', 'I'};
+
+    /**
+     * Record type for an installed pack.
+     */
+    private static final int PACK = 1;
+
+    /**
+     * Record type for a set of variables.
+     */
+    private static final int VARIABLES = 2;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(InstallationInformation.class.getName());
+
+    /**
+     * Returns the installed packs.
+     * <p/>
+     * If a pack has been installed more than once, the most recent installation is returned.
+     *
+     * @return the installed packs
+     */
+    public List<Pack> getPacks()
+    {
+        return new ArrayList<Pack>(packs.values());
+    }
+
+    /**
+     * Returns the variables.
+     *
+     * @return the variables
+     */
+    public Properties getVariables()
+    {
+        return variables;
+    }
+
+    /**
+     * Reads installation information.
+     *
+     * @param file the file to read
+     * @return the installation information
+     * @throws IOException if the file cannot be read, or is not valid installation information
+     */
+    public static InstallationInformation read(File file) throws IOException
+    {
+        InstallationInformation result = new InstallationInformation();
+        InputStream input = new BufferedInputStream(new FileInputStream(file));
+        try
+        {
+            if (isLegacy(input))
+            {
+                result.readLegacy(input);
+            }
+            else
+            {
+                result.read(new DataInputStream(input));
+            }
+        }
+        finally
+        {
+            IOUtils.closeQuietly(input);
+        }
+        return result;
+    }
+
+    /**
+     * Adds installed packs and variables to installation information.
+     * <p/>
+     * If the file doesn't exist or is empty, it will be created. If it was written by an earlier version of IzPack,
+     * it is converted to the current format first. Only those variables that differ from the existing installation
+     * information are written.
+     *
+     * @param file      the file to write to
+     * @param packs     the installed packs
+     * @param variables the variables
+     * @throws IOException for any I/O error
+     */
+    public static void append(File file, Collection<Pack> packs, Properties variables) throws IOException
+    {
+        InstallationInformation existing;
+        boolean create = !file.exists() || file.length() == 0;
+        if (create)
+        {
+            existing = new InstallationInformation();
+        }
+        else
+        {
+            existing = read(file);
+            if (isLegacy(file))
+            {
+                logger.fine("Converting installation information " + file + " from serialized format");
+                write(file, existing.packs.values(), existing.variables);
+            }
+            else if (existing.length < file.length())
+            {
+                // discard the truncated record, so that the appended records can be read
+                logger.warning("Discarding truncated installation information record in " + file);
+                truncate(file, existing.length);
+            }
+        }
+
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, !create)));
+        try
+        {
+            if (create)
+            {
+                writeHeader(output);
+            }
+            for (Pack pack : packs)
+            {
+                writePack(output, pack);
+            }
+            Properties changed = new Properties();
+            for (String name : variables.stringPropertyNames())
+            {
+                String value = variables.getProperty(name);
+                if (!value.equals(existing.variables.getProperty(name)))
+                {
+                    changed.setProperty(name, value);
+                }
+            }
+            if (!changed.isEmpty())
+            {
+                writeVariables(output, changed);
+            }
+            output.close();
+        }
+        finally
+        {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    /**
+     * Writes installation information, replacing any existing file.
+     *
+     * @param file      the file to write to
+     * @param packs     the installed packs
+     * @param variables the variables
+     * @throws IOException for any I/O error
+     */
+    public static void write(File file, Collection<Pack> packs, Properties variables) throws IOException
+    {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try
+        {
+            writeHeader(output);
+            for (Pack pack : packs)
+            {
+                writePack(output, pack);
+            }
+            writeVariables(output, variables);
+            output.close();
+        }
+        finally
+        {
+            IOUtils.closeQuietly(output);
+        }
+        FileUtils.deleteQuietly(file);
+        FileUtils.moveFile(tmp, file);
+    }
+
+    /**
+     * Truncates a file.
+     *
+     * @param file   the file
+     * @param length the new length of the file
+     * @throws IOException for any I/O error
+     */
+    private static void truncate(File file, long length) throws IOException
+    {
+        RandomAccessFile output = new RandomAccessFile(file, "rw");
+        try
+        {
+            output.setLength(length);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    /**
+     * Determines if a file contains installation information written using Java serialization.
+     *
+     * @param file the file
+     * @return {@code true} if the file is in the serialized format
+     * @throws IOException for any I/O error
+     */
+    public static boolean isLegacy(File file) throws IOException
+    {
+        InputStream input = new BufferedInputStream(new FileInputStream(file));
+        try
+        {
+            return isLegacy(input);
+        }
+        finally
+        {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * Determines if a stream contains installation information written using Java serialization.
+     * <p/>
+     * The stream is reset to its starting position.
+     *
+     * @param input the stream. Must support mark/reset
+     * @return {@code true} if the stream is in the serialized format
+     * @throws IOException for any I/O error
+     */
+    private static boolean isLegacy(InputStream input) throws IOException
+    {
+        byte[] magic = new byte[MAGIC.length];
+        input.mark(magic.length);
+        int read = IOUtils.read(input, magic);
+        input.reset();
+        if (read != magic.length)
+        {
+            throw new EOFException("Installation information is truncated");
+        }
+        for (int i = 0; i < magic.length; ++i)
+        {
+            if (magic[i] != MAGIC[i])
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads installation information in the current format.
+     *
+     * @param input the stream to read
+     * @throws IOException for any I/O error
+     */
+    private void read(DataInputStream input) throws IOException
+    {
+        IOUtils.skipFully(input, MAGIC.length);
+        int version = input.readUnsignedShort();
+        if (version > VERSION)
+        {
+            logger.fine("Reading installation information version " + version + ", which is newer than "
+                                + VERSION);
+        }
+        length = MAGIC.length + 2;
+        int type;
+        while ((type = input.read()) != -1)
+        {
+            byte[] data;
+            try
+            {
+                data = new byte[input.readInt()];
+                input.readFully(data);
+            }
+            catch (EOFException exception)
+            {
+                // an installation was interrupted while appending. Ignore the incomplete record
+                logger.warning("Ignoring truncated installation information record");
+                break;
+            }
+            length += 1 + 4 + data.length;
+            DataInputStream record = new DataInputStream(new ByteArrayInputStream(data));
+            switch (type)
+            {
+                case PACK:
+                    Pack pack = readPack(record);
+                    packs.remove(pack.getName());
+                    packs.put(pack.getName(), pack);
+                    break;
+                case VARIABLES:
+                    readVariables(record);
+                    break;
+                default:
+                    logger.fine("Skipping unknown installation information record type: " + type);
+            }
+        }
+    }
+
+    /**
+     * Reads installation information written using Java serialization.
+     *
+     * @param input the stream to read
+     * @throws IOException if the stream cannot be read, or doesn't contain installation information
+     */
+    private void readLegacy(InputStream input) throws IOException
+    {
+        ObjectInputStream objectInput = new ObjectInputStream(input);
+        try
+        {
+            List<?> list = (List<?>) objectInput.readObject();
+            for (Object object : list)
+            {
+                if (!(object instanceof Pack))
+                {
+                    throw new IOException("Installation information contains unrecognised pack: " + object);
+                }
+                Pack pack = (Pack) object;
+                packs.put(pack.getName(), pack);
+            }
+            Properties properties;
+            try
+            {
+                properties = (Properties) objectInput.readObject();
+            }
+            catch (EOFException ignore)
+            {
+                // no variables were written
+                properties = null;
+            }
+            if (properties != null)
+            {
+                for (String name : properties.stringPropertyNames())
+                {
+                    variables.setProperty(name, properties.getProperty(name));
+                }
+            }
+        }
+        catch (ClassNotFoundException exception)
+        {
+            throw new IOException("Failed to read installation information: " + exception.getMessage(), exception);
+        }
+        catch (ClassCastException exception)
+        {
+            throw new IOException("Failed to read installation information: " + exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Reads a pack record.
+     *
+     * @param input the record data
+     * @return the pack
+     * @throws IOException for any I/O error
+     */
+    private Pack readPack(DataInputStream input) throws IOException
+    {
+        String name = readString(input);
+        String langPackId = readString(input);
+        String description = readString(input);
+        List<String> dependencies = readStrings(input);
+        boolean required = input.readBoolean();
+        boolean preselected = input.readBoolean();
+        boolean loose = input.readBoolean();
+        String excludeGroup = readString(input);
+        boolean uninstall = input.readBoolean();
+        long size = input.readLong();
+        Pack pack = new Pack(name, langPackId, description, null, dependencies, required, preselected, loose,
+                             excludeGroup, uninstall, size);
+        pack.setFileSize(input.readLong());
+        pack.setGroup(readString(input));
+        pack.setParent(readString(input));
+        pack.setCondition(readString(input));
+        pack.setImageId(readString(input));
+        pack.setHidden(input.readBoolean());
+        List<String> installGroups = readStrings(input);
+        if (installGroups != null)
+        {
+            pack.getInstallGroups().addAll(installGroups);
+        }
+        return pack;
+    }
+
+    /**
+     * Reads a variables record.
+     *
+     * @param input the record data
+     * @throws IOException for any I/O error
+     */
+    private void readVariables(DataInputStream input) throws IOException
+    {
+        int count = input.readInt();
+        for (int i = 0; i < count; ++i)
+        {
+            String name = readString(input);
+            String value = readString(input);
+            if (name != null && value != null)
+            {
+                variables.setProperty(name, value);
+            }
+        }
+    }
+
+    /**
+     * Writes the file header.
+     *
+     * @param output the stream to write to
+     * @throws IOException for any I/O error
+     */
+    private static void writeHeader(DataOutputStream output) throws IOException
+    {
+        output.write(MAGIC);
+        output.writeShort(VERSION);
+    }
+
+    /**
+     * Writes a pack record.
+     *
+     * @param output the stream to write to
+     * @param pack   the pack
+     * @throws IOException for any I/O error
+     */
+    private static void writePack(DataOutputStream output, Pack pack) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        writeString(record, pack.getName());
+        writeString(record, pack.getLangPackId());
+        writeString(record, pack.getDescription());
+        writeStrings(record, pack.getDependencies());
+        record.writeBoolean(pack.isRequired());
+        record.writeBoolean(pack.isPreselected());
+        record.writeBoolean(pack.isLoose());
+        writeString(record, pack.getExcludeGroup());
+        record.writeBoolean(pack.isUninstall());
+        record.writeLong(pack.getSize());
+        record.writeLong(pack.getFileSize());
+        writeString(record, pack.getGroup());
+        writeString(record, pack.getParent());
+        writeString(record, pack.getCondition());
+        writeString(record, pack.getImageId());
+        record.writeBoolean(pack.isHidden());
+        writeStrings(record, pack.getInstallGroups());
+        writeRecord(output, PACK, bytes);
+    }
+
+    /**
+     * Writes a variables record.
+     *
+     * @param output    the stream to write to
+     * @param variables the variables
+     * @throws IOException for any I/O error
+     */
+    private static void writeVariables(DataOutputStream output, Properties variables) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream record = new DataOutputStream(bytes);
+        Collection<String> names = variables.stringPropertyNames();
+        record.writeInt(names.size());
+        for (String name : names)
+        {
+            writeString(record, name);
+            writeString(record, variables.getProperty(name));
+        }
+        writeRecord(output, VARIABLES, bytes);
+    }
+
+    /**
+     * Writes a record.
+     *
+     * @param output the stream to write to
+     * @param type   the record type
+     * @param data   the record data
+     * @throws IOException for any I/O error
+     */
+    private static void writeRecord(DataOutputStream output, int type, ByteArrayOutputStream data)
+            throws IOException
+    {
+        output.writeByte(type);
+        output.writeInt(data.size());
+        data.writeTo(output);
+    }
+
+    /**
+     * Writes a string that may be {@code null}.
+     *
+     * @param output the stream to write to
+     * @param value  the value to write. May be {@code null}
+     * @throws IOException for any I/O error
+     */
+    private static void writeString(DataOutputStream output, String value) throws IOException
+    {
+        if (value == null)
+        {
+            output.writeInt(-1);
+        }
+        else
+        {
+            byte[] bytes = value.getBytes("UTF-8");
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Reads a string that may be {@code null}.
+     *
+     * @param input the stream to read
+     * @return the string. May be {@code null}
+     * @throws IOException for any I/O error
+     */
+    private static String readString(DataInputStream input) throws IOException
+    {
+        int length = input.readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Writes a collection of strings that may be {@code null}.
+     *
+     * @param output the stream to write to
+     * @param values the values to write. May be {@code null}
+     * @throws IOException for any I/O error
+     */
+    private static void writeStrings(DataOutputStream output, Collection<String> values) throws IOException
+    {
+        if (values == null)
+        {
+            output.writeInt(-1);
+        }
+        else
+        {
+            output.writeInt(values.size());
+            for (String value : values)
+            {
+                writeString(output, value);
+            }
+        }
+    }
+
+    /**
+     * Reads a list of strings that may be {@code null}.
+     *
+     * @param input the stream to read
+     * @return the strings. May be {@code null}
+     * @throws IOException for any I/O error
+     */
+    private static List<String> readStrings(DataInputStream input) throws IOException
+    {
+        int size = input.readInt();
+        if (size < 0)
+        {
+            return null;
+        }
+        List<String> result = new ArrayList<String>(size);
+        for (int i = 0; i < size; ++i)
+        {
+            result.add(readString(input));
+        }
+        return result;
+    }
+}
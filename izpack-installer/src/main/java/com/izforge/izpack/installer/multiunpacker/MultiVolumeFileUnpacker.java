@@ -92,10 +92,11 @@ public class MultiVolumeFileUnpacker extends FileUnpacker
                                 + ") target is: " + (position - filePointer));
             skip(position - filePointer);
         }
-
-        if (volumes.getFilePointer() > position)
+        else if (filePointer > position)
         {
-            throw new IOException("Error, can't access file in pack.");
+            // the file shares its content with one stored earlier
+            logger.fine("Seeking back to file " + target.getName() + " (" + filePointer + ">" + position + ")");
+            volumes.seek(position);
         }
 
         copy(packFile, volumes, target);
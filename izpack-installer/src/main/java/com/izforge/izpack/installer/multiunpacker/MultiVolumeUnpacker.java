@@ -33,6 +33,7 @@ import com.izforge.izpack.api.handler.Prompt;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
 import com.izforge.izpack.core.io.FileSpanningInputStream;
+import com.izforge.izpack.core.io.VolumeIndex;
 import com.izforge.izpack.core.io.VolumeLocator;
 import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.installer.event.InstallerListeners;
@@ -42,6 +43,7 @@ import com.izforge.izpack.util.PlatformModelMatcher;
 import com.izforge.izpack.util.os.FileQueue;
 import org.apache.commons.io.IOUtils;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -130,6 +132,15 @@ public class MultiVolumeUnpacker extends UnpackerBase
             int volumeCount = objectIn.readInt();
             String volumeName = objectIn.readUTF();
             logger.fine("Reading from " + volumeCount + " volumes with basename " + volumeName + " ");
+            VolumeIndex index = null;
+            try
+            {
+                index = VolumeIndex.read(objectIn);
+            }
+            catch (EOFException exception)
+            {
+                logger.fine("No volume index. Volumes will be read sequentially");
+            }
 
             String mediaPath = getInstallData().getMediaPath();
             if ((mediaPath == null) || (mediaPath.length() == 0))
@@ -144,6 +155,7 @@ public class MultiVolumeUnpacker extends UnpackerBase
             }
             volumes = new FileSpanningInputStream(volume, volumeCount);
             volumes.setLocator(locator);
+            volumes.setIndex(index);
         }
         catch (IOException exception)
         {
@@ -182,6 +194,17 @@ public class MultiVolumeUnpacker extends UnpackerBase
         return unpacker;
     }
 
+    /**
+     * Determines if pack streams are made of solid compression blocks.
+     *
+     * @return {@code false}; multi-volume installers don't support solid compression
+     */
+    @Override
+    protected boolean isSolidCompression()
+    {
+        return false;
+    }
+
     @Override
     protected void skip(PackFile file, Pack pack, InputStream packInputStream) throws IOException
     {
@@ -22,12 +22,21 @@
 package com.izforge.izpack.installer.unpacker;
 
 import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Pack;
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceInterruptedException;
 import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.installer.web.WebPackCache;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -52,6 +61,18 @@ public abstract class AbstractPackResources implements PackResources
      */
     private final InstallData installData;
 
+    /**
+     * The web pack downloader. Created on first use.
+     */
+    private PackDownloader downloader;
+
+    /**
+     * The web pack jars retrieved so far, keyed on pack name.
+     * <p/>
+     * A pack jar may be read more than once, e.g. to extract back references to files shared between packs.
+     */
+    private final Map<String, File> webPackFiles = new HashMap<String, File>();
+
     /**
      * Constructs an {@code AbstractPackResources}.
      *
@@ -106,6 +127,36 @@ public abstract class AbstractPackResources implements PackResources
         return resources.getInputStream(name);
     }
 
+    /**
+     * Starts downloading web packs in the background.
+     * <p/>
+     * This is a no-op if the installer isn't web-based.
+     *
+     * @param names the pack names, in the order they will be requested
+     */
+    @Override
+    public void prefetch(List<String> names)
+    {
+        String webDirURL = installData.getInfo().getWebDirURL();
+        if (webDirURL != null)
+        {
+            getDownloader(webDirURL).prefetch(names);
+        }
+    }
+
+    /**
+     * Cancels the download of any web packs passed to {@link #prefetch} that haven't been requested.
+     */
+    @Override
+    public synchronized void cancelPrefetch()
+    {
+        if (downloader != null)
+        {
+            downloader.shutdown();
+            downloader = null;
+        }
+    }
+
     /**
      * Returns a stream to a local pack.
      *
@@ -119,14 +170,140 @@ public abstract class AbstractPackResources implements PackResources
 
     /**
      * Returns the stream to a web-based pack resource.
+     * <p/>
+     * If the pack has been prefetched, this waits for its download to complete.
      *
      * @param name      the resource name
      * @param webDirURL the web URL to load the resource from
      * @return a stream to the resource
      * @throws ResourceNotFoundException    if the resource cannot be found
      * @throws ResourceInterruptedException if resource retrieval is interrupted
+     * @throws ResourceException            for any other resource error
+     */
+    protected InputStream getWebPackStream(String name, String webDirURL)
+    {
+        File file;
+        try
+        {
+            synchronized (webPackFiles)
+            {
+                file = webPackFiles.get(name);
+            }
+            if (file == null || !file.exists())
+            {
+                file = getDownloader(webDirURL).get(name);
+                synchronized (webPackFiles)
+                {
+                    webPackFiles.put(name, file);
+                }
+            }
+        }
+        catch (InterruptedIOException exception)
+        {
+            throw new ResourceInterruptedException("Retrieval of pack " + name + " interrupted", exception);
+        }
+        catch (IOException exception)
+        {
+            throw new ResourceException("Failed to read " + webDirURL, exception);
+        }
+
+        try
+        {
+            URL url = new URL("jar:" + file.toURI().toURL() + "!/packs/pack-" + name);
+            return url.openStream();
+        }
+        catch (IOException exception)
+        {
+            throw new ResourceException("Failed to read pack", exception);
+        }
+    }
+
+    /**
+     * Returns the jar containing a web-based pack, downloading it if required.
+     * <p/>
+     * This may be invoked from a background download thread.
+     *
+     * @param name      the pack name
+     * @param webDirURL the web URL to load the pack from
+     * @return the jar containing the pack
+     * @throws IOException for any I/O error
+     */
+    protected abstract File getWebPackFile(String name, String webDirURL) throws IOException;
+
+    /**
+     * Returns the jar containing a web-based pack from the web pack cache, downloading it if required.
+     * <p/>
+     * The downloaded jar is verified against the digest and length recorded by the packager.
+     *
+     * @param name      the pack name
+     * @param url       the URL of the jar
+     * @param dir       the cache directory
+     * @param connector the connector to download the jar with
+     * @return the jar, or {@code null} if no digest was recorded for the pack
+     * @throws IOException for any I/O error
+     */
+    protected File getCachedWebPackFile(String name, URL url, File dir, WebPackCache.Connector connector)
+            throws IOException
+    {
+        Pack jarPack = null;
+        for (Pack pack : installData.getAllPacks())
+        {
+            if (pack.getName().equals(name))
+            {
+                jarPack = pack;
+                break;
+            }
+        }
+        if (jarPack == null && Pack.COMMON_PACK_NAME.equals(name))
+        {
+            jarPack = getCommonPack();
+        }
+        if (jarPack != null && jarPack.getJarDigest() != null)
+        {
+            WebPackCache cache = new WebPackCache(dir, connector);
+            return cache.get(url, jarPack.getJarDigest(), jarPack.getJarLength());
+        }
+        return null;
+    }
+
+    /**
+     * Returns the pack recording the jar of files shared between packs.
+     *
+     * @return the pack, or {@code null} if the installer has no such jar
+     */
+    private Pack getCommonPack()
+    {
+        try
+        {
+            return (Pack) resources.getObject(Pack.COMMON_PACK_RESOURCE);
+        }
+        catch (ResourceNotFoundException exception)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the web pack downloader, creating it if required.
+     *
+     * @param webDirURL the web URL to load packs from
+     * @return the downloader
      */
-    protected abstract InputStream getWebPackStream(String name, String webDirURL);
+    private synchronized PackDownloader getDownloader(final String webDirURL)
+    {
+        if (downloader == null)
+        {
+            downloader = new PackDownloader(PackDownloader.DEFAULT_CONNECTIONS, new PackDownloader.Download()
+            {
+                @Override
+                public File download(String name) throws IOException
+                {
+                    return getWebPackFile(name, webDirURL);
+                }
+            });
+        }
+        return downloader;
+    }
 
     /**
      * Returns the installation data.
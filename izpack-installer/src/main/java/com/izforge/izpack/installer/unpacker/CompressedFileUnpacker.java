@@ -89,16 +89,7 @@ public class CompressedFileUnpacker extends FileUnpacker
 
             InputStream in = IOUtils.buffer(FileUtils.openInputStream(tmpfile));
 
-            if (compressionFormat == PackCompression.DEFLATE)
-            {
-                DeflateParameters deflateParameters = new DeflateParameters();
-                deflateParameters.setCompressionLevel(Deflater.BEST_COMPRESSION);
-                finalStream = new DeflateCompressorInputStream(in, deflateParameters);
-            }
-            else
-            {
-                finalStream = new CompressorStreamFactory().createCompressorInputStream(compressionFormat.toName(), in);
-            }
+            finalStream = createCompressorInputStream(compressionFormat, in);
 
             final long bytesUncompressed = copy(file, finalStream, target);
 
@@ -119,4 +110,24 @@ public class CompressedFileUnpacker extends FileUnpacker
             FileUtils.deleteQuietly(tmpfile);
         }
     }
+
+    /**
+     * Creates a stream that decompresses from the supplied stream.
+     *
+     * @param compressionFormat the compression format
+     * @param in                the stream to read compressed data from
+     * @return a new decompressing stream
+     * @throws CompressorException if the stream cannot be created
+     */
+    static InputStream createCompressorInputStream(PackCompression compressionFormat, InputStream in)
+            throws CompressorException
+    {
+        if (compressionFormat == PackCompression.DEFLATE)
+        {
+            DeflateParameters deflateParameters = new DeflateParameters();
+            deflateParameters.setCompressionLevel(Deflater.BEST_COMPRESSION);
+            return new DeflateCompressorInputStream(in, deflateParameters);
+        }
+        return new CompressorStreamFactory().createCompressorInputStream(compressionFormat.toName(), in);
+    }
 }
@@ -0,0 +1,332 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.exception.IzPackException;
+import org.apache.commons.io.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+
+/**
+ * Writes pack files to disk on a pool of writer threads, while the installer thread continues to read the pack
+ * stream.
+ * <p/>
+ * The content of each file is read from the pack stream into memory by the caller, and handed to a
+ * {@link FileUnpacker} running on a writer thread. Completed files are reported back to the caller strictly in the
+ * order they were submitted, via {@link #drain}, so that listener notifications are made in pack order, on the
+ * installer thread.
+ * <p/>
+ * The amount of file content held in memory is bounded; {@link #submit} blocks until earlier files have been
+ * written if the limit would be exceeded.
+ */
+public class ConcurrentFileExtractor
+{
+    /**
+     * Callback invoked on the installer thread when a file has been written.
+     */
+    public interface Completion
+    {
+        /**
+         * Invoked when a file has been written.
+         *
+         * @param packFile the pack file
+         * @param target   the target file
+         * @param pack     the pack that the pack file comes from
+         * @param unpacker the unpacker used to write the file
+         */
+        void completed(PackFile packFile, File target, Pack pack, FileUnpacker unpacker);
+    }
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ConcurrentFileExtractor.class.getName());
+
+    /**
+     * The maximum in-pack size of a file that will be written concurrently.
+     */
+    public static final long MAX_FILE_SIZE = 1024 * 1024;
+
+    /**
+     * The maximum no. of bytes of file content buffered for writing.
+     */
+    private static final long MAX_PENDING_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * The writer threads.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The maximum no. of files pending.
+     */
+    private final int maxPending;
+
+    /**
+     * The callback for completed files.
+     */
+    private final Completion completion;
+
+    /**
+     * The files submitted but not yet reported as completed, in submission order.
+     */
+    private final LinkedList<Extraction> pending = new LinkedList<Extraction>();
+
+    /**
+     * The targets of the pending files.
+     */
+    private final Set<File> pendingTargets = new HashSet<File>();
+
+    /**
+     * The no. of bytes of file content pending.
+     */
+    private long pendingSize;
+
+    /**
+     * Constructs a <tt>ConcurrentFileExtractor</tt>.
+     *
+     * @param threads    the number of writer threads
+     * @param completion the callback for completed files
+     */
+    public ConcurrentFileExtractor(int threads, Completion completion)
+    {
+        this.executor = Executors.newFixedThreadPool(threads, new WriterThreadFactory());
+        this.maxPending = threads * 4;
+        this.completion = completion;
+    }
+
+    /**
+     * Determines if a pack file can be written concurrently.
+     *
+     * @param packFile the pack file
+     * @param unpacker the unpacker that will write it
+     * @return {@code true} if the file's pack stream content is small enough to buffer, and the unpacker doesn't
+     *         need access to any other resource
+     */
+    public boolean canExtract(PackFile packFile, FileUnpacker unpacker)
+    {
+        return packFile.size() <= MAX_FILE_SIZE && !packFile.isBackReference() && !packFile.isPack200Jar()
+                && (unpacker.getClass() == DefaultFileUnpacker.class
+                || unpacker.getClass() == CompressedFileUnpacker.class);
+    }
+
+    /**
+     * Reads a pack file's content from the pack stream, and schedules it to be written.
+     *
+     * @param packFile        the pack file
+     * @param packInputStream the pack stream, positioned at the start of the file's content
+     * @param target          the target file
+     * @param pack            the pack that the pack file comes from
+     * @param unpacker        the unpacker to write the file with
+     * @throws IOException     for any I/O error
+     * @throws IzPackException if a previously submitted file failed
+     */
+    public void submit(final PackFile packFile, InputStream packInputStream, final File target, Pack pack,
+                       final FileUnpacker unpacker) throws IOException
+    {
+        long size = packFile.size();
+        while (!pending.isEmpty() && (pending.size() >= maxPending || pendingSize + size > MAX_PENDING_SIZE))
+        {
+            complete(pending.getFirst());
+        }
+
+        final byte[] content = new byte[(int) size];
+        IOUtils.readFully(packInputStream, content);
+
+        Future<Void> future = executor.submit(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                unpacker.unpack(packFile, new ByteArrayInputStream(content), target);
+                return null;
+            }
+        });
+        pending.add(new Extraction(packFile, target, pack, unpacker, future));
+        pendingTargets.add(target);
+        pendingSize += size;
+
+        // report any files that have already been written
+        while (!pending.isEmpty() && pending.getFirst().future.isDone())
+        {
+            complete(pending.getFirst());
+        }
+    }
+
+    /**
+     * Determines if a file is waiting to be written.
+     *
+     * @param target the target file
+     * @return {@code true} if the file is waiting to be written
+     */
+    public boolean isPending(File target)
+    {
+        return pendingTargets.contains(target);
+    }
+
+    /**
+     * Waits for all pending files to be written, reporting each via the {@link Completion} callback.
+     *
+     * @throws IOException     if a file couldn't be written
+     * @throws IzPackException for any IzPack error
+     */
+    public void drain() throws IOException
+    {
+        while (!pending.isEmpty())
+        {
+            complete(pending.getFirst());
+        }
+    }
+
+    /**
+     * Waits for all pending files to be written, without reporting them.
+     * <p/>
+     * This is used to ensure that no writes are outstanding when unpacking fails.
+     */
+    public void discard()
+    {
+        for (Extraction extraction : pending)
+        {
+            try
+            {
+                extraction.future.get();
+            }
+            catch (Exception ignore)
+            {
+                // already failing
+            }
+        }
+        pending.clear();
+        pendingTargets.clear();
+        pendingSize = 0;
+    }
+
+    /**
+     * Stops the writer threads.
+     * <p/>
+     * Any pending files are discarded.
+     */
+    public void shutdown()
+    {
+        discard();
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for a file to be written, and reports it.
+     *
+     * @param extraction the first pending file
+     * @throws IOException     if the file couldn't be written
+     * @throws IzPackException for any IzPack error
+     */
+    private void complete(Extraction extraction) throws IOException
+    {
+        try
+        {
+            extraction.future.get();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing " + extraction.target);
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IzPackException("Failed to write " + extraction.target, cause);
+        }
+        pending.removeFirst();
+        pendingTargets.remove(extraction.target);
+        pendingSize -= extraction.packFile.size();
+        logger.fine("|- Written " + extraction.target);
+        completion.completed(extraction.packFile, extraction.target, extraction.pack, extraction.unpacker);
+    }
+
+    /**
+     * A file scheduled for writing.
+     */
+    private static class Extraction
+    {
+        private final PackFile packFile;
+
+        private final File target;
+
+        private final Pack pack;
+
+        private final FileUnpacker unpacker;
+
+        private final Future<Void> future;
+
+        Extraction(PackFile packFile, File target, Pack pack, FileUnpacker unpacker, Future<Void> future)
+        {
+            this.packFile = packFile;
+            this.target = target;
+            this.pack = pack;
+            this.unpacker = unpacker;
+            this.future = future;
+        }
+    }
+
+    /**
+     * Creates daemon writer threads, so that a failed installation cannot hang the JVM.
+     */
+    private static class WriterThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "izpack-writer-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -22,11 +22,14 @@
 package com.izforge.izpack.installer.unpacker;
 
 import com.izforge.izpack.api.data.InstallData;
-import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.installer.web.WebPackCache;
 import com.izforge.izpack.util.IoHelper;
+import org.apache.commons.io.FileUtils;
 
-import java.io.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
 import java.util.logging.Logger;
 
@@ -53,10 +56,8 @@ public class ConsolePackResources extends AbstractPackResources
     }
 
     @Override
-    protected InputStream getWebPackStream(String name, String webDirURL)
+    protected File getWebPackFile(String name, String webDirURL) throws IOException
     {
-        InputStream result;
-
         InstallData installData = getInstallData();
         String baseName = installData.getInfo().getInstallerBase();
         File installerDir = new File(baseName).getParentFile();
@@ -80,41 +81,23 @@ public class ConsolePackResources extends AbstractPackResources
             File tempDir = new File(tempFolder);
             tempDir.mkdirs();
 
-            try
+            logger.info("Downloading remote pack " + packURL);
+            packLocalFile = getCachedWebPackFile(name, new URL(packURL), tempDir, WebPackCache.DEFAULT_CONNECTOR);
+            if (packLocalFile == null)
             {
-                logger.info("Downloading remote pack " + packURL);
-                packLocalFile = File.createTempFile("izpacktempfile", "jar", new File(tempFolder));
+                packLocalFile = File.createTempFile("izpacktempfile", "jar", tempDir);
                 InputStream webStream = new URL(packURL).openStream();
-                write(webStream, packLocalFile);
-            }
-            catch (IOException exception)
-            {
-                throw new ResourceException("Failed to read pack", exception);
+                try
+                {
+                    FileUtils.copyInputStreamToFile(webStream, packLocalFile);
+                }
+                catch (IOException exception)
+                {
+                    FileUtils.deleteQuietly(packLocalFile);
+                    throw exception;
+                }
             }
         }
-
-        try
-        {
-            URL url = new URL("jar:" + packLocalFile.toURI().toURL() + "!/packs/pack-" + name);
-            result = url.openStream();
-        }
-        catch (IOException exception)
-        {
-            throw new ResourceException("Failed to read pack", exception);
-        }
-        return result;
-    }
-
-    private static void write(InputStream input, File file) throws IOException
-    {
-        OutputStream output = new FileOutputStream(file);
-        int letter = 0;
-        byte[] buffer = new byte[1024];
-        while ((letter = input.read(buffer)) != -1)
-        {
-            output.write(buffer, 0, letter);
-        }
-        output.flush();
-        output.close();
+        return packLocalFile;
     }
 }
@@ -24,12 +24,14 @@ package com.izforge.izpack.installer.unpacker;
 import com.izforge.izpack.api.data.Blockable;
 import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.exception.InstallerException;
+import com.izforge.izpack.util.file.FilePermissions;
 import com.izforge.izpack.util.os.FileQueue;
 import com.izforge.izpack.util.os.FileQueueMove;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.util.logging.Logger;
 
 
@@ -73,6 +75,16 @@ public abstract class FileUnpacker
      */
     private static final Logger logger = Logger.getLogger(FileUnpacker.class.getName());
 
+    /**
+     * The size of the buffer used to copy streams.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The maximum no. of bytes transferred between file channels before checking for cancellation.
+     */
+    private static final long TRANSFER_SIZE = 8 * 1024 * 1024;
+
 
     /**
      * Constructs a <tt>FileUnpacker</tt>.
@@ -112,6 +124,9 @@ public abstract class FileUnpacker
      * Copies an input stream to a target, setting its timestamp to that of the pack file.
      * <p/>
      * If the target is a blockable file, then a temporary file will be created, and the file queued.
+     * <p/>
+     * If the stream is file-backed, the content is transferred directly between file channels, without copying it
+     * through the heap.
      *
      * @param file   the pack file
      * @param in     the pack file stream
@@ -123,20 +138,24 @@ public abstract class FileUnpacker
     protected long copy(PackFile file, InputStream in, File target) throws IOException
     {
         OutputStream out = getTarget(file, target);
-        byte[] buffer = new byte[5120];
         long bytesCopied = 0;
         long bytesToCopy = (file.isBackReference() ? file.getLinkedPackFile().length() : file.length());
         logger.fine("|- Copying to file system (size: " + bytesToCopy + " bytes)");
         try
         {
-            while (bytesCopied < bytesToCopy)
+            if (in instanceof FileInputStream && out instanceof FileOutputStream)
+            {
+                bytesCopied = transfer(((FileInputStream) in).getChannel(), ((FileOutputStream) out).getChannel(),
+                                       bytesToCopy);
+            }
+            else
             {
-                if (cancellable.isCancelled())
+                byte[] buffer = new byte[BUFFER_SIZE];
+                while (bytesCopied < bytesToCopy)
                 {
-                    // operation cancelled
-                    throw new InterruptedIOException("Copy operation cancelled");
+                    checkCancelled();
+                    bytesCopied = copy(file, buffer, in, out, bytesCopied);
                 }
-                bytesCopied = copy(file, buffer, in, out, bytesCopied);
             }
         }
         finally
@@ -150,13 +169,15 @@ public abstract class FileUnpacker
     }
 
     /**
-     * Invoked after copying is complete to set the last modified timestamp, and queue blockable files.
+     * Invoked after copying is complete to set the last modified timestamp and permissions, and queue blockable
+     * files.
      *
      * @param file the pack file meta-data
      */
     protected void postCopy(PackFile file)
     {
         setLastModified(file);
+        setMode(file);
 
         if (isBlockable(file))
         {
@@ -164,6 +185,48 @@ public abstract class FileUnpacker
         }
     }
 
+    /**
+     * Transfers bytes from one file channel to another.
+     * <p/>
+     * Cancellation is checked prior to each transfer of up to {@link #TRANSFER_SIZE} bytes.
+     *
+     * @param in          the channel to read from, positioned at the start of the data to copy
+     * @param out         the channel to write to
+     * @param bytesToCopy the no. of bytes to copy
+     * @return the number of bytes actually copied
+     * @throws InterruptedIOException if the copy operation is cancelled
+     * @throws IOException            for any I/O error
+     */
+    protected long transfer(FileChannel in, FileChannel out, long bytesToCopy) throws IOException
+    {
+        long bytesCopied = 0;
+        while (bytesCopied < bytesToCopy)
+        {
+            checkCancelled();
+            long transferred = out.transferFrom(in, bytesCopied, Math.min(bytesToCopy - bytesCopied, TRANSFER_SIZE));
+            if (transferred <= 0)
+            {
+                throw new IOException("Unexpected end of stream (installer corrupted?)");
+            }
+            bytesCopied += transferred;
+        }
+        return bytesCopied;
+    }
+
+    /**
+     * Throws an exception if the copy operation has been cancelled.
+     *
+     * @throws InterruptedIOException if the copy operation is cancelled
+     */
+    private void checkCancelled() throws InterruptedIOException
+    {
+        if (cancellable.isCancelled())
+        {
+            // operation cancelled
+            throw new InterruptedIOException("Copy operation cancelled");
+        }
+    }
+
     /**
      * Copies from the input stream to the output stream.
      *
@@ -250,6 +313,23 @@ public abstract class FileUnpacker
         }
     }
 
+    /**
+     * Sets the permissions of a file from the pack-file meta-data.
+     *
+     * @param file the pack file meta-data
+     */
+    protected void setMode(PackFile file)
+    {
+        if (file.getMode() != 0)
+        {
+            File f = (tmpTarget != null) ? tmpTarget : target;
+            if (!FilePermissions.setMode(f, file.getMode()))
+            {
+                logger.warning("Failed to set permissions for: " + target);
+            }
+        }
+    }
+
     /**
      * Determines if a pack file is blockable.
      * <p/>
@@ -1,18 +1,15 @@
 package com.izforge.izpack.installer.unpacker;
 
 import com.izforge.izpack.api.data.InstallData;
-import com.izforge.izpack.api.exception.ResourceException;
-import com.izforge.izpack.api.exception.ResourceInterruptedException;
 import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.installer.web.WebPackCache;
 import com.izforge.izpack.installer.web.WebRepositoryAccessor;
 import com.izforge.izpack.util.IoHelper;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InterruptedIOException;
-import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.logging.Logger;
 
 /**
@@ -27,6 +24,18 @@ public class GUIPackResources extends AbstractPackResources
      */
     private static final Logger logger = Logger.getLogger(GUIPackResources.class.getName());
 
+    /**
+     * Connector that prompts for proxy settings and passwords if required.
+     */
+    private static final WebPackCache.Connector CONNECTOR = new WebPackCache.Connector()
+    {
+        @Override
+        public URLConnection connect(URL url, long offset) throws IOException
+        {
+            return WebRepositoryAccessor.connect(url, offset);
+        }
+    };
+
     /**
      * Constructs a {@code GUIPackResources}.
      *
@@ -39,10 +48,8 @@ public class GUIPackResources extends AbstractPackResources
     }
 
     @Override
-    protected InputStream getWebPackStream(String name, String webDirURL)
+    protected File getWebPackFile(String name, String webDirURL) throws IOException
     {
-        InputStream result;
-
         InstallData installData = getInstallData();
         String baseName = installData.getInfo().getInstallerBase();
         File installerDir = new File(baseName).getParentFile();
@@ -51,18 +58,12 @@ public class GUIPackResources extends AbstractPackResources
             baseName = baseName.substring(baseName.lastIndexOf('/'));
 
         String packFileName = baseName + ".pack-" + name + ".jar";
-        String path = null;
 
         // Look first in same directory as primary jar, then download it if not found
         File packLocalFile = new File(installerDir, packFileName);
         if (packLocalFile.exists() && packLocalFile.canRead())
         {
             logger.info("Found local pack " + packLocalFile.getAbsolutePath());
-            try {
-                path = "jar:" + packLocalFile.toURI().toURL() + "!/packs/pack-" + name;
-            } catch(MalformedURLException exception) {
-                throw new ResourceException("Malformed URL", exception);
-            }
         }
         else
         {
@@ -70,34 +71,13 @@ public class GUIPackResources extends AbstractPackResources
             logger.info("Downloading remote pack " + packURL);
             String tempFolder = IoHelper.translatePath(installData.getInfo().getUninstallerPath()
                     + WEB_TEMP_SUB_PATH, installData.getVariables());
-            String tempFile;
-            try
-            {
-                tempFile = WebRepositoryAccessor.getCachedUrl(packURL, tempFolder);
-                packLocalFile = new File(tempFile);
-            }
-            catch (InterruptedIOException exception)
-            {
-                throw new ResourceInterruptedException("Retrieval of " + webDirURL + " interrupted", exception);
-            }
-            catch (IOException exception)
+            packLocalFile = getCachedWebPackFile(name, new URL(packURL), new File(tempFolder), CONNECTOR);
+            if (packLocalFile == null)
             {
-                throw new ResourceException("Failed to read " + webDirURL, exception);
+                packLocalFile = WebRepositoryAccessor.download(packURL, new File(tempFolder));
             }
-
-            path = "jar:" + packLocalFile.getPath() + "!/packs/pack-" + name;
-        }
-
-        try
-        {
-            URL url = new URL(path);
-            result = url.openStream();
-        }
-        catch (IOException exception)
-        {
-            throw new ResourceException("Failed to read pack", exception);
         }
-        return result;
+        return packLocalFile;
     }
 
 }
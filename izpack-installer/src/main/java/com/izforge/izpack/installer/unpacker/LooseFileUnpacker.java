@@ -99,9 +99,15 @@ public class LooseFileUnpacker extends FileUnpacker
                 stream = new FileInputStream(resolvedFile);
                 // may have a different length & last modified than we had at compile time, therefore we have to
                 // build a new PackFile for the copy process...
+                int mode = file.getMode();
                 file = new PackFile(resolvedFile.getParentFile(), resolvedFile, file.getTargetPath(),
                                     file.osConstraints(), file.override(), file.overrideRenameTo(),
                                     file.blockable(), file.getAdditionals());
+                if (file.getMode() == 0)
+                {
+                    // loose media may not preserve permissions, so fall back to those recorded at compile time
+                    file.setMode(mode);
+                }
 
                 copy(file, stream, target);
             }
@@ -0,0 +1,209 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+
+/**
+ * Downloads web packs on a pool of background threads, ahead of them being unpacked.
+ * <p/>
+ * Packs passed to {@link #prefetch} are downloaded in the order given, with at most a fixed number of downloads in
+ * progress at a time. {@link #get} waits for a prefetched pack to be downloaded, or downloads it on the calling thread
+ * if it wasn't prefetched.
+ */
+public class PackDownloader
+{
+    /**
+     * Downloads a single pack.
+     */
+    public interface Download
+    {
+        /**
+         * Downloads a pack.
+         *
+         * @param name the pack name
+         * @return the downloaded pack file
+         * @throws IOException for any I/O error
+         */
+        File download(String name) throws IOException;
+    }
+
+    /**
+     * The default maximum no. of concurrent downloads.
+     */
+    public static final int DEFAULT_CONNECTIONS = 3;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(PackDownloader.class.getName());
+
+    /**
+     * The download threads.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The pack download.
+     */
+    private final Download download;
+
+    /**
+     * The prefetched downloads that haven't been collected, keyed on pack name.
+     */
+    private final Map<String, Future<File>> downloads = new HashMap<String, Future<File>>();
+
+    /**
+     * Constructs a <tt>PackDownloader</tt>.
+     *
+     * @param connections the maximum no. of concurrent downloads
+     * @param download    the pack download
+     */
+    public PackDownloader(int connections, Download download)
+    {
+        this.executor = Executors.newFixedThreadPool(connections, new DownloadThreadFactory());
+        this.download = download;
+    }
+
+    /**
+     * Starts downloading packs in the background.
+     * <p/>
+     * Packs that have already been prefetched are ignored.
+     *
+     * @param names the pack names, in the order they will be requested
+     */
+    public synchronized void prefetch(List<String> names)
+    {
+        for (final String name : names)
+        {
+            if (!downloads.containsKey(name))
+            {
+                logger.fine("Prefetching pack " + name);
+                downloads.put(name, executor.submit(new Callable<File>()
+                {
+                    @Override
+                    public File call() throws Exception
+                    {
+                        return download.download(name);
+                    }
+                }));
+            }
+        }
+    }
+
+    /**
+     * Returns a downloaded pack.
+     * <p/>
+     * If the pack was prefetched, this waits for its download to complete, otherwise it is downloaded on the calling
+     * thread.
+     *
+     * @param name the pack name
+     * @return the downloaded pack file
+     * @throws InterruptedIOException if the calling thread is interrupted, or the download was cancelled
+     * @throws IOException            if the download failed
+     */
+    public File get(String name) throws IOException
+    {
+        Future<File> future;
+        synchronized (this)
+        {
+            future = downloads.remove(name);
+        }
+        if (future == null)
+        {
+            return download.download(name);
+        }
+        try
+        {
+            return future.get();
+        }
+        catch (InterruptedException exception)
+        {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for pack " + name);
+        }
+        catch (CancellationException exception)
+        {
+            throw new InterruptedIOException("Download of pack " + name + " cancelled");
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            else if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IOException("Failed to download pack " + name, cause);
+        }
+    }
+
+    /**
+     * Cancels any outstanding downloads, and stops the download threads.
+     */
+    public synchronized void shutdown()
+    {
+        for (Future<File> future : downloads.values())
+        {
+            future.cancel(true);
+        }
+        downloads.clear();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Creates daemon download threads, so that an abandoned download cannot prevent the installer from exiting.
+     */
+    private static class DownloadThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "izpack-download-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
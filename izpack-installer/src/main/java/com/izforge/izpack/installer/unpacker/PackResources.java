@@ -23,6 +23,7 @@ package com.izforge.izpack.installer.unpacker;
 
 
 import java.io.InputStream;
+import java.util.List;
 
 import com.izforge.izpack.api.exception.ResourceException;
 import com.izforge.izpack.api.exception.ResourceInterruptedException;
@@ -57,4 +58,19 @@ public interface PackResources
      * @throws ResourceException            for any other resource error
      */
     InputStream getInputStream(String name);
-}
\ No newline at end of file
+
+    /**
+     * Notifies that packs will be requested.
+     * <p/>
+     * Implementations may use this to start retrieving the packs in the background, so that they are available by
+     * the time {@link #getPackStream} is invoked.
+     *
+     * @param names the pack names, in the order they will be requested
+     */
+    void prefetch(List<String> names);
+
+    /**
+     * Cancels the retrieval of any packs passed to {@link #prefetch} that haven't been requested.
+     */
+    void cancelPrefetch();
+}
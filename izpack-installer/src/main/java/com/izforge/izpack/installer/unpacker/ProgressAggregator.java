@@ -0,0 +1,407 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.event.ProgressListener;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+/**
+ * Coalesces the per-file progress of the unpacker into snapshots published to a {@link ProgressListener} at a fixed
+ * rate.
+ * <p/>
+ * The unpacker reports each file via {@link #progress(String, long)}, which only updates counters. A publisher thread
+ * forwards the latest file and the proportion of the step's bytes processed to the listener via
+ * {@link ProgressListener#progress(int, String)}, at most once per frame, so that the listener isn't flooded when
+ * installing many small files. Progress is weighted by bytes rather than by file count.
+ * <p/>
+ * All other notifications are forwarded immediately, after publishing any pending snapshot, so the listener sees
+ * them in order.
+ */
+public class ProgressAggregator implements ProgressListener
+{
+    /**
+     * The no. of sub-steps that each byte-weighted step is divided into.
+     */
+    public static final int STEP_UNITS = 1000;
+
+    /**
+     * The default interval between snapshots, in milliseconds.
+     */
+    public static final long FRAME_INTERVAL = 50;
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(ProgressAggregator.class.getName());
+
+    /**
+     * The listener to publish to.
+     */
+    private final ProgressListener listener;
+
+    /**
+     * The interval between snapshots, in milliseconds. If {@code <= 0}, snapshots are only published when another
+     * notification is made.
+     */
+    private final long interval;
+
+    /**
+     * Serialises notifications to the listener.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The total no. of bytes in the current step.
+     */
+    private final AtomicLong total = new AtomicLong();
+
+    /**
+     * The no. of bytes of the files processed before the current file, or of all files once the step ends.
+     */
+    private final AtomicLong done = new AtomicLong();
+
+    /**
+     * The no. of bytes of the current file.
+     */
+    private final AtomicLong current = new AtomicLong();
+
+    /**
+     * The path of the current file, or {@code null} if no file of a byte-weighted step is in progress.
+     */
+    private final AtomicReference<String> message = new AtomicReference<String>();
+
+    /**
+     * The last sub-step published.
+     */
+    private int publishedUnits = -1;
+
+    /**
+     * The last message published.
+     */
+    private String publishedMessage;
+
+    /**
+     * The publisher, or {@code null} if no action is in progress.
+     */
+    private ScheduledExecutorService publisher;
+
+    /**
+     * Constructs a <tt>ProgressAggregator</tt> that publishes every {@link #FRAME_INTERVAL} milliseconds.
+     *
+     * @param listener the listener to publish to
+     */
+    public ProgressAggregator(ProgressListener listener)
+    {
+        this(listener, FRAME_INTERVAL);
+    }
+
+    /**
+     * Constructs a <tt>ProgressAggregator</tt>.
+     *
+     * @param listener the listener to publish to
+     * @param interval the interval between snapshots, in milliseconds. If {@code <= 0}, snapshots are only published
+     *                 when another notification is made
+     */
+    public ProgressAggregator(ProgressListener listener, long interval)
+    {
+        this.listener = listener;
+        this.interval = interval;
+    }
+
+    /**
+     * Returns the listener that snapshots are published to.
+     *
+     * @return the listener
+     */
+    public ProgressListener getListener()
+    {
+        return listener;
+    }
+
+    /**
+     * Starts a byte-weighted step.
+     * <p/>
+     * The listener is notified of a step of {@link #STEP_UNITS} sub-steps.
+     *
+     * @param stepName the name of the step
+     * @param step     the step number
+     * @param bytes    the total no. of bytes of the files in the step
+     */
+    public void startStep(String stepName, int step, long bytes)
+    {
+        synchronized (lock)
+        {
+            endStep();
+            total.set(bytes);
+            done.set(0);
+            current.set(0);
+            publishedUnits = -1;
+            publishedMessage = null;
+            listener.nextStep(stepName, step, STEP_UNITS);
+        }
+    }
+
+    /**
+     * Records that a file of the current byte-weighted step is being processed.
+     * <p/>
+     * This doesn't notify the listener; the file is published with the next snapshot.
+     *
+     * @param path  the file path
+     * @param bytes the file length
+     */
+    public void progress(String path, long bytes)
+    {
+        done.addAndGet(current.getAndSet(bytes));
+        message.set(path);
+    }
+
+    /**
+     * Records that a file of the current byte-weighted step has been skipped.
+     *
+     * @param bytes the file length
+     */
+    public void skip(long bytes)
+    {
+        done.addAndGet(bytes);
+    }
+
+    /**
+     * Invoked when an action starts.
+     *
+     * @param name  the name of the action
+     * @param steps the number of steps the action consists of
+     */
+    @Override
+    public void startAction(String name, int steps)
+    {
+        synchronized (lock)
+        {
+            endStep();
+            listener.startAction(name, steps);
+            start();
+        }
+    }
+
+    /**
+     * Invoked when an action finishes.
+     * <p/>
+     * This publishes any pending snapshot, and stops the publisher.
+     */
+    @Override
+    public void stopAction()
+    {
+        synchronized (lock)
+        {
+            endStep();
+            stop();
+            listener.stopAction();
+        }
+    }
+
+    /**
+     * Invoked when an action step starts.
+     *
+     * @param stepName the name of the step
+     * @param step     the step number
+     * @param subSteps the number of sub-steps the step consists of
+     */
+    @Override
+    public void nextStep(String stepName, int step, int subSteps)
+    {
+        synchronized (lock)
+        {
+            endStep();
+            listener.nextStep(stepName, step, subSteps);
+        }
+    }
+
+    /**
+     * Sets the number of sub-steps.
+     *
+     * @param subSteps the number of sub-steps
+     */
+    @Override
+    public void setSubStepNo(int subSteps)
+    {
+        synchronized (lock)
+        {
+            endStep();
+            listener.setSubStepNo(subSteps);
+        }
+    }
+
+    /**
+     * Invoked to notify progress.
+     *
+     * @param message a message describing the step
+     */
+    @Override
+    public void progress(String message)
+    {
+        synchronized (lock)
+        {
+            endStep();
+            listener.progress(message);
+        }
+    }
+
+    /**
+     * Invoked to notify progress.
+     *
+     * @param subStep the sub-step which will be performed next
+     * @param message an additional message describing the sub-step
+     */
+    @Override
+    public void progress(int subStep, String message)
+    {
+        synchronized (lock)
+        {
+            endStep();
+            listener.progress(subStep, message);
+        }
+    }
+
+    /**
+     * Invoked when an action restarts.
+     *
+     * @param name           the name of the action
+     * @param overallMessage a message describing the overall progress
+     * @param tip            a tip describing the current progress
+     * @param steps          the number of steps the action consists of
+     */
+    @Override
+    public void restartAction(String name, String overallMessage, String tip, int steps)
+    {
+        synchronized (lock)
+        {
+            endStep();
+            listener.restartAction(name, overallMessage, tip, steps);
+            start();
+        }
+    }
+
+    /**
+     * Stops the publisher, without notifying the listener.
+     * <p/>
+     * This ensures the publisher doesn't outlive an action that fails before {@link #stopAction()} is invoked.
+     */
+    public void shutdown()
+    {
+        synchronized (lock)
+        {
+            stop();
+        }
+    }
+
+    /**
+     * Publishes a snapshot of the current byte-weighted step, if it has changed since the last one.
+     */
+    void publish()
+    {
+        synchronized (lock)
+        {
+            String path = message.get();
+            if (path != null)
+            {
+                long bytes = total.get();
+                int units = (bytes > 0) ? (int) Math.min(STEP_UNITS, done.get() * STEP_UNITS / bytes) : 0;
+                if (units != publishedUnits || !path.equals(publishedMessage))
+                {
+                    publishedUnits = units;
+                    publishedMessage = path;
+                    listener.progress(units, path);
+                }
+            }
+        }
+    }
+
+    /**
+     * Completes the current file, publishes any pending snapshot, and ends the current byte-weighted step.
+     */
+    private void endStep()
+    {
+        done.addAndGet(current.getAndSet(0));
+        publish();
+        message.set(null);
+    }
+
+    /**
+     * Starts the publisher, if it isn't running.
+     */
+    private void start()
+    {
+        if (publisher == null && interval > 0)
+        {
+            publisher = Executors.newSingleThreadScheduledExecutor(new PublisherThreadFactory());
+            publisher.scheduleAtFixedRate(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        publish();
+                    }
+                    catch (RuntimeException exception)
+                    {
+                        // don't let a failing listener cancel subsequent snapshots
+                        logger.log(Level.WARNING, "Failed to publish progress: " + exception.getMessage(),
+                                   exception);
+                    }
+                }
+            }, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the publisher, if it is running.
+     */
+    private void stop()
+    {
+        if (publisher != null)
+        {
+            publisher.shutdownNow();
+            publisher = null;
+        }
+    }
+
+    /**
+     * Creates a daemon publisher thread, so that a failed installation cannot hang the JVM.
+     */
+    private static class PublisherThreadFactory implements ThreadFactory
+    {
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "izpack-progress");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
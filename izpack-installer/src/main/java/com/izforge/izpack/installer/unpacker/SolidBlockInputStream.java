@@ -0,0 +1,212 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.PackCompression;
+import org.apache.commons.compress.compressors.CompressorException;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+
+/**
+ * Presents a pack stream made of solid compression blocks as the uncompressed concatenation of its files.
+ * <p/>
+ * Each block is preceded by a header holding its uncompressed and compressed lengths. A block is only decompressed
+ * when data is read from it; blocks that are skipped entirely are passed over without decompression.
+ */
+public class SolidBlockInputStream extends InputStream
+{
+    /**
+     * The underlying pack stream.
+     */
+    private final InputStream packStream;
+
+    /**
+     * The compression format.
+     */
+    private final PackCompression compressionFormat;
+
+    /**
+     * The compressed content of the current block.
+     */
+    private BoundedInputStream compressed;
+
+    /**
+     * The decompressed content of the current block, or {@code null} if it hasn't been opened yet.
+     */
+    private InputStream decompressed;
+
+    /**
+     * The no. of uncompressed bytes remaining in the current block.
+     */
+    private long remaining;
+
+    /**
+     * Determines if the end of the pack stream has been reached.
+     */
+    private boolean eof;
+
+    /**
+     * Constructs a <tt>SolidBlockInputStream</tt>.
+     *
+     * @param packStream        the pack stream
+     * @param compressionFormat the compression format of the blocks
+     */
+    public SolidBlockInputStream(InputStream packStream, PackCompression compressionFormat)
+    {
+        this.packStream = packStream;
+        this.compressionFormat = compressionFormat;
+    }
+
+    @Override
+    public int read() throws IOException
+    {
+        byte[] buffer = new byte[1];
+        int read = read(buffer, 0, 1);
+        return (read == -1) ? -1 : buffer[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) throws IOException
+    {
+        if (length == 0)
+        {
+            return 0;
+        }
+        if (!nextBlock())
+        {
+            return -1;
+        }
+        int read = getDecompressed().read(buffer, offset, (int) Math.min(length, remaining));
+        if (read == -1)
+        {
+            throw new EOFException("Unexpected end of compressed block (installer corrupted?)");
+        }
+        remaining -= read;
+        return read;
+    }
+
+    /**
+     * Skips over uncompressed bytes.
+     * <p/>
+     * Unlike most streams, this skips the requested number of bytes unless the end of the stream is reached.
+     *
+     * @param count the number of bytes to skip
+     * @return the number of bytes skipped
+     * @throws IOException for any I/O error
+     */
+    @Override
+    public long skip(long count) throws IOException
+    {
+        long skipped = 0;
+        while (skipped < count && nextBlock())
+        {
+            long toSkip = Math.min(count - skipped, remaining);
+            if (toSkip == remaining)
+            {
+                // the rest of the block is not required, so it need not be decompressed
+                remaining = 0;
+            }
+            else
+            {
+                IOUtils.skipFully(getDecompressed(), toSkip);
+                remaining -= toSkip;
+            }
+            skipped += toSkip;
+        }
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        IOUtils.closeQuietly(decompressed);
+        packStream.close();
+    }
+
+    /**
+     * Positions the stream on a block with data remaining, reading the next block header if the current block is
+     * exhausted.
+     *
+     * @return {@code true} if there is data remaining, {@code false} if the end of the stream has been reached
+     * @throws IOException for any I/O error
+     */
+    private boolean nextBlock() throws IOException
+    {
+        while (remaining == 0 && !eof)
+        {
+            if (compressed != null)
+            {
+                // discard any unread compressed bytes, such as end of stream markers
+                IOUtils.closeQuietly(decompressed);
+                while (compressed.skip(Long.MAX_VALUE) > 0 || compressed.read() != -1)
+                {
+                    // keep skipping
+                }
+                compressed = null;
+                decompressed = null;
+            }
+            int first = packStream.read();
+            if (first == -1)
+            {
+                eof = true;
+            }
+            else
+            {
+                byte[] header = new byte[16];
+                header[0] = (byte) first;
+                IOUtils.readFully(packStream, header, 1, header.length - 1);
+                DataInputStream input = new DataInputStream(new ByteArrayInputStream(header));
+                remaining = input.readLong();
+                compressed = new BoundedInputStream(packStream, input.readLong());
+                compressed.setPropagateClose(false);
+            }
+        }
+        return !eof;
+    }
+
+    /**
+     * Returns the decompressed content of the current block, opening it if required.
+     *
+     * @return the decompressed content
+     * @throws IOException if the block cannot be decompressed
+     */
+    private InputStream getDecompressed() throws IOException
+    {
+        if (decompressed == null)
+        {
+            try
+            {
+                decompressed = CompressedFileUnpacker.createCompressorInputStream(compressionFormat, compressed);
+            }
+            catch (CompressorException exception)
+            {
+                throw new IOException("Failed to decompress block: " + exception.getMessage(), exception);
+            }
+        }
+        return decompressed;
+    }
+}
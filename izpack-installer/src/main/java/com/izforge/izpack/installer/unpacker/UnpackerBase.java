@@ -35,15 +35,19 @@ import com.izforge.izpack.api.resource.Messages;
 import com.izforge.izpack.api.resource.Resources;
 import com.izforge.izpack.api.rules.RulesEngine;
 import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.core.data.PackInfoTable;
 import com.izforge.izpack.core.handler.ProgressHandler;
 import com.izforge.izpack.core.handler.PromptUIHandler;
 import com.izforge.izpack.core.resource.ResourceManager;
+import com.izforge.izpack.core.verify.InstallationManifest;
 import com.izforge.izpack.installer.bootstrap.Installer;
+import com.izforge.izpack.installer.data.InstallationInformation;
 import com.izforge.izpack.installer.data.UninstallData;
 import com.izforge.izpack.installer.event.InstallerListeners;
 import com.izforge.izpack.installer.util.PackHelper;
 import com.izforge.izpack.util.*;
 import com.izforge.izpack.util.file.DirectoryScanner;
+import com.izforge.izpack.util.file.FileDigest;
 import com.izforge.izpack.util.file.GlobPatternMapper;
 import com.izforge.izpack.util.file.types.FileSet;
 import com.izforge.izpack.util.os.FileQueue;
@@ -79,6 +83,11 @@ public abstract class UnpackerBase implements IUnpacker
      */
     public static final String RESOURCES_PATH = "resources/";
 
+    /**
+     * The prefix of pack stream resource names.
+     */
+    private static final String PACK_STREAM_PREFIX = "packs/pack-";
+
     /**
      * The installation data.
      */
@@ -132,9 +141,9 @@ public abstract class UnpackerBase implements IUnpacker
     private final InstallerListeners listeners;
 
     /**
-     * The installer listener.
+     * The progress listener, wrapped to coalesce file progress.
      */
-    private ProgressListener listener;
+    private ProgressAggregator listener;
 
     /**
      * The prompt.
@@ -179,6 +188,36 @@ public abstract class UnpackerBase implements IUnpacker
      */
     private Messages packMessages;
 
+    /**
+     * Writes pack files concurrently, or {@code null} if files are written on the installer thread.
+     */
+    private ConcurrentFileExtractor extractor;
+
+    /**
+     * The installed files, for verifying the installation.
+     */
+    private final InstallationManifest manifest = new InstallationManifest();
+
+    /**
+     * The no. of files written.
+     */
+    private int writtenFiles;
+
+    /**
+     * The no. of bytes written.
+     */
+    private long writtenBytes;
+
+    /**
+     * The no. of existing files that weren't overwritten.
+     */
+    private int skippedFiles;
+
+    /**
+     * The no. of bytes of existing files that weren't overwritten.
+     */
+    private long skippedBytes;
+
     /**
      * Constructs an <tt>UnpackerBase</tt>.
      *
@@ -222,13 +261,17 @@ public abstract class UnpackerBase implements IUnpacker
 
     /**
      * Sets the progress listener.
+     * <p/>
+     * File progress is coalesced by a {@link ProgressAggregator}, so the listener is notified at a fixed rate rather
+     * than once per file.
      *
      * @param listener the progress listener
      */
     @Override
     public void setProgressListener(ProgressListener listener)
     {
-        this.listener = listener;
+        this.listener = (listener instanceof ProgressAggregator) ? (ProgressAggregator) listener
+                : new ProgressAggregator(listener);
     }
 
     /**
@@ -283,21 +326,41 @@ public abstract class UnpackerBase implements IUnpacker
         logIntro();
 
         state = State.UNPACKING;
-        ObjectInputStream objIn = null;
+        InputStream in = null;
         try
         {
             FileQueue queue = queueFactory.isSupported() ? queueFactory.create() : null;
 
-            InputStream in = resources.getInputStream("packs.info");
-            objIn = new ObjectInputStream(in);
-            @SuppressWarnings("unchecked") List<PackInfo> packsInfo = (List<PackInfo>) objIn.readObject();
-            objIn.close();
+            in = resources.getInputStream("packs.info");
+            PackInfoTable packsInfo = PackInfoTable.read(in);
+            in.close();
 
             selectedPacks = installData.getSelectedPacks();
+            prefetch(packsInfo.getPacks());
+
+            int threads = getExtractionThreads();
+            if (threads > 1 && !listeners.isFileListener())
+            {
+                // files are only written concurrently when no listener needs to observe each file in turn
+                extractor = new ConcurrentFileExtractor(threads, new ConcurrentFileExtractor.Completion()
+                {
+                    @Override
+                    public void completed(PackFile packFile, File target, Pack pack, FileUnpacker unpacker)
+                    {
+                        checkInterrupt();
+                        if (!unpacker.isQueued())
+                        {
+                            listeners.afterFile(target, packFile, pack);
+                        }
+                    }
+                });
+            }
 
             preUnpack(selectedPacks);
             unpack(packsInfo, queue);
             postUnpack(selectedPacks, queue);
+            logger.info("Wrote " + writtenFiles + " files (" + writtenBytes + " bytes), skipped " + skippedFiles
+                                + " existing files (" + skippedBytes + " bytes)");
         }
         catch (Exception exception)
         {
@@ -352,12 +415,42 @@ public abstract class UnpackerBase implements IUnpacker
         }
         finally
         {
+            if (extractor != null)
+            {
+                extractor.shutdown();
+                extractor = null;
+            }
+            if (listener != null)
+            {
+                listener.shutdown();
+            }
+            resources.cancelPrefetch();
             cleanup();
             logEpilog();
-            IOUtils.closeQuietly(objIn);
+            IOUtils.closeQuietly(in);
         }
     }
 
+    /**
+     * Notifies the pack resources of the packs that will be unpacked, in the order they will be unpacked.
+     * <p/>
+     * This allows web-based packs to be downloaded while earlier packs are being installed.
+     *
+     * @param packs the packs
+     */
+    protected void prefetch(List<Pack> packs)
+    {
+        List<String> names = new ArrayList<String>();
+        for (Pack pack : packs)
+        {
+            if (shouldUnpack(pack))
+            {
+                names.add(pack.getName());
+            }
+        }
+        resources.prefetch(names);
+    }
+
     /**
      * Return the state of the operation.
      *
@@ -451,22 +544,26 @@ public abstract class UnpackerBase implements IUnpacker
 
     /**
      * Unpacks the selected packs.
+     * <p/>
+     * The file table of each selected pack is only decoded when the pack is reached.
      *
      * @param packs the packs to unpack
      * @param queue the file queue, or {@code null} if queuing is not supported
      * @throws ResourceInterruptedException if unpacking is cancelled
      * @throws InstallerException           for any error
+     * @throws IOException                  if the pack information cannot be read
      */
-    protected void unpack(List<PackInfo> packs, FileQueue queue) throws InstallerException
+    protected void unpack(PackInfoTable packs, FileQueue queue) throws InstallerException, IOException
     {
         int count = packs.size();
         for (int i = 0; i < count; i++)
         {
-            PackInfo packInfo = packs.get(i);
-            Pack pack = packInfo.getPack();
+            Pack pack = packs.getPacks().get(i);
 
             if (shouldUnpack(pack))
             {
+                PackInfo packInfo = packs.getPackInfo(i);
+                pack = packInfo.getPack();
                 List<ParsableFile> parsables = new ArrayList<ParsableFile>();
                 List<ExecutableFile> executables = new ArrayList<ExecutableFile>();
                 List<UpdateCheck> updateChecks = new ArrayList<UpdateCheck>();
@@ -474,6 +571,7 @@ public abstract class UnpackerBase implements IUnpacker
                 listeners.beforePack(pack, i);
                 unpack(packInfo, i, queue, parsables, executables, updateChecks);
                 checkInterrupt();
+                updateManifest(pack, parsables, executables);
 
                 logger.fine("Found " + parsables.size() + " parsable files");
                 parseFiles(parsables);
@@ -510,11 +608,20 @@ public abstract class UnpackerBase implements IUnpacker
         {
             int len = packFiles.length;
 
+            long bytes = 0;
+            for (PackFile packFile : packFiles)
+            {
+                bytes += packFile.length();
+            }
             String stepName = getStepName(pack);
             selectedPacks = installData.getSelectedPacks();
-            listener.nextStep(stepName, selectedPacks.indexOf(pack) + 1, len);
+            listener.startStep(stepName, selectedPacks.indexOf(pack) + 1, bytes);
 
             in = resources.getPackStream(pack.getName());
+            if (isSolidCompression())
+            {
+                in = new SolidBlockInputStream(in, getInstallData().getInfo().getCompressionFormat());
+            }
 
             for (int i = 0; i < len; i++)
             {
@@ -532,9 +639,14 @@ public abstract class UnpackerBase implements IUnpacker
                     {
                         // condition is not fulfilled, so skip it in main stream
                         skip(packFile, pack, in);
+                        listener.skip(packFile.length());
                     }
                 }
             }
+            if (extractor != null)
+            {
+                extractor.drain();
+            }
             readParsableFiles(packInfo, parsables);
             readExecutableFiles(packInfo, executables);
             readUpdateChecks(packInfo, updateChecks);
@@ -549,6 +661,11 @@ public abstract class UnpackerBase implements IUnpacker
         }
         finally
         {
+            if (extractor != null)
+            {
+                // no-op if the pack was unpacked successfully
+                extractor.discard();
+            }
             IOUtils.closeQuietly(in);
         }
     }
@@ -610,11 +727,22 @@ public abstract class UnpackerBase implements IUnpacker
 
         listeners.beforeFile(target, packFile, pack);
 
-        listener.progress(fileNo, path);
+        listener.progress(path, packFile.length());
+
+        if (extractor != null && extractor.isPending(target))
+        {
+            // the same target occurs earlier in the pack, and must be written before it can be checked
+            extractor.drain();
+        }
 
         // if this file exists and should not be overwritten, check what to do
         if (target.exists() && (packFile.override() != OverrideType.OVERRIDE_TRUE) && !isOverwriteFile(packFile, target))
         {
+            ++skippedFiles;
+            skippedBytes += packFile.length();
+            // only files compared with the packed content are known to match it
+            manifest.add(pack.getName(), path, packFile.length(),
+                         packFile.override() == OverrideType.OVERRIDE_CHANGED ? packFile.getDigest() : null);
             if (!packFile.isBackReference() && !pack.isLoose() && !packFile.isPack200Jar())
             {
                 long size = packFile.size();
@@ -625,6 +753,7 @@ public abstract class UnpackerBase implements IUnpacker
         {
             handleOverrideRename(packFile, target);
             extract(packFile, target, packInputStream, pack, queue);
+            manifest.add(pack.getName(), path, packFile.length(), packFile.getDigest());
         }
     }
 
@@ -643,6 +772,8 @@ public abstract class UnpackerBase implements IUnpacker
     protected void extract(PackFile packFile, File target, InputStream packInputStream, Pack pack, FileQueue queue)
             throws IOException
     {
+        ++writtenFiles;
+        writtenBytes += packFile.length();
         InputStream packStream = null;
         try
         {
@@ -651,11 +782,17 @@ public abstract class UnpackerBase implements IUnpacker
             if (!pack.isLoose() && packFile.isBackReference())
             {
                 PackFile linkedPackFile = packFile.getLinkedPackFile();
-                packStream = resources.getInputStream(ResourceManager.RESOURCE_BASEPATH_DEFAULT + linkedPackFile.getStreamResourceName());
+                packStream = getLinkedStream(linkedPackFile);
                 if (!packFile.isPack200Jar())
                 {
+                    if (isSolidCompression())
+                    {
+                        packStream = new SolidBlockInputStream(packStream,
+                                                               getInstallData().getInfo().getCompressionFormat());
+                    }
                     // Non-Pack200 files are saved in main pack stream
                     // Offset is always 0 for Pack200 resources, because each file has its own stream resource
+                    // Compressed pack streams are stored uncompressed in the jar, so skipping doesn't read the data
                     long size = linkedPackFile.getStreamOffset();
                     logger.fine("|- Backreference to pack stream (offset: " + size + " bytes");
                     skip(packStream, size);
@@ -669,6 +806,18 @@ public abstract class UnpackerBase implements IUnpacker
             }
 
             unpacker = createFileUnpacker(packFile, pack, queue, cancellable);
+            if (extractor != null)
+            {
+                if (!pack.isLoose() && extractor.canExtract(packFile, unpacker)
+                        && (queue == null || packFile.blockable() == Blockable.BLOCKABLE_NONE))
+                {
+                    logger.fine("|- Extracting file concurrently using " + unpacker.getClass().getName() + ")");
+                    extractor.submit(packFile, packInputStream, target, pack, unpacker);
+                    return;
+                }
+                // files are reported to listeners in pack order, so earlier files must be completed first
+                extractor.drain();
+            }
             logger.fine("|- Extracting file using " + unpacker.getClass().getName() + ")");
             unpacker.unpack(packFile, packStream, target);
             checkInterrupt();
@@ -687,6 +836,25 @@ public abstract class UnpackerBase implements IUnpacker
         }
     }
 
+    /**
+     * Returns the stream containing the content of a back reference.
+     * <p/>
+     * For web installers, pack streams are in separate pack jars, including those shared between packs, so these
+     * are obtained via {@link PackResources#getPackStream}. Other streams are read from the installer.
+     *
+     * @param linkedPackFile the pack file referred to
+     * @return the stream containing the pack file content
+     */
+    private InputStream getLinkedStream(PackFile linkedPackFile)
+    {
+        String name = linkedPackFile.getStreamResourceName();
+        if (getInstallData().getInfo().getWebDirURL() != null && name.startsWith(PACK_STREAM_PREFIX))
+        {
+            return resources.getPackStream(name.substring(PACK_STREAM_PREFIX.length()));
+        }
+        return resources.getInputStream(ResourceManager.RESOURCE_BASEPATH_DEFAULT + name);
+    }
+
     /**
      * Skips a pack file.
      *
@@ -726,7 +894,7 @@ public abstract class UnpackerBase implements IUnpacker
         } else if (file.isPack200Jar())
         {
             unpacker = new Pack200FileUnpacker(cancellable, resources, queue);
-        } else if (compressionFormat != PackCompression.DEFAULT)
+        } else if (compressionFormat != PackCompression.DEFAULT && !isSolidCompression())
         {
             unpacker = new CompressedFileUnpacker(cancellable, queue, compressionFormat);
         } else
@@ -736,6 +904,34 @@ public abstract class UnpackerBase implements IUnpacker
         return unpacker;
     }
 
+    /**
+     * Returns the number of threads used to write pack files to disk.
+     * <p/>
+     * Small files read from the pack stream are written by these threads while the installer thread continues to
+     * read the pack stream. As {@link InstallerListener#beforeFile} could then be invoked for a file before
+     * {@link InstallerListener#afterFile} has been invoked for the preceding one, files are only written
+     * concurrently if no {@link InstallerListener#isFileListener() file listeners} are registered.
+     *
+     * @return the number of threads. If {@code <= 1}, files are written on the installer thread
+     */
+    protected int getExtractionThreads()
+    {
+        return Math.min(Runtime.getRuntime().availableProcessors(), 4);
+    }
+
+    /**
+     * Determines if pack streams are made of solid compression blocks.
+     * <p/>
+     * If so, pack streams are read through a {@link SolidBlockInputStream}, and pack file offsets and sizes refer
+     * to the uncompressed content.
+     *
+     * @return {@code true} if pack streams are made of solid compression blocks
+     */
+    protected boolean isSolidCompression()
+    {
+        return getInstallData().getInfo().isSolidCompression();
+    }
+
     /**
      * Invoked after each pack has been unpacked.
      *
@@ -761,11 +957,36 @@ public abstract class UnpackerBase implements IUnpacker
 
         // write installation information
         writeInstallationInformation();
+        uninstallData.addAdditionalData(InstallationManifest.RESOURCE, manifest);
 
         // unpacking complete
         listener.stopAction();
     }
 
+    /**
+     * Updates the installation manifest for the files of a pack that are changed after they are unpacked.
+     * <p/>
+     * The content of parsable files isn't verified, and executables that aren't kept are removed.
+     *
+     * @param pack        the pack
+     * @param parsables   the parsable files of the pack
+     * @param executables the executable files of the pack
+     */
+    protected void updateManifest(Pack pack, List<ParsableFile> parsables, List<ExecutableFile> executables)
+    {
+        for (ParsableFile parsable : parsables)
+        {
+            manifest.uncheck(pack.getName(), parsable.getPath());
+        }
+        for (ExecutableFile executable : executables)
+        {
+            if (!executable.keepFile)
+            {
+                manifest.remove(pack.getName(), executable.path);
+            }
+        }
+    }
+
     /**
      * Invoked after unpacking has completed, in order to clean up.
      */
@@ -1037,8 +1258,8 @@ public abstract class UnpackerBase implements IUnpacker
                         }
                     }
                 }
+                // getDirectoryScanner() has already scanned the install directory
                 DirectoryScanner scanner = fileset.getDirectoryScanner();
-                scanner.scan();
                 String[] srcFiles = scanner.getIncludedFiles();
                 String[] srcDirs = scanner.getIncludedDirectories();
 
@@ -1149,8 +1370,6 @@ public abstract class UnpackerBase implements IUnpacker
         logger.fine("Writing installation information");
         String installDir = installData.getInstallPath();
 
-        List<Pack> installedPacks = new ArrayList<Pack>(selectedPacks);
-
         File installationInfo = new File(installDir + File.separator + InstallData.INSTALLATION_INFORMATION);
         if (!installationInfo.exists())
         {
@@ -1164,43 +1383,20 @@ public abstract class UnpackerBase implements IUnpacker
                     throw new InstallerException("Failed to create directory: " + dir);
                 }
             }
-            if (!installationInfo.createNewFile())
-            {
-                throw new InstallerException("Failed to create file: " + installationInfo);
-            }
         } else
         {
             logger.fine("Previous installation information found");
-            // read in old information and update
-            FileInputStream fin = new FileInputStream(installationInfo);
-            ObjectInputStream oin = new ObjectInputStream(fin);
-
-            List<Pack> packs;
-            try
-            {
-                //noinspection unchecked
-                packs = (List<Pack>) oin.readObject();
-            }
-            catch (Exception exception)
-            {
-                throw new InstallerException("Failed to read previous installation information", exception);
-            }
-            finally
-            {
-                IOUtils.closeQuietly(oin);
-                IOUtils.closeQuietly(fin);
-            }
-            installedPacks.addAll(packs);
         }
 
-        FileOutputStream fout = new FileOutputStream(installationInfo);
-        ObjectOutputStream oout = new ObjectOutputStream(fout);
-        oout.writeObject(installedPacks);
-        oout.writeObject(variables.getProperties());
-
+        try
+        {
+            InstallationInformation.append(installationInfo, selectedPacks, variables.getProperties());
+        }
+        catch (IOException exception)
+        {
+            throw new InstallerException("Failed to write installation information", exception);
+        }
         logger.fine("Writing installation information finished");
-        IOUtils.closeQuietly(oout);
-        IOUtils.closeQuietly(fout);
 
         uninstallData.addFile(installationInfo.getAbsolutePath(), true);
     }
@@ -1251,6 +1447,9 @@ public abstract class UnpackerBase implements IUnpacker
                     // file or record with which mtime
                     // it was installed...)
                     result = (file.lastModified() < pf.lastModified());
+                } else if (pf.override() == OverrideType.OVERRIDE_CHANGED)
+                {
+                    result = isChanged(pf, file);
                 } else
                 {
                     Option defChoice = null;
@@ -1282,6 +1481,34 @@ public abstract class UnpackerBase implements IUnpacker
         return result;
     }
 
+    /**
+     * Determines if an existing file differs from the content of a pack file.
+     * <p/>
+     * The file sizes are compared first, so that the existing file is only read if the sizes are the same.
+     *
+     * @param pf   the pack file
+     * @param file the existing file
+     * @return {@code true} if the file differs, or if the pack file has no recorded digest
+     */
+    protected boolean isChanged(PackFile pf, File file)
+    {
+        byte[] digest = pf.getDigest();
+        if (file.length() != pf.length() || digest == null)
+        {
+            return true;
+        }
+        try
+        {
+            return !Arrays.equals(digest, FileDigest.digest(file));
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.WARNING, "Failed to compute digest of " + file + ": " + exception.getMessage(),
+                       exception);
+            return true;
+        }
+    }
+
     /**
      * Renames a file, if it exists and the pack file defines how it should be handled.
      *
@@ -68,6 +68,10 @@ public class WebAccessor
 
     private int contentLength = -1;
 
+    private long offset = 0;
+
+    private URLConnection connection = null;
+
     /**
      * Create a WebAccessor that prompts for proxies and passwords using a JDialog.
      *
@@ -204,6 +208,10 @@ public class WebAccessor
                     tryProxy = false;
 
                     URLConnection connection = url.openConnection();
+                    if (offset > 0)
+                    {
+                        connection.setRequestProperty("Range", "bytes=" + offset + "-");
+                    }
 
                     if (connection instanceof HttpURLConnection)
                     {
@@ -213,6 +221,7 @@ public class WebAccessor
 
                     //InputStream iii = echoSocket.getInputStream();
                     InputStream inputStream = connection.getInputStream();
+                    webAccessor.connection = connection;
                     iStream = new LoggedInputStream(inputStream, webAccessor); // just to make
 
                 }
@@ -337,4 +346,24 @@ public class WebAccessor
     {
         return contentLength;
     }
+
+    /**
+     * Sets the offset to request content from, for subsequent calls to {@link #openInputStream(URL)}.
+     *
+     * @param offset the offset. If non-zero, an HTTP range request is made
+     */
+    public void setOffset(long offset)
+    {
+        this.offset = offset;
+    }
+
+    /**
+     * Returns the connection opened by the last successful call to {@link #openInputStream(URL)}.
+     *
+     * @return the connection, or {@code null} if no connection has been opened
+     */
+    public URLConnection getConnection()
+    {
+        return connection;
+    }
 }
@@ -0,0 +1,340 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.web;
+
+import com.izforge.izpack.api.data.Pack;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.logging.Logger;
+
+
+/**
+ * A local cache of downloaded web pack jars, keyed on the jar digest recorded by the packager.
+ * <p/>
+ * Jars are downloaded to a <em>&lt;digest&gt;.part</em> file, and renamed to <em>&lt;digest&gt;.jar</em> once their
+ * length and digest have been verified. The digest is calculated as the jar is downloaded. If a download fails, the
+ * partial file is retained, and the download is resumed using an HTTP range request, both on retry and by later
+ * installations using the same cache directory.
+ */
+public class WebPackCache
+{
+    /**
+     * Opens connections to download jars.
+     */
+    public interface Connector
+    {
+        /**
+         * Opens a connection to a URL.
+         *
+         * @param url    the URL
+         * @param offset the offset to start downloading from. If non-zero, the connection should request the content
+         *               from this offset
+         * @return the connection. If the server doesn't support the request for a non-zero offset, the connection may
+         *         return the complete content
+         * @throws IOException for any I/O error
+         */
+        URLConnection connect(URL url, long offset) throws IOException;
+    }
+
+    /**
+     * Connector that opens connections using {@link URL#openConnection()}.
+     */
+    public static final Connector DEFAULT_CONNECTOR = new Connector()
+    {
+        @Override
+        public URLConnection connect(URL url, long offset) throws IOException
+        {
+            URLConnection connection = url.openConnection();
+            if (offset > 0)
+            {
+                connection.setRequestProperty("Range", "bytes=" + offset + "-");
+            }
+            connection.connect();
+            return connection;
+        }
+    };
+
+    /**
+     * The logger.
+     */
+    private static final Logger logger = Logger.getLogger(WebPackCache.class.getName());
+
+    /**
+     * The maximum no. of times to attempt a download.
+     */
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * The buffer size used when downloading jars.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The cache directory.
+     */
+    private final File dir;
+
+    /**
+     * The connector.
+     */
+    private final Connector connector;
+
+    /**
+     * Constructs a <tt>WebPackCache</tt>.
+     *
+     * @param dir       the cache directory
+     * @param connector the connector
+     */
+    public WebPackCache(File dir, Connector connector)
+    {
+        this.dir = dir;
+        this.connector = connector;
+    }
+
+    /**
+     * Returns a jar, downloading it if it isn't already cached.
+     *
+     * @param url    the jar URL
+     * @param digest the expected jar digest
+     * @param length the expected jar length
+     * @return the cached jar
+     * @throws InterruptedIOException if the download is interrupted
+     * @throws IOException            if the jar cannot be downloaded, or doesn't match the expected digest or length
+     */
+    public File get(URL url, byte[] digest, long length) throws IOException
+    {
+        String name = toHex(digest);
+        File file = new File(dir, name + ".jar");
+        if (file.isFile() && file.length() == length)
+        {
+            logger.info("Using cached pack " + file.getAbsolutePath());
+            return file;
+        }
+
+        FileUtils.forceMkdir(dir);
+        File part = new File(dir, name + ".part");
+        for (int attempt = 1; ; ++attempt)
+        {
+            try
+            {
+                download(url, part, digest, length);
+                break;
+            }
+            catch (InterruptedIOException exception)
+            {
+                throw exception;
+            }
+            catch (IOException exception)
+            {
+                if (attempt == MAX_ATTEMPTS)
+                {
+                    throw exception;
+                }
+                logger.warning("Failed to download " + url + ", retrying: " + exception.getMessage());
+            }
+        }
+
+        if (!part.renameTo(file))
+        {
+            // another installer may have completed the same download
+            if (!file.isFile() || file.length() != length)
+            {
+                throw new IOException("Failed to rename " + part + " to " + file);
+            }
+            FileUtils.deleteQuietly(part);
+        }
+        return file;
+    }
+
+    /**
+     * Downloads a jar to a partial file, resuming from the end of the partial file if it exists.
+     *
+     * @param url    the jar URL
+     * @param part   the partial file
+     * @param digest the expected jar digest
+     * @param length the expected jar length
+     * @throws IOException if the jar cannot be downloaded, or doesn't match the expected digest or length
+     */
+    private void download(URL url, File part, byte[] digest, long length) throws IOException
+    {
+        MessageDigest actual = createDigest();
+        long offset = part.isFile() ? part.length() : 0;
+        if (offset > length)
+        {
+            FileUtils.forceDelete(part);
+            offset = 0;
+        }
+        else if (offset > 0)
+        {
+            // the digest can't be persisted, so recalculate it for the data already downloaded
+            update(actual, part);
+        }
+
+        if (offset < length)
+        {
+            URLConnection connection = connector.connect(url, offset);
+            if (offset > 0 && !isResumed(connection, offset))
+            {
+                logger.info("Server doesn't support resuming " + url + ", restarting download");
+                actual.reset();
+                offset = 0;
+            }
+            else if (offset > 0)
+            {
+                logger.info("Resuming download of " + url + " from byte " + offset);
+            }
+
+            InputStream in = connection.getInputStream();
+            OutputStream out = null;
+            try
+            {
+                out = new FileOutputStream(part, offset > 0);
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1)
+                {
+                    if (Thread.currentThread().isInterrupted())
+                    {
+                        throw new InterruptedIOException("Download of " + url + " interrupted");
+                    }
+                    out.write(buffer, 0, read);
+                    actual.update(buffer, 0, read);
+                    offset += read;
+                    if (offset > length)
+                    {
+                        break;
+                    }
+                }
+                out.close();
+            }
+            finally
+            {
+                IOUtils.closeQuietly(out);
+                IOUtils.closeQuietly(in);
+            }
+        }
+
+        if (offset != length)
+        {
+            if (offset > length)
+            {
+                FileUtils.deleteQuietly(part);
+            }
+            throw new IOException("Downloaded " + offset + " bytes of " + url + ", but expected " + length);
+        }
+        if (!MessageDigest.isEqual(digest, actual.digest()))
+        {
+            FileUtils.deleteQuietly(part);
+            throw new IOException("Checksum mismatch for " + url);
+        }
+    }
+
+    /**
+     * Determines if a connection returns content from the requested offset.
+     *
+     * @param connection the connection
+     * @param offset     the requested offset
+     * @return {@code true} if the connection returns partial content starting at {@code offset}
+     * @throws IOException for any I/O error
+     */
+    private boolean isResumed(URLConnection connection, long offset) throws IOException
+    {
+        if (connection instanceof HttpURLConnection
+                && ((HttpURLConnection) connection).getResponseCode() == HttpURLConnection.HTTP_PARTIAL)
+        {
+            String range = connection.getHeaderField("Content-Range");
+            return range != null && range.trim().startsWith("bytes " + offset + "-");
+        }
+        return false;
+    }
+
+    /**
+     * Updates a digest with the contents of a file.
+     *
+     * @param digest the digest
+     * @param file   the file
+     * @throws IOException for any I/O error
+     */
+    private void update(MessageDigest digest, File file) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                digest.update(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * Creates a digest to verify jars.
+     *
+     * @return a new digest
+     * @throws IOException if the digest algorithm isn't supported
+     */
+    private MessageDigest createDigest() throws IOException
+    {
+        try
+        {
+            return MessageDigest.getInstance(Pack.JAR_DIGEST_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException exception)
+        {
+            throw new IOException("Failed to create " + Pack.JAR_DIGEST_ALGORITHM + " digest", exception);
+        }
+    }
+
+    /**
+     * Converts a digest to hexadecimal.
+     *
+     * @param digest the digest
+     * @return the hexadecimal form of the digest
+     */
+    private static String toHex(byte[] digest)
+    {
+        StringBuilder builder = new StringBuilder(digest.length * 2);
+        for (byte b : digest)
+        {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -21,11 +21,16 @@
 
 package com.izforge.izpack.installer.web;
 
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URL;
+import java.net.URLConnection;
 
 /**
  * This class enumerates the availabe packs at the web repository. Parses the config files
@@ -43,9 +48,9 @@ public class WebRepositoryAccessor
     private static final String installFilename = "install.xml";
 
     /**
-     * Files being downloaded in the buffer, 1MB max
+     * The buffer size used when downloading files.
      */
-    private static final int BUFFER_SIZE = 1000000;
+    private static final int BUFFER_SIZE = 64 * 1024;
 
     /**
      * First download the jar file. The create the input stream from the
@@ -58,25 +63,78 @@ public class WebRepositoryAccessor
      */
     public static String getCachedUrl(String url, String tempFolder) throws IOException
     {
-        byte[] raw = new byte[BUFFER_SIZE];
-        WebAccessor webAccessor = new WebAccessor(null);
-        InputStream in = webAccessor.openInputStream(new URL(url));
-        int r = in.read(raw);
-        File tempDir = new File(tempFolder);
+        File temp = download(url, new File(tempFolder));
+        return "file:///" + temp.getAbsolutePath();
+    }
 
-        tempDir.mkdirs();
+    /**
+     * Downloads a file to a temporary file.
+     * <p/>
+     * This may be invoked concurrently. Connections are opened one at a time, as opening a connection may prompt
+     * the user for proxy settings.
+     *
+     * @param url     the URL to download
+     * @param tempDir the directory to create the temporary file in
+     * @return the downloaded file
+     * @throws IOException for any I/O error
+     */
+    public static File download(String url, File tempDir) throws IOException
+    {
+        InputStream in;
+        synchronized (WebRepositoryAccessor.class)
+        {
+            WebAccessor webAccessor = new WebAccessor(null);
+            in = webAccessor.openInputStream(new URL(url));
+        }
+        if (in == null)
+        {
+            throw new IOException("Failed to open " + url);
+        }
 
-        File temp = File.createTempFile("izpacktempfile", "jar", new File(tempFolder));
-        FileOutputStream fos = new FileOutputStream(temp);
-        String path = "file:///" + temp.getAbsolutePath();
-        while (r > 0)
+        File temp = null;
+        OutputStream out = null;
+        try
         {
-            fos.write(raw, 0, r);
-            r = in.read(raw);
+            tempDir.mkdirs();
+            temp = File.createTempFile("izpacktempfile", "jar", tempDir);
+            out = new FileOutputStream(temp);
+            IOUtils.copyLarge(in, out, new byte[BUFFER_SIZE]);
+            out.close();
         }
-        in.close();
-        fos.close();
+        catch (IOException exception)
+        {
+            IOUtils.closeQuietly(out);
+            FileUtils.deleteQuietly(temp);
+            throw exception;
+        }
+        finally
+        {
+            IOUtils.closeQuietly(in);
+        }
+        return temp;
+    }
 
-        return path;
+    /**
+     * Opens a connection, prompting for proxy settings and passwords if required.
+     * <p/>
+     * Connections are opened one at a time, as opening a connection may prompt the user.
+     *
+     * @param url    the URL to connect to
+     * @param offset the offset to request content from. If non-zero, an HTTP range request is made
+     * @return the connection
+     * @throws IOException if the connection cannot be opened
+     */
+    public static URLConnection connect(URL url, long offset) throws IOException
+    {
+        WebAccessor webAccessor = new WebAccessor(null);
+        webAccessor.setOffset(offset);
+        synchronized (WebRepositoryAccessor.class)
+        {
+            if (webAccessor.openInputStream(url) == null)
+            {
+                throw new IOException("Failed to open " + url);
+            }
+        }
+        return webAccessor.getConnection();
     }
 }
@@ -57,6 +57,7 @@ import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Resources;
 import com.izforge.izpack.util.FileExecutor;
 import com.izforge.izpack.util.StringTool;
+import com.izforge.izpack.util.file.FilePermissions;
 import com.izforge.izpack.util.unix.ShellScript;
 import com.izforge.izpack.util.unix.UnixHelper;
 import com.izforge.izpack.util.unix.UnixUser;
@@ -580,9 +581,7 @@ public class Unix_Shortcut extends Shortcut
                 FileUtils.copyFile(writtenDesktopFile, myDesktopFile, false);
                 
                 // make sure about permissions and ownership
-                String chmodCmd = UnixHelper.getCustomCommand("chmod");
-                FileExecutor.getExecOutput(new String[]{chmodCmd, "u+x",
-                    StringTool.escapeSpaces(myDesktopFile.getPath())});
+                myDesktopFile.setExecutable(true);
                 
                 if (sudoUser != null)
                 {
@@ -729,7 +728,7 @@ public class Unix_Shortcut extends Shortcut
 
         myXdgDesktopIconCmd = shortCutLocation + FS + "IzPackLocaleEnabledXdgDesktopIconScript.sh";
         myXdgDesktopIconScript.write(myXdgDesktopIconCmd);
-        FileExecutor.getExecOutput(new String[]{UnixHelper.getCustomCommand("chmod"), "+x", myXdgDesktopIconCmd}, true);
+        FilePermissions.setExecutable(new File(myXdgDesktopIconCmd));
     }
 
 
@@ -807,7 +806,6 @@ public class Unix_Shortcut extends Shortcut
      */
     private void copyDesktopFileToAllUsersDesktop(File writtenDesktopFile) throws IOException
     {
-        String chmod = UnixHelper.getCustomCommand("chmod");
         String chown = UnixHelper.getCustomCommand("chown");
         String rm = UnixHelper.getRmCommand();
         String copy = UnixHelper.getCpCommand();
@@ -823,7 +821,7 @@ public class Unix_Shortcut extends Shortcut
 
         // Debug.log("Wrote Tempfile: " + tempFile.toString());
 
-        FileExecutor.getExecOutput(new String[]{chmod, "uga+rwx", tempFile.toString()});
+        FilePermissions.setMode(tempFile, 0777);
 
         // su marc.eppelmann -c "/bin/cp /home/marc.eppelmann/backup.job.out.txt
         // /home/marc.eppelmann/backup.job.out2.txt"
@@ -0,0 +1,237 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.data;
+
+import com.izforge.izpack.api.data.Pack;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Tests the {@link InstallationInformation} class.
+ */
+public class InstallationInformationTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that installation information can be created, appended to, and read back.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testAppend() throws Exception
+    {
+        File file = new File(temporaryFolder.getRoot(), ".installationinformation");
+        Pack core = createPack("core");
+        core.setParent("base");
+        core.setCondition("cond1");
+        core.getInstallGroups().add("group1");
+        core.addDependency("base");
+
+        InstallationInformation.append(file, Arrays.asList(createPack("base"), core),
+                                       createProperties("INSTALL_PATH", "/opt/app", "a", "1"));
+        long length = file.length();
+
+        InstallationInformation.append(file, Arrays.asList(createPack("docs")),
+                                       createProperties("INSTALL_PATH", "/opt/app", "a", "2"));
+        assertFalse(InstallationInformation.isLegacy(file));
+
+        // only the changed variable should be written by the second installation
+        byte[] contents = FileUtils.readFileToByteArray(file);
+        String appended = new String(contents, (int) length, contents.length - (int) length, "UTF-8");
+        assertTrue(appended.contains("docs"));
+        assertFalse(appended.contains("INSTALL_PATH"));
+
+        InstallationInformation information = InstallationInformation.read(file);
+        List<Pack> packs = information.getPacks();
+        assertEquals(3, packs.size());
+        assertEquals("base", packs.get(0).getName());
+        assertEquals("core", packs.get(1).getName());
+        assertEquals("docs", packs.get(2).getName());
+
+        Pack read = packs.get(1);
+        assertEquals("core description", read.getDescription());
+        assertEquals("base", read.getParent());
+        assertEquals("cond1", read.getCondition());
+        assertEquals(Collections.singleton("group1"), read.getInstallGroups());
+        assertEquals(Arrays.asList("base"), read.getDependencies());
+        assertNull(packs.get(0).getDependencies());
+        assertEquals(1000, read.getSize());
+
+        assertEquals("/opt/app", information.getVariables().getProperty("INSTALL_PATH"));
+        assertEquals("2", information.getVariables().getProperty("a"));
+    }
+
+    /**
+     * Verifies that installation information written using Java serialization can be read, and is converted when
+     * appended to.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testLegacy() throws Exception
+    {
+        File file = new File(temporaryFolder.getRoot(), ".installationinformation");
+        List<Pack> packs = new ArrayList<Pack>(Arrays.asList(createPack("base"), createPack("core")));
+        ObjectOutputStream stream = new ObjectOutputStream(new FileOutputStream(file));
+        stream.writeObject(packs);
+        stream.writeObject(createProperties("a", "1"));
+        stream.close();
+
+        assertTrue(InstallationInformation.isLegacy(file));
+        InstallationInformation information = InstallationInformation.read(file);
+        assertEquals(2, information.getPacks().size());
+        assertEquals("1", information.getVariables().getProperty("a"));
+
+        InstallationInformation.append(file, Arrays.asList(createPack("docs")), createProperties("a", "1", "b", "2"));
+        assertFalse(InstallationInformation.isLegacy(file));
+        information = InstallationInformation.read(file);
+        assertEquals(3, information.getPacks().size());
+        assertEquals("core", information.getPacks().get(1).getName());
+        assertEquals("1", information.getVariables().getProperty("a"));
+        assertEquals("2", information.getVariables().getProperty("b"));
+    }
+
+    /**
+     * Verifies that invalid installation information cannot be read.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testInvalid() throws Exception
+    {
+        File file = new File(temporaryFolder.getRoot(), ".installationinformation");
+        ObjectOutputStream stream = new ObjectOutputStream(new FileOutputStream(file));
+        stream.writeObject(Arrays.asList("not a pack"));
+        stream.close();
+
+        try
+        {
+            InstallationInformation.read(file);
+            fail("Expected read to fail");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Verifies that an incomplete record at the end of the file, such as might be left by an interrupted
+     * installation, is ignored.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testTruncated() throws Exception
+    {
+        File file = new File(temporaryFolder.getRoot(), ".installationinformation");
+        InstallationInformation.append(file, Arrays.asList(createPack("base")), createProperties("a", "1"));
+        long length = file.length();
+        InstallationInformation.append(file, Arrays.asList(createPack("core")), createProperties("a", "1"));
+
+        byte[] contents = FileUtils.readFileToByteArray(file);
+        FileUtils.writeByteArrayToFile(file, Arrays.copyOf(contents, (int) length + 10));
+
+        InstallationInformation information = InstallationInformation.read(file);
+        assertEquals(1, information.getPacks().size());
+        assertEquals("base", information.getPacks().get(0).getName());
+        assertEquals("1", information.getVariables().getProperty("a"));
+    }
+
+    /**
+     * Verifies that records appended after an incomplete record can be read back.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testAppendAfterTruncated() throws Exception
+    {
+        File file = new File(temporaryFolder.getRoot(), ".installationinformation");
+        InstallationInformation.append(file, Arrays.asList(createPack("base")), createProperties("a", "1"));
+        long length = file.length();
+        InstallationInformation.append(file, Arrays.asList(createPack("core")), createProperties("a", "2"));
+
+        byte[] contents = FileUtils.readFileToByteArray(file);
+        FileUtils.writeByteArrayToFile(file, Arrays.copyOf(contents, (int) length + 10));
+
+        InstallationInformation.append(file, Arrays.asList(createPack("docs")), createProperties("a", "3", "b", "1"));
+        InstallationInformation.append(file, Arrays.asList(createPack("samples")), createProperties("a", "4"));
+
+        InstallationInformation information = InstallationInformation.read(file);
+        List<Pack> packs = information.getPacks();
+        assertEquals(3, packs.size());
+        assertEquals("base", packs.get(0).getName());
+        assertEquals("docs", packs.get(1).getName());
+        assertEquals("samples", packs.get(2).getName());
+        assertEquals("4", information.getVariables().getProperty("a"));
+        assertEquals("1", information.getVariables().getProperty("b"));
+    }
+
+    /**
+     * Creates a pack.
+     *
+     * @param name the pack name
+     * @return a new pack
+     */
+    private Pack createPack(String name)
+    {
+        return new Pack(name, null, name + " description", null, null, false, true, false, null, true, 1000);
+    }
+
+    /**
+     * Creates properties from name-value pairs.
+     *
+     * @param namesAndValues the names and values
+     * @return new properties
+     */
+    private Properties createProperties(String... namesAndValues)
+    {
+        Properties result = new Properties();
+        for (int i = 0; i < namesAndValues.length; i += 2)
+        {
+            result.setProperty(namesAndValues[i], namesAndValues[i + 1]);
+        }
+        return result;
+    }
+}
@@ -27,8 +27,10 @@ import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.api.exception.InstallerException;
 import com.izforge.izpack.util.Librarian;
 import com.izforge.izpack.util.Platforms;
+import com.izforge.izpack.util.file.FilePermissions;
 import com.izforge.izpack.util.os.FileQueue;
 import org.apache.commons.io.IOUtils;
+import org.junit.Assume;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -110,6 +112,31 @@ public abstract class AbstractFileUnpackerTest
         checkTarget(source, target);
     }
 
+    /**
+     * Verifies that a file that is executable when compiled is executable when unpacked.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnpackExecutable() throws Exception
+    {
+        Assume.assumeTrue(FilePermissions.isSupported());
+        File baseDir = temporaryFolder.getRoot();
+        File sourceDir = baseDir.getAbsoluteFile();
+
+        File source = createSourceFile(baseDir);
+        assertTrue(source.setExecutable(true, false));
+        File target = getTargetFile(baseDir);
+
+        FileQueue queue = new FileQueueFactory(Platforms.LINUX, librarian).create();
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+        assertEquals(PackFile.EXECUTABLE_MODE, file.getMode());
+
+        FileUnpacker unpacker = createUnpacker(sourceDir, queue);
+        unpacker.unpack(file, createPackStream(source), target);
+        assertTrue(target.canExecute());
+    }
+
     /**
      * Verifies that a file that does not have a blockable type of {@link Blockable#BLOCKABLE_NONE} is queued rather
      * than unpacked to its target.
@@ -0,0 +1,234 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.data.PackFile;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Tests the {@link ConcurrentFileExtractor} class.
+ */
+public class ConcurrentFileExtractorTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The cancellable.
+     */
+    private final Cancellable cancellable = new Cancellable()
+    {
+        @Override
+        public boolean isCancelled()
+        {
+            return false;
+        }
+    };
+
+    /**
+     * Verifies that files are written from a single pack stream, and reported in the order they were submitted.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testExtract() throws Exception
+    {
+        File sourceDir = temporaryFolder.newFolder("source");
+        File targetDir = temporaryFolder.newFolder("target");
+        Pack pack = Mockito.mock(Pack.class);
+
+        List<PackFile> packFiles = new ArrayList<PackFile>();
+        ByteArrayOutputStream packStream = new ByteArrayOutputStream();
+        for (int i = 0; i < 50; ++i)
+        {
+            File source = new File(sourceDir, "file" + i);
+            FileUtils.writeByteArrayToFile(source, createData(i * 1000 + 1));
+            packFiles.add(createPackFile(sourceDir, source));
+            packStream.write(FileUtils.readFileToByteArray(source));
+        }
+
+        final List<PackFile> completed = Collections.synchronizedList(new ArrayList<PackFile>());
+        ConcurrentFileExtractor extractor = new ConcurrentFileExtractor(4, new ConcurrentFileExtractor.Completion()
+        {
+            @Override
+            public void completed(PackFile packFile, File target, Pack pack, FileUnpacker unpacker)
+            {
+                assertTrue(target.exists());
+                completed.add(packFile);
+            }
+        });
+
+        InputStream in = new ByteArrayInputStream(packStream.toByteArray());
+        try
+        {
+            for (PackFile packFile : packFiles)
+            {
+                FileUnpacker unpacker = new DefaultFileUnpacker(cancellable, null);
+                assertTrue(extractor.canExtract(packFile, unpacker));
+                extractor.submit(packFile, in, new File(targetDir, packFile.getTargetPath()), pack, unpacker);
+            }
+            extractor.drain();
+        }
+        finally
+        {
+            extractor.shutdown();
+        }
+
+        assertEquals(packFiles, completed);
+        assertEquals(-1, in.read());
+        for (PackFile packFile : packFiles)
+        {
+            File source = new File(sourceDir, packFile.getTargetPath());
+            File target = new File(targetDir, packFile.getTargetPath());
+            assertArrayEquals(FileUtils.readFileToByteArray(source), FileUtils.readFileToByteArray(target));
+            assertEquals(packFile.lastModified() / 1000, target.lastModified() / 1000);
+        }
+    }
+
+    /**
+     * Verifies that a write failure is propagated to the caller, and that the failed file isn't reported.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testFailure() throws Exception
+    {
+        File sourceDir = temporaryFolder.newFolder("source");
+        File source = new File(sourceDir, "file");
+        FileUtils.writeByteArrayToFile(source, createData(100));
+        PackFile packFile = createPackFile(sourceDir, source);
+
+        final List<PackFile> completed = new ArrayList<PackFile>();
+        ConcurrentFileExtractor extractor = new ConcurrentFileExtractor(2, new ConcurrentFileExtractor.Completion()
+        {
+            @Override
+            public void completed(PackFile packFile, File target, Pack pack, FileUnpacker unpacker)
+            {
+                completed.add(packFile);
+            }
+        });
+
+        // the target's parent is a file, so it cannot be written
+        File target = new File(source, "target");
+        FileUnpacker unpacker = new DefaultFileUnpacker(cancellable, null);
+        try
+        {
+            extractor.submit(packFile, new ByteArrayInputStream(createData(100)), target,
+                             Mockito.mock(Pack.class), unpacker);
+            extractor.drain();
+            fail("Expected drain() to fail");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+        finally
+        {
+            extractor.shutdown();
+        }
+        assertTrue(completed.isEmpty());
+        assertFalse(target.exists());
+    }
+
+    /**
+     * Verifies that files that need other resources aren't extracted concurrently.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCanExtract() throws Exception
+    {
+        File sourceDir = temporaryFolder.newFolder("source");
+        File source = new File(sourceDir, "file");
+        FileUtils.writeByteArrayToFile(source, createData(100));
+        PackFile packFile = createPackFile(sourceDir, source);
+
+        ConcurrentFileExtractor extractor = new ConcurrentFileExtractor(1, null);
+        try
+        {
+            assertTrue(extractor.canExtract(packFile, new DefaultFileUnpacker(cancellable, null)));
+            assertFalse(extractor.canExtract(packFile, new LooseFileUnpacker(cancellable, null, null)));
+            assertFalse(extractor.canExtract(packFile, new DefaultFileUnpacker(cancellable, null)
+            {
+            }));
+
+            packFile.setSize(ConcurrentFileExtractor.MAX_FILE_SIZE + 1);
+            assertFalse(extractor.canExtract(packFile, new DefaultFileUnpacker(cancellable, null)));
+        }
+        finally
+        {
+            extractor.shutdown();
+        }
+    }
+
+    /**
+     * Creates a pack file.
+     *
+     * @param baseDir the base directory
+     * @param source  the source file
+     * @return a new pack file
+     * @throws IOException for any I/O error
+     */
+    private PackFile createPackFile(File baseDir, File source) throws IOException
+    {
+        return new PackFile(baseDir, source, source.getName(), null, OverrideType.OVERRIDE_TRUE, null,
+                            Blockable.BLOCKABLE_NONE, null);
+    }
+
+    /**
+     * Creates test data.
+     *
+     * @param size the size of the data
+     * @return the data
+     */
+    private byte[] createData(int size)
+    {
+        byte[] result = new byte[size];
+        Arrays.fill(result, (byte) ('a' + size % 26));
+        return result;
+    }
+}
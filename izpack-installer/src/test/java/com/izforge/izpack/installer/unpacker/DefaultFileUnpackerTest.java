@@ -22,11 +22,19 @@
 package com.izforge.izpack.installer.unpacker;
 
 
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.PackFile;
 import com.izforge.izpack.util.os.FileQueue;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.junit.Test;
 
 import java.io.*;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
 
 /**
  * Tests the {@link DefaultFileUnpacker} class.
@@ -36,6 +44,74 @@ import java.io.*;
 public class DefaultFileUnpackerTest extends AbstractFileUnpackerTest
 {
 
+    /**
+     * Verifies that a file can be unpacked from a file-backed pack stream, starting at the stream's current
+     * position.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnpackFromFile() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = createSourceFile(baseDir);
+        File target = getTargetFile(baseDir);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+
+        // create a pack stream with the file following some other content
+        File packStream = new File(baseDir, "packstream");
+        byte[] content = FileUtils.readFileToByteArray(source);
+        FileUtils.writeByteArrayToFile(packStream, new byte[1000]);
+        FileUtils.writeByteArrayToFile(packStream, content, true);
+        FileUtils.writeByteArrayToFile(packStream, new byte[1000], true);
+
+        FileInputStream in = new FileInputStream(packStream);
+        try
+        {
+            IOUtils.skipFully(in, 1000);
+            createUnpacker(baseDir, null).unpack(file, in, target);
+            assertEquals(1000 + content.length, in.getChannel().position());
+        }
+        finally
+        {
+            in.close();
+        }
+        checkTarget(source, target);
+    }
+
+    /**
+     * Verifies that unpacking fails if the file-backed pack stream is shorter than the file.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testUnpackFromTruncatedFile() throws Exception
+    {
+        File baseDir = temporaryFolder.getRoot();
+        File source = createSourceFile(baseDir);
+        File target = getTargetFile(baseDir);
+        PackFile file = createPackFile(baseDir, source, target, Blockable.BLOCKABLE_NONE);
+
+        File packStream = new File(baseDir, "packstream");
+        FileUtils.writeByteArrayToFile(packStream, new byte[(int) source.length() - 1]);
+
+        FileInputStream in = new FileInputStream(packStream);
+        try
+        {
+            createUnpacker(baseDir, null).unpack(file, in, target);
+            fail("Expected unpack to fail");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+        finally
+        {
+            in.close();
+        }
+        assertFalse(target.length() == source.length());
+    }
+
     /**
      * Creates a pack file stream.
      *
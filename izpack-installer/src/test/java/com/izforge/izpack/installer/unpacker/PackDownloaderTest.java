@@ -0,0 +1,244 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Tests the {@link PackDownloader} class.
+ */
+public class PackDownloaderTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The HTTP server.
+     */
+    private HttpServer server;
+
+    /**
+     * The HTTP server request threads.
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /**
+     * Signalled as each request is received.
+     */
+    private CountDownLatch received;
+
+    /**
+     * Awaited by each request before responding.
+     */
+    private CountDownLatch release;
+
+    /**
+     * The no. of requests received.
+     */
+    private final AtomicInteger requests = new AtomicInteger();
+
+    /**
+     * Starts the HTTP server. Each request for /pack-&lt;name&gt; returns "content-&lt;name&gt;".
+     *
+     * @throws Exception for any error
+     */
+    @Before
+    public void setUp() throws Exception
+    {
+        received = new CountDownLatch(0);
+        release = new CountDownLatch(0);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                requests.incrementAndGet();
+                received.countDown();
+                try
+                {
+                    release.await(10, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException ignore)
+                {
+                    // no-op
+                }
+                String name = exchange.getRequestURI().getPath().substring("/pack-".length());
+                if (name.equals("missing"))
+                {
+                    exchange.sendResponseHeaders(404, -1);
+                }
+                else
+                {
+                    byte[] content = ("content-" + name).getBytes("UTF-8");
+                    exchange.sendResponseHeaders(200, content.length);
+                    OutputStream out = exchange.getResponseBody();
+                    out.write(content);
+                    out.close();
+                }
+                exchange.close();
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * Stops the HTTP server.
+     */
+    @After
+    public void tearDown()
+    {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Verifies that prefetched packs are downloaded concurrently, before they are requested.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testPrefetch() throws Exception
+    {
+        received = new CountDownLatch(2);
+        release = new CountDownLatch(1);
+        PackDownloader downloader = createDownloader(2);
+        try
+        {
+            downloader.prefetch(Arrays.asList("a", "b", "c"));
+
+            // the first two downloads are in progress at the same time
+            assertTrue(received.await(10, TimeUnit.SECONDS));
+            release.countDown();
+
+            assertEquals("content-a", FileUtils.readFileToString(downloader.get("a"), "UTF-8"));
+            assertEquals("content-b", FileUtils.readFileToString(downloader.get("b"), "UTF-8"));
+            assertEquals("content-c", FileUtils.readFileToString(downloader.get("c"), "UTF-8"));
+            assertEquals(3, requests.get());
+        }
+        finally
+        {
+            downloader.shutdown();
+        }
+    }
+
+    /**
+     * Verifies that a pack that wasn't prefetched is downloaded when it is requested.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testNotPrefetched() throws Exception
+    {
+        PackDownloader downloader = createDownloader(2);
+        try
+        {
+            downloader.prefetch(Collections.singletonList("a"));
+            assertEquals("content-a", FileUtils.readFileToString(downloader.get("a"), "UTF-8"));
+            assertEquals("content-b", FileUtils.readFileToString(downloader.get("b"), "UTF-8"));
+            assertEquals(2, requests.get());
+        }
+        finally
+        {
+            downloader.shutdown();
+        }
+    }
+
+    /**
+     * Verifies that a failed background download is reported when the pack is requested.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testFailure() throws Exception
+    {
+        PackDownloader downloader = createDownloader(2);
+        try
+        {
+            downloader.prefetch(Arrays.asList("missing", "a"));
+            try
+            {
+                downloader.get("missing");
+                fail("Expected get() to fail");
+            }
+            catch (IOException expected)
+            {
+                // expected
+            }
+            assertEquals("content-a", FileUtils.readFileToString(downloader.get("a"), "UTF-8"));
+        }
+        finally
+        {
+            downloader.shutdown();
+        }
+    }
+
+    /**
+     * Creates a downloader that downloads packs from the HTTP server.
+     *
+     * @param connections the maximum no. of concurrent downloads
+     * @return a new downloader
+     */
+    private PackDownloader createDownloader(int connections)
+    {
+        final String base = "http://127.0.0.1:" + server.getAddress().getPort() + "/pack-";
+        final File dir = temporaryFolder.getRoot();
+        return new PackDownloader(connections, new PackDownloader.Download()
+        {
+            @Override
+            public File download(String name) throws IOException
+            {
+                File file = File.createTempFile("pack", "jar", dir);
+                FileUtils.copyURLToFile(new URL(base + name), file);
+                return file;
+            }
+        });
+    }
+}
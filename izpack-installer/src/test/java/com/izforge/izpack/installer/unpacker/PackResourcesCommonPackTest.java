@@ -0,0 +1,135 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.Pack;
+import com.izforge.izpack.api.exception.ResourceNotFoundException;
+import com.izforge.izpack.api.resource.Resources;
+import com.izforge.izpack.installer.web.WebPackCache;
+import com.izforge.izpack.test.util.TestHelper;
+import com.izforge.izpack.util.file.FileDigest;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Tests the verification of the jar of files shared between packs by {@link AbstractPackResources}.
+ */
+public class PackResourcesCommonPackTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The resources.
+     */
+    private Resources resources;
+
+    /**
+     * The pack resources.
+     */
+    private AbstractPackResources packResources;
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        resources = mock(Resources.class);
+        InstallData installData = mock(InstallData.class);
+        when(installData.getAllPacks()).thenReturn(Collections.<Pack>emptyList());
+        packResources = new AbstractPackResources(resources, installData)
+        {
+            @Override
+            protected File getWebPackFile(String name, String webDirURL)
+            {
+                return null;
+            }
+        };
+    }
+
+    /**
+     * Verifies that the jar of files shared between packs is verified against the digest recorded by the packager.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCommonPack() throws Exception
+    {
+        File jar = TestHelper.createFile(temporaryFolder.newFolder("web"), "install.pack-izpack-common.jar", 4096);
+        Pack commonPack = new Pack(Pack.COMMON_PACK_NAME, null, null, null, null, true, true, false, null, true, 0);
+        commonPack.setJar(FileDigest.digest(jar), jar.length());
+        when(resources.getObject(Pack.COMMON_PACK_RESOURCE)).thenReturn(commonPack);
+
+        File cached = packResources.getCachedWebPackFile(Pack.COMMON_PACK_NAME, jar.toURI().toURL(),
+                                                         temporaryFolder.newFolder("cache"),
+                                                         WebPackCache.DEFAULT_CONNECTOR);
+        assertNotNull(cached);
+        assertTrue(FileUtils.contentEquals(jar, cached));
+
+        // a jar that doesn't match the recorded digest is rejected
+        commonPack.setJar(new byte[32], jar.length());
+        try
+        {
+            packResources.getCachedWebPackFile(Pack.COMMON_PACK_NAME, jar.toURI().toURL(),
+                                               temporaryFolder.newFolder("cache2"), WebPackCache.DEFAULT_CONNECTOR);
+            fail("Expected the download to fail verification");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Verifies that {@code null} is returned if the installer records no jar of files shared between packs.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testNoCommonPack() throws Exception
+    {
+        when(resources.getObject(Pack.COMMON_PACK_RESOURCE)).thenThrow(
+                new ResourceNotFoundException("Resource not found: " + Pack.COMMON_PACK_RESOURCE));
+        File jar = TestHelper.createFile(temporaryFolder.getRoot(), "install.pack-izpack-common.jar", 1024);
+        assertNull(packResources.getCachedWebPackFile(Pack.COMMON_PACK_NAME, jar.toURI().toURL(),
+                                                      temporaryFolder.newFolder("cache"),
+                                                      WebPackCache.DEFAULT_CONNECTOR));
+    }
+}
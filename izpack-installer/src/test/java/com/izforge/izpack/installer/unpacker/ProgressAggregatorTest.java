@@ -0,0 +1,179 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.event.ProgressListener;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+
+/**
+ * Tests the {@link ProgressAggregator}.
+ */
+public class ProgressAggregatorTest
+{
+    /**
+     * The listener that progress is published to.
+     */
+    private ProgressListener listener;
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        listener = mock(ProgressListener.class);
+    }
+
+    /**
+     * Verifies that file progress is coalesced into a single snapshot.
+     */
+    @Test
+    public void testCoalesce()
+    {
+        ProgressAggregator aggregator = new ProgressAggregator(listener, 0);
+        aggregator.startAction("Unpacking", 1);
+        aggregator.startStep("pack", 1, 1000);
+        verify(listener).nextStep("pack", 1, ProgressAggregator.STEP_UNITS);
+
+        for (int i = 0; i < 100; ++i)
+        {
+            aggregator.progress("file" + i, 10);
+        }
+        verify(listener, never()).progress(anyInt(), anyString());
+
+        aggregator.publish();
+        aggregator.publish();
+        verify(listener, times(1)).progress(anyInt(), anyString());
+        verify(listener).progress(990, "file99");
+    }
+
+    /**
+     * Verifies that progress is weighted by bytes, and that skipped files count as processed.
+     */
+    @Test
+    public void testByteWeighted()
+    {
+        ProgressAggregator aggregator = new ProgressAggregator(listener, 0);
+        aggregator.startAction("Unpacking", 1);
+        aggregator.startStep("pack", 1, 2000);
+
+        aggregator.progress("small", 100);
+        aggregator.progress("large", 1000);
+        aggregator.publish();
+        verify(listener).progress(50, "large");
+
+        aggregator.skip(400);
+        aggregator.progress("last", 500);
+        aggregator.publish();
+        verify(listener).progress(750, "last");
+    }
+
+    /**
+     * Verifies that a pending snapshot is published before subsequent notifications.
+     */
+    @Test
+    public void testOrdering()
+    {
+        ProgressAggregator aggregator = new ProgressAggregator(listener, 0);
+        aggregator.startAction("Unpacking", 2);
+        aggregator.startStep("pack1", 1, 100);
+        aggregator.progress("file1", 100);
+        aggregator.startStep("pack2", 2, 100);
+        aggregator.progress("file2", 100);
+        aggregator.stopAction();
+
+        InOrder order = inOrder(listener);
+        order.verify(listener).startAction("Unpacking", 2);
+        order.verify(listener).nextStep("pack1", 1, ProgressAggregator.STEP_UNITS);
+        order.verify(listener).progress(ProgressAggregator.STEP_UNITS, "file1");
+        order.verify(listener).nextStep("pack2", 2, ProgressAggregator.STEP_UNITS);
+        order.verify(listener).progress(ProgressAggregator.STEP_UNITS, "file2");
+        order.verify(listener).stopAction();
+    }
+
+    /**
+     * Verifies that a step completes when it ends, even if it only has a single file.
+     */
+    @Test
+    public void testStepCompletes()
+    {
+        ProgressAggregator aggregator = new ProgressAggregator(listener, 0);
+        aggregator.startAction("Unpacking", 1);
+        aggregator.startStep("pack", 1, 1024 * 1024);
+        aggregator.progress("large", 1024 * 1024);
+        aggregator.publish();
+        verify(listener).progress(0, "large");
+
+        aggregator.stopAction();
+        InOrder order = inOrder(listener);
+        order.verify(listener).progress(ProgressAggregator.STEP_UNITS, "large");
+        order.verify(listener).stopAction();
+    }
+
+    /**
+     * Verifies that {@link ProgressAggregator#shutdown()} stops the publisher without notifying the listener.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testShutdown() throws Exception
+    {
+        ProgressAggregator aggregator = new ProgressAggregator(listener, 10);
+        aggregator.startAction("Unpacking", 1);
+        aggregator.startStep("pack", 1, 200);
+        aggregator.shutdown();
+
+        aggregator.progress("file1", 100);
+        aggregator.progress("file2", 100);
+        Thread.sleep(100);
+        verify(listener, never()).progress(anyInt(), anyString());
+        verify(listener, never()).stopAction();
+    }
+
+    /**
+     * Verifies that snapshots are published periodically while an action is in progress.
+     */
+    @Test
+    public void testPublisher()
+    {
+        ProgressAggregator aggregator = new ProgressAggregator(listener, 10);
+        aggregator.startAction("Unpacking", 1);
+        aggregator.startStep("pack", 1, 200);
+        aggregator.progress("file1", 100);
+        verify(listener, timeout(5000)).progress(0, "file1");
+
+        aggregator.progress("file2", 100);
+        verify(listener, timeout(5000)).progress(500, "file2");
+        aggregator.stopAction();
+        verify(listener).stopAction();
+    }
+}
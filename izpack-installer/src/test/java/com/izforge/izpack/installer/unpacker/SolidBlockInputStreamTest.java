@@ -0,0 +1,139 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.PackCompression;
+import org.apache.commons.compress.compressors.CompressorStreamFactory;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Tests the {@link SolidBlockInputStream} class.
+ */
+public class SolidBlockInputStreamTest
+{
+
+    /**
+     * Verifies that blocks are read back as a single uncompressed stream.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testRead() throws Exception
+    {
+        byte[] block1 = createData(10000);
+        byte[] block2 = createData(5000);
+        byte[] packStream = createPackStream(block1, block2);
+
+        InputStream in = new SolidBlockInputStream(new ByteArrayInputStream(packStream), PackCompression.BZIP2);
+        byte[] expected = new byte[block1.length + block2.length];
+        System.arraycopy(block1, 0, expected, 0, block1.length);
+        System.arraycopy(block2, 0, expected, block1.length, block2.length);
+        assertArrayEquals(expected, IOUtils.toByteArray(in));
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    /**
+     * Verifies that skipping works within a block, across blocks, and over entire blocks.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSkip() throws Exception
+    {
+        byte[] block1 = createData(10000);
+        byte[] block2 = createData(5000);
+        byte[] block3 = createData(2000);
+        byte[] packStream = createPackStream(block1, block2, block3);
+
+        InputStream in = new SolidBlockInputStream(new ByteArrayInputStream(packStream), PackCompression.BZIP2);
+
+        // skip within the first block
+        assertEquals(100, in.skip(100));
+        byte[] buffer = new byte[50];
+        IOUtils.readFully(in, buffer);
+        assertArrayEquals(Arrays.copyOfRange(block1, 100, 150), buffer);
+
+        // skip the remainder of the first block, and the whole of the second
+        assertEquals(block1.length - 150 + block2.length, in.skip(block1.length - 150 + block2.length));
+        IOUtils.readFully(in, buffer);
+        assertArrayEquals(Arrays.copyOfRange(block3, 0, 50), buffer);
+
+        // skip past the end
+        assertEquals(block3.length - 50, in.skip(Long.MAX_VALUE));
+        assertEquals(-1, in.read());
+        in.close();
+    }
+
+    /**
+     * Creates a pack stream from a set of blocks.
+     *
+     * @param blocks the uncompressed block contents
+     * @return the pack stream
+     * @throws Exception for any error
+     */
+    private byte[] createPackStream(byte[]... blocks) throws Exception
+    {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        DataOutputStream header = new DataOutputStream(result);
+        for (byte[] block : blocks)
+        {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+            OutputStream out = new CompressorStreamFactory().createCompressorOutputStream(
+                    PackCompression.BZIP2.toName(), compressed);
+            out.write(block);
+            out.close();
+            header.writeLong(block.length);
+            header.writeLong(compressed.size());
+            compressed.writeTo(result);
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * Creates compressible random data.
+     *
+     * @param size the size of the data
+     * @return the data
+     */
+    private byte[] createData(int size)
+    {
+        byte[] result = new byte[size];
+        Random random = new Random(size);
+        for (int i = 0; i < size; ++i)
+        {
+            result[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return result;
+    }
+}
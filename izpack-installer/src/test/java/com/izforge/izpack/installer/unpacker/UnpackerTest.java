@@ -0,0 +1,147 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.unpacker;
+
+import com.izforge.izpack.api.data.Blockable;
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.data.OverrideType;
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.api.handler.Prompt;
+import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.api.substitutor.VariableSubstitutor;
+import com.izforge.izpack.installer.data.UninstallData;
+import com.izforge.izpack.installer.event.InstallerListeners;
+import com.izforge.izpack.util.Housekeeper;
+import com.izforge.izpack.util.PlatformModelMatcher;
+import com.izforge.izpack.util.file.FileDigest;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+
+/**
+ * Tests the {@link Unpacker}.
+ */
+public class UnpackerTest
+{
+    /**
+     * Temporary folder for the packed and installed files.
+     */
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The unpacker.
+     */
+    private Unpacker unpacker;
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        unpacker = new Unpacker(mock(InstallData.class), mock(PackResources.class), mock(RulesEngine.class),
+                                mock(VariableSubstitutor.class), mock(UninstallData.class),
+                                mock(FileQueueFactory.class), mock(Housekeeper.class), mock(InstallerListeners.class),
+                                mock(Prompt.class), mock(PlatformModelMatcher.class));
+    }
+
+    /**
+     * Verifies that files with override type {@link OverrideType#OVERRIDE_CHANGED} are only overwritten if their
+     * content differs from that packed.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testOverwriteChanged() throws IOException
+    {
+        File source = writeFile("source.txt", "version 2");
+        PackFile packFile = createPackFile(source);
+        packFile.setDigest(FileDigest.digest(source));
+
+        File same = writeFile("same.txt", "version 2");
+        File modified = writeFile("modified.txt", "version 1");
+        File longer = writeFile("longer.txt", "version 2.1");
+
+        assertFalse(unpacker.isOverwriteFile(packFile, same));
+        assertTrue(unpacker.isOverwriteFile(packFile, modified));
+        assertTrue(unpacker.isOverwriteFile(packFile, longer));
+
+        // files are always overwritten if there is no digest to compare with
+        packFile.setDigest(null);
+        assertTrue(unpacker.isOverwriteFile(packFile, same));
+    }
+
+    /**
+     * Verifies that back references are compared using the digest of the file they refer to.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testOverwriteChangedBackReference() throws IOException
+    {
+        File source = writeFile("source.txt", "content");
+        PackFile stored = createPackFile(source);
+        stored.setDigest(FileDigest.digest(source));
+        PackFile reference = createPackFile(source);
+        reference.setLinkedPackFile(stored);
+
+        assertFalse(unpacker.isOverwriteFile(reference, writeFile("same.txt", "content")));
+        assertTrue(unpacker.isOverwriteFile(reference, writeFile("other.txt", "CONTENT")));
+    }
+
+    /**
+     * Creates a pack file that is only overwritten if changed.
+     *
+     * @param source the source file
+     * @return a new pack file
+     * @throws IOException for any I/O error
+     */
+    private PackFile createPackFile(File source) throws IOException
+    {
+        return new PackFile(temporaryFolder.getRoot(), source, "$INSTALL_PATH/" + source.getName(), null,
+                            OverrideType.OVERRIDE_CHANGED, null, Blockable.BLOCKABLE_NONE, null);
+    }
+
+    /**
+     * Writes a file.
+     *
+     * @param name    the file name
+     * @param content the file content
+     * @return the file
+     * @throws IOException for any I/O error
+     */
+    private File writeFile(String name, String content) throws IOException
+    {
+        File file = new File(temporaryFolder.getRoot(), name);
+        FileUtils.writeStringToFile(file, content);
+        return file;
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.installer.web;
+
+import com.izforge.izpack.api.data.Pack;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+
+/**
+ * Tests the {@link WebPackCache} class.
+ */
+public class WebPackCacheTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The HTTP server.
+     */
+    private HttpServer server;
+
+    /**
+     * The content served.
+     */
+    private final byte[] content = new byte[100 * 1024];
+
+    /**
+     * The digest of the content.
+     */
+    private byte[] digest;
+
+    /**
+     * Determines if the server honours range requests.
+     */
+    private boolean rangeSupported = true;
+
+    /**
+     * The no. of responses to truncate, to simulate dropped connections.
+     */
+    private final AtomicInteger truncate = new AtomicInteger();
+
+    /**
+     * The Range headers received, or "" for requests without one.
+     */
+    private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+
+    /**
+     * The cache directory.
+     */
+    private File dir;
+
+    /**
+     * The jar URL.
+     */
+    private URL url;
+
+    /**
+     * Starts the HTTP server.
+     *
+     * @throws Exception for any error
+     */
+    @Before
+    public void setUp() throws Exception
+    {
+        for (int i = 0; i < content.length; ++i)
+        {
+            content[i] = (byte) (i * 31);
+        }
+        digest = MessageDigest.getInstance(Pack.JAR_DIGEST_ALGORITHM).digest(content);
+        dir = temporaryFolder.newFolder("cache");
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                String range = exchange.getRequestHeaders().getFirst("Range");
+                ranges.add(range != null ? range : "");
+                int start = 0;
+                if (range != null && rangeSupported)
+                {
+                    start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+                    exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-"
+                            + (content.length - 1) + "/" + content.length);
+                    exchange.sendResponseHeaders(206, content.length - start);
+                }
+                else
+                {
+                    exchange.sendResponseHeaders(200, content.length);
+                }
+                OutputStream out = exchange.getResponseBody();
+                int end = content.length;
+                if (truncate.getAndDecrement() > 0)
+                {
+                    end = start + (end - start) / 2;
+                }
+                out.write(content, start, end - start);
+                out.flush();
+                exchange.close();
+            }
+        });
+        server.start();
+        url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/install.pack-Core.jar");
+    }
+
+    /**
+     * Stops the HTTP server.
+     */
+    @After
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    /**
+     * Verifies that a jar is downloaded once, and subsequently returned from the cache.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testCached() throws Exception
+    {
+        WebPackCache cache = new WebPackCache(dir, WebPackCache.DEFAULT_CONNECTOR);
+        File file = cache.get(url, digest, content.length);
+        assertArrayEquals(content, FileUtils.readFileToByteArray(file));
+
+        File cached = new WebPackCache(dir, WebPackCache.DEFAULT_CONNECTOR).get(url, digest, content.length);
+        assertEquals(file, cached);
+        assertEquals(Arrays.asList(""), ranges);
+    }
+
+    /**
+     * Verifies that a partial download left by an earlier installation is resumed.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testResume() throws Exception
+    {
+        writePart(1000);
+        File file = new WebPackCache(dir, WebPackCache.DEFAULT_CONNECTOR).get(url, digest, content.length);
+        assertArrayEquals(content, FileUtils.readFileToByteArray(file));
+        assertEquals(Arrays.asList("bytes=1000-"), ranges);
+    }
+
+    /**
+     * Verifies that a partial download is restarted if the server doesn't support range requests.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testResumeNotSupported() throws Exception
+    {
+        rangeSupported = false;
+        writePart(1000);
+        File file = new WebPackCache(dir, WebPackCache.DEFAULT_CONNECTOR).get(url, digest, content.length);
+        assertArrayEquals(content, FileUtils.readFileToByteArray(file));
+    }
+
+    /**
+     * Verifies that a dropped connection is retried from where it left off.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testRetry() throws Exception
+    {
+        truncate.set(1);
+        File file = new WebPackCache(dir, WebPackCache.DEFAULT_CONNECTOR).get(url, digest, content.length);
+        assertArrayEquals(content, FileUtils.readFileToByteArray(file));
+        assertEquals(2, ranges.size());
+        assertEquals("", ranges.get(0));
+        assertEquals("bytes=" + content.length / 2 + "-", ranges.get(1));
+    }
+
+    /**
+     * Verifies that a jar that doesn't match the expected digest is rejected.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testChecksumMismatch() throws Exception
+    {
+        byte[] invalid = digest.clone();
+        invalid[0] ^= 1;
+        try
+        {
+            new WebPackCache(dir, WebPackCache.DEFAULT_CONNECTOR).get(url, invalid, content.length);
+            fail("Expected get() to fail");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+        assertEquals(0, dir.list().length);
+    }
+
+    /**
+     * Writes the start of the content to the partial download file.
+     *
+     * @param length the no. of bytes to write
+     * @throws IOException for any I/O error
+     */
+    private void writePart(int length) throws IOException
+    {
+        File[] existing = dir.listFiles();
+        assertFalse(existing != null && existing.length != 0);
+        StringBuilder name = new StringBuilder();
+        for (byte b : digest)
+        {
+            name.append(String.format("%02x", b));
+        }
+        FileUtils.writeByteArrayToFile(new File(dir, name + ".part"), Arrays.copyOf(content, length));
+    }
+}
@@ -114,6 +114,12 @@ public class IzPackNewMojo extends AbstractMojo
     @Parameter( defaultValue = "-1" )
     private int comprLevel;
 
+    /**
+     * Number of threads used to compress pack files. Defaults to the number of available processors (0)
+     */
+    @Parameter( defaultValue = "0" )
+    private int comprThreads;
+
     /**
      * Whether to automatically include project.url from Maven into
      * IzPack info header
@@ -274,8 +280,10 @@ public class IzPackNewMojo extends AbstractMojo
                 info.setAppURL(project.getUrl());
             }
         }
-        return new CompilerData(comprFormat, kind, installFile.getPath(), null, baseDir.getPath(), jarFile.getPath(),
-                                mkdirs, comprLevel, info);
+        CompilerData compilerData = new CompilerData(comprFormat, kind, installFile.getPath(), null,
+                                                     baseDir.getPath(), jarFile.getPath(), mkdirs, comprLevel, info);
+        compilerData.setCompressionThreads(comprThreads);
+        return compilerData;
     }
 
     private Handler createLogHandler()
@@ -40,6 +40,8 @@ import java.util.logging.Level;
 import java.util.logging.LogManager;
 import java.util.logging.Logger;
 
+import javax.tools.JavaCompiler;
+
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.IXMLParser;
 import com.izforge.izpack.api.adaptator.impl.XMLParser;
@@ -63,6 +65,9 @@ import com.izforge.izpack.util.PlatformModelMatcher;
  * <li>collecting and creating all jobs
  * <li>doing the actual compilation
  * </ul>
+ * <p/>
+ * If <em>javac</em> is selected and the system Java compiler is available, jobs are compiled in-process by an
+ * {@link InProcessCompiler}. Otherwise, the selected compiler is run as an external process.
  *
  * @author Tino Schwarze
  */
@@ -426,6 +431,16 @@ public class CompileWorker implements Runnable
 
         this.handler.startAction("Compilation", this.jobs.size());
 
+        // compile in-process if possible, falling back to running the compiler
+        JavaCompiler systemCompiler = InProcessCompiler.getSystemCompiler(this.compilerToUse);
+        if (systemCompiler != null)
+        {
+            logger.fine("Compiling with the system Java compiler");
+            InProcessCompiler compiler = new InProcessCompiler(systemCompiler, this.handler, idata.getMessages(),
+                                                               Runtime.getRuntime().availableProcessors());
+            return compiler.compile(this.jobs, args);
+        }
+
         // check whether compiler is valid (but only if there are jobs)
         if (job_it.hasNext())
         {
@@ -630,7 +645,7 @@ public class CompileWorker implements Runnable
     /**
      * a compilation job
      */
-    private static class CompilationJob
+    static class CompilationJob
     {
 
         private CompileHandler listener;
@@ -693,6 +708,46 @@ public class CompileWorker implements Runnable
             return this.files.size();
         }
 
+        /**
+         * Get the files of this job.
+         *
+         * @return The files to compile.
+         */
+        public List<File> getFiles()
+        {
+            return this.files;
+        }
+
+        /**
+         * Get the class path of this job.
+         *
+         * @return The class path entries.
+         */
+        public List<String> getClasspath()
+        {
+            return this.classpath;
+        }
+
+        /**
+         * Get the class path argument for the compiler.
+         *
+         * @return The absolute class path entries, separated by the path separator, or an empty string if there
+         *         is no class path.
+         */
+        public String getClasspathArgument()
+        {
+            StringBuilder classpath_sb = new StringBuilder();
+            for (String cp : this.classpath)
+            {
+                if (classpath_sb.length() > 0)
+                {
+                    classpath_sb.append(File.pathSeparatorChar);
+                }
+                classpath_sb.append(new File(cp).getAbsolutePath());
+            }
+            return classpath_sb.toString();
+        }
+
         /**
          * Perform this job - start compilation.
          *
@@ -723,18 +778,7 @@ public class CompileWorker implements Runnable
             cmdline_len += compiler.length() + 1;
 
             // construct classpath argument for compiler
-            // - collect all classpaths
-            StringBuffer classpath_sb = new StringBuffer();
-            for (String cp : this.classpath)
-            {
-                if (classpath_sb.length() > 0)
-                {
-                    classpath_sb.append(File.pathSeparatorChar);
-                }
-                classpath_sb.append(new File(cp).getAbsolutePath());
-            }
-
-            String classpath_str = classpath_sb.toString();
+            String classpath_str = getClasspathArgument();
 
             // - add classpath argument to command line
             if (classpath_str.length() > 0)
@@ -1109,18 +1153,7 @@ public class CompileWorker implements Runnable
             args.add(0, compiler);
 
             // construct classpath argument for compiler
-            // - collect all classpaths
-            StringBuffer classpath_sb = new StringBuffer();
-            for (String cp : this.classpath)
-            {
-                if (classpath_sb.length() > 0)
-                {
-                    classpath_sb.append(File.pathSeparatorChar);
-                }
-                classpath_sb.append(new File(cp).getAbsolutePath());
-            }
-
-            String classpath_str = classpath_sb.toString();
+            String classpath_str = getClasspathArgument();
 
             // - add classpath argument to command line
             if (classpath_str.length() > 0)
@@ -0,0 +1,598 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.panels.compile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import com.izforge.izpack.api.resource.Messages;
+import com.izforge.izpack.panels.compile.CompileWorker.CompilationJob;
+
+/**
+ * Compiles {@link CompilationJob}s in-process, using the system Java compiler.
+ * <p/>
+ * Unlike the external compiler, all of the files of a job are compiled in a single compilation, and independent
+ * jobs are compiled concurrently on a bounded pool. A job is independent of an earlier job unless its class path
+ * covers the classes or sources of the earlier job, or the jobs share source files.
+ * <p/>
+ * Compiler diagnostics are reported through the {@link CompileHandler}, as the output of the external compiler is.
+ *
+ * @see ToolProvider#getSystemJavaCompiler()
+ */
+class InProcessCompiler
+{
+    private static final Logger logger = Logger.getLogger(InProcessCompiler.class.getName());
+
+    /**
+     * The compiler choice replaced by the system compiler.
+     */
+    private static final String JAVAC = "javac";
+
+    /**
+     * The system compiler.
+     */
+    private final JavaCompiler compiler;
+
+    /**
+     * The handler to notify of progress and errors.
+     */
+    private final CompileHandler handler;
+
+    /**
+     * The messages.
+     */
+    private final Messages messages;
+
+    /**
+     * The maximum no. of jobs to compile concurrently.
+     */
+    private final int threads;
+
+    /**
+     * Idle file managers.
+     * <p/>
+     * File managers aren't thread safe, so each running compilation takes one, and returns it when done. Reusing them
+     * avoids re-opening class path archives for each job.
+     */
+    private final BlockingQueue<StandardJavaFileManager> fileManagers
+            = new LinkedBlockingQueue<StandardJavaFileManager>();
+
+    /**
+     * Constructs an <tt>InProcessCompiler</tt>.
+     *
+     * @param compiler the system compiler
+     * @param handler  the handler to notify of progress and errors
+     * @param messages the messages
+     * @param threads  the maximum no. of jobs to compile concurrently
+     */
+    public InProcessCompiler(JavaCompiler compiler, CompileHandler handler, Messages messages, int threads)
+    {
+        this.compiler = compiler;
+        this.handler = handler;
+        this.messages = messages;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Returns the system compiler, if it can replace the specified compiler.
+     * <p/>
+     * Only the <em>javac</em> found on the path is replaced. Other compilers, and compilers specified by path,
+     * are always run as external processes.
+     *
+     * @param compiler the compiler selected by the user
+     * @return the system compiler, or {@code null} if the compiler must be run externally
+     */
+    public static JavaCompiler getSystemCompiler(String compiler)
+    {
+        if (!JAVAC.equals(compiler) && !(JAVAC + ".exe").equalsIgnoreCase(compiler))
+        {
+            return null;
+        }
+        try
+        {
+            return ToolProvider.getSystemJavaCompiler();
+        }
+        catch (Throwable exception)
+        {
+            logger.log(Level.FINE, "System Java compiler not available: " + exception.getMessage(), exception);
+            return null;
+        }
+    }
+
+    /**
+     * Compiles jobs.
+     * <p/>
+     * If a job fails, the handler is asked how to proceed. If compilation is not to continue, no further jobs are
+     * started, and the result is returned once any running jobs complete.
+     *
+     * @param jobs      the jobs to compile
+     * @param arguments the compiler arguments
+     * @return the result
+     */
+    public CompileResult compile(List<CompilationJob> jobs, List<String> arguments)
+    {
+        CompileResult result = checkArguments(arguments);
+        if (!result.isContinue())
+        {
+            return result;
+        }
+
+        List<Set<Integer>> dependencies = getDependencies(jobs, getOutputDirectory(arguments));
+        int size = jobs.size();
+        boolean[] started = new boolean[size];
+        boolean[] completed = new boolean[size];
+        int running = 0;
+        int jobNo = 0;
+        boolean stop = false;
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, size)));
+        CompletionService<JobResult> service = new ExecutorCompletionService<JobResult>(executor);
+        try
+        {
+            running += submit(jobs, arguments, dependencies, started, completed, service);
+            while (running > 0)
+            {
+                JobResult jobResult = take(service);
+                --running;
+                completed[jobResult.index] = true;
+
+                CompilationJob job = jobs.get(jobResult.index);
+                handler.nextStep(job.getName(), job.getSize(), jobNo++);
+                handler.progress(job.getSize(), job.getName());
+
+                if (!jobResult.success && !stop)
+                {
+                    CompileResult error = new CompileResult(messages.get("CompilePanel.error"), jobResult.cmdline,
+                                                            "", jobResult.output);
+                    handler.handleCompileError(error);
+                    if (!error.isContinue())
+                    {
+                        result = error;
+                        stop = true;
+                    }
+                }
+                if (!stop)
+                {
+                    running += submit(jobs, arguments, dependencies, started, completed, service);
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+            StandardJavaFileManager fileManager;
+            while ((fileManager = fileManagers.poll()) != null)
+            {
+                close(fileManager);
+            }
+        }
+        if (!stop)
+        {
+            logger.fine("In-process compilation finished");
+        }
+        return result;
+    }
+
+    /**
+     * Determines if a job depends on an earlier job.
+     * <p/>
+     * A job depends on an earlier one if they share source files, or if any entry of its class path is, or contains,
+     * the directory the earlier job writes classes to. The latter is the output directory if one is specified,
+     * otherwise the directories of the sources, as the compiler writes classes alongside them. Paths are compared in
+     * canonical form, so that relative entries such as <em>.</em> or <em>lib/../classes</em> match.
+     *
+     * @param job             the job
+     * @param earlier         the earlier job
+     * @param outputDirectory the output directory, or {@code null} if classes are written alongside sources
+     * @return {@code true} if {@code job} must be compiled after {@code earlier}
+     */
+    static boolean dependsOn(CompilationJob job, CompilationJob earlier, File outputDirectory)
+    {
+        Set<File> sources = getSources(earlier);
+        for (File file : getSources(job))
+        {
+            if (sources.contains(file))
+            {
+                return true;
+            }
+        }
+
+        Set<File> targets = new HashSet<File>();
+        if (outputDirectory != null)
+        {
+            targets.add(normalize(outputDirectory));
+        }
+        else
+        {
+            for (File file : sources)
+            {
+                targets.add(file.getParentFile());
+            }
+        }
+        for (String entry : getClasspath(job).split(File.pathSeparator))
+        {
+            File dir = normalize(new File(entry));
+            for (File target : targets)
+            {
+                for (File parent = target; parent != null; parent = parent.getParentFile())
+                {
+                    if (parent.equals(dir))
+                    {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Verifies that the compiler accepts the arguments.
+     *
+     * @param arguments the compiler arguments
+     * @return the result
+     */
+    private CompileResult checkArguments(List<String> arguments)
+    {
+        logger.fine("Checking whether the system compiler accepts " + arguments);
+        try
+        {
+            compiler.getTask(null, null, null, arguments, null, null);
+        }
+        catch (IllegalArgumentException exception)
+        {
+            List<String> cmdline = new ArrayList<String>();
+            cmdline.add(JAVAC);
+            cmdline.addAll(arguments);
+            CompileResult result = new CompileResult(messages.get("CompilePanel.error.invalidarguments"), cmdline,
+                                                     "", exception.getMessage());
+            handler.handleCompileError(result);
+            return result;
+        }
+        return new CompileResult();
+    }
+
+    /**
+     * Submits each job that hasn't been started, and whose dependencies have completed.
+     *
+     * @param jobs         the jobs
+     * @param arguments    the compiler arguments
+     * @param dependencies the indexes of the jobs each job depends on
+     * @param started      flags indicating if a job has been started
+     * @param completed    flags indicating if a job has completed
+     * @param service      the service to submit jobs to
+     * @return the no. of jobs submitted
+     */
+    private int submit(List<CompilationJob> jobs, final List<String> arguments, List<Set<Integer>> dependencies,
+                       boolean[] started, boolean[] completed, CompletionService<JobResult> service)
+    {
+        int submitted = 0;
+        for (int i = 0; i < jobs.size(); ++i)
+        {
+            if (!started[i] && isReady(dependencies.get(i), completed))
+            {
+                started[i] = true;
+                final int index = i;
+                final CompilationJob job = jobs.get(i);
+                service.submit(new Callable<JobResult>()
+                {
+                    @Override
+                    public JobResult call()
+                    {
+                        return perform(index, job, arguments, getClasspath(job));
+                    }
+                });
+                ++submitted;
+            }
+        }
+        return submitted;
+    }
+
+    /**
+     * Compiles a job.
+     *
+     * @param index     the job index
+     * @param job       the job
+     * @param options   the compiler options
+     * @param classpath the class path
+     * @return the result of the job
+     */
+    private JobResult perform(int index, CompilationJob job, List<String> options, String classpath)
+    {
+        logger.fine("starting job " + job.getName());
+        List<String> cmdline = new ArrayList<String>();
+        cmdline.add(JAVAC);
+        cmdline.addAll(options);
+        cmdline.add("-classpath");
+        cmdline.add(classpath);
+        for (File file : job.getFiles())
+        {
+            cmdline.add(file.getAbsolutePath());
+        }
+
+        StringWriter output = new StringWriter();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+        boolean success;
+        StandardJavaFileManager fileManager = fileManagers.poll();
+        if (fileManager == null)
+        {
+            fileManager = compiler.getStandardFileManager(null, null, null);
+        }
+        try
+        {
+            // the class path is set on the file manager, as a -classpath option would stick to a reused manager
+            List<File> entries = new ArrayList<File>();
+            for (String entry : classpath.split(File.pathSeparator))
+            {
+                entries.add(new File(entry));
+            }
+            fileManager.setLocation(StandardLocation.CLASS_PATH, entries);
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(job.getFiles());
+            success = compiler.getTask(output, fileManager, diagnostics, options, null, units).call();
+        }
+        catch (IOException exception)
+        {
+            exception.printStackTrace(new PrintWriter(output));
+            success = false;
+        }
+        catch (RuntimeException exception)
+        {
+            // the compiler failed, rather than the sources
+            exception.printStackTrace(new PrintWriter(output));
+            success = false;
+        }
+        finally
+        {
+            fileManagers.add(fileManager);
+        }
+
+        StringBuilder text = new StringBuilder();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics())
+        {
+            text.append(diagnostic).append(System.getProperty("line.separator"));
+        }
+        text.append(output);
+        if (success && text.length() > 0)
+        {
+            logger.fine(text.toString());
+        }
+        logger.fine("Job " + job.getName() + " done (" + job.getSize() + " files compiled)");
+        return new JobResult(index, success, cmdline, text.toString());
+    }
+
+    /**
+     * Waits for the next job to complete.
+     *
+     * @param service the completion service
+     * @return the result of the job
+     */
+    private JobResult take(CompletionService<JobResult> service)
+    {
+        try
+        {
+            return service.take().get();
+        }
+        catch (InterruptedException exception)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Compilation interrupted", exception);
+        }
+        catch (ExecutionException exception)
+        {
+            throw new IllegalStateException("Compilation failed", exception.getCause());
+        }
+    }
+
+    /**
+     * Returns the class path for a job.
+     * <p/>
+     * If the job has no class path, the <em>CLASSPATH</em> environment variable or the current directory is used,
+     * as the external compiler would. Otherwise, the class path of the installer would be used.
+     *
+     * @param job the job
+     * @return the class path
+     */
+    private static String getClasspath(CompilationJob job)
+    {
+        String result = job.getClasspathArgument();
+        if (result.length() == 0)
+        {
+            result = System.getenv("CLASSPATH");
+            if (result == null || result.length() == 0)
+            {
+                result = ".";
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Determines the jobs each job depends on.
+     *
+     * @param jobs            the jobs
+     * @param outputDirectory the output directory, or {@code null} if classes are written alongside sources
+     * @return the indexes of the jobs each job depends on
+     */
+    private static List<Set<Integer>> getDependencies(List<CompilationJob> jobs, File outputDirectory)
+    {
+        List<Set<Integer>> result = new ArrayList<Set<Integer>>(jobs.size());
+        for (int i = 0; i < jobs.size(); ++i)
+        {
+            Set<Integer> dependencies = new HashSet<Integer>();
+            for (int j = 0; j < i; ++j)
+            {
+                if (dependsOn(jobs.get(i), jobs.get(j), outputDirectory))
+                {
+                    dependencies.add(j);
+                }
+            }
+            result.add(dependencies);
+        }
+        return result;
+    }
+
+    /**
+     * Determines if all of a job's dependencies have completed.
+     *
+     * @param dependencies the indexes of the jobs the job depends on
+     * @param completed    flags indicating if a job has completed
+     * @return {@code true} if the job may be started
+     */
+    private static boolean isReady(Set<Integer> dependencies, boolean[] completed)
+    {
+        for (int dependency : dependencies)
+        {
+            if (!completed[dependency])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the output directory specified by the <em>-d</em> argument.
+     *
+     * @param arguments the compiler arguments
+     * @return the output directory, or {@code null} if none is specified
+     */
+    private static File getOutputDirectory(List<String> arguments)
+    {
+        int index = arguments.lastIndexOf("-d");
+        return (index >= 0 && index + 1 < arguments.size()) ? new File(arguments.get(index + 1)) : null;
+    }
+
+    /**
+     * Returns the canonical paths of the sources of a job.
+     *
+     * @param job the job
+     * @return the sources
+     */
+    private static Set<File> getSources(CompilationJob job)
+    {
+        Set<File> result = new HashSet<File>();
+        for (File file : job.getFiles())
+        {
+            result.add(normalize(file));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the canonical form of a file, so that paths can be compared.
+     *
+     * @param file the file
+     * @return the canonical file, or the absolute file if it can't be determined
+     */
+    private static File normalize(File file)
+    {
+        try
+        {
+            return file.getCanonicalFile();
+        }
+        catch (IOException exception)
+        {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    /**
+     * Closes a file manager, logging any error.
+     *
+     * @param fileManager the file manager
+     */
+    private static void close(StandardJavaFileManager fileManager)
+    {
+        try
+        {
+            fileManager.close();
+        }
+        catch (IOException exception)
+        {
+            logger.log(Level.FINE, "Failed to close file manager: " + exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * The result of compiling a job.
+     */
+    private static class JobResult
+    {
+        /**
+         * The job index.
+         */
+        private final int index;
+
+        /**
+         * Determines if the job compiled successfully.
+         */
+        private final boolean success;
+
+        /**
+         * The equivalent command line.
+         */
+        private final List<String> cmdline;
+
+        /**
+         * The compiler diagnostics and output.
+         */
+        private final String output;
+
+        /**
+         * Constructs a <tt>JobResult</tt>.
+         *
+         * @param index   the job index
+         * @param success determines if the job compiled successfully
+         * @param cmdline the equivalent command line
+         * @param output  the compiler diagnostics and output
+         */
+        public JobResult(int index, boolean success, List<String> cmdline, String output)
+        {
+            this.index = index;
+            this.success = success;
+            this.cmdline = cmdline;
+            this.output = output;
+        }
+    }
+}
@@ -32,13 +32,11 @@ import com.izforge.izpack.api.exception.ResourceNotFoundException;
 import com.izforge.izpack.api.resource.Messages;
 import com.izforge.izpack.api.resource.Resources;
 import com.izforge.izpack.api.rules.RulesEngine;
+import com.izforge.izpack.installer.data.InstallationInformation;
 import com.izforge.izpack.installer.util.PackHelper;
 
 import javax.swing.table.AbstractTableModel;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -887,16 +885,13 @@ public class PacksModel extends AbstractTableModel
 
         // installation shall be modified
         // load installation information
-        ObjectInputStream oin = null;
         File installInfo = new File(installData.getInstallPath(), InstallData.INSTALLATION_INFORMATION);
         try
         {
             if (installInfo.exists())
             {
-                FileInputStream fin = new FileInputStream(installInfo);
-                oin = new ObjectInputStream(fin);
-                //noinspection unchecked
-                List<Pack> packsinstalled = (List<Pack>) oin.readObject();
+                InstallationInformation information = InstallationInformation.read(installInfo);
+                List<Pack> packsinstalled = information.getPacks();
                 for (Pack installedpack : packsinstalled)
                 {
                     readPacks.put(installedpack.getName(), installedpack);
@@ -904,10 +899,10 @@ public class PacksModel extends AbstractTableModel
                 removeAlreadyInstalledPacks(installData.getSelectedPacks(), readPacks);
                 logger.fine("Found " + packsinstalled.size() + " installed packs");
 
-                Properties variables = (Properties) oin.readObject();
-                for (Object key : variables.keySet())
+                Properties variables = information.getVariables();
+                for (String key : variables.stringPropertyNames())
                 {
-                    installData.setVariable((String) key, (String) variables.get(key));
+                    installData.setVariable(key, variables.getProperty(key));
                 }
             }
         }
@@ -915,17 +910,6 @@ public class PacksModel extends AbstractTableModel
         {
             logger.warning("Could not read installation information: " + e.getMessage());
         }
-        finally
-        {
-            if (oin != null)
-            {
-                try
-                {
-                    oin.close();
-                }
-                catch (IOException ignored) {}
-            }
-        }
         return readPacks;
     }
 
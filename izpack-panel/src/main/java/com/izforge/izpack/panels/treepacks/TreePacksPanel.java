@@ -262,7 +262,14 @@ public class TreePacksPanel extends IzPanel
 
     public LocaleDatabase getLangpack()
     {
-        return (LocaleDatabase) messages;
+        if (messages instanceof LocaleDatabase)
+        {
+            return (LocaleDatabase) messages;
+        }
+        // compiled langpacks aren't held in a LocaleDatabase
+        LocaleDatabase result = new LocaleDatabase(messages, null);
+        result.add(messages);
+        return result;
     }
 
     /**
@@ -23,7 +23,7 @@ package com.izforge.izpack.panels.userinput.field;
 
 import com.izforge.izpack.api.adaptator.IXMLElement;
 import com.izforge.izpack.api.adaptator.IXMLParser;
-import com.izforge.izpack.api.adaptator.impl.XMLParser;
+import com.izforge.izpack.api.adaptator.impl.XMLParserFactory;
 import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.factory.ObjectFactory;
@@ -99,7 +99,7 @@ public class Config
     public Config(String path, Resources resources, InstallData installData, ObjectFactory factory,
                   Messages messages)
     {
-        IXMLParser parser = new XMLParser(false);
+        IXMLParser parser = XMLParserFactory.createParser(false);
 
         URL url = resources.getURL(path);
         this.path = url.getPath();
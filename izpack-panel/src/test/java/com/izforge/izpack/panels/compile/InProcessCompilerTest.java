@@ -0,0 +1,298 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.panels.compile;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.izforge.izpack.api.data.InstallData;
+import com.izforge.izpack.api.resource.Messages;
+import com.izforge.izpack.panels.compile.CompileWorker.CompilationJob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Tests the {@link InProcessCompiler} class.
+ */
+public class InProcessCompilerTest
+{
+    /**
+     * Temporary folder for sources.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The installation data.
+     */
+    private InstallData installData;
+
+    /**
+     * The compile handler.
+     */
+    private CompileHandler handler;
+
+    /**
+     * Sets up the test case.
+     */
+    @Before
+    public void setUp()
+    {
+        Messages messages = Mockito.mock(Messages.class);
+        when(messages.get(anyString())).thenAnswer(new Answer<String>()
+        {
+            @Override
+            public String answer(InvocationOnMock invocation)
+            {
+                return (String) invocation.getArguments()[0];
+            }
+        });
+        installData = Mockito.mock(InstallData.class);
+        when(installData.getMessages()).thenReturn(messages);
+        handler = Mockito.mock(CompileHandler.class);
+    }
+
+    /**
+     * Verifies that only <em>javac</em> is replaced by the system compiler.
+     */
+    @Test
+    public void testGetSystemCompiler()
+    {
+        assertNull(InProcessCompiler.getSystemCompiler("jikes"));
+        assertNull(InProcessCompiler.getSystemCompiler("/usr/lib/jvm/bin/javac"));
+    }
+
+    /**
+     * Verifies that jobs are only ordered when one uses the classes or sources of another.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testDependsOn() throws IOException
+    {
+        File lib = temporaryFolder.newFolder("lib");
+        File app = temporaryFolder.newFolder("app");
+        File classes = temporaryFolder.newFolder("classes");
+        CompilationJob libJob = createJob("lib", Collections.<String>emptyList(), new File(lib, "a/Lib.java"));
+        CompilationJob appJob = createJob("app", Arrays.asList(lib.getPath()), new File(app, "App.java"));
+        CompilationJob otherJob = createJob("other", Arrays.asList(app.getPath()), new File(lib, "b/Other.java"));
+
+        assertTrue(InProcessCompiler.dependsOn(appJob, libJob, null));
+        assertFalse(InProcessCompiler.dependsOn(otherJob, libJob, null));
+        assertTrue(InProcessCompiler.dependsOn(otherJob, appJob, null));
+
+        // with an output directory, classes are only found via that
+        assertFalse(InProcessCompiler.dependsOn(appJob, libJob, classes));
+        CompilationJob classesJob = createJob("classes", Arrays.asList(classes.getPath()), new File(app, "B.java"));
+        assertTrue(InProcessCompiler.dependsOn(classesJob, libJob, classes));
+
+        // jobs sharing sources are ordered
+        CompilationJob sameJob = createJob("same", Collections.<String>emptyList(), new File(lib, "a/Lib.java"));
+        assertTrue(InProcessCompiler.dependsOn(sameJob, libJob, null));
+    }
+
+    /**
+     * Verifies that relative class path entries and output directories are normalized when ordering jobs.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testDependsOnRelativePaths() throws IOException
+    {
+        File lib = temporaryFolder.newFolder("lib");
+        File app = temporaryFolder.newFolder("app");
+        File classes = temporaryFolder.newFolder("classes");
+        CompilationJob libJob = createJob("lib", Collections.<String>emptyList(), new File(lib, "Lib.java"));
+
+        // the current directory contains the relative output directory
+        File relative = new File("target" + File.separator + ".." + File.separator + "target", "classes");
+        CompilationJob currentJob = createJob("current", Arrays.asList("."), new File(app, "App.java"));
+        assertTrue(InProcessCompiler.dependsOn(currentJob, libJob, relative));
+        String unrelated = new File(lib, "..").getPath() + File.separator + app.getName();
+        assertFalse(InProcessCompiler.dependsOn(createJob("unrelated", Arrays.asList(unrelated),
+                                                          new File(app, "D.java")), libJob, classes));
+
+        // an entry that resolves to the output directory via ..
+        String parent = new File(lib, "..").getPath() + File.separator + classes.getName();
+        CompilationJob parentJob = createJob("parent", Arrays.asList(parent), new File(app, "B.java"));
+        assertTrue(InProcessCompiler.dependsOn(parentJob, libJob, classes));
+
+        // an entry that resolves to a source directory via ..
+        String sources = new File(app, "..").getPath() + File.separator + lib.getName();
+        CompilationJob sourcesJob = createJob("sources", Arrays.asList(sources), new File(app, "C.java"));
+        assertTrue(InProcessCompiler.dependsOn(sourcesJob, libJob, null));
+    }
+
+    /**
+     * Verifies that dependent and independent jobs are compiled.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCompile() throws IOException
+    {
+        JavaCompiler javac = getSystemCompiler();
+        File lib = temporaryFolder.newFolder("lib");
+        File app = temporaryFolder.newFolder("app");
+        File other = temporaryFolder.newFolder("other");
+        List<CompilationJob> jobs = new ArrayList<CompilationJob>();
+        jobs.add(createJob("lib", Collections.<String>emptyList(),
+                           write(lib, "Lib.java", "public class Lib { public static int value() { return 1; } }")));
+        jobs.add(createJob("app", Arrays.asList(lib.getPath()),
+                           write(app, "App.java", "public class App { int value = Lib.value(); }")));
+        jobs.add(createJob("other", Arrays.asList(other.getPath()),
+                           write(other, "Other.java", "public class Other { }")));
+
+        CompileResult result = new InProcessCompiler(javac, handler, installData.getMessages(), 4)
+                .compile(jobs, Arrays.asList("-g:none"));
+
+        assertTrue(result.getMessage() + ": " + result.getStderr(), result.isSuccess());
+        assertTrue(new File(lib, "Lib.class").exists());
+        assertTrue(new File(app, "App.class").exists());
+        assertTrue(new File(other, "Other.class").exists());
+        verify(handler, never()).handleCompileError(any(CompileResult.class));
+        verify(handler, times(3)).nextStep(anyString(), eq(1), anyInt());
+    }
+
+    /**
+     * Verifies that compilation errors are passed to the handler.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testCompileError() throws IOException
+    {
+        JavaCompiler javac = getSystemCompiler();
+        File dir = temporaryFolder.newFolder("broken");
+        File source = write(dir, "Broken.java", "public class Broken { int value = missing(); }");
+        List<CompilationJob> jobs = Arrays.asList(createJob("broken", Collections.<String>emptyList(), source));
+
+        CompileResult result = new InProcessCompiler(javac, handler, installData.getMessages(), 2)
+                .compile(jobs, Collections.<String>emptyList());
+
+        assertTrue(result.isAbort());
+        assertEquals("CompilePanel.error", result.getMessage());
+        assertTrue(result.getStderr().contains("Broken.java"));
+        assertTrue(result.getCmdline().startsWith("javac"));
+        verify(handler).handleCompileError(result);
+    }
+
+    /**
+     * Verifies that arguments rejected by the compiler are reported before any job is compiled.
+     *
+     * @throws IOException for any I/O error
+     */
+    @Test
+    public void testInvalidArguments() throws IOException
+    {
+        JavaCompiler javac = getSystemCompiler();
+        File dir = temporaryFolder.newFolder("invalid");
+        File source = write(dir, "Valid.java", "public class Valid { }");
+        List<CompilationJob> jobs = Arrays.asList(createJob("valid", Collections.<String>emptyList(), source));
+
+        CompileResult result = new InProcessCompiler(javac, handler, installData.getMessages(), 2)
+                .compile(jobs, Arrays.asList("-no-such-option"));
+
+        assertTrue(result.isAbort());
+        assertEquals("CompilePanel.error.invalidarguments", result.getMessage());
+        ArgumentCaptor<CompileResult> captor = ArgumentCaptor.forClass(CompileResult.class);
+        verify(handler).handleCompileError(captor.capture());
+        assertEquals(result, captor.getValue());
+        assertFalse(new File(dir, "Valid.class").exists());
+    }
+
+    /**
+     * Returns the system compiler, skipping the test if there is none.
+     *
+     * @return the system compiler
+     */
+    private JavaCompiler getSystemCompiler()
+    {
+        JavaCompiler result = InProcessCompiler.getSystemCompiler("javac");
+        Assume.assumeTrue(result != null);
+        return result;
+    }
+
+    /**
+     * Creates a job.
+     *
+     * @param name      the job name
+     * @param classpath the class path
+     * @param files     the files to compile
+     * @return a new job
+     */
+    private CompilationJob createJob(String name, List<String> classpath, File... files)
+    {
+        return new CompilationJob(handler, installData, name, new ArrayList<File>(Arrays.asList(files)), classpath);
+    }
+
+    /**
+     * Writes a source file.
+     *
+     * @param dir     the directory
+     * @param name    the file name
+     * @param content the file content
+     * @return the file
+     * @throws IOException for any I/O error
+     */
+    private static File write(File dir, String name, String content) throws IOException
+    {
+        File file = new File(dir, name);
+        FileWriter writer = new FileWriter(file);
+        try
+        {
+            writer.write(content);
+        }
+        finally
+        {
+            writer.close();
+        }
+        return file;
+    }
+}
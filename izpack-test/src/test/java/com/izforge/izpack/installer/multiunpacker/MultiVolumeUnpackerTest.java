@@ -33,6 +33,7 @@ import com.izforge.izpack.compiler.listener.PackagerListener;
 import com.izforge.izpack.compiler.merge.CompilerPathResolver;
 import com.izforge.izpack.compiler.packager.impl.MultiVolumePackager;
 import com.izforge.izpack.core.data.DefaultVariables;
+import com.izforge.izpack.core.data.PackInfoTable;
 import com.izforge.izpack.core.io.VolumeLocator;
 import com.izforge.izpack.core.resource.ResourceManager;
 import com.izforge.izpack.core.substitutor.VariableSubstitutorImpl;
@@ -479,16 +480,9 @@ public class MultiVolumeUnpackerTest
     {
         // We read the packs data
         InputStream in = resources.getInputStream("packs.info");
-        ObjectInputStream objIn = new ObjectInputStream(in);
-        List<PackInfo> packsInfo = (List<PackInfo>) objIn.readObject();
-        objIn.close();
-        List<Pack> packs = new ArrayList<Pack>();
-        for (PackInfo packInfo : packsInfo)
-        {
-            Pack pack = packInfo.getPack();
-            packs.add(pack);
-        }
-        return packs;
+        PackInfoTable packsInfo = PackInfoTable.read(in);
+        in.close();
+        return new ArrayList<Pack>(packsInfo.getPacks());
     }
 
     /**
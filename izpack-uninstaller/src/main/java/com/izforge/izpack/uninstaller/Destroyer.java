@@ -25,11 +25,19 @@ import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.izforge.izpack.api.event.ProgressListener;
+import com.izforge.izpack.api.exception.IzPackException;
 import com.izforge.izpack.api.handler.Prompt;
 import com.izforge.izpack.uninstaller.event.UninstallerListeners;
 import com.izforge.izpack.uninstaller.resource.Executables;
@@ -81,6 +89,11 @@ public class Destroyer implements Runnable
      */
     private boolean forceDelete;
 
+    /**
+     * The number of threads used to delete files.
+     */
+    private int threads = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+
     /**
      * Tracks the no. of files that couldn't be deleted.
      */
@@ -138,6 +151,18 @@ public class Destroyer implements Runnable
         this.forceDelete = force;
     }
 
+    /**
+     * Sets the number of threads used to delete files.
+     * <p/>
+     * Files are only deleted concurrently if no uninstaller listener needs to be notified of each file.
+     *
+     * @param threads the number of threads. If {@code <= 1}, files are deleted one at a time
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+
     /**
      * Runs the destroyer.
      */
@@ -195,17 +220,24 @@ public class Destroyer implements Runnable
             listener.startAction("destroy", size);
         }
 
-        for (int i = 0; i < size; i++)
+        if (threads > 1 && !listeners.isFileListener())
+        {
+            deleteConcurrently(files);
+        }
+        else
         {
-            File file = files.get(i);
-            listeners.beforeDelete(file, listener);
+            for (int i = 0; i < size; i++)
+            {
+                File file = files.get(i);
+                listeners.beforeDelete(file, listener);
 
-            delete(file);
+                delete(file);
 
-            listeners.afterDelete(file, listener);
-            if (listener != null)
-            {
-                listener.progress(i, file.getAbsolutePath());
+                listeners.afterDelete(file, listener);
+                if (listener != null)
+                {
+                    listener.progress(i, file.getAbsolutePath());
+                }
             }
         }
 
@@ -231,6 +263,111 @@ public class Destroyer implements Runnable
         }
     }
 
+    /**
+     * Deletes installed files using multiple threads.
+     * <p/>
+     * Files are deleted concurrently. Directories are then deleted one at a time in leaf first order, so that a
+     * directory is only deleted once its children have been. Progress is reported in the order that files are
+     * listed.
+     *
+     * @param files the installed files, in leaf first order
+     * @throws InterruptedException if interrupted while waiting for a file to be deleted
+     */
+    private void deleteConcurrently(List<File> files) throws InterruptedException
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(Runnable runnable)
+            {
+                Thread thread = new Thread(runnable, "izpack-destroyer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try
+        {
+            int maxPending = threads * 64;
+            int progress = 0;
+            LinkedList<File> pendingFiles = new LinkedList<File>();
+            LinkedList<Future<Boolean>> pending = new LinkedList<Future<Boolean>>();
+            List<File> directories = new ArrayList<File>();
+            for (final File file : files)
+            {
+                pendingFiles.add(file);
+                pending.add(executor.submit(new Callable<Boolean>()
+                {
+                    @Override
+                    public Boolean call()
+                    {
+                        if (file.isDirectory())
+                        {
+                            return false;
+                        }
+                        delete(file);
+                        return true;
+                    }
+                }));
+                while (pending.size() >= maxPending || (!pending.isEmpty() && pending.getFirst().isDone()))
+                {
+                    progress = complete(pending.removeFirst(), pendingFiles.removeFirst(), directories, progress);
+                }
+            }
+            while (!pending.isEmpty())
+            {
+                progress = complete(pending.removeFirst(), pendingFiles.removeFirst(), directories, progress);
+            }
+
+            // the directories are still in leaf first order
+            for (File directory : directories)
+            {
+                delete(directory);
+                if (listener != null)
+                {
+                    listener.progress(progress++, directory.getAbsolutePath());
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Waits for a file to be deleted, and reports progress.
+     *
+     * @param future      the deletion. Returns {@code false} if the file is a directory, and wasn't deleted
+     * @param file        the file
+     * @param directories collects directories, to be deleted once all files have been
+     * @param progress    the no. of files deleted so far
+     * @return the updated no. of files deleted
+     * @throws InterruptedException if interrupted while waiting
+     */
+    private int complete(Future<Boolean> future, File file, List<File> directories, int progress)
+            throws InterruptedException
+    {
+        boolean deleted;
+        try
+        {
+            deleted = future.get();
+        }
+        catch (ExecutionException exception)
+        {
+            throw new IzPackException(exception.getCause());
+        }
+        if (!deleted)
+        {
+            directories.add(file);
+            return progress;
+        }
+        if (listener != null)
+        {
+            listener.progress(progress, file.getAbsolutePath());
+        }
+        return progress + 1;
+    }
+
     /**
      * Verifies that the installed files have been deleted.
      *
@@ -19,7 +19,11 @@
 
 package com.izforge.izpack.uninstaller;
 
+import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.core.resource.DefaultResources;
+import com.izforge.izpack.core.verify.InstallationManifest;
+import com.izforge.izpack.core.verify.InstallationVerifier;
+import com.izforge.izpack.core.verify.VerificationReport;
 import com.izforge.izpack.uninstaller.console.ConsoleUninstaller;
 import com.izforge.izpack.uninstaller.console.ConsoleUninstallerContainer;
 import com.izforge.izpack.uninstaller.container.UninstallerContainer;
@@ -29,8 +33,11 @@ import com.izforge.izpack.uninstaller.resource.InstallLog;
 import com.izforge.izpack.util.*;
 
 import javax.swing.*;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -60,6 +67,11 @@ public class Uninstaller
      */
     public static void main(String[] args)
     {
+        if (Arrays.asList(args).contains("-verify"))
+        {
+            System.exit(verify());
+        }
+
         // relaunch the uninstaller with elevated permissions if required
         Platform platform = new Platforms().getCurrentPlatform();
 
@@ -178,6 +190,45 @@ public class Uninstaller
         });
     }
 
+    /**
+     * Verifies the installed files against the manifest recorded by the installer, printing the report to
+     * <tt>System.out</tt>.
+     *
+     * @return {@code 0} if the installation is intact, otherwise {@code 1}
+     */
+    private static int verify()
+    {
+        try
+        {
+            InputStream in = Uninstaller.class.getResourceAsStream("/" + InstallationManifest.RESOURCE);
+            if (in == null)
+            {
+                System.err.println("No installation manifest found. The installation can't be verified.");
+                return 1;
+            }
+            InstallationManifest manifest;
+            try
+            {
+                manifest = InstallationManifest.read(in);
+            }
+            finally
+            {
+                in.close();
+            }
+            String installPath = InstallLog.getInstallPath(new DefaultResources());
+            InstallationVerifier verifier = new InstallationVerifier();
+            verifier.ignore(new File(installPath, InstallData.INSTALLATION_INFORMATION));
+            VerificationReport report = verifier.verify(manifest);
+            report.print(System.out);
+            return report.isValid() ? 0 : 1;
+        }
+        catch (Exception exception)
+        {
+            logger.log(Level.SEVERE, exception.getMessage(), exception);
+            return 1;
+        }
+    }
+
     private static void shutdown(UninstallerContainer container, Exception error)
     {
         logger.log(Level.SEVERE, error.getMessage(), error);
@@ -80,6 +80,16 @@ public class UninstallerListeners
         }
     }
 
+    /**
+     * Determines if any of the listeners should be notified of file and directory events.
+     *
+     * @return {@code true} if a listener is notified of file and directory events
+     */
+    public boolean isFileListener()
+    {
+        return fileListener;
+    }
+
     /**
      * Initialises the listeners.
      *
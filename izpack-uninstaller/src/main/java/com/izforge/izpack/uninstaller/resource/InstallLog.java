@@ -29,13 +29,14 @@ import java.io.*;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.TreeSet;
 
 
 /**
  * The installation log.
  * <p/>
  * This holds the installation path and the list of installed files.
+ * <p/>
+ * The list of installed files is only read when it is first required.
  *
  * @author Tim Anderson
  */
@@ -53,9 +54,14 @@ public class InstallLog
     private final String installPath;
 
     /**
-     * The installed files.
+     * The resources used to locate the <em>install.log</em> resource.
+     */
+    private final Resources resources;
+
+    /**
+     * The installed files, or {@code null} if they haven't been read yet.
      */
-    private final List<File> files;
+    private List<File> files;
 
 
     /**
@@ -66,26 +72,8 @@ public class InstallLog
      */
     public InstallLog(Resources resources)
     {
-        InputStream in = null;
-        InputStreamReader inReader = null;
-        try
-        {
-            in = resources.getInputStream(INSTALL_LOG);
-            inReader = new InputStreamReader(in);
-            BufferedReader reader = new BufferedReader(inReader);
-
-            installPath = getInstallPath(reader);
-            files = getFiles(reader);
-        }
-        catch (IOException exception)
-        {
-            throw new IzPackException(exception);
-        }
-        finally
-        {
-            IOUtils.closeQuietly(inReader);
-            IOUtils.closeQuietly(in);
-        }
+        this.resources = resources;
+        installPath = getInstallPath(resources);
     }
 
     /**
@@ -102,9 +90,33 @@ public class InstallLog
      * Returns the installed files, in leaf order.
      *
      * @return the installed files
+     * @throws IzPackException if the files cannot be read
      */
-    public List<File> getInstalled()
+    public synchronized List<File> getInstalled()
     {
+        if (files == null)
+        {
+            InputStream in = null;
+            InputStreamReader inReader = null;
+            try
+            {
+                in = resources.getInputStream(INSTALL_LOG);
+                inReader = new InputStreamReader(in);
+                BufferedReader reader = new BufferedReader(inReader);
+
+                getInstallPath(reader);
+                files = getFiles(reader);
+            }
+            catch (IOException exception)
+            {
+                throw new IzPackException(exception);
+            }
+            finally
+            {
+                IOUtils.closeQuietly(inReader);
+                IOUtils.closeQuietly(in);
+            }
+        }
         return files;
     }
 
@@ -164,7 +176,7 @@ public class InstallLog
      */
     private List<File> getFiles(BufferedReader reader) throws IOException
     {
-        TreeSet<File> files = new TreeSet<File>(Collections.reverseOrder());
+        List<File> files = new ArrayList<File>();
         String read = reader.readLine();
         while (read != null)
         {
@@ -172,8 +184,17 @@ public class InstallLog
             read = reader.readLine();
         }
 
-        // We return it
-        return new ArrayList<File>(files);
+        // sort in a single array rather than a tree, and drop duplicates. Large installations log many files
+        Collections.sort(files, Collections.reverseOrder());
+        int size = 0;
+        for (File file : files)
+        {
+            if (size == 0 || !files.get(size - 1).equals(file))
+            {
+                files.set(size++, file);
+            }
+        }
+        return new ArrayList<File>(files.subList(0, size));
     }
 
 
@@ -0,0 +1,131 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.uninstaller;
+
+import com.izforge.izpack.api.event.ProgressListener;
+import com.izforge.izpack.api.handler.Prompt;
+import com.izforge.izpack.uninstaller.event.UninstallerListeners;
+import com.izforge.izpack.uninstaller.resource.Executables;
+import com.izforge.izpack.uninstaller.resource.InstallLog;
+import com.izforge.izpack.uninstaller.resource.RootScripts;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+/**
+ * Tests the {@link Destroyer} class.
+ */
+public class DestroyerTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Verifies that installed files and directories are deleted when files are deleted concurrently.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testConcurrentDelete() throws Exception
+    {
+        checkDelete(4);
+    }
+
+    /**
+     * Verifies that installed files and directories are deleted when files are deleted one at a time.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSequentialDelete() throws Exception
+    {
+        checkDelete(1);
+    }
+
+    /**
+     * Verifies that installed files and directories are deleted.
+     *
+     * @param threads the number of threads to delete files with
+     * @throws Exception for any error
+     */
+    private void checkDelete(int threads) throws Exception
+    {
+        File installDir = temporaryFolder.newFolder("app");
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < 10; ++i)
+        {
+            File dir = new File(installDir, "dir" + i);
+            File subdir = new File(dir, "subdir");
+            files.add(dir);
+            files.add(subdir);
+            for (int j = 0; j < 20; ++j)
+            {
+                File file = new File(subdir, "file" + j);
+                FileUtils.writeStringToFile(file, "content");
+                files.add(file);
+            }
+        }
+        Collections.sort(files, Collections.reverseOrder());
+
+        InstallLog log = Mockito.mock(InstallLog.class);
+        when(log.getInstalled()).thenReturn(files);
+        when(log.getInstallPath()).thenReturn(installDir.getPath());
+        Executables executables = Mockito.mock(Executables.class);
+        when(executables.run()).thenReturn(true);
+        Prompt prompt = Mockito.mock(Prompt.class);
+        ProgressListener listener = Mockito.mock(ProgressListener.class);
+
+        Destroyer destroyer = new Destroyer(log, new UninstallerListeners(prompt), executables,
+                                            Mockito.mock(RootScripts.class), prompt);
+        destroyer.setThreads(threads);
+        destroyer.setProgressListener(listener);
+        destroyer.run();
+
+        for (File file : files)
+        {
+            assertFalse(file.exists());
+        }
+        assertFalse(installDir.exists());
+        assertTrue(destroyer.getFailedToDelete().isEmpty());
+
+        // progress is reported for each installed file, and for the cleanup
+        verify(listener, times(files.size() + 1)).progress(anyInt(), anyString());
+        verify(listener).stopAction();
+    }
+}
@@ -27,6 +27,7 @@ import static org.mockito.Mockito.when;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 import java.util.List;
 
@@ -34,6 +35,8 @@ import org.apache.commons.io.input.ReaderInputStream;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.izforge.izpack.api.resource.Resources;
 
@@ -60,14 +63,21 @@ public class InstallLogTest
     public void setUp() throws IOException
     {
         // set up a mock resource
-        String installLog = "myapp\n"
+        final String installLog = "myapp\n"
                 + "myapp/dir2/dir3\n"
                 + "myapp/dir2/dir3/file2\n"
                 + "myapp/dir2/file1\n"
+                + "myapp/dir2/file1\n"
                 + "myapp/dir1\n";
-        StringReader reader = new StringReader(installLog);
         resources = Mockito.mock(Resources.class);
-        when(resources.getInputStream("install.log")).thenReturn(new ReaderInputStream(reader));
+        when(resources.getInputStream("install.log")).thenAnswer(new Answer<InputStream>()
+        {
+            @Override
+            public InputStream answer(InvocationOnMock invocation) throws Throwable
+            {
+                return new ReaderInputStream(new StringReader(installLog));
+            }
+        });
     }
 
     /**
@@ -37,6 +37,7 @@ import java.util.logging.Logger;
 
 import com.izforge.izpack.api.handler.AbstractUIHandler;
 import com.izforge.izpack.api.data.ExecutableFile;
+import com.izforge.izpack.util.file.FilePermissions;
 
 /**
  * Executes a bunch of files. This class is intended to do a system dependent installation
@@ -306,9 +307,6 @@ public class FileExecutor
     {
         int exitStatus = 0;
         String[] output = new String[2];
-        // String permissions = (System.getProperty("user.name").equals("root"))
-        // ? "a+x" : "u+x";
-        String permissions = "a+x";
         boolean isUnix = matcher.getCurrentPlatform().isA(UNIX);
 
         // loop through all executables
@@ -332,12 +330,9 @@ public class FileExecutor
             {
                 // fix executable permission for unix systems
                 logger.fine("Making file executable (setting executable flag)");
-                String[] params = {"/bin/chmod", permissions, file.toString()};
-                exitStatus = executeCommand(params, output);
-                if (exitStatus != 0)
+                if (!FilePermissions.setExecutable(file))
                 {
-                    handler.emitWarning("file execution error", "Error executing \n" + params[0]
-                            + " " + params[1] + " " + params[2]);
+                    handler.emitWarning("file execution error", "Failed to make " + file + " executable");
                     continue;
                 }
             }
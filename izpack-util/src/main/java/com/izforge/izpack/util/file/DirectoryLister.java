@@ -0,0 +1,299 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Lists directories for the {@link DirectoryScanner}, reading the type of each entry once.
+ * <p/>
+ * Directories passed to {@link #prefetch} are listed on a pool of background threads, so that the file system is
+ * read ahead of the scanner, which matches the entries against its patterns on the calling thread. {@link #list}
+ * returns a prefetched listing, or lists the directory on the calling thread if it wasn't prefetched.
+ */
+class DirectoryLister
+{
+    /**
+     * A directory entry.
+     */
+    static class Entry
+    {
+        /**
+         * The entry name.
+         */
+        private final String name;
+
+        /**
+         * The entry file.
+         */
+        private final File file;
+
+        /**
+         * Determines if the entry is a directory.
+         */
+        private final boolean directory;
+
+        /**
+         * Determines if the entry is a normal file.
+         */
+        private final boolean normalFile;
+
+        /**
+         * Determines if the entry is a symbolic link. Only determined if links aren't being followed.
+         */
+        private final boolean symlink;
+
+        /**
+         * Constructs an <tt>Entry</tt>.
+         *
+         * @param dir            the parent directory
+         * @param name           the entry name
+         * @param followSymlinks if {@code false}, determine if the entry is a symbolic link
+         */
+        public Entry(File dir, String name, boolean followSymlinks)
+        {
+            this.name = name;
+            file = new File(dir, name);
+            directory = file.isDirectory();
+            normalFile = !directory && file.isFile();
+            symlink = !followSymlinks && isSymbolicLink(dir, name);
+        }
+
+        /**
+         * Returns the entry name.
+         *
+         * @return the entry name
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Returns the entry file.
+         *
+         * @return the entry file
+         */
+        public File getFile()
+        {
+            return file;
+        }
+
+        /**
+         * Determines if the entry is a directory.
+         *
+         * @return {@code true} if the entry is a directory
+         */
+        public boolean isDirectory()
+        {
+            return directory;
+        }
+
+        /**
+         * Determines if the entry is a normal file.
+         *
+         * @return {@code true} if the entry is a normal file
+         */
+        public boolean isFile()
+        {
+            return normalFile;
+        }
+
+        /**
+         * Determines if the entry is a symbolic link.
+         *
+         * @return {@code true} if the entry is a symbolic link, and links aren't being followed
+         */
+        public boolean isSymlink()
+        {
+            return symlink;
+        }
+
+        /**
+         * Determines if a directory entry is a symbolic link.
+         *
+         * @param dir  the directory
+         * @param name the entry name
+         * @return {@code true} if the entry is a symbolic link
+         */
+        private static boolean isSymbolicLink(File dir, String name)
+        {
+            try
+            {
+                return FileUtils.isSymbolicLink(dir, name);
+            }
+            catch (IOException ioe)
+            {
+                String msg = "IOException caught while checking "
+                        + "for links, couldn't get canonical path!";
+                System.err.println(msg);
+                return false;
+            }
+        }
+    }
+
+    /**
+     * The default no. of listing threads.
+     */
+    static final int DEFAULT_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * Determines if symbolic links are followed.
+     */
+    private final boolean followSymlinks;
+
+    /**
+     * The listing threads, or {@code null} if directories are only listed on the calling thread.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The prefetched listings, keyed on directory.
+     */
+    private final Map<File, Future<Entry[]>> listings = new ConcurrentHashMap<File, Future<Entry[]>>();
+
+    /**
+     * Constructs a <tt>DirectoryLister</tt>.
+     *
+     * @param threads        the no. of threads to list directories ahead of the scanner. If {@code <= 1}, directories
+     *                       are only listed when requested
+     * @param followSymlinks if {@code false}, determine which entries are symbolic links
+     */
+    public DirectoryLister(int threads, boolean followSymlinks)
+    {
+        this.followSymlinks = followSymlinks;
+        executor = (threads > 1) ? Executors.newFixedThreadPool(threads, new ListerThreadFactory()) : null;
+    }
+
+    /**
+     * Starts listing a directory in the background.
+     *
+     * @param dir the directory
+     */
+    public void prefetch(final File dir)
+    {
+        if (executor != null && !listings.containsKey(dir))
+        {
+            listings.put(dir, executor.submit(new Callable<Entry[]>()
+            {
+                @Override
+                public Entry[] call() throws Exception
+                {
+                    return read(dir);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Returns the entries of a directory.
+     *
+     * @param dir the directory
+     * @return the directory entries
+     * @throws Exception if the directory doesn't exist, isn't a directory, or cannot be read
+     */
+    public Entry[] list(File dir) throws Exception
+    {
+        Future<Entry[]> future = listings.remove(dir);
+        if (future == null)
+        {
+            return read(dir);
+        }
+        try
+        {
+            return future.get();
+        }
+        catch (ExecutionException exception)
+        {
+            Throwable cause = exception.getCause();
+            throw (cause instanceof Exception) ? (Exception) cause : exception;
+        }
+    }
+
+    /**
+     * Stops the listing threads, discarding any listings not yet requested.
+     */
+    public void shutdown()
+    {
+        if (executor != null)
+        {
+            executor.shutdownNow();
+        }
+        listings.clear();
+    }
+
+    /**
+     * Lists a directory.
+     *
+     * @param dir the directory
+     * @return the directory entries
+     * @throws Exception if the directory doesn't exist, isn't a directory, or cannot be read
+     */
+    private Entry[] read(File dir) throws Exception
+    {
+        String[] names = dir.list();
+        if (names == null)
+        {
+            // only stat the directory to report why it couldn't be listed
+            if (!dir.exists())
+            {
+                throw new Exception(dir + " doesn't exists.");
+            }
+            else if (!dir.isDirectory())
+            {
+                throw new Exception(dir + " is not a directory.");
+            }
+            throw new Exception("IO error scanning directory " + dir.getAbsolutePath());
+        }
+        Entry[] entries = new Entry[names.length];
+        for (int i = 0; i < names.length; ++i)
+        {
+            entries[i] = new Entry(dir, names[i], followSymlinks);
+        }
+        return entries;
+    }
+
+    /**
+     * Creates daemon listing threads, so that an abandoned scan cannot prevent the JVM from exiting.
+     */
+    private static class ListerThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "izpack-scan-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
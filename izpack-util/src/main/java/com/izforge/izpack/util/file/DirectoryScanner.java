@@ -21,6 +21,7 @@ import com.izforge.izpack.api.data.InstallData;
 import com.izforge.izpack.util.file.types.Resource;
 import com.izforge.izpack.util.file.types.ResourceFactory;
 import com.izforge.izpack.util.file.types.selectors.FileSelector;
+import com.izforge.izpack.util.file.types.selectors.PathPatternSet;
 import com.izforge.izpack.util.file.types.selectors.SelectorUtils;
 
 import java.io.File;
@@ -276,6 +277,26 @@ public class DirectoryScanner
      */
     private final Set<String> scannedDirs = new HashSet<String>();
 
+    /**
+     * The names of the files that have been included, excluded or deselected.
+     */
+    private final Set<String> accountedFiles = new HashSet<String>();
+
+    /**
+     * The names of the directories that have been included, excluded or deselected.
+     */
+    private final Set<String> accountedDirs = new HashSet<String>();
+
+    /**
+     * The no. of threads used to list directories ahead of the scan.
+     */
+    private int threads = DirectoryLister.DEFAULT_THREADS;
+
+    /**
+     * Lists directories during a scan.
+     */
+    private DirectoryLister lister;
+
     /**
      * Set of all include patterns that are full file names and don't
      * contain any wildcards.
@@ -303,22 +324,22 @@ public class DirectoryScanner
     private final Set<String> excludeNonPatterns = new HashSet<String>();
 
     /**
-     * Array of all include patterns that contain wildcards.
+     * All include patterns that contain wildcards.
      * <p/>
      * <p>Gets lazily initialized on the first invocation of
      * isIncluded or isExcluded and cleared at the end of the scan
      * method (cleared in clearCaches, actually).</p>
      */
-    private String[] includePatterns;
+    private PathPatternSet includePatterns;
 
     /**
-     * Array of all exclude patterns that contain wildcards.
+     * All exclude patterns that contain wildcards.
      * <p/>
      * <p>Gets lazily initialized on the first invocation of
      * isIncluded or isExcluded and cleared at the end of the scan
      * method (cleared in clearCaches, actually).</p>
      */
-    private String[] excludePatterns;
+    private PathPatternSet excludePatterns;
 
     /**
      * Have the non-pattern sets and pattern arrays for in- and
@@ -416,24 +437,6 @@ public class DirectoryScanner
         return SelectorUtils.matchPath(pattern, str);
     }
 
-    /**
-     * Test whether or not a given path matches a given pattern.
-     *
-     * @param pattern         The pattern to match against. Must not be
-     *                        <code>null</code>.
-     * @param str             The path to match, as a String. Must not be
-     *                        <code>null</code>.
-     * @param isCaseSensitive Whether or not matching should be performed
-     *                        case sensitively.
-     * @return <code>true</code> if the pattern matches against the string,
-     *         or <code>false</code> otherwise.
-     */
-    private static boolean matchPath(String pattern, String str,
-                                     boolean isCaseSensitive)
-    {
-        return SelectorUtils.matchPath(pattern, str, isCaseSensitive);
-    }
-
     /**
      * Test whether or not a string matches against a pattern.
      * The pattern may contain two special characters:<br>
@@ -610,6 +613,18 @@ public class DirectoryScanner
         this.followSymlinks = followSymlinks;
     }
 
+    /**
+     * Sets the number of threads used to list directories ahead of the scan.
+     * <p/>
+     * Patterns are always matched on the scanning thread, so the results don't depend on the number of threads.
+     *
+     * @param threads the number of threads. If <code>&lt;= 1</code>, directories are listed on the scanning thread
+     */
+    public synchronized void setThreads(int threads)
+    {
+        this.threads = threads;
+    }
+
     /**
      * Set the list of include patterns to use. All '/' and '\' characters
      * are replaced by <code>File.separatorChar</code>, so the separator used
@@ -820,7 +835,16 @@ public class DirectoryScanner
                 {
                     dirsNotIncluded.addElement("");
                 }
-                checkIncludePatterns();
+                lister = new DirectoryLister(threads, followSymlinks);
+                try
+                {
+                    checkIncludePatterns();
+                }
+                finally
+                {
+                    lister.shutdown();
+                    lister = null;
+                }
                 clearCaches();
                 includes = nullIncludes ? null : includes;
                 excludes = nullExcludes ? null : excludes;
@@ -970,6 +994,8 @@ public class DirectoryScanner
         dirsNotIncluded = new Vector<String>();
         dirsExcluded = new Vector<String>();
         dirsDeselected = new Vector<String>();
+        accountedFiles.clear();
+        accountedDirs.clear();
         everythingIncluded = (basedir != null);
         scannedDirs.clear();
     }
@@ -1021,22 +1047,31 @@ public class DirectoryScanner
                 String[] notIncl = new String[dirsNotIncluded.size()];
                 dirsNotIncluded.copyInto(notIncl);
 
-                for (String anExcl : excl)
+                lister = new DirectoryLister(threads, followSymlinks);
+                try
                 {
-                    if (!couldHoldIncluded(anExcl))
+                    for (String anExcl : excl)
                     {
-                        scandir(new File(basedir, anExcl),
-                                anExcl + File.separator, false);
+                        if (!couldHoldIncluded(anExcl))
+                        {
+                            scandir(new File(basedir, anExcl),
+                                    anExcl + File.separator, false);
+                        }
                     }
-                }
-                for (String aNotIncl : notIncl)
-                {
-                    if (!couldHoldIncluded(aNotIncl))
+                    for (String aNotIncl : notIncl)
                     {
-                        scandir(new File(basedir, aNotIncl),
-                                aNotIncl + File.separator, false);
+                        if (!couldHoldIncluded(aNotIncl))
+                        {
+                            scandir(new File(basedir, aNotIncl),
+                                    aNotIncl + File.separator, false);
+                        }
                     }
                 }
+                finally
+                {
+                    lister.shutdown();
+                    lister = null;
+                }
                 clearCaches();
                 includes = nullIncludes ? null : includes;
                 excludes = nullExcludes ? null : excludes;
@@ -1078,69 +1113,41 @@ public class DirectoryScanner
         {
             throw new Exception("dir must not be null.");
         }
-        else if (!dir.exists())
-        {
-            throw new Exception(dir + " doesn't exists.");
-        }
-        else if (!dir.isDirectory())
-        {
-            throw new Exception(dir + " is not a directory.");
-        }
         // avoid double scanning of directories, can only happen in fast mode
         if (fast && hasBeenScanned(vpath))
         {
             return;
         }
-        String[] newfiles = dir.list();
+        DirectoryLister.Entry[] entries = lister.list(dir);
 
-        if (newfiles == null)
+        // start listing the subdirectories that will be scanned, while this one is matched
+        for (DirectoryLister.Entry entry : entries)
         {
-            /*
-             * two reasons are mentioned in the API docs for File.list
-             * (1) dir is not a directory. This is impossible as
-             *     we wouldn't get here in this case.
-             * (2) an IO error occurred (why doesn't it throw an exception
-             *     then???)
-             */
-            throw new Exception("IO error scanning directory "
-                    + dir.getAbsolutePath());
+            if (entry.isDirectory() && !entry.isSymlink()
+                    && (!fast || couldHoldIncluded(vpath + entry.getName())))
+            {
+                lister.prefetch(entry.getFile());
+            }
         }
-        if (!followSymlinks)
+
+        for (DirectoryLister.Entry entry : entries)
         {
-            Vector<String> noLinks = new Vector<String>();
-            for (String newfile : newfiles)
+            String name = vpath + entry.getName();
+            File file = entry.getFile();
+            if (entry.isSymlink())
             {
-                try
+                if (entry.isDirectory())
                 {
-                    if (FileUtils.isSymbolicLink(dir, newfile))
-                    {
-                        String name = vpath + newfile;
-                        File file = new File(dir, newfile);
-                        (file.isDirectory()
-                                ? dirsExcluded : filesExcluded).addElement(name);
-                    }
-                    else
-                    {
-                        noLinks.addElement(newfile);
-                    }
+                    dirsExcluded.addElement(name);
+                    accountedDirs.add(name);
                 }
-                catch (IOException ioe)
+                else
                 {
-                    String msg = "IOException caught while checking "
-                            + "for links, couldn't get canonical path!";
-                    // will be caught and redirected to Ant's logging system
-                    System.err.println(msg);
-                    noLinks.addElement(newfile);
+                    filesExcluded.addElement(name);
+                    accountedFiles.add(name);
                 }
             }
-            newfiles = new String[noLinks.size()];
-            noLinks.copyInto(newfiles);
-        }
-        for (String newfile : newfiles)
-        {
-            String name = vpath + newfile;
-            File file = new File(dir, newfile);
-            if (file.isDirectory())
+            else if (entry.isDirectory())
             {
                 if (isIncluded(name))
                 {
@@ -1160,7 +1167,7 @@ public class DirectoryScanner
                     scandir(file, name + File.separator, fast);
                 }
             }
-            else if (file.isFile())
+            else if (entry.isFile())
             {
                 if (isIncluded(name))
                 {
@@ -1183,9 +1190,7 @@ public class DirectoryScanner
      */
     private void accountForIncludedFile(String name, File file) throws Exception
     {
-        if (filesIncluded.contains(name)
-                || filesExcluded.contains(name)
-                || filesDeselected.contains(name))
+        if (!accountedFiles.add(name))
         {
             return;
         }
@@ -1217,9 +1222,7 @@ public class DirectoryScanner
     private void accountForIncludedDir(String name, File file, boolean fast)
             throws Exception
     {
-        if (dirsIncluded.contains(name)
-                || dirsExcluded.contains(name)
-                || dirsDeselected.contains(name))
+        if (!accountedDirs.add(name))
         {
             return;
         }
@@ -1262,14 +1265,7 @@ public class DirectoryScanner
         {
             return true;
         }
-        for (String includePattern : includePatterns)
-        {
-            if (matchPath(includePattern, name, isCaseSensitive()))
-            {
-                return true;
-            }
-        }
-        return false;
+        return includePatterns.matches(name);
     }
 
     /**
@@ -1375,14 +1371,7 @@ public class DirectoryScanner
         {
             return true;
         }
-        for (String excludePattern : excludePatterns)
-        {
-            if (matchPath(excludePattern, name, isCaseSensitive()))
-            {
-                return true;
-            }
-        }
-        return false;
+        return excludePatterns.matches(name);
     }
 
     /**
@@ -1778,8 +1767,8 @@ public class DirectoryScanner
     {
         if (!areNonPatternSetsReady)
         {
-            includePatterns = fillNonPatternSet(includeNonPatterns, includes);
-            excludePatterns = fillNonPatternSet(excludeNonPatterns, excludes);
+            includePatterns = new PathPatternSet(fillNonPatternSet(includeNonPatterns, includes), isCaseSensitive());
+            excludePatterns = new PathPatternSet(fillNonPatternSet(excludeNonPatterns, excludes), isCaseSensitive());
             areNonPatternSetsReady = true;
         }
     }
@@ -0,0 +1,127 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import com.izforge.izpack.api.data.PackFile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+
+/**
+ * Computes the content digests recorded for pack files.
+ *
+ * @see PackFile#getDigest()
+ */
+public class FileDigest
+{
+    /**
+     * The size of the buffer used to read files.
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The maximum size of a region of a file to map at once.
+     */
+    private static final long MAP_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Creates a digest using {@link PackFile#DIGEST_ALGORITHM}.
+     *
+     * @return a new digest
+     * @throws IOException if the digest algorithm isn't supported
+     */
+    public static MessageDigest create() throws IOException
+    {
+        try
+        {
+            return MessageDigest.getInstance(PackFile.DIGEST_ALGORITHM);
+        }
+        catch (NoSuchAlgorithmException exception)
+        {
+            throw new IOException("Failed to create " + PackFile.DIGEST_ALGORITHM + " digest", exception);
+        }
+    }
+
+    /**
+     * Computes the digest of a file.
+     *
+     * @param file the file
+     * @return the digest
+     * @throws IOException if the file cannot be read
+     */
+    public static byte[] digest(File file) throws IOException
+    {
+        MessageDigest digest = create();
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) != -1)
+            {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Computes the digest of a file, mapping it into memory rather than copying it through a buffer.
+     * <p/>
+     * This is faster for large files, but on some platforms a mapped file cannot be modified or deleted until the
+     * mapping is garbage collected, so it should only be used for files that won't be written by the same process.
+     *
+     * @param file the file
+     * @return the digest
+     * @throws IOException if the file cannot be read
+     */
+    public static byte[] digestMapped(File file) throws IOException
+    {
+        MessageDigest digest = create();
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            for (long position = 0; position < size; position += MAP_SIZE)
+            {
+                digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position,
+                                          Math.min(MAP_SIZE, size - position)));
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+        return digest.digest();
+    }
+}
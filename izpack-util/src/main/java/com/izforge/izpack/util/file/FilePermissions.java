@@ -0,0 +1,180 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import com.izforge.izpack.api.data.PackFile;
+import com.izforge.izpack.util.OsVersion;
+
+import java.io.File;
+
+
+/**
+ * Sets POSIX file permissions without forking <tt>chmod</tt>.
+ * <p/>
+ * Permissions are set via {@link File}, which distinguishes the owner from everyone else, but not the group from
+ * others. A permission granted to either the group or others is granted to everyone.
+ *
+ * @see PackFile#getMode()
+ */
+public class FilePermissions
+{
+    /**
+     * The owner read permission bit.
+     */
+    public static final int OWNER_READ = 0400;
+
+    /**
+     * The owner write permission bit.
+     */
+    public static final int OWNER_WRITE = 0200;
+
+    /**
+     * The owner execute permission bit.
+     */
+    public static final int OWNER_EXECUTE = 0100;
+
+    /**
+     * The group and others read permission bits.
+     */
+    private static final int OTHERS_READ = 0044;
+
+    /**
+     * The group and others write permission bits.
+     */
+    private static final int OTHERS_WRITE = 0022;
+
+    /**
+     * The group and others execute permission bits.
+     */
+    private static final int OTHERS_EXECUTE = 0011;
+
+    /**
+     * Determines if permissions can be set on the current platform.
+     *
+     * @return {@code true} if the current platform is a Unix
+     */
+    public static boolean isSupported()
+    {
+        return OsVersion.IS_UNIX;
+    }
+
+    /**
+     * Sets the permissions of a file from POSIX mode bits.
+     * <p/>
+     * This is a no-op if permissions aren't {@link #isSupported() supported}, or the mode is {@code 0}.
+     *
+     * @param file the file
+     * @param mode the POSIX mode bits
+     * @return {@code true} if the permissions were set, or there was nothing to set
+     */
+    public static boolean setMode(File file, int mode)
+    {
+        if (mode == 0 || !isSupported())
+        {
+            return true;
+        }
+        boolean result = set(file, mode, OWNER_READ, OTHERS_READ, Permission.READ);
+        result &= set(file, mode, OWNER_WRITE, OTHERS_WRITE, Permission.WRITE);
+        result &= set(file, mode, OWNER_EXECUTE, OTHERS_EXECUTE, Permission.EXECUTE);
+        return result;
+    }
+
+    /**
+     * Makes a file executable by everyone, as <tt>chmod a+x</tt> does.
+     * <p/>
+     * This is a no-op if permissions aren't {@link #isSupported() supported}.
+     *
+     * @param file the file
+     * @return {@code true} if the file was made executable, or there was nothing to set
+     */
+    public static boolean setExecutable(File file)
+    {
+        return !isSupported() || file.setExecutable(true, false);
+    }
+
+    /**
+     * Sets a permission of a file.
+     *
+     * @param file       the file
+     * @param mode       the POSIX mode bits
+     * @param owner      the owner bit of the permission
+     * @param others     the group and others bits of the permission
+     * @param permission the permission
+     * @return {@code true} if the permission was set
+     */
+    private static boolean set(File file, int mode, int owner, int others, Permission permission)
+    {
+        boolean result;
+        if ((mode & others) != 0)
+        {
+            result = permission.set(file, true, false);
+        }
+        else
+        {
+            result = permission.set(file, false, false);
+            if ((mode & owner) != 0)
+            {
+                result &= permission.set(file, true, true);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The permissions that can be set via {@link File}.
+     */
+    private enum Permission
+    {
+        READ
+                {
+                    @Override
+                    boolean set(File file, boolean enable, boolean ownerOnly)
+                    {
+                        return file.setReadable(enable, ownerOnly);
+                    }
+                },
+        WRITE
+                {
+                    @Override
+                    boolean set(File file, boolean enable, boolean ownerOnly)
+                    {
+                        return file.setWritable(enable, ownerOnly);
+                    }
+                },
+        EXECUTE
+                {
+                    @Override
+                    boolean set(File file, boolean enable, boolean ownerOnly)
+                    {
+                        return file.setExecutable(enable, ownerOnly);
+                    }
+                };
+
+        /**
+         * Sets the permission.
+         *
+         * @param file      the file
+         * @param enable    if {@code true}, grant the permission, otherwise revoke it
+         * @param ownerOnly if {@code true}, only change the owner's permission, otherwise change everyone's
+         * @return {@code true} if the permission was changed
+         */
+        abstract boolean set(File file, boolean enable, boolean ownerOnly);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file.types.selectors;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * A set of path patterns, pre-tokenized so that paths can be matched against all of them without re-parsing
+ * the patterns for each path.
+ * <p/>
+ * Matching follows the rules of {@link SelectorUtils#matchPath(String, String, boolean)}. Patterns whose first path
+ * element has no wildcards are keyed on that element, so a path is only matched against those patterns that share
+ * its first element, and the patterns that start with a wildcard.
+ */
+public class PathPatternSet
+{
+    /**
+     * Determines if matching is case sensitive.
+     */
+    private final boolean caseSensitive;
+
+    /**
+     * The patterns that start with a literal path element, keyed on that element.
+     */
+    private final Map<String, List<TokenizedPattern>> literal = new HashMap<String, List<TokenizedPattern>>();
+
+    /**
+     * The patterns that start with a wildcard.
+     */
+    private final List<TokenizedPattern> wildcard = new ArrayList<TokenizedPattern>();
+
+    /**
+     * Constructs a <tt>PathPatternSet</tt>.
+     *
+     * @param patterns      the patterns
+     * @param caseSensitive whether or not matching should be performed case sensitively
+     */
+    public PathPatternSet(String[] patterns, boolean caseSensitive)
+    {
+        this.caseSensitive = caseSensitive;
+        for (String pattern : patterns)
+        {
+            TokenizedPattern tokenized = new TokenizedPattern(pattern);
+            String[] tokens = tokenized.tokens;
+            if (tokens.length != 0 && !SelectorUtils.hasWildcards(tokens[0]))
+            {
+                String key = getKey(tokens[0]);
+                List<TokenizedPattern> list = literal.get(key);
+                if (list == null)
+                {
+                    list = new ArrayList<TokenizedPattern>();
+                    literal.put(key, list);
+                }
+                list.add(tokenized);
+            }
+            else
+            {
+                wildcard.add(tokenized);
+            }
+        }
+    }
+
+    /**
+     * Determines if a path matches any of the patterns.
+     *
+     * @param path the path
+     * @return {@code true} if the path matches at least one pattern
+     */
+    public boolean matches(String path)
+    {
+        boolean rooted = path.startsWith(File.separator);
+        String[] tokens = SelectorUtils.tokenizePathAsArray(path);
+        if (tokens.length != 0)
+        {
+            List<TokenizedPattern> list = literal.get(getKey(tokens[0]));
+            if (list != null && matches(list, rooted, tokens))
+            {
+                return true;
+            }
+        }
+        return matches(wildcard, rooted, tokens);
+    }
+
+    /**
+     * Determines if a tokenized path matches any of a list of patterns.
+     *
+     * @param patterns the patterns
+     * @param rooted   whether the path starts with a separator
+     * @param tokens   the path elements
+     * @return {@code true} if the path matches at least one pattern
+     */
+    private boolean matches(List<TokenizedPattern> patterns, boolean rooted, String[] tokens)
+    {
+        for (TokenizedPattern pattern : patterns)
+        {
+            if (pattern.rooted == rooted && SelectorUtils.matchPath(pattern.tokens, tokens, caseSensitive))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the key for a literal path element.
+     * <p/>
+     * If matching is case insensitive, this upper-cases each character, mirroring the character comparison made
+     * by {@link SelectorUtils#match(String, String, boolean)}.
+     *
+     * @param token the path element
+     * @return the key
+     */
+    private String getKey(String token)
+    {
+        if (caseSensitive)
+        {
+            return token;
+        }
+        char[] chars = token.toCharArray();
+        for (int i = 0; i < chars.length; ++i)
+        {
+            chars[i] = Character.toUpperCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * A pattern split into its path elements.
+     */
+    private static class TokenizedPattern
+    {
+        /**
+         * Whether the pattern starts with a separator.
+         */
+        private final boolean rooted;
+
+        /**
+         * The pattern path elements.
+         */
+        private final String[] tokens;
+
+        /**
+         * Constructs a <tt>TokenizedPattern</tt>.
+         *
+         * @param pattern the pattern
+         */
+        public TokenizedPattern(String pattern)
+        {
+            rooted = pattern.startsWith(File.separator);
+            tokens = SelectorUtils.tokenizePathAsArray(pattern);
+        }
+    }
+}
@@ -185,9 +185,26 @@ public final class SelectorUtils
             return false;
         }
 
-        String[] patDirs = tokenizePathAsArray(pattern);
-        String[] strDirs = tokenizePathAsArray(str);
+        return matchPath(tokenizePathAsArray(pattern), tokenizePathAsArray(str), isCaseSensitive);
+    }
 
+    /**
+     * Tests whether or not a tokenized path matches a tokenized pattern.
+     * <p/>
+     * The caller is responsible for checking that the pattern and path
+     * either both start with a <code>File.separator</code>, or both don't.
+     *
+     * @param patDirs         The pattern, as tokenized by
+     *                        {@link #tokenizePathAsArray}.
+     * @param strDirs         The path, as tokenized by
+     *                        {@link #tokenizePathAsArray}.
+     * @param isCaseSensitive Whether or not matching should be performed
+     *                        case sensitively.
+     * @return <code>true</code> if the pattern matches against the path,
+     *         or <code>false</code> otherwise.
+     */
+    static boolean matchPath(String[] patDirs, String[] strDirs, boolean isCaseSensitive)
+    {
         int patIdxStart = 0;
         int patIdxEnd = patDirs.length - 1;
         int strIdxStart = 0;
@@ -583,7 +600,7 @@ public final class SelectorUtils
     /**
      * Same as {@link #tokenizePath tokenizePath} but hopefully faster.
      */
-    private static String[] tokenizePathAsArray(String path)
+    static String[] tokenizePathAsArray(String path)
     {
         char sep = File.separatorChar;
         int start = 0;
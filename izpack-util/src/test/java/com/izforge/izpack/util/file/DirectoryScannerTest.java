@@ -0,0 +1,150 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+
+/**
+ * Tests the {@link DirectoryScanner} class.
+ */
+public class DirectoryScannerTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * The base directory to scan.
+     */
+    private File basedir;
+
+    /**
+     * Creates a directory tree to scan.
+     *
+     * @throws Exception for any error
+     */
+    @Before
+    public void setUp() throws Exception
+    {
+        basedir = temporaryFolder.newFolder("base");
+        for (int i = 0; i < 5; ++i)
+        {
+            for (int j = 0; j < 5; ++j)
+            {
+                File dir = new File(basedir, "dir" + i + File.separator + "sub" + j);
+                assertEquals(true, dir.mkdirs());
+                assertEquals(true, new File(dir, "a.txt").createNewFile());
+                assertEquals(true, new File(dir, "b.jar").createNewFile());
+            }
+        }
+        assertEquals(true, new File(basedir, "top.txt").createNewFile());
+    }
+
+    /**
+     * Verifies that files are included and excluded by the patterns.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testScan() throws Exception
+    {
+        DirectoryScanner scanner = createScanner(4, new String[]{"dir1/**/*.txt", "*.txt"},
+                                                 new String[]{"**/sub3/**"});
+        assertEquals(set("top.txt", "dir1/sub0/a.txt", "dir1/sub1/a.txt", "dir1/sub2/a.txt", "dir1/sub4/a.txt"),
+                     set(scanner.getIncludedFiles()));
+        assertEquals(set("dir1/sub3/a.txt"), set(scanner.getExcludedFiles()));
+    }
+
+    /**
+     * Verifies that listing directories in the background returns the same results as listing them on the
+     * scanning thread.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testThreadsDontAffectResults() throws Exception
+    {
+        String[] includes = {"dir*/sub1/**", "dir2/**/*.jar"};
+        String[] excludes = {"dir0/**"};
+        DirectoryScanner serial = createScanner(1, includes, excludes);
+        DirectoryScanner parallel = createScanner(4, includes, excludes);
+
+        assertArrayEquals(serial.getIncludedFiles(), parallel.getIncludedFiles());
+        assertArrayEquals(serial.getIncludedDirectories(), parallel.getIncludedDirectories());
+        assertArrayEquals(serial.getExcludedFiles(), parallel.getExcludedFiles());
+        assertArrayEquals(serial.getExcludedDirectories(), parallel.getExcludedDirectories());
+
+        // the slow scan lists the directories skipped by the fast scan
+        assertArrayEquals(serial.getNotIncludedFiles(), parallel.getNotIncludedFiles());
+        assertArrayEquals(serial.getNotIncludedDirectories(), parallel.getNotIncludedDirectories());
+        assertEquals(5 * 5 * 2 + 1 - serial.getIncludedFilesCount() - serial.getExcludedFiles().length,
+                     serial.getNotIncludedFiles().length);
+    }
+
+    /**
+     * Creates and runs a scanner.
+     *
+     * @param threads  the no. of listing threads
+     * @param includes the include patterns
+     * @param excludes the exclude patterns
+     * @return the scanner
+     * @throws Exception for any error
+     */
+    private DirectoryScanner createScanner(int threads, String[] includes, String[] excludes) throws Exception
+    {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(basedir);
+        scanner.setIncludes(includes);
+        scanner.setExcludes(excludes);
+        scanner.setThreads(threads);
+        scanner.scan();
+        return scanner;
+    }
+
+    /**
+     * Helper to create a set of paths.
+     *
+     * @param paths the paths, using '/' as the separator
+     * @return the set of paths, using the platform separator
+     */
+    private static Set<String> set(String... paths)
+    {
+        Set<String> result = new HashSet<String>();
+        for (String path : Arrays.asList(paths))
+        {
+            result.add(path.replace('/', File.separatorChar));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests the {@link FilePermissions} class.
+ */
+public class FilePermissionsTest
+{
+    /**
+     * Temporary folder.
+     */
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Skips the tests on platforms that don't support permissions.
+     */
+    @Before
+    public void setUp()
+    {
+        Assume.assumeTrue(FilePermissions.isSupported());
+    }
+
+    /**
+     * Tests {@link FilePermissions#setMode(File, int)}.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSetMode() throws Exception
+    {
+        File file = temporaryFolder.newFile("script.sh");
+        assertFalse(file.canExecute());
+
+        assertTrue(FilePermissions.setMode(file, 0755));
+        assertTrue(file.canRead());
+        assertTrue(file.canExecute());
+
+        assertTrue(FilePermissions.setMode(file, 0644));
+        assertTrue(file.canRead());
+        assertFalse(file.canExecute());
+
+        assertTrue(FilePermissions.setMode(file, 0700));
+        assertTrue(file.canExecute());
+
+        // a mode of 0 leaves the permissions unchanged
+        assertTrue(FilePermissions.setMode(file, 0));
+        assertTrue(file.canExecute());
+    }
+
+    /**
+     * Tests {@link FilePermissions#setExecutable(File)}.
+     *
+     * @throws Exception for any error
+     */
+    @Test
+    public void testSetExecutable() throws Exception
+    {
+        File file = temporaryFolder.newFile("script.sh");
+        assertFalse(file.canExecute());
+        assertTrue(FilePermissions.setExecutable(file));
+        assertTrue(file.canExecute());
+    }
+}
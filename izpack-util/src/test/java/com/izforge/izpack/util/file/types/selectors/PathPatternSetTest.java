@@ -0,0 +1,108 @@
+/*
+ * IzPack - Copyright 2001-2016 The IzPack project team.
+ * All Rights Reserved.
+ *
+ * http://izpack.org/
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.izforge.izpack.util.file.types.selectors;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+
+/**
+ * Tests the {@link PathPatternSet} class.
+ */
+public class PathPatternSetTest
+{
+    /**
+     * The patterns.
+     */
+    private static final String[] PATTERNS = {
+            path("lib/*.jar"), path("bin/**"), path("**/CVS/**"), path("/opt/app/*"), path("doc/?ead*.txt"),
+            path("Lib/native/**/*.so")};
+
+    /**
+     * The paths to match.
+     */
+    private static final String[] PATHS = {
+            path("lib/a.jar"), path("lib/sub/a.jar"), path("LIB/a.JAR"), path("bin"), path("bin/run.sh"),
+            path("src/CVS/Entries"), path("CVS"), path("/opt/app/x"), path("opt/app/x"), path("doc/readme.txt"),
+            path("doc/head.txt"), path("lib/native/x86/a.so"), path("Lib/native/a.so"), "", path("other/file")};
+
+    /**
+     * Verifies that paths are matched the same as {@link SelectorUtils#matchPath(String, String, boolean)}.
+     */
+    @Test
+    public void testMatchesSelectorUtils()
+    {
+        for (boolean caseSensitive : new boolean[]{true, false})
+        {
+            PathPatternSet set = new PathPatternSet(PATTERNS, caseSensitive);
+            for (String path : PATHS)
+            {
+                boolean expected = false;
+                for (String pattern : PATTERNS)
+                {
+                    if (SelectorUtils.matchPath(pattern, path, caseSensitive))
+                    {
+                        expected = true;
+                        break;
+                    }
+                }
+                assertEquals("path=" + path + ", caseSensitive=" + caseSensitive, expected, set.matches(path));
+            }
+        }
+    }
+
+    /**
+     * Verifies case sensitivity is honoured for patterns starting with a literal path element.
+     */
+    @Test
+    public void testCaseSensitivity()
+    {
+        String[] patterns = {path("lib/*.jar")};
+        assertFalse(new PathPatternSet(patterns, true).matches(path("LIB/a.jar")));
+        assertTrue(new PathPatternSet(patterns, false).matches(path("LIB/a.jar")));
+    }
+
+    /**
+     * Verifies that an empty set matches nothing.
+     */
+    @Test
+    public void testEmpty()
+    {
+        PathPatternSet set = new PathPatternSet(new String[0], true);
+        assertFalse(set.matches(path("lib/a.jar")));
+        assertFalse(set.matches(""));
+    }
+
+    /**
+     * Converts a path using '/' separators to use the platform separator.
+     *
+     * @param path the path
+     * @return the converted path
+     */
+    private static String path(String path)
+    {
+        return path.replace('/', File.separatorChar);
+    }
+}